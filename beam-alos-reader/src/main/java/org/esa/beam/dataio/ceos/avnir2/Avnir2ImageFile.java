@@ -21,10 +21,13 @@ import org.esa.beam.dataio.ceos.CeosFileReader;
 import org.esa.beam.dataio.ceos.IllegalCeosFormatException;
 import org.esa.beam.dataio.ceos.avnir2.records.Avnir2ImageFDR;
 import org.esa.beam.dataio.ceos.records.ImageRecord;
+import org.esa.beam.framework.dataio.PositionalFileReader;
 import org.esa.beam.framework.datamodel.ProductData;
 
-import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.FileImageInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteOrder;
 
 /**
  * This class represents an image file of an Avnir-2 product.
@@ -37,19 +40,25 @@ class Avnir2ImageFile {
     public final Avnir2ImageFDR _imageFDR;
     public final ImageRecord[] _imageRecords;
     private CeosFileReader _ceosReader;
+    private PositionalFileReader _fileReader;
     private final int _imageNumber;
     private int _imageRecordLength;
     private long _startPosImageRecords;
+    private long _imageDataOffset;
 
-    public Avnir2ImageFile(final ImageInputStream imageStream) throws IOException,
+    public Avnir2ImageFile(final File imageFile) throws IOException,
                                                                       IllegalCeosFormatException {
-        _ceosReader = new CeosFileReader(imageStream);
+        _ceosReader = new CeosFileReader(new FileImageInputStream(imageFile));
         _imageFDR = new Avnir2ImageFDR(_ceosReader);
         _imageRecords = new ImageRecord[_imageFDR.getNumLinesPerBand()];
         _imageRecords[0] = new ImageRecord(_ceosReader);
         _imageRecordLength = _imageRecords[0].getRecordLength();
         _startPosImageRecords = _imageRecords[0].getStartPos();
         _imageNumber = _imageRecords[0].getImageNumber();
+        // the image data starts at the same offset within each image record
+        _imageDataOffset = _imageRecords[0].getImageDataStart() - _startPosImageRecords;
+        // pixel data is read by positional reads, so that concurrent reads of different lines do not block
+        _fileReader = new PositionalFileReader(imageFile, ByteOrder.BIG_ENDIAN);
     }
 
     public String getBandName() throws IOException,
@@ -166,20 +175,19 @@ class Avnir2ImageFile {
 
     private void readSourceLine(final int y, final int sourceOffsetX, final byte[] srcLine) throws IOException,
                                                                                                    IllegalCeosFormatException {
-        synchronized (_ceosReader) {
-            final ImageRecord imageRecord = getImageRecord(y);
-            _ceosReader.seek(imageRecord.getImageDataStart() + sourceOffsetX);
-            _ceosReader.readB1(srcLine);
-        }
+        final long pos = _startPosImageRecords + (long) _imageRecordLength * y + _imageDataOffset + sourceOffsetX;
+        _fileReader.readFully(pos, srcLine, 0, srcLine.length);
     }
 
     private ImageRecord getImageRecord(final int line) throws IOException,
                                                               IllegalCeosFormatException {
-        if (_imageRecords[line] == null) {
-            _ceosReader.seek(_imageRecordLength * line + _startPosImageRecords);
-            _imageRecords[line] = new ImageRecord(_ceosReader);
+        synchronized (_ceosReader) {
+            if (_imageRecords[line] == null) {
+                _ceosReader.seek(_imageRecordLength * line + _startPosImageRecords);
+                _imageRecords[line] = new ImageRecord(_ceosReader);
+            }
+            return _imageRecords[line];
         }
-        return _imageRecords[line];
     }
 
     private void copyLine(final byte[] srcLine, final byte[] destLine,
@@ -196,5 +204,7 @@ class Avnir2ImageFile {
     public void close() throws IOException {
         _ceosReader.close();
         _ceosReader = null;
+        _fileReader.close();
+        _fileReader = null;
     }
 }
@@ -20,9 +20,12 @@ import org.esa.beam.dataio.ceos.CeosFileReader;
 import org.esa.beam.dataio.ceos.IllegalCeosFormatException;
 import org.esa.beam.dataio.ceos.prism.records.ImageFileDescriptorRecord;
 import org.esa.beam.dataio.ceos.records.ImageRecord;
+import org.esa.beam.framework.dataio.PositionalFileReader;
 
-import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.FileImageInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteOrder;
 
 /**
  * This class represents an image file of a Prism product.
@@ -37,13 +40,15 @@ class PrismImageFile {
     private final int _height;
     private final int _width;
     private CeosFileReader _ceosReader;
+    private PositionalFileReader _fileReader;
     private final int _imageNumber;
     private int _imageRecordLength;
     private long _startPosImageRecords;
+    private long _imageDataOffset;
 
-    public PrismImageFile(final ImageInputStream imageStream) throws IOException,
+    public PrismImageFile(final File imageFile) throws IOException,
             IllegalCeosFormatException {
-        _ceosReader = new CeosFileReader(imageStream);
+        _ceosReader = new CeosFileReader(new FileImageInputStream(imageFile));
         _imageFileDescriptorRecord = new ImageFileDescriptorRecord(_ceosReader);
         _width = _imageFileDescriptorRecord.getNumImagePixelsPerLine();
         _height = _imageFileDescriptorRecord.getNumLinesPerBand();
@@ -52,6 +57,10 @@ class PrismImageFile {
         _imageRecordLength = _imageRecords[0].getRecordLength();
         _startPosImageRecords = _imageRecords[0].getStartPos();
         _imageNumber = _imageRecords[0].getImageNumber();
+        // the image data starts at the same offset within each image record
+        _imageDataOffset = _imageRecords[0].getImageDataStart() - _startPosImageRecords;
+        // pixel data is read by positional reads, so that concurrent reads of different lines do not block
+        _fileReader = new PositionalFileReader(imageFile, ByteOrder.BIG_ENDIAN);
     }
 
     void readBandRasterData(final int sourceOffsetX, final int sourceOffsetY,
@@ -96,20 +105,19 @@ class PrismImageFile {
 
     private void readSourceLine(final int y, final int sourceOffsetX, final byte[] srcLine) throws IOException,
             IllegalCeosFormatException {
-        synchronized (_ceosReader) {
-            final ImageRecord imageRecord = getImageRecord(y);
-            _ceosReader.seek(imageRecord.getImageDataStart() + sourceOffsetX);
-            _ceosReader.readB1(srcLine);
-        }
+        final long pos = _startPosImageRecords + (long) _imageRecordLength * y + _imageDataOffset + sourceOffsetX;
+        _fileReader.readFully(pos, srcLine, 0, srcLine.length);
     }
 
     private ImageRecord getImageRecord(final int line) throws IOException,
             IllegalCeosFormatException {
-        if (_imageRecords[line] == null) {
-            _ceosReader.seek(_imageRecordLength * line + _startPosImageRecords);
-            _imageRecords[line] = new ImageRecord(_ceosReader);
+        synchronized (_ceosReader) {
+            if (_imageRecords[line] == null) {
+                _ceosReader.seek(_imageRecordLength * line + _startPosImageRecords);
+                _imageRecords[line] = new ImageRecord(_ceosReader);
+            }
+            return _imageRecords[line];
         }
-        return _imageRecords[line];
     }
 
     private void copyLine(final byte[] srcLine, final byte[] destLine, final int sourceStepX) {
@@ -125,6 +133,8 @@ class PrismImageFile {
     public void close() throws IOException {
         _ceosReader.close();
         _ceosReader = null;
+        _fileReader.close();
+        _fileReader = null;
     }
 
     public int getHeight() {
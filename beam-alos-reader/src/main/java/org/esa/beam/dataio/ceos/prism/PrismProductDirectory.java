@@ -88,7 +88,7 @@ class PrismProductDirectory {
         final String[] imageFileNames = volumeDirectoryFile.getImageFileNames();
         imageFiles = new PrismImageFile[imageFileNames.length];
         for (int i = 0; i < imageFileNames.length; i++) {
-            imageFiles[i] = new PrismImageFile(createInputStream(imageFileNames[i]));
+            imageFiles[i] = new PrismImageFile(new File(baseDir, imageFileNames[i]));
         }
     }
 
@@ -16,6 +16,7 @@
 package org.esa.beam.dataio.atsr;
 
 import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.PositionalFileReader;
 import org.esa.beam.framework.datamodel.ProductData;
 
 import javax.imageio.stream.ImageInputStream;
@@ -25,9 +26,9 @@ abstract class AtsrBandReader {
 
     protected String _bandName;
     protected long _startOffset;
-    protected long _currentOffset;
     protected float _multiplier;
     protected ImageInputStream _stream;
+    protected PositionalFileReader _fileReader;
 
     /**
      * Creates the object with given band name, file offset conversion multiplier and file stream.
@@ -58,21 +59,44 @@ abstract class AtsrBandReader {
                                ProgressMonitor pm) throws IOException;
 
     /**
-     * Sets the file stream to the start position of the reading process
+     * Sets the reader used for positional reads of the band data. If set, lines are read without locking
+     * the file stream, so that concurrent tile requests can be served in parallel.
      */
-    void setStreamPos(int sourceOffsetX, int sourceOffsetY, int pixelSize) throws IOException {
-        // calculate offset in stream and wind to position
-        _currentOffset = (sourceOffsetY * AtsrConstants.ATSR_SCENE_RASTER_WIDTH + sourceOffsetX) * pixelSize;
-        _currentOffset += _startOffset;
-        _stream.seek(_currentOffset);
+    void setFileReader(PositionalFileReader fileReader) {
+        _fileReader = fileReader;
     }
 
     /**
-     * Updates the stream position to the position: <code>_currentOffset += delta * pixelSize</code>
+     * Reads <code>line.length</code> pixels of the given scan line, starting at <code>sourceOffsetX</code>.
      */
-    void updateStreamPos(int delta, int pixelSize) throws IOException {
-        _currentOffset = (int) _stream.getStreamPosition();
-        _currentOffset += delta * pixelSize;
-        _stream.seek(_currentOffset);
+    void readLine(int sourceOffsetX, int sourceY, byte[] line) throws IOException {
+        final long pos = getLinePos(sourceOffsetX, sourceY, 1);
+        if (_fileReader != null) {
+            _fileReader.readFully(pos, line, 0, line.length);
+        } else {
+            synchronized (_stream) {
+                _stream.seek(pos);
+                _stream.readFully(line, 0, line.length);
+            }
+        }
+    }
+
+    /**
+     * Reads <code>line.length</code> pixels of the given scan line, starting at <code>sourceOffsetX</code>.
+     */
+    void readLine(int sourceOffsetX, int sourceY, short[] line) throws IOException {
+        final long pos = getLinePos(sourceOffsetX, sourceY, 2);
+        if (_fileReader != null) {
+            _fileReader.readFully(pos, line, 0, line.length);
+        } else {
+            synchronized (_stream) {
+                _stream.seek(pos);
+                _stream.readFully(line, 0, line.length);
+            }
+        }
+    }
+
+    private long getLinePos(int sourceOffsetX, int sourceY, int pixelSize) {
+        return _startOffset + ((long) sourceY * AtsrConstants.ATSR_SCENE_RASTER_WIDTH + sourceOffsetX) * pixelSize;
     }
 }
@@ -23,8 +23,6 @@ import java.io.IOException;
 
 class AtsrByteBandReader extends AtsrBandReader {
 
-    private static final int _pixelSize = 1;
-
     /**
      * Creates the object with given band name, file offset conversion multiplier and file stream.
      */
@@ -33,12 +31,10 @@ class AtsrByteBandReader extends AtsrBandReader {
     }
 
     @Override
-    synchronized void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
-                                   int sourceStepX,
-                                   int sourceStepY, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
-                                   ProductData destBuffer, ProgressMonitor pm) throws IOException {
-        setStreamPos(sourceOffsetX, sourceOffsetY, _pixelSize);
-
+    void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+                      int sourceStepX,
+                      int sourceStepY, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
+                      ProductData destBuffer, ProgressMonitor pm) throws IOException {
         float[] targetData = (float[]) destBuffer.getElems();
         byte[] line = new byte[sourceWidth];
         int targetIdx = 0;
@@ -51,7 +47,7 @@ class AtsrByteBandReader extends AtsrBandReader {
                 if (pm.isCanceled()) {
                     break;
                 }
-                _stream.readFully(line, 0, line.length);
+                readLine(sourceOffsetX, sourceOffsetY + y, line);
 
                 // convert line - and eventually subsample
                 for (int x = 0; x < sourceWidth; x += sourceStepX) {
@@ -59,7 +55,6 @@ class AtsrByteBandReader extends AtsrBandReader {
                     targetData[targetIdx] = value * _multiplier;
                     ++targetIdx;
                 }
-                updateStreamPos(AtsrConstants.ATSR_SCENE_RASTER_WIDTH - sourceWidth, _pixelSize);
 
                 pm.worked(1);
             }
@@ -15,6 +15,7 @@
  */
 package org.esa.beam.dataio.atsr;
 
+import org.esa.beam.framework.dataio.PositionalFileReader;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.FlagCoding;
 import org.esa.beam.framework.datamodel.GeoCoding;
@@ -33,6 +34,7 @@ import java.util.Vector;
 abstract class AtsrFile {
 
     private ImageInputStream _stream;
+    private PositionalFileReader _fileReader;
     private AtsrHeader _header;
     private File _file;
     private Vector _bands;
@@ -55,6 +57,9 @@ abstract class AtsrFile {
         _file = file;
 
         checkByteSwapping();
+        if (_file != null) {
+            _fileReader = new PositionalFileReader(_file, _stream.getByteOrder());
+        }
         readHeader();
     }
 
@@ -65,6 +70,9 @@ abstract class AtsrFile {
         if (_stream != null) {
             _stream.close();
         }
+        if (_fileReader != null) {
+            _fileReader.close();
+        }
     }
 
     /**
@@ -152,6 +160,7 @@ abstract class AtsrFile {
      * Adds the reader to the list of available readers.
      */
     void addBandReader(AtsrBandReader reader) {
+        reader.setFileReader(_fileReader);
         _bandReader.put(getBand(reader.getBandName()), reader);
     }
 
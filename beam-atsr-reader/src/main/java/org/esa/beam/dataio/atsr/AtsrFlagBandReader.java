@@ -26,8 +26,6 @@ import java.io.IOException;
  */
 public class AtsrFlagBandReader extends AtsrBandReader {
 
-    static final int _pixelSize = 2;
-
     /**
      * Creates the object with given band name, file offset conversion multiplier and file stream.
      */
@@ -36,12 +34,10 @@ public class AtsrFlagBandReader extends AtsrBandReader {
     }
 
     @Override
-    synchronized void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
-                                   int sourceStepX,
-                                   int sourceStepY, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
-                                   ProductData destBuffer, ProgressMonitor pm) throws IOException {
-        setStreamPos(sourceOffsetX, sourceOffsetY, _pixelSize);
-
+    void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+                      int sourceStepX,
+                      int sourceStepY, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
+                      ProductData destBuffer, ProgressMonitor pm) throws IOException {
         short[] targetData = (short[]) destBuffer.getElems();
         short[] line = new short[sourceWidth];
         int targetIdx = 0;
@@ -53,7 +49,7 @@ public class AtsrFlagBandReader extends AtsrBandReader {
                 if (pm.isCanceled()) {
                     break;
                 }
-                _stream.readFully(line, 0, line.length);
+                readLine(sourceOffsetX, sourceOffsetY + y, line);
 
                 // convert line - and eventually subsample
                 for (int x = 0; x < sourceWidth; x += sourceStepX) {
@@ -62,7 +58,6 @@ public class AtsrFlagBandReader extends AtsrBandReader {
 
                     ++targetIdx;
                 }
-                updateStreamPos(AtsrConstants.ATSR_SCENE_RASTER_WIDTH - sourceWidth, _pixelSize);
 
                 pm.worked(1);
             }
@@ -23,8 +23,6 @@ import java.io.IOException;
 
 class AtsrShortBandReader extends AtsrBandReader {
 
-    static final int _pixelSize = 2;
-
     /**
      * Creates the object with given band name, file offset conversion multiplier and file stream.
      */
@@ -36,8 +34,6 @@ class AtsrShortBandReader extends AtsrBandReader {
     void readBandData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight, int sourceStepX,
                       int sourceStepY, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
                       ProductData destBuffer, ProgressMonitor pm) throws IOException {
-        setStreamPos(sourceOffsetX, sourceOffsetY, _pixelSize);
-
         float[] targetData = (float[]) destBuffer.getElems();
         short[] line = new short[sourceWidth];
         int targetIdx = 0;
@@ -49,14 +45,13 @@ class AtsrShortBandReader extends AtsrBandReader {
                 if (pm.isCanceled()) {
                     break;
                 }
-                _stream.readFully(line, 0, line.length);
+                readLine(sourceOffsetX, sourceOffsetY + y, line);
 
                 // convert line - and eventually subsample
                 for (int x = 0; x < sourceWidth; x += sourceStepX) {
                     targetData[targetIdx] = Math.abs(line[x]) * _multiplier;
                     ++targetIdx;
                 }
-                updateStreamPos(AtsrConstants.ATSR_SCENE_RASTER_WIDTH - sourceWidth, _pixelSize);
 
                 pm.worked(1);
             }
@@ -16,8 +16,6 @@
 
 package org.esa.beam.dataio.avhrr.noaa;
 
-import com.bc.ceres.binio.CompoundData;
-import com.bc.ceres.binio.SequenceData;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.dataio.avhrr.AvhrrConstants;
 import org.esa.beam.dataio.avhrr.AvhrrFile;
@@ -31,20 +29,17 @@ abstract class CountReader implements BandReader {
 
     protected final Calibrator calibrator;
 
-    protected final int[] calibrationData;
-
-    protected final int[] lineOfCounts;
-
     protected final int channel;
 
     protected final KlmAvhrrFile noaaFile;
 
+    protected final int dataWidth;
+
     public CountReader(int channel, KlmAvhrrFile noaaFile, Calibrator calibrator, int dataWidth) {
         this.channel = channel;
         this.noaaFile = noaaFile;
         this.calibrator = calibrator;
-        calibrationData = new int[AvhrrConstants.CALIB_COEFF_LENGTH];
-        lineOfCounts = new int[dataWidth];
+        this.dataWidth = dataWidth;
     }
 
     @Override
@@ -73,7 +68,7 @@ abstract class CountReader implements BandReader {
     }
 
     @Override
-    public synchronized void readBandRasterData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+    public void readBandRasterData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
                                    int sourceStepX, int sourceStepY, ProductData destBuffer, ProgressMonitor pm) throws
                                                                                                                  IOException {
 
@@ -81,6 +76,9 @@ abstract class CountReader implements BandReader {
                 sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight);
 
         final float[] targetData = (float[]) destBuffer.getElems();
+        final int[] calibrationData = new int[AvhrrConstants.CALIB_COEFF_LENGTH];
+        final int[] lineOfCounts = new int[dataWidth];
+        final Object scanLine = createScanLine();
 
         int targetIdx = rawCoord.targetStart;
         pm.beginTask("Reading AVHRR band '" + getBandName() + "'...", rawCoord.maxY - rawCoord.minY);
@@ -93,16 +91,22 @@ abstract class CountReader implements BandReader {
                 boolean validData = hasData(rawY);
                 if (validData) {
                     if (calibrator.requiresCalibrationData()) {
-                        readCalibrationCoefficients(rawY, calibrationData);
-                        validData = calibrator.processCalibrationData(calibrationData);
+                        noaaFile.readCalibrationCoefficients(rawY, calibrationData);
                     }
+                    noaaFile.readSensorData(rawY, scanLine);
+                    extractCounts(scanLine, lineOfCounts);
+                    validData = containsValidCounts(lineOfCounts);
                     if (validData) {
-                        readData(rawY);
-                        validData = containsValidCounts();
-                        if (validData) {
-                            for (int sourceX = rawCoord.minX; sourceX <= rawCoord.maxX; sourceX += sourceStepX) {
-                                targetData[targetIdx] = calibrator.calibrate(lineOfCounts[sourceX]);
-                                targetIdx += rawCoord.targetIncrement;
+                        // the calibrator holds the coefficients of the current line
+                        synchronized (calibrator) {
+                            if (calibrator.requiresCalibrationData()) {
+                                validData = calibrator.processCalibrationData(calibrationData);
+                            }
+                            if (validData) {
+                                for (int sourceX = rawCoord.minX; sourceX <= rawCoord.maxX; sourceX += sourceStepX) {
+                                    targetData[targetIdx] = calibrator.calibrate(lineOfCounts[sourceX]);
+                                    targetIdx += rawCoord.targetIncrement;
+                                }
                             }
                         }
                     }
@@ -130,7 +134,7 @@ abstract class CountReader implements BandReader {
                || (channel3ab == 0 && channel == AvhrrConstants.CH_3B);
     }
 
-    private boolean containsValidCounts() {
+    private static boolean containsValidCounts(int[] lineOfCounts) {
         for (final int i : lineOfCounts) {
             if (i <= 0 || i >= 1024) {
                 return false;
@@ -139,13 +143,10 @@ abstract class CountReader implements BandReader {
         return true;
     }
 
-    private void readCalibrationCoefficients(int rawY, int[] calibCoeff) throws IOException {
-        CompoundData dataRecord = noaaFile.getDataRecord(rawY);
-        SequenceData calibration_coefficients = dataRecord.getSequence("CALIBRATION_COEFFICIENTS");
-        for (int i = 0; i < calibCoeff.length; i++) {
-            calibCoeff[i] = calibration_coefficients.getInt(i);
-        }
-    }
+    /**
+     * @return a buffer for the raw sensor data of a scan line, see {@link KlmAvhrrFile#readSensorData}
+     */
+    protected abstract Object createScanLine();
 
-    protected abstract void readData(int rawY) throws IOException;
+    protected abstract void extractCounts(Object scanLine, int[] lineOfCounts);
 }
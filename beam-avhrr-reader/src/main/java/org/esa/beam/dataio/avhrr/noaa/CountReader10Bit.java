@@ -16,13 +16,9 @@
 
 package org.esa.beam.dataio.avhrr.noaa;
 
-import com.bc.ceres.binio.CompoundData;
-import com.bc.ceres.binio.SequenceData;
 import org.esa.beam.dataio.avhrr.AvhrrConstants;
 import org.esa.beam.dataio.avhrr.calibration.Calibrator;
 
-import java.io.IOException;
-
 
 class CountReader10Bit extends CountReader {
     private static final int TEN_BITS = 0b1111111111;
@@ -31,26 +27,21 @@ class CountReader10Bit extends CountReader {
     private static final int[][] INCREMENT = {{1, 2, 2}, {2, 1, 2}, {2, 2, 1}, {1, 2, 2}, {2, 1, 2}};
     private static final int[][] SHIFT = {{20, 0, 10}, {10, 20, 0}, {0, 10, 20}, {20, 0, 10}, {10, 20, 0}};
 
-    private int[] scanLineBuffer;
     private final int elementCount;
 
     public CountReader10Bit(int channel, KlmAvhrrFile noaaFile, Calibrator calibrator, int elementCount, int dataWidth) {
     	super(channel, noaaFile, calibrator, dataWidth);
         this.elementCount = elementCount;
-        scanLineBuffer = new int[elementCount];
     }
 
     @Override
-    protected void readData(int rawY) throws IOException {
-        CompoundData dataRecord = noaaFile.getDataRecord(rawY);
-        SequenceData avhrr_sensor_data = dataRecord.getSequence("AVHRR_SENSOR_DATA");
-        for (int i = 0; i < scanLineBuffer.length; i++) {
-            scanLineBuffer[i] = avhrr_sensor_data.getInt(i);
-        }
-        extractCounts(scanLineBuffer);
+    protected Object createScanLine() {
+        return new int[elementCount];
     }
 
-    private void extractCounts(int[] rawData) {
+    @Override
+    protected void extractCounts(Object scanLine, int[] lineOfCounts) {
+        final int[] rawData = (int[]) scanLine;
         int j = 0;
         int bandNo = AvhrrConstants.CH_DATASET_INDEXES[channel];
         int indexRaw = FIRST[bandNo];
@@ -62,11 +53,11 @@ class CountReader10Bit extends CountReader {
     }
 
     /**
-     * The same as {@link #extractCounts(int[])}  but better readable ;-)
+     * The same as {@link #extractCounts(Object, int[])}  but better readable ;-)
      * However this method documents much more clearly the algorithm used for the 10-bit decoding.
      * Although this method is unused, DO NOT REMOVE IT!
      */
-    private void extractCountsSlowButSimple(int[] rawData) {
+    private void extractCountsSlowButSimple(int[] rawData, int[] lineOfCounts) {
         int bandNo = AvhrrConstants.CH_DATASET_INDEXES[channel];
         int indexInBand = 0;
         int bandNum = 0;
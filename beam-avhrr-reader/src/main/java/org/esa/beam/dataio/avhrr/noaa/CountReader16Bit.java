@@ -16,33 +16,25 @@
 
 package org.esa.beam.dataio.avhrr.noaa;
 
-import com.bc.ceres.binio.CompoundData;
-import com.bc.ceres.binio.SequenceData;
 import org.esa.beam.dataio.avhrr.AvhrrConstants;
 import org.esa.beam.dataio.avhrr.calibration.Calibrator;
 
-import java.io.IOException;
-
 class CountReader16Bit extends CountReader {
-    private short[] scanLineBuffer;
+    private final int elementCount;
 
     public CountReader16Bit(int channel, KlmAvhrrFile noaaFile, Calibrator calibrator, int elementCount, int dataWidth) {
     	super(channel, noaaFile, calibrator, dataWidth);
-        scanLineBuffer = new short[elementCount];
+        this.elementCount = elementCount;
     }
 
     @Override
-    protected void readData(int rawY) throws IOException {
-        CompoundData dataRecord = noaaFile.getDataRecord(rawY);
-        SequenceData avhrr_sensor_data = dataRecord.getSequence("AVHRR_SENSOR_DATA");
-        for (int i = 0; i < scanLineBuffer.length; i++) {
-            scanLineBuffer[i] = avhrr_sensor_data.getShort(i);
-        }
-
-        extractCounts(scanLineBuffer);
+    protected Object createScanLine() {
+        return new short[elementCount];
     }
 
-    private void extractCounts(short[] rawData) {
+    @Override
+    protected void extractCounts(Object scanLine, int[] lineOfCounts) {
+        final short[] rawData = (short[]) scanLine;
         int indexRaw = AvhrrConstants.CH_DATASET_INDEXES[channel];
         for (int i = 0; i < lineOfCounts.length; i++) {
             lineOfCounts[i] = rawData[indexRaw];
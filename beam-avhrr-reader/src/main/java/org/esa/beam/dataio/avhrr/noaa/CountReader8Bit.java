@@ -16,33 +16,26 @@
 
 package org.esa.beam.dataio.avhrr.noaa;
 
-import com.bc.ceres.binio.CompoundData;
-import com.bc.ceres.binio.SequenceData;
 import org.esa.beam.dataio.avhrr.AvhrrConstants;
 import org.esa.beam.dataio.avhrr.calibration.Calibrator;
 
-import java.io.IOException;
-
 
 class CountReader8Bit extends CountReader {
-    private byte[] scanLineBuffer;
+    private final int elementCount;
 
     public CountReader8Bit(int channel, KlmAvhrrFile noaaFile, Calibrator calibrator, int elementCount, int dataWidth) {
     	super(channel, noaaFile, calibrator, dataWidth);
-        scanLineBuffer = new byte[elementCount];
+        this.elementCount = elementCount;
     }
 
     @Override
-    protected void readData(int rawY) throws IOException {
-        CompoundData dataRecord = noaaFile.getDataRecord(rawY);
-        SequenceData avhrr_sensor_data = dataRecord.getSequence("AVHRR_SENSOR_DATA");
-        for (int i = 0; i < scanLineBuffer.length; i++) {
-            scanLineBuffer[i] = avhrr_sensor_data.getByte(i);
-        }
-        extractCounts(scanLineBuffer);
+    protected Object createScanLine() {
+        return new byte[elementCount];
     }
 
-    private void extractCounts(byte[] rawData) {
+    @Override
+    protected void extractCounts(Object scanLine, int[] lineOfCounts) {
+        final byte[] rawData = (byte[]) scanLine;
         int indexRaw = AvhrrConstants.CH_DATASET_INDEXES[channel];
         for (int i = 0; i < lineOfCounts.length; i++) {
             lineOfCounts[i] = ((int) rawData[indexRaw]) & 0xff;
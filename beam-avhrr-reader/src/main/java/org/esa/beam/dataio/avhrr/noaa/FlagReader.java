@@ -16,7 +16,6 @@
 
 package org.esa.beam.dataio.avhrr.noaa;
 
-import com.bc.ceres.binio.CompoundData;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.dataio.avhrr.AvhrrConstants;
 import org.esa.beam.dataio.avhrr.AvhrrFile;
@@ -24,6 +23,7 @@ import org.esa.beam.dataio.avhrr.BandReader;
 import org.esa.beam.framework.datamodel.ProductData;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 class FlagReader implements BandReader {
 
@@ -59,7 +59,7 @@ class FlagReader implements BandReader {
     }
 
     @Override
-    public synchronized void readBandRasterData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
+    public void readBandRasterData(int sourceOffsetX, int sourceOffsetY, int sourceWidth, int sourceHeight,
                                    int sourceStepX, int sourceStepY, ProductData destBuffer, ProgressMonitor pm) throws
                                                                                                                  IOException {
 
@@ -91,14 +91,14 @@ class FlagReader implements BandReader {
 
     private byte readFlags(int rawY) throws IOException {
         long[] flags = new long[6];
-        CompoundData dataRecord = avhrrFile.getDataRecord(rawY);
-
-        flags[0] = dataRecord.getUInt("QUALITY_INDICATOR_BIT_FIELD");
-        flags[1] = dataRecord.getUInt("SCANLINE_QUALITY_FLAGS");
-        flags[2] = dataRecord.getUShort("CALIBRATION_QUALITY_FLAGS_3B");
-        flags[3] = dataRecord.getUShort("CALIBRATION_QUALITY_FLAGS_4");
-        flags[4] = dataRecord.getUShort("CALIBRATION_QUALITY_FLAGS_5");
-        flags[5] = dataRecord.getUShort("COUNT_OF_BIT_ERRORS_IN_FRAME_SYNC");
+        ByteBuffer qualityIndicators = avhrrFile.readQualityIndicators(rawY);
+
+        flags[0] = qualityIndicators.getInt() & 0xffffffffL;   //Quality Indicator Bit Field
+        flags[1] = qualityIndicators.getInt() & 0xffffffffL;   //Scan Line Quality Flags
+        flags[2] = qualityIndicators.getShort() & 0xffff;      //Calibration Quality Flags 3b
+        flags[3] = qualityIndicators.getShort() & 0xffff;      //Calibration Quality Flags 4
+        flags[4] = qualityIndicators.getShort() & 0xffff;      //Calibration Quality Flags 5
+        flags[5] = qualityIndicators.getShort() & 0xffff;      //Count of Bit Errors in Frame Sync
 
         byte flag = 0;
         for (int i = 0; i < flags.length; i++) {
@@ -29,12 +29,14 @@ import org.esa.beam.dataio.avhrr.calibration.IrRadianceCalibrator;
 import org.esa.beam.dataio.avhrr.calibration.IrTemperatureCalibrator;
 import org.esa.beam.dataio.avhrr.calibration.ReflectanceFactorCalibrator;
 import org.esa.beam.dataio.avhrr.calibration.VisibleRadianceCalibrator;
+import org.esa.beam.framework.dataio.PositionalFileReader;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.util.Debug;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -48,6 +50,12 @@ public class KlmAvhrrFile extends AvhrrFile implements AvhrrConstants {
     private boolean hasCloudBand = false;
     private ProductFormat productFormat;
     private boolean hasArsHeader;
+    private PositionalFileReader fileReader;
+    private long dataRecordsStart;
+    private int scanlineBitFieldOffset;
+    private int qualityIndicatorsOffset;
+    private int calibrationCoefficientsOffset;
+    private int sensorDataOffset;
 
     public KlmAvhrrFile(File file) {
         this.file = file;
@@ -71,6 +79,16 @@ public class KlmAvhrrFile extends AvhrrFile implements AvhrrConstants {
         DataFormat dataFormat = new DataFormat(type, ByteOrder.BIG_ENDIAN);
         context = dataFormat.createContext(file, "r");
         noaaData = context.getData();
+
+        // the band data is accessed by positional reads, so that concurrent tile requests are not serialised
+        fileReader = new PositionalFileReader(file, ByteOrder.BIG_ENDIAN);
+        dataRecordsStart = (hasArsHeader ? AvhrrConstants.ARS_LENGTH : 0) + blockSize;
+        CompoundType dataRecordType = KlmTypes.getDataRecordType(productFormat);
+        scanlineBitFieldOffset = getMemberOffset(dataRecordType, "SCANLINE_BIT_FIELD");
+        qualityIndicatorsOffset = getMemberOffset(dataRecordType, "QUALITY_INDICATOR_BIT_FIELD");
+        calibrationCoefficientsOffset = getMemberOffset(dataRecordType, "CALIBRATION_COEFFICIENTS");
+        sensorDataOffset = getMemberOffset(dataRecordType, "AVHRR_SENSOR_DATA");
+
         int tpSubsampling = productFormat.getProductDimension().getTpSubsampling();
         int toSkip = (dataRecordCount % tpSubsampling) - 1;
         if (toSkip < 0) {
@@ -87,7 +105,46 @@ public class KlmAvhrrFile extends AvhrrFile implements AvhrrConstants {
     }
 
     int getScanlineBitfield(int yIndex) throws IOException {
-        return getDataRecord(yIndex).getInt("SCANLINE_BIT_FIELD");
+        return fileReader.read(getDataRecordPosition(yIndex) + scanlineBitFieldOffset, 2).getShort() & 0xffff;
+    }
+
+    /**
+     * Reads the quality indicator bit field, the scan line quality flags, the calibration quality flags of the
+     * channels 3b, 4 and 5 and the count of bit errors of the given scan line. The returned buffer is only valid
+     * until the calling thread reads again from this file.
+     */
+    ByteBuffer readQualityIndicators(int yIndex) throws IOException {
+        return fileReader.read(getDataRecordPosition(yIndex) + qualityIndicatorsOffset, 4 + 4 + 2 + 2 + 2 + 2);
+    }
+
+    void readCalibrationCoefficients(int yIndex, int[] calibCoeff) throws IOException {
+        fileReader.readFully(getDataRecordPosition(yIndex) + calibrationCoefficientsOffset,
+                             calibCoeff, 0, calibCoeff.length);
+    }
+
+    /**
+     * Reads the raw AVHRR sensor data of the given scan line.
+     *
+     * @param yIndex   the scan line
+     * @param scanLine an array of the product format's element type and element count
+     */
+    void readSensorData(int yIndex, Object scanLine) throws IOException {
+        fileReader.readFully(getDataRecordPosition(yIndex) + sensorDataOffset,
+                             scanLine, 0, productFormat.getElementCount());
+    }
+
+    private long getDataRecordPosition(int yIndex) {
+        return dataRecordsStart + (long) yIndex * productFormat.getBlockSize();
+    }
+
+    static int getMemberOffset(CompoundType type, String name) {
+        final int memberIndex = type.getMemberIndex(name);
+        Assert.argument(memberIndex >= 0, "name");
+        int offset = 0;
+        for (int i = 0; i < memberIndex; i++) {
+            offset += type.getMember(i).getType().getSize();
+        }
+        return offset;
     }
 
     private void analyzeScanLineBitfield() throws IOException {
@@ -301,6 +358,14 @@ public class KlmAvhrrFile extends AvhrrFile implements AvhrrConstants {
             context.dispose();
             context = null;
         }
+        if (fileReader != null) {
+            try {
+                fileReader.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+            fileReader = null;
+        }
         noaaData = null;
     }
 
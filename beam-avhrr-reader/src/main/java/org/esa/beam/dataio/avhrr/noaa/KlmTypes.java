@@ -289,7 +289,7 @@ class KlmTypes {
         );
     }
 
-    private static CompoundType getDataRecordType(ProductFormat productFormat) {
+    static CompoundType getDataRecordType(ProductFormat productFormat) {
         int endFillBytes = productFormat.getBlockSize() - 14 - 10 - 16 - 8 -
                            (INT.getSize() * AvhrrConstants.CALIB_COEFF_LENGTH) -
                            12 - 16 - (SHORT.getSize() * 153) - 6 - 408 - 8 - 208 -
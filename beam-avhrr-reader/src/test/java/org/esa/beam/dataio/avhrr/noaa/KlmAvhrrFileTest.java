@@ -0,0 +1,87 @@
+package org.esa.beam.dataio.avhrr.noaa;
+
+import com.bc.ceres.binio.CompoundData;
+import com.bc.ceres.binio.CompoundType;
+import com.bc.ceres.binio.DataContext;
+import com.bc.ceres.binio.DataFormat;
+import com.bc.ceres.binio.SequenceData;
+import org.esa.beam.dataio.avhrr.AvhrrConstants;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class KlmAvhrrFileTest {
+
+    @Test
+    public void testDataRecordMemberOffsets() throws Exception {
+        // the byte offsets given by the data record tables of the NOAA KLM User's Guide (section 8.3.1.4.3)
+        for (ProductFormat productFormat : ProductFormat.values()) {
+            final CompoundType type = KlmTypes.getDataRecordType(productFormat);
+            final int sensorDataSize = productFormat.getElementType().getSize() * productFormat.getElementCount();
+
+            assertEquals(productFormat.name(), productFormat.getBlockSize(), type.getSize());
+            assertEquals(productFormat.name(), 0, KlmAvhrrFile.getMemberOffset(type, "SCANLINE_NUMBER"));
+            assertEquals(productFormat.name(), 12, KlmAvhrrFile.getMemberOffset(type, "SCANLINE_BIT_FIELD"));
+            assertEquals(productFormat.name(), 24, KlmAvhrrFile.getMemberOffset(type, "QUALITY_INDICATOR_BIT_FIELD"));
+            assertEquals(productFormat.name(), 48, KlmAvhrrFile.getMemberOffset(type, "CALIBRATION_COEFFICIENTS"));
+            assertEquals(productFormat.name(), 312, KlmAvhrrFile.getMemberOffset(type, "NAVIGATION_STATUS_BIT_FIELD"));
+            assertEquals(productFormat.name(), 1264, KlmAvhrrFile.getMemberOffset(type, "AVHRR_SENSOR_DATA"));
+            assertEquals(productFormat.name(), 1264 + sensorDataSize + 8 + 16 + 32,
+                         KlmAvhrrFile.getMemberOffset(type, "CLAVR_STATUS_BIT_FIELD"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMember() throws Exception {
+        KlmAvhrrFile.getMemberOffset(KlmTypes.getDataRecordType(ProductFormat.GAC_10BIT), "NO_SUCH_MEMBER");
+    }
+
+    @Test
+    public void testSyntheticDataRecord() throws Exception {
+        final ProductFormat productFormat = ProductFormat.GAC_10BIT;
+        final CompoundType type = KlmTypes.getDataRecordType(productFormat);
+        final ByteBuffer record = ByteBuffer.allocate(productFormat.getBlockSize()).order(ByteOrder.BIG_ENDIAN);
+        record.putShort(KlmAvhrrFile.getMemberOffset(type, "SCANLINE_BIT_FIELD"), (short) 0x8001);
+        record.putInt(KlmAvhrrFile.getMemberOffset(type, "QUALITY_INDICATOR_BIT_FIELD"), 0x40000003);
+        final int calibrationCoefficientsOffset = KlmAvhrrFile.getMemberOffset(type, "CALIBRATION_COEFFICIENTS");
+        for (int i = 0; i < AvhrrConstants.CALIB_COEFF_LENGTH; i++) {
+            record.putInt(calibrationCoefficientsOffset + 4 * i, 1000 * i - 7);
+        }
+        final int sensorDataOffset = KlmAvhrrFile.getMemberOffset(type, "AVHRR_SENSOR_DATA");
+        for (int i = 0; i < productFormat.getElementCount(); i++) {
+            record.putInt(sensorDataOffset + 4 * i, i * 3 + 1);
+        }
+
+        final File file = File.createTempFile("KlmAvhrrFileTest", ".l1b");
+        try {
+            try (OutputStream outputStream = new FileOutputStream(file)) {
+                outputStream.write(record.array());
+            }
+            // the members read by binio are where the positional reads expect them
+            final DataContext context = new DataFormat(type, ByteOrder.BIG_ENDIAN).createContext(file, "r");
+            try {
+                final CompoundData data = context.getData();
+                assertEquals(0x8001, data.getInt("SCANLINE_BIT_FIELD"));
+                assertEquals(0x40000003, data.getInt("QUALITY_INDICATOR_BIT_FIELD"));
+                final SequenceData calibrationCoefficients = data.getSequence("CALIBRATION_COEFFICIENTS");
+                for (int i = 0; i < AvhrrConstants.CALIB_COEFF_LENGTH; i++) {
+                    assertEquals(1000 * i - 7, calibrationCoefficients.getInt(i));
+                }
+                final SequenceData sensorData = data.getSequence("AVHRR_SENSOR_DATA");
+                for (int i = 0; i < productFormat.getElementCount(); i++) {
+                    assertEquals(i * 3 + 1, sensorData.getInt(i));
+                }
+            } finally {
+                context.dispose();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.util.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the BEAM-DIMAP writer and reader. The file system cache makes these in-memory benchmarks
+ * of the codec rather than of the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DimapBenchmark {
+
+    @Param({"1024"})
+    public int size;
+
+    @Param({"4"})
+    public int numBands;
+
+    private File dir;
+    private Product product;
+    private File writtenFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("DimapBenchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        product = SyntheticProducts.createProduct(size, size, numBands);
+        writtenFile = new File(dir, "read.dim");
+        ProductIO.writeProduct(product, writtenFile, "BEAM-DIMAP", false, ProgressMonitor.NULL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.dispose();
+        FileUtils.deleteTree(dir);
+    }
+
+    @Benchmark
+    public File write() throws IOException {
+        final File file = new File(dir, "write.dim");
+        ProductIO.writeProduct(product, file, "BEAM-DIMAP", false, ProgressMonitor.NULL);
+        return file;
+    }
+
+    @Benchmark
+    public double read() throws IOException {
+        final Product readProduct = ProductIO.readProduct(writtenFile);
+        try {
+            double sum = 0.0;
+            for (Band band : readProduct.getBands()) {
+                band.readRasterDataFully(ProgressMonitor.NULL);
+                sum += band.getPixelDouble(size / 2, size / 2);
+            }
+            return sum;
+        } finally {
+            readProduct.dispose();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelGeoCoding;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward ({@code getGeoPos}) and inverse ({@code getPixelPos}) lookups of a {@code TiePointGeoCoding} and a
+ * {@code PixelGeoCoding}. Each invocation performs the lookups for a regular grid of 64 x 64 positions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeoCodingBenchmark {
+
+    private static final int SIZE = 512;
+    private static final int NUM_POINTS = 64;
+
+    @Param({"TIE_POINT", "PIXEL"})
+    public String geoCodingType;
+
+    private Product product;
+    private GeoCoding geoCoding;
+    private PixelPos[] pixelPositions;
+    private GeoPos[] geoPositions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        product = SyntheticProducts.createProduct(SIZE, SIZE, 1);
+        if ("PIXEL".equals(geoCodingType)) {
+            SyntheticProducts.addLatLonBands(product);
+            geoCoding = new PixelGeoCoding(product.getBand("lat"), product.getBand("lon"), null, 5);
+        } else {
+            geoCoding = product.getGeoCoding();
+        }
+        pixelPositions = new PixelPos[NUM_POINTS * NUM_POINTS];
+        geoPositions = new GeoPos[NUM_POINTS * NUM_POINTS];
+        final float step = (float) SIZE / NUM_POINTS;
+        for (int j = 0; j < NUM_POINTS; j++) {
+            for (int i = 0; i < NUM_POINTS; i++) {
+                final int index = j * NUM_POINTS + i;
+                pixelPositions[index] = new PixelPos((i + 0.5f) * step, (j + 0.5f) * step);
+                geoPositions[index] = geoCoding.getGeoPos(pixelPositions[index], null);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.dispose();
+    }
+
+    @Benchmark
+    public GeoPos getGeoPos() {
+        final GeoPos geoPos = new GeoPos();
+        for (PixelPos pixelPos : pixelPositions) {
+            geoCoding.getGeoPos(pixelPos, geoPos);
+        }
+        return geoPos;
+    }
+
+    @Benchmark
+    public PixelPos getPixelPos() {
+        final PixelPos pixelPos = new PixelPos();
+        for (GeoPos geoPos : geoPositions) {
+            geoCoding.getPixelPos(geoPos, pixelPos);
+        }
+        return pixelPos;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.SourceProduct;
+import org.esa.beam.framework.gpf.internal.OperatorExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.media.jai.JAI;
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end execution of an operator by {@link OperatorExecutor} with the different execution orders.
+ * The operator computes a 3 x 3 box filter, so that the source tiles of neighbouring target tiles overlap.
+ * A new operator is created and the tile cache is flushed per invocation, so that no target tiles are reused.
+ * The source bands are held in memory, hence this benchmark measures the scheduling only, see
+ * {@link ReprojectAndWriteBenchmark} for a chain reading its source from a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperatorExecutorBenchmark {
+
+    @Param({"SCHEDULE_ROW_BAND_COLUMN", "SCHEDULE_BAND_ROW_COLUMN", "SCHEDULE_DEPENDENCY_AWARE"})
+    public OperatorExecutor.ExecutionOrder executionOrder;
+
+    private Product sourceProduct;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sourceProduct = SyntheticProducts.createProduct(2048, 2048, 3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sourceProduct.dispose();
+    }
+
+    @TearDown(Level.Invocation)
+    public void flushTileCache() {
+        JAI.getDefaultInstance().getTileCache().flush();
+    }
+
+    @Benchmark
+    public Product execute() {
+        final BoxFilterOp op = new BoxFilterOp();
+        op.sourceProduct = sourceProduct;
+        OperatorExecutor.create(op).execute(executionOrder, ProgressMonitor.NULL);
+        final Product targetProduct = op.getTargetProduct();
+        op.dispose();
+        return targetProduct;
+    }
+
+    /**
+     * Computes the mean of the 3 x 3 neighbourhood for each band of the source product.
+     */
+    public static class BoxFilterOp extends Operator {
+
+        @SourceProduct
+        Product sourceProduct;
+
+        @Override
+        public void initialize() throws OperatorException {
+            final int width = sourceProduct.getSceneRasterWidth();
+            final int height = sourceProduct.getSceneRasterHeight();
+            final Product targetProduct = new Product("filtered", "FILTERED", width, height);
+            for (Band band : sourceProduct.getBands()) {
+                targetProduct.addBand(band.getName(), ProductData.TYPE_FLOAT32);
+            }
+            targetProduct.setPreferredTileSize(256, 256);
+            setTargetProduct(targetProduct);
+        }
+
+        @Override
+        public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+            final Rectangle targetRect = targetTile.getRectangle();
+            final Rectangle sourceRect = new Rectangle(targetRect.x - 1, targetRect.y - 1,
+                                                       targetRect.width + 2, targetRect.height + 2);
+            final Band sourceBand = sourceProduct.getBand(targetBand.getName());
+            final Tile sourceTile = getSourceTile(sourceBand, sourceRect.intersection(getBounds()));
+            final int xMin = sourceTile.getMinX();
+            final int xMax = sourceTile.getMaxX();
+            final int yMin = sourceTile.getMinY();
+            final int yMax = sourceTile.getMaxY();
+            for (int y = targetRect.y; y < targetRect.y + targetRect.height; y++) {
+                for (int x = targetRect.x; x < targetRect.x + targetRect.width; x++) {
+                    float sum = 0.0f;
+                    int count = 0;
+                    for (int j = Math.max(y - 1, yMin); j <= Math.min(y + 1, yMax); j++) {
+                        for (int i = Math.max(x - 1, xMin); i <= Math.min(x + 1, xMax); i++) {
+                            sum += sourceTile.getSampleFloat(i, j);
+                            count++;
+                        }
+                    }
+                    targetTile.setSample(x, y, sum / count);
+                }
+            }
+        }
+
+        private Rectangle getBounds() {
+            return new Rectangle(sourceProduct.getSceneRasterWidth(), sourceProduct.getSceneRasterHeight());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.dataio.ProductIO;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.internal.OperatorExecutor;
+import org.esa.beam.gpf.operators.standard.WriteOp;
+import org.esa.beam.gpf.operators.standard.reproject.ReprojectionOp;
+import org.esa.beam.util.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.media.jai.JAI;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader - reprojection - writer chain executed with the different execution orders of the
+ * {@link OperatorExecutor}. In contrast to {@link OperatorExecutorBenchmark}, the source bands are read from a
+ * BEAM-DIMAP file, so that {@link OperatorExecutor.ExecutionOrder#SCHEDULE_DEPENDENCY_AWARE} can overlap reading
+ * and computing by prefetching source tiles. Note that the source is read from the file system cache after the
+ * first invocation; use a size exceeding the memory to measure cold reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReprojectAndWriteBenchmark {
+
+    private static final String EXECUTION_ORDER_PROPERTY = "beam.gpf.executionOrder";
+
+    @Param({"SCHEDULE_ROW_COLUMN_BAND", "SCHEDULE_ROW_BAND_COLUMN", "SCHEDULE_BAND_ROW_COLUMN", "SCHEDULE_DEPENDENCY_AWARE"})
+    public OperatorExecutor.ExecutionOrder executionOrder;
+
+    @Param({"2048"})
+    public int size;
+
+    @Param({"4"})
+    public int numBands;
+
+    private File dir;
+    private File sourceFile;
+    private File targetFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("ReprojectAndWriteBenchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        final Product product = SyntheticProducts.createProduct(size, size, numBands);
+        sourceFile = new File(dir, "source.dim");
+        ProductIO.writeProduct(product, sourceFile, "BEAM-DIMAP", false, ProgressMonitor.NULL);
+        product.dispose();
+        targetFile = new File(dir, "target.dim");
+        // the write operator always asks for its default order, which is overridden by this property
+        System.setProperty(EXECUTION_ORDER_PROPERTY, executionOrder.name());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty(EXECUTION_ORDER_PROPERTY);
+        FileUtils.deleteTree(dir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void flushTileCache() {
+        JAI.getDefaultInstance().getTileCache().flush();
+    }
+
+    @Benchmark
+    public File reprojectAndWrite() throws IOException {
+        final Product sourceProduct = ProductIO.readProduct(sourceFile);
+        try {
+            final ReprojectionOp reprojectionOp = new ReprojectionOp();
+            reprojectionOp.setSourceProduct(sourceProduct);
+            reprojectionOp.setParameter("crs", "EPSG:4326");
+            final Product targetProduct = reprojectionOp.getTargetProduct();
+            final WriteOp writeOp = new WriteOp(targetProduct, targetFile, "BEAM-DIMAP");
+            writeOp.writeProduct(ProgressMonitor.NULL);
+            targetProduct.dispose();
+        } finally {
+            sourceProduct.dispose();
+        }
+        return targetFile;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import org.esa.beam.framework.dataop.resamp.Resampling;
+import org.esa.beam.framework.dataop.resamp.ResamplingFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Resampling} kernels as used by the collocation and reprojection code: index computation plus
+ * resampling for each position of a 256 x 256 grid, shifted by a fraction of a pixel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResamplingBenchmark {
+
+    private static final int SIZE = 256;
+
+    @Param({
+            ResamplingFactory.NEAREST_NEIGHBOUR_NAME,
+            ResamplingFactory.BILINEAR_INTERPOLATION_NAME,
+            ResamplingFactory.CUBIC_CONVOLUTION_NAME,
+            ResamplingFactory.BICUBIC_INTERPOLATION_NAME
+    })
+    public String resamplingName;
+
+    private Resampling resampling;
+    private Resampling.Index index;
+    private FloatRaster raster;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resampling = ResamplingFactory.createResampling(resamplingName);
+        index = resampling.createIndex();
+        final float[] data = new float[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                data[y * SIZE + x] = (float) (100.0 * Math.sin(0.05 * x) * Math.cos(0.07 * y));
+            }
+        }
+        raster = new FloatRaster(SIZE, SIZE, data);
+    }
+
+    @Benchmark
+    public double resample() throws Exception {
+        double sum = 0.0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                resampling.computeIndex(x + 0.37, y + 0.61, SIZE, SIZE, index);
+                sum += resampling.resample(raster, index);
+            }
+        }
+        return sum;
+    }
+
+    private static class FloatRaster implements Resampling.Raster {
+
+        private final int width;
+        private final int height;
+        private final float[] data;
+
+        private FloatRaster(int width, int height, float[] data) {
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public boolean getSamples(int[] x, int[] y, double[][] samples) {
+            for (int j = 0; j < y.length; j++) {
+                final int offset = y[j] * width;
+                for (int i = 0; i < x.length; i++) {
+                    samples[j][i] = data[offset + x[i]];
+                }
+            }
+            return true;
+        }
+    }
+}
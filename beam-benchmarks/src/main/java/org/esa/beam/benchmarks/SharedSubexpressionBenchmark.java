@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import com.bc.jexp.EvalEnv;
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.AbstractFunction;
+import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.esa.beam.framework.dataop.barithm.ExpressionGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.media.jai.JAI;
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluation of band maths masks which share a sub-expression, with and without the evaluation of shared
+ * sub-expressions by {@link ExpressionGraph}. The masks are created anew and the tile cache is flushed per
+ * invocation, so that creating the expression graph is part of the measurement and no cached tiles are returned.
+ * <p/>
+ * The shared sub-expression calls a function counting its evaluations. The number of evaluations per pixel
+ * is printed after each iteration, it is 1 if the sub-expression is shared and the number of masks otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SharedSubexpressionBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"false", "true"})
+    public String sharedSubexpressions;
+
+    @Param({"2", "8"})
+    public int maskCount;
+
+    private final AtomicLong evaluationCount = new AtomicLong();
+    private AbstractFunction.B countingFunction;
+    private String oldProperty;
+    private Product product;
+    private Mask[] masks;
+    private long invocationCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        oldProperty = System.getProperty(ExpressionGraph.ENABLED_PROPERTY);
+        System.setProperty(ExpressionGraph.ENABLED_PROPERTY, sharedSubexpressions);
+        countingFunction = new AbstractFunction.B("counted", 1) {
+            @Override
+            public boolean evalB(EvalEnv env, Term[] args) {
+                evaluationCount.incrementAndGet();
+                return Math.sqrt(Math.abs(args[0].evalD(env))) > 3.0;
+            }
+        };
+        BandArithmetic.registerFunction(countingFunction);
+        product = SyntheticProducts.createProduct(SIZE, SIZE, 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.dispose();
+        BandArithmetic.deregisterFunction(countingFunction);
+        if (oldProperty != null) {
+            System.setProperty(ExpressionGraph.ENABLED_PROPERTY, oldProperty);
+        } else {
+            System.clearProperty(ExpressionGraph.ENABLED_PROPERTY);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounts() {
+        evaluationCount.set(0);
+        invocationCount = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounts() {
+        final double evaluationsPerPixel = (double) evaluationCount.get() / ((double) invocationCount * SIZE * SIZE);
+        System.out.printf("%nshared sub-expression evaluations per pixel: %.2f%n", evaluationsPerPixel);
+    }
+
+    @Setup(Level.Invocation)
+    public void addMasks() {
+        masks = new Mask[maskCount];
+        for (int i = 0; i < maskCount; i++) {
+            final String expression = "counted(band_1) && band_" + (i % 3 + 2) + " < " + (10 * i - 20);
+            masks[i] = product.addMask("mask_" + i, expression, "", Color.RED, 0.5);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeMasks() {
+        for (Mask mask : masks) {
+            product.getMaskGroup().remove(mask);
+            mask.dispose();
+        }
+        JAI.getDefaultInstance().getTileCache().flush();
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (Mask mask : masks) {
+            blackhole.consume(mask.getSourceImage().getData());
+        }
+        invocationCount++;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import org.esa.beam.binning.BinManager;
+import org.esa.beam.binning.BinningContext;
+import org.esa.beam.binning.CompositingType;
+import org.esa.beam.binning.Observation;
+import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.SpatialBinConsumer;
+import org.esa.beam.binning.SpatialBinner;
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.support.BinningContextImpl;
+import org.esa.beam.binning.support.ObservationImpl;
+import org.esa.beam.binning.support.SEAGrid;
+import org.esa.beam.binning.support.VariableContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spatial binning of a slice of observations by {@link SpatialBinner#processObservationSlice}, including the
+ * final {@link SpatialBinner#complete()} which emits the bins. The observations cover a 10 x 10 degree area
+ * at a density of about four observations per bin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialBinnerBenchmark {
+
+    @Param({"2160", "4320"})
+    public int numRows;
+
+    private BinningContext binningContext;
+    private Observation[] observations;
+    private long numBins;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final VariableContextImpl variableContext = new VariableContextImpl();
+        variableContext.defineVariable("x");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorAverage(variableContext, "x", 0.0));
+        binningContext = new BinningContextImpl(new SEAGrid(numRows), binManager, CompositingType.BINNING, 1);
+
+        // 180 / numRows degrees per bin, two observations per bin in each direction
+        final double step = 90.0 / numRows;
+        final int n = (int) (10.0 / step);
+        observations = new Observation[n * n];
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < n; i++) {
+                final double lat = 50.0 - j * step;
+                final double lon = 5.0 + i * step;
+                observations[j * n + i] = new ObservationImpl(lat, lon, 56000.0, (float) Math.sin(0.1 * i + 0.2 * j));
+            }
+        }
+    }
+
+    @Benchmark
+    public long processObservationSlice() {
+        numBins = 0;
+        final SpatialBinner spatialBinner = new SpatialBinner(binningContext, new SpatialBinConsumer() {
+            @Override
+            public void consumeSpatialBins(BinningContext binningContext, List<SpatialBin> spatialBins) {
+                numBins += spatialBins.size();
+            }
+        });
+        spatialBinner.processObservationSlice(observations);
+        spatialBinner.complete();
+        return numBins;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.Stx;
+import org.esa.beam.framework.datamodel.StxFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics computation by {@link StxFactory}, which accumulates the band's tiles twice: once for the summary
+ * statistics and once for the histogram. The variant with given minimum and maximum skips the first pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StxBenchmark {
+
+    private Product product;
+    private Band band;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        product = SyntheticProducts.createProduct(2048, 2048, 1);
+        band = product.getBand("band_1");
+        // the source image is created lazily, do not measure its creation
+        band.getSourceImage().getData();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.dispose();
+    }
+
+    @Benchmark
+    public Stx summaryAndHistogram() {
+        return new StxFactory().create(band, ProgressMonitor.NULL);
+    }
+
+    @Benchmark
+    public Stx histogramOnly() {
+        return new StxFactory()
+                .withMinimum(-100.0)
+                .withMaximum(100.0)
+                .withHistogramBinCount(512)
+                .create(band, ProgressMonitor.NULL);
+    }
+}
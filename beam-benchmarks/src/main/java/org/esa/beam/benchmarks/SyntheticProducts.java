@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.TiePointGeoCoding;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+
+/**
+ * Creates the in-memory products used by the benchmarks. The data is deterministic, so results
+ * of different BEAM versions are comparable.
+ */
+class SyntheticProducts {
+
+    static final int TIE_POINT_SUBSAMPLING = 16;
+
+    /**
+     * Creates a product with float bands "band_1" ... "band_n" holding smooth but non-trivial data, and a
+     * tie-point geo-coding covering a 10 x 10 degree area.
+     */
+    static Product createProduct(int width, int height, int numBands) {
+        final Product product = new Product("synthetic", "SYNTHETIC", width, height);
+        product.setPreferredTileSize(Math.min(512, width), Math.min(512, height));
+        for (int b = 0; b < numBands; b++) {
+            final Band band = product.addBand("band_" + (b + 1), ProductData.TYPE_FLOAT32);
+            final float[] data = new float[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    data[y * width + x] = (float) (100.0 * Math.sin(0.01 * x + b) * Math.cos(0.013 * y) + 10.0 * b);
+                }
+            }
+            band.setRasterData(ProductData.createInstance(data));
+        }
+        addTiePointGeoCoding(product);
+        return product;
+    }
+
+    /**
+     * Creates float bands "lat" and "lon" holding the geo-positions of the product's tie-point geo-coding.
+     */
+    static void addLatLonBands(Product product) {
+        final int width = product.getSceneRasterWidth();
+        final int height = product.getSceneRasterHeight();
+        final TiePointGrid latGrid = product.getTiePointGrid("latitude");
+        final TiePointGrid lonGrid = product.getTiePointGrid("longitude");
+        final float[] lats = latGrid.getPixels(0, 0, width, height, (float[]) null);
+        final float[] lons = lonGrid.getPixels(0, 0, width, height, (float[]) null);
+        product.addBand("lat", ProductData.TYPE_FLOAT32).setRasterData(ProductData.createInstance(lats));
+        product.addBand("lon", ProductData.TYPE_FLOAT32).setRasterData(ProductData.createInstance(lons));
+    }
+
+    private static void addTiePointGeoCoding(Product product) {
+        final int gridWidth = product.getSceneRasterWidth() / TIE_POINT_SUBSAMPLING + 1;
+        final int gridHeight = product.getSceneRasterHeight() / TIE_POINT_SUBSAMPLING + 1;
+        final float[] lats = new float[gridWidth * gridHeight];
+        final float[] lons = new float[gridWidth * gridHeight];
+        for (int j = 0; j < gridHeight; j++) {
+            for (int i = 0; i < gridWidth; i++) {
+                // a slightly rotated swath, as produced by polar orbiting sensors
+                lats[j * gridWidth + i] = 50.0f - 10.0f * j / (gridHeight - 1) + 0.5f * i / (gridWidth - 1);
+                lons[j * gridWidth + i] = 5.0f + 10.0f * i / (gridWidth - 1) + 0.5f * j / (gridHeight - 1);
+            }
+        }
+        final TiePointGrid latGrid = new TiePointGrid("latitude", gridWidth, gridHeight, 0.5f, 0.5f,
+                                                      TIE_POINT_SUBSAMPLING, TIE_POINT_SUBSAMPLING, lats);
+        final TiePointGrid lonGrid = new TiePointGrid("longitude", gridWidth, gridHeight, 0.5f, 0.5f,
+                                                      TIE_POINT_SUBSAMPLING, TIE_POINT_SUBSAMPLING, lons);
+        product.addTiePointGrid(latGrid);
+        product.addTiePointGrid(lonGrid);
+        product.setGeoCoding(new TiePointGeoCoding(latGrid, lonGrid));
+    }
+}
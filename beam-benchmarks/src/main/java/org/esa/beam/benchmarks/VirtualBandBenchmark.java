@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.benchmarks;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of band-maths expressions by {@code VirtualBandOpImage}, i.e. parsing plus
+ * {@code com.bc.jexp} term evaluation per pixel. A new image is created per invocation, so that no
+ * cached tiles are returned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualBandBenchmark {
+
+    @Param({
+            "band_1 + band_2",
+            "(band_1 - band_2) / (band_1 + band_2 + 1000)",
+            "band_1 > 0 && band_2 < 50 ? sqrt(abs(band_1 * band_3)) : exp(-band_4 / 100)"
+    })
+    public String expression;
+
+    private Product product;
+    private Band targetBand;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        product = SyntheticProducts.createProduct(1024, 1024, 4);
+        targetBand = new VirtualBand("target", ProductData.TYPE_FLOAT32, 1024, 1024, expression);
+        product.addBand(targetBand);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.dispose();
+    }
+
+    @Benchmark
+    public Raster evaluate() {
+        final RenderedImage image = VirtualBand.createVirtualSourceImage(targetBand, expression).getImage(0);
+        return image.getData();
+    }
+}
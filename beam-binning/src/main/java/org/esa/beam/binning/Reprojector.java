@@ -24,45 +24,92 @@ import org.geotools.geometry.jts.JTS;
 
 import java.awt.Rectangle;
 import java.awt.geom.GeneralPath;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Used to re-project temporal bins onto a rectangular grid.
  * Uses a {@link TemporalBinRenderer} to convert subsequent collections of bins (parts) into raster data.
+ * <p/>
+ * If a parallelism greater than one is given, the pixels of bands of rows are resolved to their bins
+ * concurrently. The resolved rows are passed to the renderer in the order required by {@link TemporalBinRenderer}.
  *
  * @author Marco Zühlke
  * @author Norman Fomferra
  */
 public class Reprojector {
 
+    private static final int ROW_BAND_HEIGHT = 16;
+
     private final PlanetaryGrid planetaryGrid;
     private final TemporalBinRenderer temporalBinRenderer;
     private final Rectangle rasterRegion;
+    private final TemporalBin[] pixelBins;
+    private final int parallelism;
+    private final Deque<Future<List<BinRow>>> pendingBands;
+    private List<BinRow> band;
+    private ExecutorService executorService;
     private int yGlobalUltimate;
 
     public static void reproject(PlanetaryGrid planetaryGrid,
                                  TemporalBinSource temporalBinSource,
                                  TemporalBinRenderer temporalBinRenderer) throws Exception {
-        Reprojector reprojector = new Reprojector(planetaryGrid, temporalBinRenderer);
+        reproject(planetaryGrid, temporalBinSource, temporalBinRenderer, 1);
+    }
+
+    /**
+     * Re-projects the temporal bins of the given source using the given renderer.
+     *
+     * @param planetaryGrid       The planetary grid used for the binning.
+     * @param temporalBinSource   The source of the temporal bins, ordered by bin index.
+     * @param temporalBinRenderer The renderer.
+     * @param parallelism         The number of threads used to resolve the pixels of the output raster to bins.
+     * @throws Exception if an error occurs
+     * @since BEAM 5.0.6
+     */
+    public static void reproject(PlanetaryGrid planetaryGrid,
+                                 TemporalBinSource temporalBinSource,
+                                 TemporalBinRenderer temporalBinRenderer,
+                                 int parallelism) throws Exception {
+        Reprojector reprojector = new Reprojector(planetaryGrid, temporalBinRenderer, parallelism);
         final int partCount = temporalBinSource.open();
-        reprojector.begin();
-        for (int i = 0; i < partCount; i++) {
-            final Iterator<? extends TemporalBin> part = temporalBinSource.getPart(i);
-            reprojector.processPart(part);
-            temporalBinSource.partProcessed(i, part);
+        try {
+            reprojector.begin();
+            for (int i = 0; i < partCount; i++) {
+                final Iterator<? extends TemporalBin> part = temporalBinSource.getPart(i);
+                reprojector.processPart(part);
+                temporalBinSource.partProcessed(i, part);
+            }
+            reprojector.end();
+        } finally {
+            reprojector.dispose();
         }
-        reprojector.end();
         temporalBinSource.close();
     }
 
     Reprojector(PlanetaryGrid planetaryGrid, TemporalBinRenderer temporalBinRenderer) {
+        this(planetaryGrid, temporalBinRenderer, 1);
+    }
+
+    Reprojector(PlanetaryGrid planetaryGrid, TemporalBinRenderer temporalBinRenderer, int parallelism) {
         Assert.notNull(planetaryGrid, "planetaryGrid");
         Assert.notNull(temporalBinRenderer, "binRenderer");
         this.planetaryGrid = planetaryGrid;
         this.temporalBinRenderer = temporalBinRenderer;
         this.rasterRegion = temporalBinRenderer.getRasterRegion();
+        this.pixelBins = new TemporalBin[rasterRegion.width];
+        this.parallelism = parallelism;
+        this.pendingBands = new ArrayDeque<>();
+        this.band = new ArrayList<>(ROW_BAND_HEIGHT);
     }
 
     /**
@@ -124,6 +171,16 @@ public class Reprojector {
 
     void begin() throws Exception {
         yGlobalUltimate = rasterRegion.y - 1;
+        if (parallelism > 1) {
+            executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "reprojector");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
         temporalBinRenderer.begin();
     }
 
@@ -134,6 +191,14 @@ public class Reprojector {
         final int y2 = y1 + rasterRegion.height - 1;
         processRowsWithoutBins(x1, x2, yGlobalUltimate + 1, y2);
         temporalBinRenderer.end();
+        dispose();
+    }
+
+    void dispose() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
     }
 
     void processPart(Iterator<? extends TemporalBin> temporalBins) throws Exception {
@@ -152,9 +217,7 @@ public class Reprojector {
             int y = planetaryGrid.getRowIndex(temporalBinIndex);
             if (y != yUltimate) {
                 if (yUltimate >= y1 && yUltimate <= y2) {
-                    processRowsWithoutBins(x1, x2, yGlobalUltimate + 1, yUltimate - 1);
-                    processRowWithBins(yUltimate, binRow, gridWidth, gridHeight);
-                    yGlobalUltimate = yUltimate;
+                    processRow(yUltimate, binRow, gridWidth, gridHeight);
                 }
                 binRow.clear();
                 yUltimate = y;
@@ -164,9 +227,68 @@ public class Reprojector {
 
         if (yUltimate >= y1 && yUltimate <= y2) {
             // last row
-            processRowsWithoutBins(x1, x2, yGlobalUltimate + 1, yUltimate - 1);
-            processRowWithBins(yUltimate, binRow, gridWidth, gridHeight);
-            yGlobalUltimate = yUltimate;
+            processRow(yUltimate, binRow, gridWidth, gridHeight);
+        }
+        if (executorService != null) {
+            // bins may be invalidated once the part has been processed
+            submitBand(gridWidth, gridHeight);
+            while (!pendingBands.isEmpty()) {
+                renderBand(pendingBands.removeFirst());
+            }
+        }
+    }
+
+    private void processRow(int y, List<TemporalBin> binRow, int gridWidth, int gridHeight) throws Exception {
+        if (executorService == null) {
+            processRowsWithoutBins(rasterRegion.x, rasterRegion.x + rasterRegion.width - 1, yGlobalUltimate + 1, y - 1);
+            processRowWithBins(y, binRow, gridWidth, gridHeight);
+            yGlobalUltimate = y;
+        } else {
+            band.add(new BinRow(y, new ArrayList<>(binRow)));
+            if (band.size() == ROW_BAND_HEIGHT) {
+                submitBand(gridWidth, gridHeight);
+                if (pendingBands.size() > 2 * parallelism) {
+                    renderBand(pendingBands.removeFirst());
+                }
+            }
+        }
+    }
+
+    private void submitBand(final int gridWidth, final int gridHeight) {
+        if (band.isEmpty()) {
+            return;
+        }
+        final List<BinRow> binRows = band;
+        band = new ArrayList<>(ROW_BAND_HEIGHT);
+        pendingBands.addLast(executorService.submit(new Callable<List<BinRow>>() {
+            @Override
+            public List<BinRow> call() throws Exception {
+                for (BinRow binRow : binRows) {
+                    binRow.pixelBins = new TemporalBin[rasterRegion.width];
+                    resolveRow(binRow.y, binRow.bins, gridWidth, gridHeight, binRow.pixelBins);
+                }
+                return binRows;
+            }
+        }));
+    }
+
+    private void renderBand(Future<List<BinRow>> future) throws Exception {
+        final List<BinRow> binRows;
+        try {
+            binRows = future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+        final int x1 = rasterRegion.x;
+        final int x2 = x1 + rasterRegion.width - 1;
+        for (BinRow binRow : binRows) {
+            processRowsWithoutBins(x1, x2, yGlobalUltimate + 1, binRow.y - 1);
+            renderRow(binRow.y, binRow.pixelBins);
+            yGlobalUltimate = binRow.y;
         }
     }
 
@@ -175,12 +297,25 @@ public class Reprojector {
                                     int gridWidth,
                                     int gridHeight) throws Exception {
 
+        resolveRow(y, binRow, gridWidth, gridHeight, pixelBins);
+        renderRow(y, pixelBins);
+    }
+
+    /**
+     * Resolves the pixels of a raster row to the bins they are covered by.
+     *
+     * @param pixelBins Receives the bin of each pixel of the row, or {@code null} if the bin is missing.
+     */
+    private void resolveRow(int y,
+                            List<TemporalBin> binRow,
+                            int gridWidth,
+                            int gridHeight,
+                            TemporalBin[] pixelBins) {
+
         Assert.argument(!binRow.isEmpty(), "!binRow.isEmpty()");
 
         final int x1 = rasterRegion.x;
         final int x2 = rasterRegion.x + rasterRegion.width - 1;
-        final int y1 = rasterRegion.y;
-        Vector resultVector = null;
         final double lat = 90.0 - (y + 0.5) * 180.0 / gridHeight;
         long lastBinIndex = -1;
         TemporalBin temporalBin = null;
@@ -195,7 +330,6 @@ public class Reprojector {
                     final long binIndex = binRow.get(i).getIndex();
                     if (binIndex == wantedBinIndex) {
                         temporalBin = binRow.get(i);
-                        resultVector = temporalBin.toVector();
                         lastBinIndex = wantedBinIndex;
                         rowIndex = i;
                         break;
@@ -204,10 +338,24 @@ public class Reprojector {
                     }
                 }
             }
+            pixelBins[x - x1] = temporalBin;
+        }
+    }
+
+    private void renderRow(int y, TemporalBin[] pixelBins) throws Exception {
+        final int y1 = rasterRegion.y;
+        TemporalBin lastBin = null;
+        Vector resultVector = null;
+        for (int x = 0; x < pixelBins.length; x++) {
+            final TemporalBin temporalBin = pixelBins[x];
             if (temporalBin != null) {
-                temporalBinRenderer.renderBin(x - x1, y - y1, temporalBin, resultVector);
+                if (temporalBin != lastBin) {
+                    resultVector = temporalBin.toVector();
+                    lastBin = temporalBin;
+                }
+                temporalBinRenderer.renderBin(x, y - y1, temporalBin, resultVector);
             } else {
-                temporalBinRenderer.renderMissingBin(x - x1, y - y1);
+                temporalBinRenderer.renderMissingBin(x, y - y1);
             }
         }
     }
@@ -223,4 +371,16 @@ public class Reprojector {
             temporalBinRenderer.renderMissingBin(x - x1, y);
         }
     }
+
+    private static class BinRow {
+
+        private final int y;
+        private final List<TemporalBin> bins;
+        private TemporalBin[] pixelBins;
+
+        private BinRow(int y, List<TemporalBin> bins) {
+            this.y = y;
+            this.bins = bins;
+        }
+    }
 }
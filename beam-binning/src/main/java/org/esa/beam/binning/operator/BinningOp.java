@@ -20,12 +20,13 @@ import com.bc.ceres.core.ProgressMonitor;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import org.esa.beam.binning.AggregatorConfig;
+import org.esa.beam.binning.BinManager;
 import org.esa.beam.binning.BinningContext;
 import org.esa.beam.binning.CellProcessorConfig;
 import org.esa.beam.binning.CompositingType;
 import org.esa.beam.binning.DataPeriod;
+import org.esa.beam.binning.PlanetaryGrid;
 import org.esa.beam.binning.ProductCustomizerConfig;
-import org.esa.beam.binning.SpatialBin;
 import org.esa.beam.binning.SpatialBinner;
 import org.esa.beam.binning.TemporalBin;
 import org.esa.beam.binning.TemporalBinSource;
@@ -63,6 +64,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -143,6 +145,16 @@ public class BinningOp extends Operator {
             "'?' (matches any single character).")
     String[] sourceGraphPaths;
 
+    @Parameter(description = "A comma-separated list of file paths specifying SeaDAS-style binned data files to be merged\n" +
+            "into a single composite without re-binning, e.g. daily files into a monthly composite. If given, no other sources are used.\n" +
+            "The files must have been written for the same planetary grid and aggregators. The stored temporal state of the bins is merged,\n" +
+            "it is read from the variables 'bl_<name>' for the output feature names of the aggregators. Hence only the aggregators\n" +
+            "AVG with 'outputSums=true' and MIN_MAX are supported and no post-processor must have been used.\n" +
+            "Each path may contain the wildcards '**' (matches recursively any directory),\n" +
+            "'*' (matches any character sequence in path names) and\n" +
+            "'?' (matches any single character).")
+    String[] sourceBinnedDataPaths;
+
     @Parameter(converter = JtsGeometryConverter.class,
             description = "The considered geographical region as a geometry in well-known text format (WKT).\n" +
                     "If not given, the geographical region will be computed according to the extents of the " +
@@ -430,6 +442,21 @@ public class BinningOp extends Operator {
         metadataAggregator = MetadataAggregatorFactory.create(metadataAggregatorName);
         numProductsAggregated = 0;
 
+        if (sourceBinnedDataPaths != null && sourceBinnedDataPaths.length > 0) {
+            try {
+                doTemporalMerging(startDateUtc, endDateUtc);
+            } catch (OperatorException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new OperatorException(e);
+            }
+            stopWatch.stopAndTrace(String.format("Total time for merging %d binned file(s)", numProductsAggregated));
+            if (globalMetadata != null) {
+                globalMetadata.processMetadataTemplates(metadataTemplateDir, this, targetProduct, getLogger());
+            }
+            return;
+        }
+
         try {
             // Step 1: Spatial binning - creates time-series of spatial bins for each bin ID ordered by ID. The tree map structure is <ID, time-series>
             SpatialBinCollection spatialBinMap = doSpatialBinning(productFilter);
@@ -515,8 +542,9 @@ public class BinningOp extends Operator {
         }
         if (sourceProducts == null
                 && (sourceProductPaths == null || sourceProductPaths.length == 0)
-                && (sourceGraphPaths == null || sourceGraphPaths.length == 0)) {
-            String msg = "Either source products must be given or parameter 'sourceProductPaths' or parameter 'sourceGraphPaths' must be specified";
+                && (sourceGraphPaths == null || sourceGraphPaths.length == 0)
+                && (sourceBinnedDataPaths == null || sourceBinnedDataPaths.length == 0)) {
+            String msg = "Either source products must be given or parameter 'sourceProductPaths', 'sourceGraphPaths' or 'sourceBinnedDataPaths' must be specified";
             throw new OperatorException(msg);
         }
         if (numRows < 2 || numRows % 2 != 0) {
@@ -751,35 +779,82 @@ public class BinningOp extends Operator {
         stopWatch.start();
 
         long numberOfBins = spatialBinMap.size();
-        final TemporalBinner temporalBinner = new TemporalBinner(binningContext);
-        final CellProcessorChain cellChain = new CellProcessorChain(binningContext);
         final TemporalBinList temporalBins = new TemporalBinList((int) numberOfBins);
-        Iterable<List<SpatialBin>> spatialBinListCollection = spatialBinMap.getBinCollection();
-        int binCounter = 0;
-        int percentCounter = 0;
-        long hundredthOfNumBins = numberOfBins / 100;
-        for (List<SpatialBin> spatialBinList : spatialBinListCollection) {
-            binCounter += spatialBinList.size();
-
-            SpatialBin spatialBin = spatialBinList.get(0);
-            long spatialBinIndex = spatialBin.getIndex();
-            TemporalBin temporalBin = temporalBinner.processSpatialBins(spatialBinIndex, spatialBinList);
-
-            temporalBin = temporalBinner.computeOutput(spatialBinIndex, temporalBin);
-            temporalBin = cellChain.process(temporalBin);
-
-            temporalBins.add(temporalBin);
-            if (binCounter >= hundredthOfNumBins) {
-                binCounter = 0;
-                getLogger().info(String.format("Finished %d%% of temporal bins", ++percentCounter));
-            }
-        }
+        final ParallelTemporalBinner temporalBinner = new ParallelTemporalBinner(binningContext,
+                                                                                 Runtime.getRuntime().availableProcessors());
+        temporalBinner.process(spatialBinMap, temporalBins, getLogger());
         stopWatch.stop();
         getLogger().info(String.format("Temporal binning of %d bins done, took %s", numberOfBins, stopWatch));
 
         return temporalBins;
     }
 
+    private void doTemporalMerging(ProductData.UTC startDateUtc, ProductData.UTC endDateUtc) throws Exception {
+        getLogger().info("expanding sourceBinnedDataPaths wildcards.");
+        SortedSet<File> fileSet = new TreeSet<>();
+        for (String filePattern : sourceBinnedDataPaths) {
+            WildcardMatcher.glob(filePattern, fileSet);
+        }
+        if (fileSet.isEmpty()) {
+            throw new OperatorException("The given binned data file patterns did not match any files");
+        }
+        getLogger().info("found " + fileSet.size() + " binned data files.");
+
+        final BinManager binManager = binningContext.getBinManager();
+        final PlanetaryGrid planetaryGrid = binningContext.getPlanetaryGrid();
+        try {
+            TemporalBinMerger.checkMergeable(binManager);
+        } catch (IllegalArgumentException e) {
+            throw new OperatorException(e.getMessage(), e);
+        }
+        final String[] featureNames = binManager.getOutputFeatureNames();
+        final List<SeaDASLevel3BinReader> readers = new ArrayList<>(fileSet.size());
+        try {
+            long numberOfInputBins = 0;
+            for (File file : fileSet) {
+                getLogger().info(file.getCanonicalPath());
+                final SeaDASLevel3BinReader reader = new SeaDASLevel3BinReader(file, planetaryGrid, featureNames);
+                readers.add(reader);
+                numberOfInputBins += reader.getNumBins();
+                if (startDateTime == null) {
+                    updateDateRangeUtc(reader.getStartTime(), reader.getEndTime());
+                }
+                ++numProductsAggregated;
+            }
+
+            StopWatch stopWatch = new StopWatch();
+            stopWatch.start();
+            final TemporalBinner temporalBinner = new TemporalBinner(binningContext);
+            final CellProcessorChain cellChain = new CellProcessorChain(binningContext);
+            final TemporalBinMerger merger = new TemporalBinMerger(binManager, readers);
+            final TemporalBinList temporalBins = new TemporalBinList((int) Math.min(numberOfInputBins, planetaryGrid.getNumBins()));
+            try {
+                TemporalBin temporalBin;
+                while ((temporalBin = merger.next()) != null) {
+                    temporalBin = temporalBinner.computeOutput(temporalBin.getIndex(), temporalBin);
+                    temporalBins.add(cellChain.process(temporalBin));
+                }
+                stopWatch.stop();
+                getLogger().info(String.format("Merging of %d bins into %d temporal bins done, took %s",
+                                               numberOfInputBins, temporalBins.size(), stopWatch));
+
+                if (temporalBins.isEmpty()) {
+                    getLogger().warning("No bins have been generated, no output has been written");
+                } else if (startDateTime != null) {
+                    writeOutput(temporalBins, startDateUtc, endDateUtc);
+                } else {
+                    writeOutput(temporalBins, minDateUtc, maxDateUtc);
+                }
+            } finally {
+                temporalBins.close();
+            }
+        } finally {
+            for (SeaDASLevel3BinReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
     private void writeOutput(List<TemporalBin> temporalBins, ProductData.UTC startTime, ProductData.UTC stopTime) throws
             Exception {
         StopWatch stopWatch = new StopWatch();
@@ -856,6 +931,19 @@ public class BinningOp extends Operator {
 
     }
 
+    private void updateDateRangeUtc(ProductData.UTC startTime, ProductData.UTC endTime) {
+        if (startTime != null) {
+            if (minDateUtc == null || startTime.getAsDate().before(minDateUtc.getAsDate())) {
+                minDateUtc = startTime;
+            }
+        }
+        if (endTime != null) {
+            if (maxDateUtc == null || endTime.getAsDate().after(maxDateUtc.getAsDate())) {
+                maxDateUtc = endTime;
+            }
+        }
+    }
+
     // if not time rage is given construct it from the source products
     private void updateDateRangeUtc(Product sourceProduct) {
         if (startDateTime == null) {
@@ -77,7 +77,8 @@ public class Formatter {
                                                                outputType.equalsIgnoreCase("RGB"));
         }
 
-        Reprojector.reproject(planetaryGrid, temporalBinSource, temporalBinRenderer);
+        Reprojector.reproject(planetaryGrid, temporalBinSource, temporalBinRenderer,
+                              Runtime.getRuntime().availableProcessors());
     }
 
     static String getOutputFormat(FormatterConfig formatterConfig, File outputFile) {
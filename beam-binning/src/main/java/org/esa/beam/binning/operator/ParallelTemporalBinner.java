@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.BinningContext;
+import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.TemporalBinner;
+import org.esa.beam.binning.cellprocessor.CellProcessorChain;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Performs the temporal binning and the post-processing of the spatial bins of a {@link SpatialBinCollection}.
+ * <p/>
+ * The bins of different bin indexes are independent of each other, so consecutive batches of them are
+ * processed concurrently. The resulting temporal bins are added to the target list in the order of the
+ * spatial bin collection, that is, ordered by bin index.
+ *
+ * @since BEAM 5.0.6
+ */
+class ParallelTemporalBinner {
+
+    static final int BATCH_SIZE = 1024;
+
+    private final TemporalBinner temporalBinner;
+    private final CellProcessorChain cellChain;
+    private final int parallelism;
+
+    ParallelTemporalBinner(BinningContext binningContext, int parallelism) {
+        this.temporalBinner = new TemporalBinner(binningContext);
+        this.cellChain = new CellProcessorChain(binningContext);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Processes the given spatial bins.
+     *
+     * @param spatialBinCollection The spatial bins, grouped by bin index.
+     * @param temporalBins         Receives the temporal bins.
+     * @param logger               Used to log the progress, may be {@code null}.
+     * @throws IOException if an I/O error occurs
+     */
+    void process(SpatialBinCollection spatialBinCollection, List<TemporalBin> temporalBins, Logger logger) throws IOException {
+        final Progress progress = new Progress(spatialBinCollection.size(), logger);
+        if (parallelism <= 1) {
+            for (List<SpatialBin> spatialBinList : spatialBinCollection.getBinCollection()) {
+                temporalBins.add(processSpatialBins(spatialBinList));
+                progress.worked(1);
+            }
+            return;
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "temporal-binning");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final Deque<Future<TemporalBin[]>> pendingBatches = new ArrayDeque<>();
+            List<List<SpatialBin>> batch = new ArrayList<>(BATCH_SIZE);
+            for (List<SpatialBin> spatialBinList : spatialBinCollection.getBinCollection()) {
+                batch.add(spatialBinList);
+                if (batch.size() == BATCH_SIZE) {
+                    pendingBatches.addLast(submit(executorService, batch));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    if (pendingBatches.size() > 2 * parallelism) {
+                        addAll(pendingBatches.removeFirst(), temporalBins, progress);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                pendingBatches.addLast(submit(executorService, batch));
+            }
+            while (!pendingBatches.isEmpty()) {
+                addAll(pendingBatches.removeFirst(), temporalBins, progress);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private TemporalBin processSpatialBins(List<SpatialBin> spatialBinList) throws IOException {
+        final long spatialBinIndex = spatialBinList.get(0).getIndex();
+        TemporalBin temporalBin = temporalBinner.processSpatialBins(spatialBinIndex, spatialBinList);
+        temporalBin = temporalBinner.computeOutput(spatialBinIndex, temporalBin);
+        return cellChain.process(temporalBin);
+    }
+
+    private Future<TemporalBin[]> submit(ExecutorService executorService, final List<List<SpatialBin>> batch) {
+        return executorService.submit(new Callable<TemporalBin[]>() {
+            @Override
+            public TemporalBin[] call() throws Exception {
+                final TemporalBin[] result = new TemporalBin[batch.size()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = processSpatialBins(batch.get(i));
+                }
+                return result;
+            }
+        });
+    }
+
+    private static void addAll(Future<TemporalBin[]> future, List<TemporalBin> temporalBins, Progress progress) throws IOException {
+        final TemporalBin[] result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        for (TemporalBin temporalBin : result) {
+            temporalBins.add(temporalBin);
+        }
+        progress.worked(result.length);
+    }
+
+    private static class Progress {
+
+        private final long hundredthOfNumBins;
+        private final Logger logger;
+        private long binCounter;
+        private int percentCounter;
+
+        private Progress(long numberOfBins, Logger logger) {
+            this.hundredthOfNumBins = Math.max(1, numberOfBins / 100);
+            this.logger = logger;
+        }
+
+        private void worked(int numBins) {
+            binCounter += numBins;
+            while (binCounter >= hundredthOfNumBins) {
+                binCounter -= hundredthOfNumBins;
+                if (logger != null) {
+                    logger.info(String.format("Finished %d%% of temporal bins", ++percentCounter));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.PlanetaryGrid;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.support.SeadasGrid;
+import org.esa.beam.framework.datamodel.ProductData;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the bins of a SeaDAS-style binned data file as written by {@link SeaDASLevel3BinWriter}
+ * in the order of increasing (BEAM) bin index.
+ * <p/>
+ * The bin list of the file is stored from south to north, so the bins are read row by row. Only the
+ * bins of the current row are held in memory.
+ *
+ * @since BEAM 5.0.6
+ */
+class SeaDASLevel3BinReader implements TemporalBinCursor {
+
+    private final NetcdfFile netcdfFile;
+    private final SeadasGrid seadasGrid;
+    private final Variable binNumVar;
+    private final Variable numObsVar;
+    private final Variable numScenesVar;
+    private final Variable[] featureVars;
+    private final int[] rowOffsets;
+    private final int[] rowExtents;
+    private final int numBins;
+    private final TemporalBin bin;
+
+    private int rowIndex;
+    private int rowBinIndex;
+    private int[] binNums;
+    private int[] numObs;
+    private int[] numScenes;
+    private float[][] featureValues;
+
+    /**
+     * Opens a binned data file.
+     *
+     * @param file          The binned data file.
+     * @param planetaryGrid The planetary grid the file has been written for.
+     * @param featureNames  The names of the output features to be read, the variables are expected to be named {@code bl_<name>}.
+     * @throws IOException if the file cannot be read or does not match the given grid or feature names
+     */
+    SeaDASLevel3BinReader(File file, PlanetaryGrid planetaryGrid, String[] featureNames) throws IOException {
+        netcdfFile = NetcdfFile.open(file.getPath());
+        try {
+            seadasGrid = new SeadasGrid(planetaryGrid);
+            final Dimension binIndexDim = netcdfFile.findDimension("bin_index");
+            if (binIndexDim == null || binIndexDim.getLength() != planetaryGrid.getNumRows()) {
+                throw new IOException(String.format("File '%s' has not been written for a planetary grid of %d rows",
+                                                    file, planetaryGrid.getNumRows()));
+            }
+            binNumVar = findVariable("bl_bin_num");
+            numObsVar = findVariable("bl_nobs");
+            numScenesVar = findVariable("bl_nscenes");
+            featureVars = new Variable[featureNames.length];
+            for (int i = 0; i < featureNames.length; i++) {
+                featureVars[i] = findVariable("bl_" + featureNames[i]);
+            }
+
+            // the extents are stored in SeaDAS row order, from south to north
+            final int numRows = planetaryGrid.getNumRows();
+            final int[] extents = (int[]) findVariable("bi_extent").read().get1DJavaArray(int.class);
+            rowOffsets = new int[numRows];
+            rowExtents = new int[numRows];
+            int offset = 0;
+            for (int seadasRow = 0; seadasRow < numRows; seadasRow++) {
+                final int row = seadasGrid.convertRowIndex(seadasRow);
+                rowOffsets[row] = offset;
+                rowExtents[row] = extents[seadasRow];
+                offset += extents[seadasRow];
+            }
+            numBins = offset;
+        } catch (IOException | RuntimeException e) {
+            netcdfFile.close();
+            throw e;
+        }
+        bin = new TemporalBin(-1L, featureNames.length);
+        rowIndex = -1;
+    }
+
+    /**
+     * @return The number of bins in the file.
+     */
+    int getNumBins() {
+        return numBins;
+    }
+
+    /**
+     * @return The start time given by the global attribute {@code time_coverage_start}, or {@code null}.
+     */
+    ProductData.UTC getStartTime() {
+        return getTimeAttribute("time_coverage_start");
+    }
+
+    /**
+     * @return The end time given by the global attribute {@code time_coverage_end}, or {@code null}.
+     */
+    ProductData.UTC getEndTime() {
+        return getTimeAttribute("time_coverage_end");
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (binNums == null || rowBinIndex + 1 >= binNums.length) {
+            if (rowIndex + 1 >= rowExtents.length) {
+                return false;
+            }
+            rowIndex++;
+            if (rowExtents[rowIndex] > 0) {
+                readRow(rowIndex);
+            }
+        }
+        rowBinIndex++;
+        bin.setIndex(seadasGrid.reverseBinIndex(binNums[rowBinIndex]));
+        bin.setNumObs(numObs[rowBinIndex]);
+        bin.setNumPasses(numScenes[rowBinIndex]);
+        final float[] values = bin.getFeatureValues();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = featureValues[i][rowBinIndex];
+        }
+        return true;
+    }
+
+    @Override
+    public TemporalBin getBin() {
+        return bin;
+    }
+
+    @Override
+    public void close() throws IOException {
+        netcdfFile.close();
+    }
+
+    private void readRow(int row) throws IOException {
+        final int[] origin = {rowOffsets[row]};
+        final int[] shape = {rowExtents[row]};
+        try {
+            binNums = (int[]) binNumVar.read(origin, shape).get1DJavaArray(int.class);
+            numObs = (int[]) numObsVar.read(origin, shape).get1DJavaArray(int.class);
+            numScenes = (int[]) numScenesVar.read(origin, shape).get1DJavaArray(int.class);
+            featureValues = new float[featureVars.length][];
+            for (int i = 0; i < featureVars.length; i++) {
+                final Array array = featureVars[i].read(origin, shape);
+                featureValues[i] = (float[]) array.get1DJavaArray(float.class);
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException(e);
+        }
+        rowBinIndex = -1;
+    }
+
+    private Variable findVariable(String name) throws IOException {
+        final Variable variable = netcdfFile.findVariable(name);
+        if (variable == null) {
+            final List<String> names = new ArrayList<>();
+            for (Variable v : netcdfFile.getVariables()) {
+                names.add(v.getFullName());
+            }
+            throw new IOException(String.format("Missing variable '%s' in '%s', available variables are %s",
+                                                name, netcdfFile.getLocation(), names));
+        }
+        return variable;
+    }
+
+    private ProductData.UTC getTimeAttribute(String name) {
+        final Attribute attribute = netcdfFile.findGlobalAttribute(name);
+        if (attribute == null || attribute.getStringValue() == null) {
+            return null;
+        }
+        try {
+            return ProductData.UTC.parse(attribute.getStringValue(), BinningOp.DATETIME_OUTPUT_PATTERN);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}
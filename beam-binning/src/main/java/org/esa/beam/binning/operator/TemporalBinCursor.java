@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.TemporalBin;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A forward-only cursor over the bins of a binned data source, ordered by increasing bin index.
+ *
+ * @since BEAM 5.0.6
+ */
+interface TemporalBinCursor extends Closeable {
+
+    /**
+     * Moves the cursor to the next bin.
+     *
+     * @return {@code false} if there are no more bins.
+     * @throws IOException if an I/O error occurs
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return The current bin. The instance may be reused by subsequent calls to {@link #next()}.
+     */
+    TemporalBin getBin();
+}
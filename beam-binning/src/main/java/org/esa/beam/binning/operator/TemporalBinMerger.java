@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.Aggregator;
+import org.esa.beam.binning.BinManager;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.aggregators.AggregatorMinMax;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the bins of any number of binned data sources by a k-way merge over their bin indexes.
+ * All bins with the same index are merged into a single temporal bin.
+ * <p/>
+ * The feature values of the source bins are the stored output features of the aggregators. They can only be
+ * merged if they are the aggregators' temporal state, so that merging means adding up sums
+ * ({@link AggregatorAverage} with {@code outputSums=true}) or taking the extremes ({@link AggregatorMinMax}).
+ * The merged temporal bin has the layout of the temporal features of the bin manager.
+ * <p/>
+ * Only the current bin of each source is held in memory.
+ *
+ * @since BEAM 5.0.6
+ */
+class TemporalBinMerger {
+
+    private static final String[] SUM_FEATURE_SUFFIXES = {"_sum", "_sum_sq", "_weights", "_counts"};
+    private static final int MERGE_SUM = 0;
+    private static final int MERGE_MIN_MAX = 1;
+
+    private final BinManager binManager;
+    private final PriorityQueue<TemporalBinCursor> queue;
+    private final int[] featureOffsets;
+    private final int[] mergeTypes;
+
+    /**
+     * @param binManager the bin manager
+     * @param cursors    the sources, their bins hold the output features of the bin manager
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if the output of an aggregator cannot be merged
+     */
+    TemporalBinMerger(BinManager binManager, List<? extends TemporalBinCursor> cursors) throws IOException {
+        this.binManager = binManager;
+        final int aggregatorCount = binManager.getAggregatorCount();
+        this.featureOffsets = new int[aggregatorCount + 1];
+        this.mergeTypes = new int[aggregatorCount];
+        for (int i = 0; i < aggregatorCount; i++) {
+            final Aggregator aggregator = binManager.getAggregator(i);
+            mergeTypes[i] = getMergeType(aggregator);
+            featureOffsets[i + 1] = featureOffsets[i] + aggregator.getTemporalFeatureNames().length;
+        }
+        this.queue = new PriorityQueue<>(Math.max(1, cursors.size()), new Comparator<TemporalBinCursor>() {
+            @Override
+            public int compare(TemporalBinCursor c1, TemporalBinCursor c2) {
+                return Long.compare(c1.getBin().getIndex(), c2.getBin().getIndex());
+            }
+        });
+        for (TemporalBinCursor cursor : cursors) {
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the stored output of all aggregators of the given bin manager can be merged.
+     *
+     * @param binManager the bin manager
+     * @throws IllegalArgumentException if the output of an aggregator cannot be merged
+     */
+    static void checkMergeable(BinManager binManager) {
+        for (int i = 0; i < binManager.getAggregatorCount(); i++) {
+            getMergeType(binManager.getAggregator(i));
+        }
+    }
+
+    /**
+     * @return The next merged temporal bin, or {@code null} if all sources are exhausted.
+     * @throws IOException if an I/O error occurs
+     */
+    TemporalBin next() throws IOException {
+        if (queue.isEmpty()) {
+            return null;
+        }
+        final long binIndex = queue.peek().getBin().getIndex();
+        final TemporalBin temporalBin = binManager.createTemporalBin(binIndex);
+        int numObs = 0;
+        int numPasses = 0;
+        while (!queue.isEmpty() && queue.peek().getBin().getIndex() == binIndex) {
+            final TemporalBinCursor cursor = queue.poll();
+            final TemporalBin bin = cursor.getBin();
+            merge(bin.getFeatureValues(), temporalBin.getFeatureValues());
+            numObs += bin.getNumObs();
+            numPasses += bin.getNumPasses();
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+        temporalBin.setNumObs(numObs);
+        temporalBin.setNumPasses(numPasses);
+        binManager.completeTemporalBin(temporalBin);
+        return temporalBin;
+    }
+
+    private void merge(float[] values, float[] merged) {
+        for (int i = 0; i < mergeTypes.length; i++) {
+            final int offset = featureOffsets[i];
+            if (mergeTypes[i] == MERGE_SUM) {
+                // bins without valid values have been written with NaN sums and weights
+                final float weights = values[offset + 2];
+                if (!Float.isNaN(weights) && weights > 0.0f) {
+                    for (int k = offset; k < featureOffsets[i + 1]; k++) {
+                        merged[k] += values[k];
+                    }
+                }
+            } else {
+                if (!Float.isNaN(values[offset])) {
+                    merged[offset] = Math.min(merged[offset], values[offset]);
+                }
+                if (!Float.isNaN(values[offset + 1])) {
+                    merged[offset + 1] = Math.max(merged[offset + 1], values[offset + 1]);
+                }
+            }
+        }
+    }
+
+    private static int getMergeType(Aggregator aggregator) {
+        final String[] outputNames = aggregator.getOutputFeatureNames();
+        final String[] temporalNames = aggregator.getTemporalFeatureNames();
+        if (aggregator instanceof AggregatorMinMax) {
+            return MERGE_MIN_MAX;
+        }
+        if (aggregator instanceof AggregatorAverage && outputNames.length == temporalNames.length
+            && outputNames.length <= SUM_FEATURE_SUFFIXES.length) {
+            boolean isSumOutput = true;
+            for (int i = 0; i < outputNames.length; i++) {
+                isSumOutput &= outputNames[i].endsWith(SUM_FEATURE_SUFFIXES[i])
+                               && temporalNames[i].endsWith(SUM_FEATURE_SUFFIXES[i]);
+            }
+            if (isSumOutput) {
+                return MERGE_SUM;
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                "The output of aggregator '%s' cannot be merged, only %s with 'outputSums=true' and %s are supported",
+                aggregator.getName(), AggregatorAverage.Descriptor.NAME, AggregatorMinMax.Descriptor.NAME));
+    }
+}
@@ -3,16 +3,27 @@ package org.esa.beam.binning.reader;
 import org.esa.beam.binning.support.SEAGrid;
 import org.esa.beam.framework.datamodel.Band;
 import ucar.ma2.Array;
+import ucar.nc2.NetcdfFile;
 
 import java.io.IOException;
 
 abstract class AbstractGridAccessor {
 
+    protected final NetcdfFilePool netcdfFilePool;
     protected SEAGrid planetaryGrid;
     protected double pixelSizeX;
 
+    protected AbstractGridAccessor(NetcdfFilePool netcdfFilePool) {
+        this.netcdfFilePool = netcdfFilePool;
+    }
+
     abstract void dispose();
 
+    /**
+     * Reads the values of the bins in a row of the planetary grid. May be called concurrently.
+     *
+     * @return the values or {@code null} if the row does not contain any bins
+     */
     abstract Array getLineValues(Band destBand, VariableReader variableReader, int lineIndex) throws IOException;
 
     abstract int getBinIndexInGrid(int binIndex, int lineIndex);
@@ -28,4 +39,13 @@ abstract class AbstractGridAccessor {
     void setPixelSizeX(double pixelSizeX) {
         this.pixelSizeX = pixelSizeX;
     }
+
+    protected Array readValues(VariableReader variableReader, int firstIndex, int length) throws IOException {
+        final NetcdfFile netcdfFile = netcdfFilePool.acquire();
+        try {
+            return variableReader.read(netcdfFile, firstIndex, length);
+        } finally {
+            netcdfFilePool.release(netcdfFile);
+        }
+    }
 }
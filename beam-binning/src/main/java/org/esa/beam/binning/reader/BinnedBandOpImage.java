@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.reader;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.jai.RasterDataNodeOpImage;
+import org.esa.beam.jai.ResolutionLevel;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+
+/**
+ * The source image of a band of a binned product at a given resolution level. Unlike
+ * {@link org.esa.beam.jai.BandOpImage}, which reads full resolution lines and samples them,
+ * images of lower resolution levels are rendered directly from the bins of the rows needed.
+ */
+class BinnedBandOpImage extends RasterDataNodeOpImage {
+
+    private final BinnedProductReader productReader;
+
+    BinnedBandOpImage(Band band, ResolutionLevel level, BinnedProductReader productReader) {
+        super(band, level);
+        this.productReader = productReader;
+    }
+
+    @Override
+    protected void computeProductData(ProductData productData, Rectangle destRect) throws IOException {
+        productReader.readRasterData((Band) getRasterDataNode(), getScale(),
+                                     destRect.x, destRect.y, destRect.width, destRect.height,
+                                     productData);
+    }
+}
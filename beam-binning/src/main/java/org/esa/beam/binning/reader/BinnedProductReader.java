@@ -17,6 +17,8 @@
 package org.esa.beam.binning.reader;
 
 import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.glevel.support.AbstractMultiLevelSource;
+import com.bc.ceres.glevel.support.DefaultMultiLevelImage;
 import org.esa.beam.binning.support.SEAGrid;
 import org.esa.beam.dataio.netcdf.util.MetadataUtils;
 import org.esa.beam.dataio.netcdf.util.NetcdfFileOpener;
@@ -25,6 +27,8 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.CrsGeoCoding;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.util.StringUtils;
 import org.esa.beam.util.io.FileUtils;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
@@ -37,6 +41,7 @@ import ucar.nc2.Dimension;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
@@ -49,6 +54,7 @@ import java.util.Map;
 public class BinnedProductReader extends AbstractProductReader {
 
     private NetcdfFile netcdfFile;
+    private NetcdfFilePool netcdfFilePool;
     private AbstractGridAccessor gridAccessor;
     private Product product;
     private SEAGrid planetaryGrid;
@@ -82,14 +88,15 @@ public class BinnedProductReader extends AbstractProductReader {
             throw new IOException("Could not open NetCDF file " +  path);
         }
 
-        if (isSparseGridded(netcdfFile)) {
-            gridAccessor = new SparseGridAccessor(netcdfFile);
-        } else {
-            gridAccessor = new FullGridAccessor(netcdfFile);
-        }
+        netcdfFilePool = new NetcdfFilePool(path, netcdfFile, Runtime.getRuntime().availableProcessors());
 
         bandMap = new HashMap<Band, VariableReader>();
         try {
+            if (isSparseGridded(netcdfFile)) {
+                gridAccessor = new SparseGridAccessor(netcdfFile, netcdfFilePool);
+            } else {
+                gridAccessor = new FullGridAccessor(netcdfFilePool);
+            }
             initProductWidthAndHeight();
             initProduct();
             initGeoCoding();
@@ -99,6 +106,10 @@ public class BinnedProductReader extends AbstractProductReader {
 
             gridAccessor.setPlanetaryGrid(planetaryGrid);
             gridAccessor.setPixelSizeX(pixelSizeX);
+
+            if (getSubsetDef() == null) {
+                initSourceImages();
+            }
         } catch (IOException e) {
             dispose();
             throw e;
@@ -272,52 +283,92 @@ public class BinnedProductReader extends AbstractProductReader {
             throw new IllegalStateException("sourceWidth != destWidth || sourceHeight != destHeight");
         }
 
-        final VariableReader variableReader = bandMap.get(destBand);
-
-        pm.beginTask("Reading band '" + destBand.getName() + "'...", sourceHeight);
+        pm.beginTask("Reading band '" + destBand.getName() + "'...", 1);
         try {
-            float fillValue = getFillValue(variableReader.getBinVariable());
-
-            if (destBuffer.getType() == ProductData.TYPE_FLOAT32) {
-                float[] destRasterData = (float[]) destBuffer.getElems();
-                Arrays.fill(destRasterData, fillValue);
-            } else if (destBuffer.getType() == ProductData.TYPE_INT32) {
-                int[] destRasterData = (int[]) destBuffer.getElems();
-                Arrays.fill(destRasterData, (int) fillValue);
-            } else {
-                throw new IOException("Format problem. Band datatype should be float32 or int32.");
-            }
-
-            for (int y = sourceOffsetY; y < sourceOffsetY + sourceHeight; y++) {
-                int lineIndex = sceneRasterHeight - y - 1;
+            readRasterData(destBand, 1.0, sourceOffsetX, sourceOffsetY, sourceWidth, sourceHeight, destBuffer);
+            pm.worked(1);
+        } finally {
+            pm.done();
+        }
+    }
 
-                final int startBinIndex = gridAccessor.getStartBinIndex(sourceOffsetX, lineIndex);
-                final int endBinIndex = gridAccessor.getEndBinIndex(sourceOffsetX, sourceWidth, lineIndex);
+    /**
+     * Renders the bins of a band into a raster at the given resolution level. Each bin fills the raster
+     * pixels which are sampled from its extent in the full resolution raster, so lower resolution levels
+     * are rendered directly from the bins of the rows needed.
+     *
+     * @param destBand    the band
+     * @param scale       the scale of the resolution level, 1.0 for full resolution
+     * @param destOffsetX the X-offset in the raster co-ordinates of the resolution level
+     * @param destOffsetY the Y-offset in the raster co-ordinates of the resolution level
+     * @param destWidth   the width of the raster
+     * @param destHeight  the height of the raster
+     * @param destBuffer  the buffer which receives the raster data
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void readRasterData(Band destBand, double scale, int destOffsetX, int destOffsetY, int destWidth, int destHeight,
+                        ProductData destBuffer) throws IOException {
+        final VariableReader variableReader = bandMap.get(destBand);
+        final float fillValue = getFillValue(variableReader.getBinVariable());
+
+        if (destBuffer.getType() == ProductData.TYPE_FLOAT32) {
+            float[] destRasterData = (float[]) destBuffer.getElems();
+            Arrays.fill(destRasterData, fillValue);
+        } else if (destBuffer.getType() == ProductData.TYPE_INT32) {
+            int[] destRasterData = (int[]) destBuffer.getElems();
+            Arrays.fill(destRasterData, (int) fillValue);
+        } else {
+            throw new IOException("Format problem. Band datatype should be float32 or int32.");
+        }
 
-                final Array lineValues = gridAccessor.getLineValues(destBand, variableReader, lineIndex);
+        final int sourceMinX = getSourceCoord(destOffsetX, scale, sceneRasterWidth);
+        final int sourceMaxX = getSourceCoord(destOffsetX + destWidth - 1, scale, sceneRasterWidth);
+        final int[] xValuesForBin = new int[2];
 
-                for (int i = startBinIndex; i < endBinIndex; i++) {
-                    final float value = lineValues.getFloat(i);
-                    if (value != fillValue) {
-                        int binIndexInGrid = gridAccessor.getBinIndexInGrid(i, lineIndex);
+        for (int y = destOffsetY; y < destOffsetY + destHeight; y++) {
+            int lineIndex = sceneRasterHeight - getSourceCoord(y, scale, sceneRasterHeight) - 1;
 
-                        final int[] xValuesForBin = getXValuesForBin(binIndexInGrid, lineIndex);
-                        final int destStart = Math.max(xValuesForBin[0], sourceOffsetX);
-                        final int destEnd = Math.min(xValuesForBin[1], sourceOffsetX + sourceWidth);
+            final Array lineValues = gridAccessor.getLineValues(destBand, variableReader, lineIndex);
+            if (lineValues == null) {
+                continue;
+            }
+            final int startBinIndex = gridAccessor.getStartBinIndex(sourceMinX, lineIndex);
+            final int endBinIndex = gridAccessor.getEndBinIndex(sourceMinX, sourceMaxX - sourceMinX + 1, lineIndex);
+            final int destLineOffset = destWidth * (y - destOffsetY) - destOffsetX;
+
+            for (int i = startBinIndex; i < endBinIndex; i++) {
+                final float value = lineValues.getFloat(i);
+                if (value != fillValue) {
+                    int binIndexInGrid = gridAccessor.getBinIndexInGrid(i, lineIndex);
+
+                    getXValuesForBin(binIndexInGrid, lineIndex, xValuesForBin);
+                    final int destStart = Math.max(getDestCoord(xValuesForBin[0], scale), destOffsetX);
+                    final int destEnd;
+                    if (xValuesForBin[1] >= sceneRasterWidth) {
+                        destEnd = destOffsetX + destWidth;
+                    } else {
+                        destEnd = Math.min(getDestCoord(xValuesForBin[1], scale), destOffsetX + destWidth);
+                    }
 
-                        for (int x = destStart; x < destEnd; x++) {
-                            final int destRasterIndex = sourceWidth * (y - sourceOffsetY) + (x - sourceOffsetX);
-                            destBuffer.setElemFloatAt(destRasterIndex, value);
-                        }
+                    for (int x = destStart; x < destEnd; x++) {
+                        destBuffer.setElemFloatAt(destLineOffset + x, value);
                     }
                 }
             }
-            pm.worked(1);
-        } finally {
-            pm.done();
         }
     }
 
+    // package access for testing only
+    static int getSourceCoord(int destCoord, double scale, int sourceSize) {
+        return Math.min((int) Math.floor(scale * destCoord), sourceSize - 1);
+    }
+
+    // package access for testing only
+    static int getDestCoord(int sourceCoord, double scale) {
+        return (int) Math.ceil(sourceCoord / scale);
+    }
+
     private float getFillValue(Variable binVariable) {
         final Number fillValueN = getAttributeNumericValue(binVariable, "_FillValue");
         return fillValueN != null ? fillValueN.floatValue() : 0;
@@ -328,7 +379,7 @@ public class BinnedProductReader extends AbstractProductReader {
         return sourceStepX != 1 || sourceStepY != 1;
     }
 
-    private int[] getXValuesForBin(int binIndexInGrid, int row) {
+    private void getXValuesForBin(int binIndexInGrid, int row, int[] xValues) {
         int numberOfBinsInRow = planetaryGrid.getNumCols(row);
         int firstBinIndex = (int) planetaryGrid.getFirstBinIndex(row);
         if (firstBinIndex > binIndexInGrid) {  // to handle products written with a bug in the writer
@@ -339,9 +390,8 @@ public class BinnedProductReader extends AbstractProductReader {
         final double longitudeExtent = 360.0 / numberOfBinsInRow;
         final double smallestLongitude = binIndexInRow * longitudeExtent;
         final double largestLongitude = (binIndexInRow + 1) * longitudeExtent;
-        final int startX = (int) Math.round(smallestLongitude / pixelSizeX);
-        final int endX = (int) Math.round(largestLongitude / pixelSizeX);
-        return new int[]{startX, endX};
+        xValues[0] = (int) Math.round(smallestLongitude / pixelSizeX);
+        xValues[1] = (int) Math.round(largestLongitude / pixelSizeX);
     }
 
     /**
@@ -365,6 +415,11 @@ public class BinnedProductReader extends AbstractProductReader {
             gridAccessor = null;
         }
 
+        if (netcdfFilePool != null) {
+            netcdfFilePool.close();
+            netcdfFilePool = null;
+        }
+
         if (netcdfFile != null) {
             netcdfFile.close();
             netcdfFile = null;
@@ -398,6 +453,19 @@ public class BinnedProductReader extends AbstractProductReader {
         }
     }
 
+    private void initSourceImages() {
+        for (final Band band : bandMap.keySet()) {
+            band.setSourceImage(new DefaultMultiLevelImage(
+                    new AbstractMultiLevelSource(ImageManager.getMultiLevelModel(band)) {
+                        @Override
+                        public RenderedImage createImage(int level) {
+                            return new BinnedBandOpImage(band, ResolutionLevel.create(getModel(), level),
+                                                         BinnedProductReader.this);
+                        }
+                    }));
+        }
+    }
+
     private void dispose() {
         try {
             close();
@@ -2,65 +2,44 @@ package org.esa.beam.binning.reader;
 
 import org.esa.beam.framework.datamodel.Band;
 import ucar.ma2.Array;
-import ucar.nc2.NetcdfFile;
 
 import java.io.IOException;
 
 class FullGridAccessor extends AbstractGridAccessor {
 
-    final private NcArrayCache ncArrayCache;
-    private final NetcdfFile netcdfFile;
-
-    FullGridAccessor(NetcdfFile netcdfFile) {
-        this.netcdfFile = netcdfFile;
-
-        ncArrayCache = new NcArrayCache();
+    FullGridAccessor(NetcdfFilePool netcdfFilePool) {
+        super(netcdfFilePool);
     }
 
     @Override
     Array getLineValues(Band destBand, VariableReader variableReader, int lineIndex) throws IOException {
-        Array lineValues;
-
-        synchronized (ncArrayCache) {
-            CacheEntry cacheEntry = ncArrayCache.get(destBand);
-            if (cacheEntry != null) {
-                lineValues = cacheEntry.getData();
-            } else {
-                synchronized (netcdfFile) {
-                    lineValues = variableReader.readFully();
-                }
-                ncArrayCache.put(destBand, new CacheEntry(lineValues));
-            }
-        }
-
-        return lineValues;
+        final int firstBinIndex = (int) planetaryGrid.getFirstBinIndex(lineIndex);
+        return readValues(variableReader, firstBinIndex, planetaryGrid.getNumCols(lineIndex));
     }
 
     @Override
     int getStartBinIndex(int sourceOffsetX, int lineIndex) {
-        return getBinIndexInPlanetaryGrid(sourceOffsetX, lineIndex);
+        return getBinIndexInRow(sourceOffsetX, lineIndex);
     }
 
     @Override
     int getEndBinIndex(int sourceOffsetX, int sourceWidth, int lineIndex) {
-        return getBinIndexInPlanetaryGrid(sourceOffsetX + sourceWidth - 1, lineIndex) + 1;
+        return getBinIndexInRow(sourceOffsetX + sourceWidth - 1, lineIndex) + 1;
     }
 
     @Override
     int getBinIndexInGrid(int binIndex, int lineIndex) {
-        return binIndex;
+        return (int) planetaryGrid.getFirstBinIndex(lineIndex) + binIndex;
     }
 
     @Override
     void dispose() {
-        ncArrayCache.dispose();
     }
 
-    private int getBinIndexInPlanetaryGrid(int x, int y) {
+    private int getBinIndexInRow(int x, int y) {
         final int numberOfBinsInRow = planetaryGrid.getNumCols(y);
         final double longitudeExtentPerBin = 360.0 / numberOfBinsInRow;
         final double pixelCenterLongitude = x * pixelSizeX + pixelSizeX / 2;
-        final int firstBinIndex = (int) planetaryGrid.getFirstBinIndex(y);
-        return ((int) (pixelCenterLongitude / longitudeExtentPerBin)) + firstBinIndex;
+        return Math.min((int) (pixelCenterLongitude / longitudeExtentPerBin), numberOfBinsInRow - 1);
     }
 }
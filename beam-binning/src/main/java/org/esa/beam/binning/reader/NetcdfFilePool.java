@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.reader;
+
+import org.esa.beam.dataio.netcdf.util.NetcdfFileOpener;
+import ucar.nc2.NetcdfFile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A pool of handles to the same NetCDF file. A {@link NetcdfFile} must not be read by
+ * concurrent threads, so each reading thread acquires a handle of its own. Additional
+ * handles are opened on demand, up to a maximum number. If all handles are in use, a
+ * thread waits until a handle has been released.
+ */
+class NetcdfFilePool {
+
+    private final String path;
+    private final int maxSize;
+    private final Deque<NetcdfFile> idleFiles;
+    private final List<NetcdfFile> openedFiles;
+    private int size;
+
+    /**
+     * @param path       the path of the NetCDF file
+     * @param netcdfFile the handle already opened, it is not closed by the pool
+     * @param maxSize    the maximum number of handles
+     */
+    NetcdfFilePool(String path, NetcdfFile netcdfFile, int maxSize) {
+        this.path = path;
+        this.maxSize = maxSize;
+        this.idleFiles = new ArrayDeque<>();
+        this.openedFiles = new ArrayList<>();
+        this.idleFiles.push(netcdfFile);
+        this.size = 1;
+    }
+
+    NetcdfFile acquire() throws IOException {
+        synchronized (this) {
+            while (idleFiles.isEmpty() && size >= maxSize) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for NetCDF file " + path);
+                }
+            }
+            if (!idleFiles.isEmpty()) {
+                return idleFiles.pop();
+            }
+            size++;
+        }
+        // opening a file takes time, so do it without holding the lock
+        NetcdfFile netcdfFile = null;
+        try {
+            netcdfFile = NetcdfFileOpener.open(path);
+            if (netcdfFile == null) {
+                throw new IOException("Could not open NetCDF file " + path);
+            }
+            synchronized (this) {
+                openedFiles.add(netcdfFile);
+            }
+            return netcdfFile;
+        } finally {
+            if (netcdfFile == null) {
+                synchronized (this) {
+                    size--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    synchronized void release(NetcdfFile netcdfFile) {
+        idleFiles.push(netcdfFile);
+        notifyAll();
+    }
+
+    /**
+     * Closes all handles opened by the pool.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void close() throws IOException {
+        IOException exception = null;
+        for (NetcdfFile netcdfFile : openedFiles) {
+            try {
+                netcdfFile.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        openedFiles.clear();
+        idleFiles.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
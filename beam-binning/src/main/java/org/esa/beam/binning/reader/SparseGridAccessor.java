@@ -22,59 +22,89 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 class SparseGridAccessor extends AbstractGridAccessor {
 
-    private final NetcdfFile netcdfFile;
+    /**
+     * One-based bin indexes in the planetary grid, for each entry of the bin list.
+     */
     private final int[] binIndexes;
-    private final int[] binOffsets;
-    private final int[] binExtents;
-
     /**
-     * Key: BinIndex in PlanetaryGrid
-     * Value: BinIndex in bin_list
+     * For each row, the position of its first bin in the bin list, or -1 if the row does not contain any bins.
      */
-    private final Map<Integer, Integer> indexMap;
+    private final int[] rowOffsets;
+    private final int[] binExtents;
 
-    SparseGridAccessor(NetcdfFile netcdfFile) throws IOException {
-        this.netcdfFile = netcdfFile;
+    SparseGridAccessor(NetcdfFile netcdfFile, NetcdfFilePool netcdfFilePool) throws IOException {
+        super(netcdfFilePool);
 
         final Variable bl_bin_num = netcdfFile.findVariable("bl_bin_num");
         final Variable bi_begin = netcdfFile.findVariable("bi_begin");
         final Variable bi_extent = netcdfFile.findVariable("bi_extent");
 
-        synchronized (this.netcdfFile) {
-            final Object storage = bl_bin_num.read().getStorage();
+        binIndexes = (int[]) bl_bin_num.read().getStorage();
+        binExtents = (int[]) bi_extent.read().getStorage();
+        rowOffsets = computeRowOffsets(binIndexes, (int[]) bi_begin.read().getStorage());
+    }
 
-            binIndexes = (int[]) storage;
-            indexMap = new HashMap<Integer, Integer>(binIndexes.length);
+    /**
+     * Computes the position of the first bin of each row in the bin list.
+     *
+     * @param binIndexes      the one-based bin indexes of the bin list entries
+     * @param firstBinIndexes the one-based bin index of the first bin of each row, zero for empty rows
+     *
+     * @return the position of the first bin of each row, -1 for empty rows
+     */
+    static int[] computeRowOffsets(int[] binIndexes, int[] firstBinIndexes) {
+        final int[] rowOffsets = new int[firstBinIndexes.length];
+        if (isSorted(binIndexes)) {
+            for (int row = 0; row < firstBinIndexes.length; row++) {
+                final int firstBinIndex = firstBinIndexes[row];
+                rowOffsets[row] = firstBinIndex > 0 ? Math.max(-1, Arrays.binarySearch(binIndexes, firstBinIndex)) : -1;
+            }
+        } else {
+            // bin index in the upper, position in the lower half, so that sorting keeps the pairs together
+            final long[] sortedBins = new long[binIndexes.length];
             for (int i = 0; i < binIndexes.length; i++) {
-                indexMap.put(binIndexes[i], i);
+                sortedBins[i] = (long) binIndexes[i] << 32 | i;
+            }
+            Arrays.sort(sortedBins);
+            for (int row = 0; row < firstBinIndexes.length; row++) {
+                final int firstBinIndex = firstBinIndexes[row];
+                rowOffsets[row] = -1;
+                if (firstBinIndex > 0) {
+                    final int i = Arrays.binarySearch(sortedBins, (long) firstBinIndex << 32);
+                    final int j = i >= 0 ? i : -i - 1;
+                    if (j < sortedBins.length && (int) (sortedBins[j] >>> 32) == firstBinIndex) {
+                        rowOffsets[row] = (int) sortedBins[j];
+                    }
+                }
             }
-            binOffsets = (int[]) bi_begin.read().getStorage();
-            binExtents = (int[]) bi_extent.read().getStorage();
         }
+        return rowOffsets;
+    }
+
+    private static boolean isSorted(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] < values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     void dispose() {
-        indexMap.clear();
     }
 
     @Override
     Array getLineValues(Band destBand, VariableReader variableReader, int lineIndex) throws IOException {
-        Array lineValues = null;
-        final int binOffset = binOffsets[lineIndex];
-        if (binOffset > 0) {
-            int firstIndex = indexMap.get(binOffset);
-            int length = binExtents[lineIndex];
-            synchronized (netcdfFile) {
-                lineValues = variableReader.read(firstIndex, length);
-            }
+        final int rowOffset = rowOffsets[lineIndex];
+        if (rowOffset < 0) {
+            return null;
         }
-        return lineValues;
+        return readValues(variableReader, rowOffset, binExtents[lineIndex]);
     }
 
     @Override
@@ -84,14 +114,12 @@ class SparseGridAccessor extends AbstractGridAccessor {
 
     @Override
     int getEndBinIndex(int sourceOffsetX, int sourceWidth, int lineIndex) {
-        return binExtents[lineIndex];
+        return rowOffsets[lineIndex] < 0 ? 0 : binExtents[lineIndex];
     }
 
     @Override
     int getBinIndexInGrid(int binNumInRow, int lineIndex) {
-        final int firstBinIndexInRow = binOffsets[lineIndex];
-        int position = indexMap.get(firstBinIndexInRow);
-        int oneBasedBinIndex = binIndexes[position + binNumInRow];
+        int oneBasedBinIndex = binIndexes[rowOffsets[lineIndex] + binNumInRow];
         return oneBasedBinIndex - 1;
     }
 }
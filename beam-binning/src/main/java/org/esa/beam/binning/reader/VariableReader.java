@@ -18,6 +18,7 @@ package org.esa.beam.binning.reader;
 
 import ucar.ma2.Array;
 import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
 import java.io.IOException;
@@ -48,28 +49,28 @@ class VariableReader {
         return binVariable;
     }
 
-    Array readFully() throws IOException {
-        if (origin == null) {
-            return binVariable.read();
-        } else {
-            try {
-                return binVariable.read(origin, shape).reduce();
-            } catch (InvalidRangeException e) {
-                throw new IOException(e.getMessage());
-            }
+    /**
+     * Reads from the variable of the given handle to the file, so that threads can read concurrently
+     * using handles of their own.
+     */
+    Array read(NetcdfFile netcdfFile, int firstIndex, int length) throws IOException {
+        final Variable variable = netcdfFile.findVariable(binVariable.getFullNameEscaped());
+        if (variable == null) {
+            throw new IOException("Variable '" + binVariable.getFullName() + "' not found");
         }
+        return read(variable, firstIndex, length);
     }
 
-    Array read(int firstIndex, int length) throws IOException {
+    private Array read(Variable variable, int firstIndex, int length) throws IOException {
         try {
             if (origin == null) {
-                return binVariable.read(new int[]{firstIndex}, new int[]{length});
+                return variable.read(new int[]{firstIndex}, new int[]{length});
             } else {
                 int[] originFull = origin.clone();
                 int[] shapeFull = shape.clone();
                 originFull[binDimIndex] = firstIndex;
                 shapeFull[binDimIndex] = length;
-                return binVariable.read(originFull, shapeFull).reduce();
+                return variable.read(originFull, shapeFull).reduce();
             }
         } catch (InvalidRangeException e) {
             throw new IOException(e.getMessage());
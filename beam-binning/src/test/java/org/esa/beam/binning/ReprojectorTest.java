@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -423,6 +424,43 @@ public class ReprojectorTest {
         assertEquals(2, nobsData[y * width + 11]);
     }
 
+    @Test
+    public void testParallelReprojectionEqualsSequentialReprojection() throws Exception {
+        final PlanetaryGrid grid = new SEAGrid(400);
+        final List<List<TemporalBin>> parts = new ArrayList<List<TemporalBin>>();
+        final Random random = new Random(42);
+        List<TemporalBin> part = new ArrayList<TemporalBin>();
+        for (int i = 0; i < grid.getNumBins(); i++) {
+            final int row = grid.getRowIndex(i);
+            if (part.size() > 20000 && row != grid.getRowIndex(i - 1)) {
+                parts.add(part);
+                part = new ArrayList<TemporalBin>();
+            }
+            if (random.nextInt(10) > 2 && (row / 20) % 3 != 1) {
+                part.add(createTBin(i));
+            }
+        }
+        parts.add(part);
+
+        for (Rectangle region : new Rectangle[]{new Rectangle(800, 400), new Rectangle(130, 35, 301, 219)}) {
+            final RecordingRenderer expected = new RecordingRenderer(region);
+            final RecordingRenderer actual = new RecordingRenderer(region);
+            reproject(new Reprojector(grid, expected, 1), parts);
+            reproject(new Reprojector(grid, actual, 4), parts);
+            assertTrue(expected.getNumCalls() > 0);
+            assertEquals(region.width * region.height, expected.getNumCalls());
+            assertEquals(expected.getCalls(), actual.getCalls());
+        }
+    }
+
+    private static void reproject(Reprojector reprojector, List<List<TemporalBin>> parts) throws Exception {
+        reprojector.begin();
+        for (List<TemporalBin> part : parts) {
+            reprojector.processPart(part.iterator());
+        }
+        reprojector.end();
+    }
+
     /*
      * Creates a test bin whose #obs = ID.
      */
@@ -492,4 +530,49 @@ public class ReprojectorTest {
             return sb.toString();
         }
     }
+
+    private static class RecordingRenderer implements TemporalBinRenderer {
+
+        private final Rectangle rasterRegion;
+        private final StringBuilder calls;
+        private int numCalls;
+
+        private RecordingRenderer(Rectangle rasterRegion) {
+            this.rasterRegion = rasterRegion;
+            this.calls = new StringBuilder();
+        }
+
+        int getNumCalls() {
+            return numCalls;
+        }
+
+        String getCalls() {
+            return calls.toString();
+        }
+
+        @Override
+        public Rectangle getRasterRegion() {
+            return rasterRegion;
+        }
+
+        @Override
+        public void begin() throws IOException {
+        }
+
+        @Override
+        public void end() throws IOException {
+        }
+
+        @Override
+        public void renderBin(int x, int y, TemporalBin temporalBin, Vector outputVector) throws IOException {
+            calls.append(x).append(',').append(y).append('=').append(temporalBin.getNumObs()).append('\n');
+            numCalls++;
+        }
+
+        @Override
+        public void renderMissingBin(int x, int y) throws IOException {
+            calls.append(x).append(',').append(y).append("=-\n");
+            numCalls++;
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.BinManager;
+import org.esa.beam.binning.BinningContext;
+import org.esa.beam.binning.CompositingType;
+import org.esa.beam.binning.MyVariableContext;
+import org.esa.beam.binning.SpatialBin;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.aggregators.AggregatorMinMax;
+import org.esa.beam.binning.support.BinningContextImpl;
+import org.esa.beam.binning.support.SEAGrid;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelTemporalBinnerTest {
+
+    @Test
+    public void testParallelBinningEqualsSequentialBinning() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext,
+                                                     new AggregatorAverage(variableContext, "a", "a", 0.5, true, false),
+                                                     new AggregatorMinMax(variableContext, "a", "a"));
+        final BinningContext binningContext = new BinningContextImpl(new SEAGrid(180), binManager,
+                                                                     CompositingType.BINNING, 1, -1, null, null);
+
+        final MapBackedSpatialBinCollector collector = new MapBackedSpatialBinCollector();
+        final Random random = new Random(42);
+        final int numBins = 10 * ParallelTemporalBinner.BATCH_SIZE + 17;
+        for (int pass = 0; pass < 3; pass++) {
+            final List<SpatialBin> spatialBins = new ArrayList<>();
+            for (int i = 0; i < numBins; i++) {
+                if (random.nextInt(4) > 0) {
+                    spatialBins.add(createSpatialBin(binManager, 3L * i, random));
+                }
+            }
+            collector.consumeSpatialBins(binningContext, spatialBins);
+        }
+        collector.consumingCompleted();
+        final SpatialBinCollection spatialBinCollection = collector.getSpatialBinCollection();
+
+        final List<TemporalBin> expected = new ArrayList<>();
+        new ParallelTemporalBinner(binningContext, 1).process(spatialBinCollection, expected, null);
+        final List<TemporalBin> actual = new ArrayList<>();
+        new ParallelTemporalBinner(binningContext, 4).process(spatialBinCollection, actual, null);
+
+        assertEquals(spatialBinCollection.size(), expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final TemporalBin expectedBin = expected.get(i);
+            final TemporalBin actualBin = actual.get(i);
+            assertEquals(expectedBin.getIndex(), actualBin.getIndex());
+            assertEquals(expectedBin.getNumObs(), actualBin.getNumObs());
+            assertEquals(expectedBin.getNumPasses(), actualBin.getNumPasses());
+            assertArrayEquals(expectedBin.getFeatureValues(), actualBin.getFeatureValues(), 0.0f);
+        }
+        for (int i = 1; i < actual.size(); i++) {
+            assertTrue(actual.get(i - 1).getIndex() < actual.get(i).getIndex());
+        }
+    }
+
+    @Test
+    public void testEmptyCollection() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorMinMax(variableContext, "a", "a"));
+        final BinningContext binningContext = new BinningContextImpl(new SEAGrid(180), binManager,
+                                                                     CompositingType.BINNING, 1, -1, null, null);
+        final MapBackedSpatialBinCollector collector = new MapBackedSpatialBinCollector();
+        collector.consumingCompleted();
+
+        final List<TemporalBin> temporalBins = new ArrayList<>();
+        new ParallelTemporalBinner(binningContext, 4).process(collector.getSpatialBinCollection(), temporalBins, null);
+
+        assertTrue(temporalBins.isEmpty());
+    }
+
+    private static SpatialBin createSpatialBin(BinManager binManager, long index, Random random) {
+        final SpatialBin spatialBin = binManager.createSpatialBin(index);
+        final float value = random.nextFloat();
+        final int numObs = 1 + random.nextInt(5);
+        spatialBin.setNumObs(numObs);
+        final float[] featureValues = spatialBin.getFeatureValues();
+        // average: sum, sum_sq, counts; min/max: min, max
+        featureValues[0] = value;
+        featureValues[1] = value * value;
+        featureValues[2] = numObs;
+        featureValues[3] = value;
+        featureValues[4] = value;
+        return spatialBin;
+    }
+}
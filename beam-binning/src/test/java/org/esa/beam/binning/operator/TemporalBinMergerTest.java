@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.operator;
+
+import org.esa.beam.binning.BinManager;
+import org.esa.beam.binning.MyVariableContext;
+import org.esa.beam.binning.TemporalBin;
+import org.esa.beam.binning.aggregators.AggregatorAverage;
+import org.esa.beam.binning.aggregators.AggregatorMinMax;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TemporalBinMergerTest {
+
+    @Test
+    public void testMerge() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorMinMax(variableContext, "a", "a"));
+
+        final TemporalBinMerger merger = new TemporalBinMerger(binManager, Arrays.asList(
+                new ArrayCursor(createBin(3, 1, 1, 2.0f, 4.0f), createBin(7, 2, 1, 1.0f, 1.5f)),
+                new ArrayCursor(),
+                new ArrayCursor(createBin(1, 3, 2, 5.0f, 6.0f), createBin(3, 4, 1, 1.0f, 3.0f), createBin(9, 1, 1, 0.5f, 0.5f)),
+                new ArrayCursor(createBin(3, 2, 3, 3.0f, 8.0f))));
+
+        assertBin(merger.next(), 1, 3, 2, 5.0f, 6.0f);
+        assertBin(merger.next(), 3, 7, 5, 1.0f, 8.0f);
+        assertBin(merger.next(), 7, 2, 1, 1.0f, 1.5f);
+        assertBin(merger.next(), 9, 1, 1, 0.5f, 0.5f);
+        assertNull(merger.next());
+        assertNull(merger.next());
+    }
+
+    @Test
+    public void testMergeAverageSums() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext,
+                                                     new AggregatorAverage(variableContext, "a", "a", 0.0, false, true));
+
+        // a daily file whose bin 3 has two passes with a mean of 5 and a sigma of 1
+        final TemporalBin dailyBin = createBin(3, 4, 2, 10.0f, 52.0f, 2.0f);
+        TemporalBinMerger merger = new TemporalBinMerger(binManager, Arrays.asList(new ArrayCursor(dailyBin)));
+        TemporalBin mergedBin = merger.next();
+        assertBin(mergedBin, 3, 4, 2, 10.0f, 52.0f, 2.0f);
+        assertBin(computeOutput(binManager, mergedBin), 3, 4, 2, 10.0f, 52.0f, 2.0f);
+        assertEquals(5.0, mergedBin.getFeatureValues()[0] / mergedBin.getFeatureValues()[2], 1e-6);
+        assertNull(merger.next());
+
+        // two daily files, the bin without valid values is ignored
+        merger = new TemporalBinMerger(binManager, Arrays.asList(
+                new ArrayCursor(createBin(3, 4, 2, 10.0f, 52.0f, 2.0f)),
+                new ArrayCursor(createBin(3, 1, 1, 8.0f, 64.0f, 1.0f)),
+                new ArrayCursor(createBin(3, 2, 1, Float.NaN, Float.NaN, Float.NaN))));
+        mergedBin = merger.next();
+        assertBin(mergedBin, 3, 7, 4, 18.0f, 116.0f, 3.0f);
+        assertEquals(6.0, mergedBin.getFeatureValues()[0] / mergedBin.getFeatureValues()[2], 1e-6);
+        assertNull(merger.next());
+    }
+
+    @Test
+    public void testMergeAverageMeansIsRejected() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorAverage(variableContext, "a", 0.0));
+        try {
+            TemporalBinMerger.checkMergeable(binManager);
+            fail("IllegalArgumentException expected, mean and sigma cannot be merged");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("AVG"));
+        }
+        try {
+            new TemporalBinMerger(binManager, Collections.<TemporalBinCursor>emptyList());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testMergeWithoutSources() throws Exception {
+        final MyVariableContext variableContext = new MyVariableContext("a");
+        final BinManager binManager = new BinManager(variableContext, new AggregatorMinMax(variableContext, "a", "a"));
+
+        final TemporalBinMerger merger = new TemporalBinMerger(binManager, Collections.<TemporalBinCursor>emptyList());
+
+        assertNull(merger.next());
+    }
+
+    private static TemporalBin computeOutput(BinManager binManager, TemporalBin temporalBin) {
+        final TemporalBin outputBin = binManager.createOutputBin(temporalBin.getIndex());
+        binManager.computeOutput(temporalBin, outputBin.toVector());
+        outputBin.setNumObs(temporalBin.getNumObs());
+        outputBin.setNumPasses(temporalBin.getNumPasses());
+        return outputBin;
+    }
+
+    private static TemporalBin createBin(long index, int numObs, int numPasses, float... values) {
+        final TemporalBin bin = new TemporalBin(index, values.length);
+        bin.setNumObs(numObs);
+        bin.setNumPasses(numPasses);
+        System.arraycopy(values, 0, bin.getFeatureValues(), 0, values.length);
+        return bin;
+    }
+
+    private static void assertBin(TemporalBin bin, long index, int numObs, int numPasses, float... values) {
+        assertNotNull(bin);
+        assertEquals(index, bin.getIndex());
+        assertEquals(numObs, bin.getNumObs());
+        assertEquals(numPasses, bin.getNumPasses());
+        assertArrayEquals(values, bin.getFeatureValues(), 1e-6f);
+    }
+
+    private static class ArrayCursor implements TemporalBinCursor {
+
+        private final TemporalBin[] bins;
+        private int index = -1;
+
+        private ArrayCursor(TemporalBin... bins) {
+            this.bins = bins;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < bins.length;
+        }
+
+        @Override
+        public TemporalBin getBin() {
+            return bins[index];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
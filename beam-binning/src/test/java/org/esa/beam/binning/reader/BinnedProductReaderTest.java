@@ -77,4 +77,26 @@ public class BinnedProductReaderTest {
 
          assertFalse(BinnedProductReader.isSubSampled(1, 1));
     }
+
+    @Test
+    public void testGetSourceCoord() {
+        assertEquals(0, BinnedProductReader.getSourceCoord(0, 1.0, 100));
+        assertEquals(99, BinnedProductReader.getSourceCoord(99, 1.0, 100));
+        assertEquals(12, BinnedProductReader.getSourceCoord(3, 4.0, 100));
+        assertEquals(99, BinnedProductReader.getSourceCoord(25, 4.0, 100));
+    }
+
+    @Test
+    public void testGetDestCoord() {
+        assertEquals(7, BinnedProductReader.getDestCoord(7, 1.0));
+        assertEquals(2, BinnedProductReader.getDestCoord(8, 4.0));
+        assertEquals(3, BinnedProductReader.getDestCoord(9, 4.0));
+
+        // the pixels rendered for a bin are those sampling its extent
+        final double scale = 4.0;
+        for (int x = BinnedProductReader.getDestCoord(9, scale); x < BinnedProductReader.getDestCoord(17, scale); x++) {
+            final int sourceX = BinnedProductReader.getSourceCoord(x, scale, 100);
+            assertTrue(sourceX >= 9 && sourceX < 17);
+        }
+    }
 }
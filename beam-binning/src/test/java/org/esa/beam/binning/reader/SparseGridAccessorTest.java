@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.binning.reader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SparseGridAccessorTest {
+
+    @Test
+    public void testComputeRowOffsets() {
+        // row 0: bins 1-3, row 1: empty, row 2: bins 8-9, row 3: bin 12
+        final int[] binIndexes = {1, 2, 3, 8, 9, 12};
+        final int[] firstBinIndexes = {1, 0, 8, 12};
+
+        assertArrayEquals(new int[]{0, -1, 3, 5}, SparseGridAccessor.computeRowOffsets(binIndexes, firstBinIndexes));
+    }
+
+    @Test
+    public void testComputeRowOffsets_UnsortedBinList() {
+        final int[] binIndexes = {8, 9, 12, 1, 2, 3};
+        final int[] firstBinIndexes = {1, 0, 8, 12};
+
+        assertArrayEquals(new int[]{3, -1, 0, 2}, SparseGridAccessor.computeRowOffsets(binIndexes, firstBinIndexes));
+    }
+
+    @Test
+    public void testComputeRowOffsets_FirstBinMissing() {
+        final int[] binIndexes = {1, 2, 3, 9};
+        final int[] firstBinIndexes = {1, 8};
+
+        assertArrayEquals(new int[]{0, -1}, SparseGridAccessor.computeRowOffsets(binIndexes, firstBinIndexes));
+        assertArrayEquals(new int[]{1, -1}, SparseGridAccessor.computeRowOffsets(new int[]{9, 1, 2, 3}, firstBinIndexes));
+    }
+}
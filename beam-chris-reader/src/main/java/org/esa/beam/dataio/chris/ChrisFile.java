@@ -191,7 +191,7 @@ class ChrisFile {
             final int[] count = new int[]{1, height, width};
 
             Section section = new Section(start, count, stride);
-            Array array = rciImageSds.read(section);
+            Array array = read(rciImageSds, section);
             final Object storage = array.getStorage();
             System.arraycopy(storage, 0, data, 0, data.length);
             if (flipped) {
@@ -226,7 +226,7 @@ class ChrisFile {
             final int[] count = new int[]{1, height, width};
 
             Section section = new Section(start, count, stride);
-            Array array = maskSds.read(section);
+            Array array = read(maskSds, section);
             final Object storage = array.getStorage();
             System.arraycopy(storage, 0, mask, 0, mask.length);
             if (flipped) {
@@ -240,6 +240,13 @@ class ChrisFile {
         }
     }
 
+    private Array read(Variable variable, Section section) throws IOException, InvalidRangeException {
+        // the underlying random access file is not thread safe, but only the read itself needs to be guarded
+        synchronized (this) {
+            return variable.read(section);
+        }
+    }
+
     private void flipImage(int[] data, int width) {
         final int[] temp = new int[width];
         final int lastRowOffset = data.length - width;
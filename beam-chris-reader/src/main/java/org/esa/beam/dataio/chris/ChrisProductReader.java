@@ -95,19 +95,19 @@ public class ChrisProductReader extends AbstractProductReader {
     }
 
     @Override
-    protected synchronized void readBandRasterDataImpl(int sourceOffsetX,
-                                                       int sourceOffsetY,
-                                                       int sourceWidth,
-                                                       int sourceHeight,
-                                                       int sourceStepX,
-                                                       int sourceStepY,
-                                                       Band targetBand,
-                                                       int targetOffsetX,
-                                                       int targetOffsetY,
-                                                       int targetWidth,
-                                                       int targetHeight,
-                                                       ProductData targetBuffer,
-                                                       ProgressMonitor pm) throws IOException {
+    protected void readBandRasterDataImpl(int sourceOffsetX,
+                                          int sourceOffsetY,
+                                          int sourceWidth,
+                                          int sourceHeight,
+                                          int sourceStepX,
+                                          int sourceStepY,
+                                          Band targetBand,
+                                          int targetOffsetX,
+                                          int targetOffsetY,
+                                          int targetWidth,
+                                          int targetHeight,
+                                          ProductData targetBuffer,
+                                          ProgressMonitor pm) throws IOException {
         Assert.state(sourceOffsetX == targetOffsetX, "sourceOffsetX != targetOffsetX");
         Assert.state(sourceOffsetY == targetOffsetY, "sourceOffsetY != targetOffsetY");
         Assert.state(sourceStepX == 1, "sourceStepX != 1");
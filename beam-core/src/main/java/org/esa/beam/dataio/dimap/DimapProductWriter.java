@@ -61,6 +61,7 @@ public class DimapProductWriter extends AbstractProductWriter {
     private File outputDir;
     private File outputFile;
     private Map<Band, ImageOutputStream> bandOutputStreams;
+    private Map<Band, RandomAccessFile> bandDataFiles;
     private File dataOutputDir;
     private boolean incremental = true;
     private Set<WriterExtender> writerExtenders;
@@ -240,6 +241,24 @@ public class DimapProductWriter extends AbstractProductWriter {
         }
     }
 
+    /**
+     * Writes all data in memory to disk and forces the band data files to the storage device. In contrast to
+     * {@link #flush()}, which only hands the data over to the operating system, the data written so far is
+     * guaranteed to survive a system crash once this method returns.
+     *
+     * @throws java.io.IOException on failure
+     * @since BEAM 5.0.6
+     */
+    public synchronized void sync() throws IOException {
+        flush();
+        if (bandDataFiles == null) {
+            return;
+        }
+        for (RandomAccessFile bandDataFile : bandDataFiles.values()) {
+            bandDataFile.getFD().sync();
+        }
+    }
+
     /**
      * Closes all output streams currently open.
      *
@@ -255,6 +274,10 @@ public class DimapProductWriter extends AbstractProductWriter {
         }
         bandOutputStreams.clear();
         bandOutputStreams = null;
+        if (bandDataFiles != null) {
+            bandDataFiles.clear();
+            bandDataFiles = null;
+        }
         if (writerExtenders != null) {
             writerExtenders.clear();
             writerExtenders = null;
@@ -364,7 +387,12 @@ public class DimapProductWriter extends AbstractProductWriter {
     }
 
     private ImageOutputStream createImageOutputStream(Band band) throws IOException {
-        return new FileImageOutputStream(getValidImageFile(band));
+        final RandomAccessFile bandDataFile = new RandomAccessFile(getValidImageFile(band), "rw");
+        if (bandDataFiles == null) {
+            bandDataFiles = new HashMap<Band, RandomAccessFile>();
+        }
+        bandDataFiles.put(band, bandDataFile);
+        return new FileImageOutputStream(bandDataFile);
     }
 
     private ImageOutputStream createImageOutputStream(TiePointGrid tiePointGrid) throws IOException {
@@ -29,6 +29,7 @@ import org.esa.beam.util.logging.BeamLogManager;
 import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.esa.beam.util.logging.BeamLogManager.getSystemLogger;
 
@@ -68,6 +69,12 @@ public abstract class AbstractProductReader implements ProductReader {
      */
     private ProductSubsetDef subsetDef;
 
+    /**
+     * The number of bytes delivered by {@link #readBandRasterData} and the time spent in it.
+     */
+    private final AtomicLong numBytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+
     /**
      * Constructs a new abstract product reader.
      *
@@ -99,6 +106,27 @@ public abstract class AbstractProductReader implements ProductReader {
         this.input = input;
     }
 
+    /**
+     * Gets the number of bytes of raster data this reader has delivered via {@link #readBandRasterData}
+     * so far. Sub-sampled reads count the bytes delivered, not the bytes read from the data source.
+     *
+     * @return the number of bytes
+     * @since BEAM 5.0.6
+     */
+    public long getNumBytesRead() {
+        return numBytesRead.get();
+    }
+
+    /**
+     * Gets the time this reader has spent in {@link #readBandRasterData} so far, summed over all threads.
+     *
+     * @return the time in nanoseconds
+     * @since BEAM 5.0.6
+     */
+    public long getReadNanos() {
+        return readNanos.get();
+    }
+
     /**
      * Checks if this reader ignores metadata or not.
      *
@@ -253,6 +281,7 @@ public abstract class AbstractProductReader implements ProductReader {
         int sourceWidth = sourceStepX * (destWidth - 1) + 1;
         int sourceHeight = sourceStepY * (destHeight - 1) + 1;
 
+        final long startNanos = System.nanoTime();
         readBandRasterDataImpl(sourceOffsetX,
                                sourceOffsetY,
                                sourceWidth,
@@ -265,6 +294,8 @@ public abstract class AbstractProductReader implements ProductReader {
                                destWidth,
                                destHeight,
                                destBuffer, pm);
+        readNanos.addAndGet(System.nanoTime() - startNanos);
+        numBytesRead.addAndGet((long) destWidth * destHeight * destBuffer.getElemSize());
     }
 
     /**
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Provides thread-safe random access to the content of a binary file.
+ * <p/>
+ * In contrast to an {@link javax.imageio.stream.ImageInputStream}, this reader has no stream position:
+ * every read states the file position it starts at. Concurrent reads, e.g. issued by the tile computations
+ * of different threads, therefore do not need to be serialised on a common monitor.
+ * Reads are performed by {@link FileChannel#read(ByteBuffer, long) positional channel reads}, or by copying from a
+ * memory-mapped buffer if the file is mapped. Multi-byte values are decoded using the byte order given
+ * at construction time, the decoding makes use of a small buffer kept per thread.
+ * <p/>
+ * Product readers usually create an instance in {@link AbstractProductReader#readProductNodesImpl()}
+ * and close it in {@link AbstractProductReader#close()}.
+ *
+ * @since BEAM 5.0.6
+ */
+public class PositionalFileReader implements Closeable {
+
+    /**
+     * The system property used to enable memory-mapping of the files read by instances of this class
+     * which have not been given an explicit mapping mode.
+     */
+    public static final String SYSPROP_MEMORY_MAPPED = "beam.dataio.memoryMapped";
+
+    /**
+     * The maximum size of the per-thread decode buffer. Larger reads are decoded in chunks of this size.
+     */
+    static final int MAX_DECODE_BUFFER_SIZE = 256 * 1024;
+
+    private final File file;
+    private final ByteOrder byteOrder;
+    private final long size;
+    private final ByteBuffer mappedBuffer;
+    private final ThreadLocal<ByteBuffer> decodeBuffer;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    /**
+     * Opens the given file. The file is memory-mapped if the system property {@link #SYSPROP_MEMORY_MAPPED}
+     * is set to {@code true}.
+     *
+     * @param file      The file.
+     * @param byteOrder The byte order used to decode multi-byte values.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public PositionalFileReader(File file, ByteOrder byteOrder) throws IOException {
+        this(file, byteOrder, Boolean.getBoolean(SYSPROP_MEMORY_MAPPED));
+    }
+
+    /**
+     * Opens the given file.
+     *
+     * @param file         The file.
+     * @param byteOrder    The byte order used to decode multi-byte values.
+     * @param memoryMapped If {@code true}, the file is memory-mapped. Files larger than 2 GB are never mapped.
+     *
+     * @throws IOException If the file cannot be opened.
+     */
+    public PositionalFileReader(File file, ByteOrder byteOrder, boolean memoryMapped) throws IOException {
+        this.file = file;
+        this.byteOrder = byteOrder;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        if (memoryMapped && size <= Integer.MAX_VALUE) {
+            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } else {
+            mappedBuffer = null;
+        }
+        decodeBuffer = new ThreadLocal<>();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * @return The size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isMemoryMapped() {
+        return mappedBuffer != null;
+    }
+
+    /**
+     * Reads bytes starting at the given file position until the given buffer has no bytes remaining.
+     * Afterwards the buffer is flipped, so that the bytes read can be retrieved from it.
+     *
+     * @param position The file position.
+     * @param buffer   The buffer to read into.
+     *
+     * @throws EOFException If the end of the file is reached before the buffer is full.
+     * @throws IOException  If an I/O error occurs.
+     */
+    public void readFully(long position, ByteBuffer buffer) throws IOException {
+        final int length = buffer.remaining();
+        if (position < 0 || position + length > size) {
+            throw new EOFException("Cannot read " + length + " bytes at position " + position
+                                   + " from file '" + file + "' of size " + size + ".");
+        }
+        if (mappedBuffer != null) {
+            final ByteBuffer source = mappedBuffer.duplicate();
+            source.position((int) position);
+            source.limit((int) position + length);
+            buffer.put(source);
+        } else {
+            long pos = position;
+            while (buffer.hasRemaining()) {
+                final int n = readChannel(buffer, pos);
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of file '" + file + "' at position " + pos + ".");
+                }
+                pos += n;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Reads the given number of bytes starting at the given file position. The returned buffer is
+     * owned by the reader and the calling thread, its content is only valid until the calling thread
+     * performs the next read on this reader. The buffer's byte order is the reader's byte order.
+     *
+     * @param position The file position.
+     * @param length   The number of bytes to read.
+     *
+     * @return A buffer holding the bytes read, its position is zero and its limit is {@code length}.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public ByteBuffer read(long position, int length) throws IOException {
+        final ByteBuffer buffer;
+        if (length > MAX_DECODE_BUFFER_SIZE) {
+            buffer = ByteBuffer.allocate(length);
+        } else {
+            buffer = getDecodeBuffer(length);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        readFully(position, buffer);
+        buffer.order(byteOrder);
+        return buffer;
+    }
+
+    /**
+     * Reads elements of a primitive array starting at the given file position.
+     *
+     * @param position The file position.
+     * @param array    The array to read into, must be one of {@code byte[]}, {@code short[]}, {@code int[]},
+     *                 {@code long[]}, {@code float[]} or {@code double[]}.
+     * @param offset   The first array index to write to.
+     * @param length   The number of elements to read.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void readFully(long position, Object array, int offset, int length) throws IOException {
+        final int elemSize = getElemSize(array);
+        final int maxChunkLength = MAX_DECODE_BUFFER_SIZE / elemSize;
+        long pos = position;
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int chunkLength = Math.min(remaining, maxChunkLength);
+            copyElems(read(pos, chunkLength * elemSize), array, off, chunkLength);
+            pos += (long) chunkLength * elemSize;
+            off += chunkLength;
+            remaining -= chunkLength;
+        }
+    }
+
+    /**
+     * Closes the file. Reads performed after calling this method will fail.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Copies the elements of the given byte buffer into a primitive array, the buffer's byte order is applied.
+     *
+     * @param buffer The buffer.
+     * @param array  The array to copy to.
+     * @param offset The first array index to write to.
+     * @param length The number of elements to copy.
+     */
+    public static void copyElems(ByteBuffer buffer, Object array, int offset, int length) {
+        if (array instanceof byte[]) {
+            buffer.get((byte[]) array, offset, length);
+        } else if (array instanceof short[]) {
+            buffer.asShortBuffer().get((short[]) array, offset, length);
+        } else if (array instanceof int[]) {
+            buffer.asIntBuffer().get((int[]) array, offset, length);
+        } else if (array instanceof long[]) {
+            buffer.asLongBuffer().get((long[]) array, offset, length);
+        } else if (array instanceof float[]) {
+            buffer.asFloatBuffer().get((float[]) array, offset, length);
+        } else if (array instanceof double[]) {
+            buffer.asDoubleBuffer().get((double[]) array, offset, length);
+        } else {
+            throw new IllegalArgumentException("Unsupported array type: " + array.getClass());
+        }
+    }
+
+    private static int getElemSize(Object array) {
+        if (array instanceof byte[]) {
+            return 1;
+        } else if (array instanceof short[]) {
+            return 2;
+        } else if (array instanceof int[] || array instanceof float[]) {
+            return 4;
+        } else if (array instanceof long[] || array instanceof double[]) {
+            return 8;
+        }
+        throw new IllegalArgumentException("Unsupported array type: " + array.getClass());
+    }
+
+    private ByteBuffer getDecodeBuffer(int length) {
+        ByteBuffer buffer = decodeBuffer.get();
+        if (buffer == null || buffer.capacity() < length) {
+            // grow in steps, so that slightly varying read lengths do not cause repeated allocations
+            int capacity = 4096;
+            while (capacity < length) {
+                capacity *= 2;
+            }
+            buffer = ByteBuffer.allocate(Math.min(capacity, MAX_DECODE_BUFFER_SIZE));
+            decodeBuffer.set(buffer);
+        }
+        return buffer;
+    }
+
+    private int readChannel(ByteBuffer buffer, long position) throws IOException {
+        while (true) {
+            final FileChannel currentChannel = channel;
+            try {
+                return currentChannel.read(buffer, position);
+            } catch (ClosedByInterruptException e) {
+                // the channel has been closed for all threads because this one has been interrupted,
+                // e.g. by a cancelled tile computation, so re-open it for the others
+                reopen(currentChannel);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // closed due to the interruption of another thread
+                if (!reopen(currentChannel)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private synchronized boolean reopen(FileChannel closedChannel) throws IOException {
+        if (closed) {
+            return false;
+        }
+        if (channel == closedChannel) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        return true;
+    }
+}
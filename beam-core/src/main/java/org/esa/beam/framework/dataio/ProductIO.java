@@ -28,6 +28,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -238,6 +239,11 @@ public class ProductIO {
      * <p/>
      * The {@code input} may be of any type, but most likely it will be a file path given by a {@code String} or
      * {@code File} value. Some readers may also directly support an {@link javax.imageio.stream.ImageInputStream} object.
+     * <p/>
+     * Plugins whose default file extensions match the input are asked first, then the others (in parallel if the
+     * system property {@code beam.dataio.readerDetectionParallelism} is greater than 1).
+     * The plugin found for a file is remembered in a persistent index (system property
+     * {@code beam.dataio.readerIndexFile}), so that the file is not probed again until it is modified.
      *
      * @param input the input object.
      *
@@ -253,21 +259,11 @@ public class ProductIO {
         logger.fine("Searching reader plugin for '" + input + "'");
         ProductIOPlugInManager registry = ProductIOPlugInManager.getInstance();
         Iterator<ProductReaderPlugIn> it = registry.getAllReaderPlugIns();
-        ProductReaderPlugIn selectedPlugIn = null;
+        List<ProductReaderPlugIn> plugIns = new ArrayList<>();
         while (it.hasNext()) {
-            ProductReaderPlugIn plugIn = it.next();
-
-            final long startTime = System.currentTimeMillis();
-            DecodeQualification decodeQualification = plugIn.getDecodeQualification(input);
-            final long endTime = System.currentTimeMillis();
-            logger.fine(String.format("Checking reader plugin %s (took %d ms)", plugIn.getClass().getName(), (endTime - startTime)));
-            if (decodeQualification == DecodeQualification.INTENDED) {
-                selectedPlugIn = plugIn;
-                break;
-            } else if (decodeQualification == DecodeQualification.SUITABLE) {
-                selectedPlugIn = plugIn;
-            }
+            plugIns.add(it.next());
         }
+        ProductReaderPlugIn selectedPlugIn = ProductReaderDetector.getDefaultInstance().findPlugIn(input, plugIns);
         final long endTimeTotal = System.currentTimeMillis();
         logger.fine(String.format("Searching reader plugin took %d ms", (endTimeTotal - startTimeTotal)));
         if (selectedPlugIn != null) {
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.dataio;
+
+import org.esa.beam.util.SystemUtils;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the reader plug-in for an input, see {@link ProductIO#getProductReaderForInput(Object)}.
+ * <p/>
+ * The decision of {@link ProductReaderPlugIn#getDecodeQualification(Object)} is expensive for many plug-ins,
+ * hence the detector
+ * <ol>
+ * <li>looks up file inputs in a persistent index, keyed by path, modification time and length of the file, or
+ * for directories the names, lengths and modification times of its entries,</li>
+ * <li>asks the plug-ins whose default file extensions match the file name first, and accepts the first
+ * {@link DecodeQualification#INTENDED INTENDED} one,</li>
+ * <li>otherwise asks all other plug-ins, optionally in parallel (see {@link #PARALLELISM_PROPERTY}).</li>
+ * </ol>
+ * If no extension matches, the selection is the same as before: the first intended plug-in in registration
+ * order, otherwise the last suitable one. When probing in parallel, the detector returns as soon as the first
+ * intended plug-in in registration order is known. The remaining requests are cancelled, but not interrupted,
+ * since interrupting a thread closes the {@link java.nio.channels.FileChannel FileChannel}s it is reading from.
+ * A separate index is kept for each set of registered reader plug-ins, the fingerprint of the set is part of the
+ * name of the index file.
+ *
+ * @since BEAM 5.0.6
+ */
+class ProductReaderDetector {
+
+    /**
+     * The system property used to configure the index file. An empty value disables the index.
+     */
+    static final String INDEX_FILE_PROPERTY = "beam.dataio.readerIndexFile";
+    /**
+     * The system property used to configure the number of plug-ins asked in parallel. The default is 1, which
+     * asks them sequentially.
+     */
+    static final String PARALLELISM_PROPERTY = "beam.dataio.readerDetectionParallelism";
+
+    private static final String INDEX_FILE_NAME = "reader-index.txt";
+    private static final String INDEX_HEADER = "BEAM-READER-INDEX 1 ";
+    private static final String NO_PLUGIN = "-";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static ProductReaderDetector defaultInstance;
+
+    private final int parallelism;
+    private final Logger logger;
+    private File indexFile;
+    private Map<String, IndexEntry> index;
+    private String indexFingerprint;
+    private boolean appendToIndex;
+    private ExecutorService executorService;
+
+    /**
+     * @param indexFile   the index file, or {@code null} if no index shall be used. The fingerprint of the
+     *                    reader plug-ins is inserted into its name, see {@link #getIndexFile(File, String)}.
+     * @param parallelism the maximum number of plug-ins asked in parallel
+     */
+    ProductReaderDetector(File indexFile, int parallelism) {
+        this.indexFile = indexFile;
+        this.parallelism = Math.max(1, parallelism);
+        this.logger = BeamLogManager.getSystemLogger();
+    }
+
+    static synchronized ProductReaderDetector getDefaultInstance() {
+        if (defaultInstance == null) {
+            final String indexPath = System.getProperty(INDEX_FILE_PROPERTY);
+            final File indexFile;
+            if (indexPath == null) {
+                indexFile = new File(SystemUtils.getDefaultBeamCacheDir(), INDEX_FILE_NAME);
+            } else if (indexPath.trim().isEmpty()) {
+                indexFile = null;
+            } else {
+                indexFile = new File(indexPath);
+            }
+            defaultInstance = new ProductReaderDetector(indexFile, Integer.getInteger(PARALLELISM_PROPERTY, 1));
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Finds the plug-in for the given input.
+     *
+     * @param input   the input
+     * @param plugIns the registered reader plug-ins, in registration order
+     * @return the plug-in, or {@code null} if none can decode the input
+     */
+    ProductReaderPlugIn findPlugIn(Object input, List<ProductReaderPlugIn> plugIns) {
+        final File file = getFile(input);
+        final String fingerprint = getFingerprint(plugIns);
+        if (file != null) {
+            final IndexEntry entry = getIndexEntry(file, fingerprint);
+            if (entry != null) {
+                if (entry.plugInClassName.equals(NO_PLUGIN)) {
+                    logger.fine("Index: no reader plugin for '" + input + "'");
+                    return null;
+                }
+                for (ProductReaderPlugIn plugIn : plugIns) {
+                    if (plugIn.getClass().getName().equals(entry.plugInClassName)) {
+                        logger.fine("Index: selected " + entry.plugInClassName + " for '" + input + "'");
+                        return plugIn;
+                    }
+                }
+            }
+        }
+
+        final ProductReaderPlugIn selectedPlugIn = probe(input, file, plugIns);
+        if (file != null) {
+            putIndexEntry(file, selectedPlugIn, fingerprint);
+        }
+        return selectedPlugIn;
+    }
+
+    private ProductReaderPlugIn probe(final Object input, File file, final List<ProductReaderPlugIn> plugIns) {
+        final DecodeQualification[] qualifications = new DecodeQualification[plugIns.size()];
+        final List<Integer> otherIndexes = new ArrayList<>(plugIns.size());
+        for (int i = 0; i < plugIns.size(); i++) {
+            final ProductReaderPlugIn plugIn = plugIns.get(i);
+            if (file != null && hasMatchingExtension(file, plugIn)) {
+                qualifications[i] = getDecodeQualification(plugIn, input);
+                if (qualifications[i] == DecodeQualification.INTENDED) {
+                    return plugIn;
+                }
+            } else {
+                otherIndexes.add(i);
+            }
+        }
+
+        if (parallelism > 1 && otherIndexes.size() > 1) {
+            final int intendedIndex = probeInParallel(input, plugIns, otherIndexes, qualifications);
+            if (intendedIndex >= 0) {
+                return plugIns.get(intendedIndex);
+            }
+        } else {
+            for (final int i : otherIndexes) {
+                qualifications[i] = getDecodeQualification(plugIns.get(i), input);
+                if (qualifications[i] == DecodeQualification.INTENDED) {
+                    break;
+                }
+            }
+        }
+
+        ProductReaderPlugIn selectedPlugIn = null;
+        for (int i = 0; i < plugIns.size(); i++) {
+            if (qualifications[i] == DecodeQualification.INTENDED) {
+                return plugIns.get(i);
+            } else if (qualifications[i] == DecodeQualification.SUITABLE) {
+                selectedPlugIn = plugIns.get(i);
+            }
+        }
+        return selectedPlugIn;
+    }
+
+    /**
+     * Asks the plug-ins with the given indexes in parallel. Returns as soon as the first intended plug-in in
+     * registration order is known, the requests still running are cancelled then.
+     *
+     * @return the index of the first intended plug-in, or {@code -1} if all plug-ins have been asked and none
+     *         is intended
+     */
+    private int probeInParallel(final Object input, final List<ProductReaderPlugIn> plugIns,
+                                List<Integer> indexes, final DecodeQualification[] qualifications) {
+        final CompletionService<Integer> completionService = new ExecutorCompletionService<>(getExecutorService());
+        final List<Future<Integer>> futures = new ArrayList<>(indexes.size());
+        final boolean[] done = new boolean[plugIns.size()];
+        try {
+            for (final int i : indexes) {
+                futures.add(completionService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        qualifications[i] = getDecodeQualification(plugIns.get(i), input);
+                        return i;
+                    }
+                }));
+            }
+            int intendedIndex = -1;
+            for (int n = 0; n < indexes.size(); n++) {
+                final int i = getResult(takeFuture(completionService));
+                done[i] = true;
+                if (qualifications[i] == DecodeQualification.INTENDED && (intendedIndex < 0 || i < intendedIndex)) {
+                    intendedIndex = i;
+                }
+                if (intendedIndex >= 0 && isDone(indexes, done, intendedIndex)) {
+                    return intendedIndex;
+                }
+            }
+            return -1;
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if all plug-ins with an index lower than the given one have been asked
+     */
+    private static boolean isDone(List<Integer> indexes, boolean[] done, int index) {
+        for (final int i : indexes) {
+            if (i < index && !done[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DecodeQualification getDecodeQualification(ProductReaderPlugIn plugIn, Object input) {
+        final long startTime = System.currentTimeMillis();
+        final DecodeQualification decodeQualification = plugIn.getDecodeQualification(input);
+        final long endTime = System.currentTimeMillis();
+        logger.fine(String.format("Checking reader plugin %s (took %d ms)", plugIn.getClass().getName(), (endTime - startTime)));
+        return decodeQualification;
+    }
+
+    private static Future<Integer> takeFuture(CompletionService<Integer> completionService) {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "reader-detection");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executorService;
+    }
+
+    static boolean hasMatchingExtension(File file, ProductReaderPlugIn plugIn) {
+        final String[] extensions = plugIn.getDefaultFileExtensions();
+        if (extensions == null) {
+            return false;
+        }
+        final String fileName = file.getName().toLowerCase(Locale.ENGLISH);
+        for (String extension : extensions) {
+            if (extension != null && !extension.isEmpty()) {
+                String ext = extension.toLowerCase(Locale.ENGLISH);
+                if (!ext.startsWith(".")) {
+                    ext = "." + ext;
+                }
+                if (fileName.endsWith(ext)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static File getFile(Object input) {
+        if (input instanceof File) {
+            return (File) input;
+        } else if (input instanceof String) {
+            return new File((String) input);
+        }
+        return null;
+    }
+
+    /**
+     * @return the length of the file. For a directory, a hash of the names, lengths and modification times of its
+     *         entries, since neither the length nor the modification time of a directory change if a file in the
+     *         directory is modified.
+     */
+    private static long getLength(File file) {
+        if (!file.isDirectory()) {
+            return file.length();
+        }
+        final String[] names = file.list();
+        if (names == null) {
+            return 0L;
+        }
+        Arrays.sort(names);
+        long hash = 17L;
+        for (String name : names) {
+            final File entry = new File(file, name);
+            hash = 31L * hash + name.hashCode();
+            hash = 31L * hash + entry.length();
+            hash = 31L * hash + entry.lastModified();
+        }
+        return hash;
+    }
+
+    private static String getFingerprint(List<ProductReaderPlugIn> plugIns) {
+        final StringBuilder sb = new StringBuilder();
+        for (ProductReaderPlugIn plugIn : plugIns) {
+            sb.append(plugIn.getClass().getName()).append(';');
+        }
+        return Integer.toHexString(sb.toString().hashCode());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Index
+
+    /**
+     * @return the index file used for the reader plug-ins with the given fingerprint, e.g.
+     *         {@code reader-index-1a2b3c4d.txt} for the index file {@code reader-index.txt}
+     */
+    static File getIndexFile(File indexFile, String fingerprint) {
+        final String name = indexFile.getName();
+        final int dotIndex = name.lastIndexOf('.');
+        final String fileName;
+        if (dotIndex > 0) {
+            fileName = name.substring(0, dotIndex) + "-" + fingerprint + name.substring(dotIndex);
+        } else {
+            fileName = name + "-" + fingerprint;
+        }
+        return new File(indexFile.getParentFile(), fileName);
+    }
+
+    private synchronized IndexEntry getIndexEntry(File file, String fingerprint) {
+        if (indexFile == null || !file.exists()) {
+            return null;
+        }
+        loadIndex(fingerprint);
+        final IndexEntry entry = index.get(file.getAbsolutePath());
+        if (entry != null && entry.lastModified == file.lastModified() && entry.length == getLength(file)) {
+            return entry;
+        }
+        return null;
+    }
+
+    private synchronized void putIndexEntry(File file, ProductReaderPlugIn plugIn, String fingerprint) {
+        if (indexFile == null || !file.exists()) {
+            return;
+        }
+        final String path = file.getAbsolutePath();
+        if (path.indexOf('\t') != -1 || path.indexOf('\n') != -1 || path.indexOf('\r') != -1) {
+            return;
+        }
+        loadIndex(fingerprint);
+        final IndexEntry entry = new IndexEntry(file.lastModified(), getLength(file),
+                                                plugIn != null ? plugIn.getClass().getName() : NO_PLUGIN);
+        index.put(path, entry);
+        final File fingerprintIndexFile = getIndexFile(indexFile, fingerprint);
+        // an index file with an invalid header is overwritten
+        final boolean append = appendToIndex && fingerprintIndexFile.exists();
+        try {
+            final File parentDir = fingerprintIndexFile.getParentFile();
+            if (parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs()) {
+                throw new IOException("Failed to create directory " + parentDir);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(fingerprintIndexFile, append), UTF_8)) {
+                if (!append) {
+                    writer.write(INDEX_HEADER + fingerprint + "\n");
+                }
+                writer.write(formatIndexLine(path, entry));
+            }
+            appendToIndex = true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to update reader index " + fingerprintIndexFile + ", index disabled", e);
+            indexFile = null;
+            index = null;
+        }
+    }
+
+    private void loadIndex(String fingerprint) {
+        if (index != null && fingerprint.equals(indexFingerprint)) {
+            return;
+        }
+        index = new HashMap<>();
+        indexFingerprint = fingerprint;
+        appendToIndex = false;
+        final File fingerprintIndexFile = getIndexFile(indexFile, fingerprint);
+        if (!fingerprintIndexFile.exists()) {
+            return;
+        }
+        boolean valid = false;
+        int lineCount = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fingerprintIndexFile), UTF_8))) {
+            valid = (INDEX_HEADER + fingerprint).equals(reader.readLine());
+            if (valid) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineCount++;
+                    final String[] tokens = line.split("\t", 4);
+                    if (tokens.length == 4) {
+                        try {
+                            index.put(tokens[3], new IndexEntry(Long.parseLong(tokens[0]), Long.parseLong(tokens[1]), tokens[2]));
+                        } catch (NumberFormatException ignored) {
+                            // a torn line, written by a process which has been killed
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read reader index " + fingerprintIndexFile, e);
+        }
+        if (!valid) {
+            logger.warning("Ignoring invalid reader index " + fingerprintIndexFile);
+        } else if (lineCount > 2 * index.size() + 100) {
+            // entries of modified files have been appended repeatedly
+            rewriteIndex(fingerprintIndexFile);
+        }
+        appendToIndex = valid;
+    }
+
+    private void rewriteIndex(File fingerprintIndexFile) {
+        final File tempFile = new File(fingerprintIndexFile.getPath() + ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8)) {
+                writer.write(INDEX_HEADER + indexFingerprint + "\n");
+                for (Map.Entry<String, IndexEntry> mapEntry : index.entrySet()) {
+                    writer.write(formatIndexLine(mapEntry.getKey(), mapEntry.getValue()));
+                }
+            }
+            if (!fingerprintIndexFile.delete() || !tempFile.renameTo(fingerprintIndexFile)) {
+                throw new IOException("Failed to replace " + fingerprintIndexFile);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact reader index " + fingerprintIndexFile, e);
+            tempFile.delete();
+        }
+    }
+
+    private static String formatIndexLine(String path, IndexEntry entry) {
+        return entry.lastModified + "\t" + entry.length + "\t" + entry.plugInClassName + "\t" + path + "\n";
+    }
+
+    private static final class IndexEntry {
+
+        private final long lastModified;
+        private final long length;
+        private final String plugInClassName;
+
+        private IndexEntry(long lastModified, long length, String plugInClassName) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.plugInClassName = plugInClassName;
+        }
+    }
+}
@@ -28,10 +28,13 @@ import com.bc.ceres.glevel.MultiLevelModel;
 import com.bc.ceres.glevel.MultiLevelSource;
 import com.bc.ceres.glevel.support.AbstractMultiLevelSource;
 import com.bc.jexp.ParseException;
+import com.bc.jexp.Term;
 import com.bc.jexp.impl.Tokenizer;
 import org.esa.beam.dataio.dimap.DimapProductConstants;
 import org.esa.beam.dataio.dimap.DimapProductHelpers;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.esa.beam.framework.dataop.barithm.SingleFlagSymbol;
+import org.esa.beam.jai.FlagMaskOpImage;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.VirtualBandOpImage;
@@ -262,9 +265,14 @@ public class Mask extends Band {
             final MultiLevelSource multiLevelSource = new AbstractMultiLevelSource(multiLevelModel) {
                 @Override
                 public RenderedImage createImage(int level) {
+                    final ResolutionLevel resolutionLevel = ResolutionLevel.create(getModel(), level);
+                    final SingleFlagSymbol flagSymbol = getSingleFlagSymbol(getExpression(mask), mask.getProduct());
+                    if (flagSymbol != null) {
+                        return new FlagMaskOpImage(flagSymbol.getRaster(), flagSymbol.getFlagMask(), resolutionLevel);
+                    }
                     return VirtualBandOpImage.createMask(getExpression(mask),
                                                          mask.getProduct(),
-                                                         ResolutionLevel.create(getModel(), level));
+                                                         resolutionLevel);
                 }
             };
             return new VirtualBandMultiLevelImage(multiLevelSource, getExpression(mask), mask.getProduct()) {
@@ -276,6 +284,29 @@ public class Mask extends Band {
             };
         }
 
+        /**
+         * Gets the flag symbol if the given expression only refers to a single flag of a flag band
+         * of the given product, as the expressions of the masks created for flag codings do.
+         */
+        private static SingleFlagSymbol getSingleFlagSymbol(String expression, Product product) {
+            if (StringUtils.isNullOrEmpty(expression) || product == null) {
+                return null;
+            }
+            final Term term;
+            try {
+                term = product.parseExpression(expression);
+            } catch (ParseException e) {
+                return null;
+            }
+            if (term instanceof Term.Ref && ((Term.Ref) term).getSymbol() instanceof SingleFlagSymbol) {
+                final SingleFlagSymbol symbol = (SingleFlagSymbol) ((Term.Ref) term).getSymbol();
+                if (symbol.getRaster().getProduct() == product) {
+                    return symbol;
+                }
+            }
+            return null;
+        }
+
         @Override
         public boolean canTransferMask(Mask mask, Product product) {
             final String expression = getExpression(mask);
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.ParseException;
+import com.bc.jexp.Term;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductNode;
+import org.esa.beam.framework.datamodel.ProductNodeEvent;
+import org.esa.beam.framework.datamodel.ProductNodeGroup;
+import org.esa.beam.framework.datamodel.ProductNodeListener;
+import org.esa.beam.framework.datamodel.ProductNodeListenerAdapter;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.datamodel.TiePointGrid;
+import org.esa.beam.framework.datamodel.VirtualBand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The graph of the band arithmetic expressions of a product, that is, the expressions of its virtual bands and
+ * band maths masks and the valid-pixel expressions of its rasters.
+ * <p/>
+ * The sub-terms of the expressions are identified by their structure. A boolean sub-term which refers to raster data
+ * and occurs in more than one expression is a <i>shared sub-expression</i>. Images evaluating an expression can
+ * {@link #rewrite(String, Product) rewrite} it so that the shared sub-expressions are referred to by symbols, and
+ * take the data of these symbols from the mask images of the shared sub-expressions. So each shared sub-expression
+ * is evaluated once per tile, the intermediate tiles are kept in the tile cache.
+ * <p/>
+ * The graph of a product is created on first request and kept until a raster is added to or removed from the
+ * product, or an expression or raster name changes.
+ *
+ * @since BEAM 5.0.6
+ */
+public class ExpressionGraph {
+
+    /**
+     * The system property used to switch off the evaluation of shared sub-expressions. Default is {@code true}.
+     */
+    public static final String ENABLED_PROPERTY = "beam.bandArithmetic.sharedSubexpressions";
+
+    private static final String SYMBOL_PREFIX = "_shared_";
+
+    // values must not refer to the products, otherwise the keys are never released
+    private static final Map<Product, ExpressionGraph> graphs = new WeakHashMap<>();
+    private static final ProductNodeListener invalidator = new Invalidator();
+
+    // maps the string representation of a shared term to its expression
+    private final Map<String, String> sharedSubexpressions;
+    private final Map<String, String> symbolNames;
+
+    private ExpressionGraph(Product product, List<String> expressions) {
+        this.sharedSubexpressions = new LinkedHashMap<>();
+        this.symbolNames = new HashMap<>();
+
+        final Map<String, Integer> occurrences = new LinkedHashMap<>();
+        final Map<String, Term> candidates = new HashMap<>();
+        // expressions which are shared as a whole, their images are already shared by their text
+        final Map<String, String> wholeExpressions = new HashMap<>();
+        for (String expression : expressions) {
+            final Term term = parse(expression, product);
+            if (term != null) {
+                if (!wholeExpressions.containsKey(term.toString())) {
+                    wholeExpressions.put(term.toString(), expression);
+                }
+                final Set<String> keys = new LinkedHashSet<>();
+                collectCandidates(term, keys, candidates);
+                for (String key : keys) {
+                    final Integer count = occurrences.get(key);
+                    occurrences.put(key, count == null ? 1 : count + 1);
+                }
+            }
+        }
+        final TermDecompiler decompiler = new TermDecompiler(Collections.<String, String>emptyMap());
+        for (Map.Entry<String, Integer> entry : occurrences.entrySet()) {
+            if (entry.getValue() > 1) {
+                final String key = entry.getKey();
+                try {
+                    String subexpression = wholeExpressions.get(key);
+                    if (subexpression == null) {
+                        subexpression = decompiler.decompile(candidates.get(key));
+                    }
+                    final Term term = parse(subexpression, product);
+                    if (term != null && key.equals(term.toString())) {
+                        sharedSubexpressions.put(key, subexpression);
+                        symbolNames.put(key, SYMBOL_PREFIX + symbolNames.size());
+                    }
+                } catch (IllegalArgumentException ignored) {
+                    // the term cannot be shared
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the expression graph of the given product. The graph is created anew after the expressions of the
+     * product have changed.
+     *
+     * @param product the product
+     *
+     * @return the expression graph
+     */
+    public static ExpressionGraph getInstance(Product product) {
+        synchronized (graphs) {
+            ExpressionGraph graph = graphs.get(product);
+            if (graph == null) {
+                graph = new ExpressionGraph(product, collectExpressions(product));
+                graphs.put(product, graph);
+                product.addProductNodeListener(invalidator);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * @return {@code true}, unless switched off by the system property {@link #ENABLED_PROPERTY}
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    /**
+     * @return the shared sub-expressions
+     */
+    public Collection<String> getSharedSubexpressions() {
+        return Collections.unmodifiableCollection(sharedSubexpressions.values());
+    }
+
+    /**
+     * Rewrites the given expression, so that its shared sub-expressions are referred to by symbols.
+     * The expression itself is never replaced, only its sub-terms are.
+     *
+     * @param expression the expression
+     * @param product    the product the expression refers to
+     *
+     * @return the rewritten expression, or {@code null} if the expression has no shared sub-expressions
+     */
+    public SharedExpression rewrite(String expression, Product product) {
+        if (sharedSubexpressions.isEmpty()) {
+            return null;
+        }
+        final Term term = parse(expression, product);
+        if (term == null) {
+            return null;
+        }
+        final Map<String, String> replacements = new HashMap<>();
+        for (Term child : term.getChildren()) {
+            collectReplacements(child, replacements);
+        }
+        if (replacements.isEmpty()) {
+            return null;
+        }
+        final String rewrittenExpression;
+        try {
+            rewrittenExpression = new TermDecompiler(replacements).decompile(term);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        final Map<String, String> symbols = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : replacements.entrySet()) {
+            symbols.put(entry.getValue(), sharedSubexpressions.get(entry.getKey()));
+        }
+        return new SharedExpression(rewrittenExpression, symbols);
+    }
+
+    private void collectReplacements(Term term, Map<String, String> replacements) {
+        final String key = term.toString();
+        final String symbolName = symbolNames.get(key);
+        if (symbolName != null) {
+            replacements.put(key, symbolName);
+        } else {
+            for (Term child : term.getChildren()) {
+                collectReplacements(child, replacements);
+            }
+        }
+    }
+
+    private static void collectCandidates(Term term, Set<String> keys, Map<String, Term> candidates) {
+        if (term.isB() && term.getChildren().length > 0 && !(term instanceof Term.Assign)
+            && BandArithmetic.getRefRasterDataSymbols(term).length > 0) {
+            final String key = term.toString();
+            keys.add(key);
+            if (!candidates.containsKey(key)) {
+                candidates.put(key, term);
+            }
+        }
+        for (Term child : term.getChildren()) {
+            collectCandidates(child, keys, candidates);
+        }
+    }
+
+    private static Term parse(String expression, Product product) {
+        try {
+            return product.parseExpression(expression);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static List<String> collectExpressions(Product product) {
+        final Set<String> expressions = new LinkedHashSet<>();
+        for (Band band : product.getBands()) {
+            if (band instanceof VirtualBand) {
+                addExpression(((VirtualBand) band).getExpression(), expressions);
+            }
+            addExpression(band.getValidMaskExpression(), expressions);
+        }
+        for (TiePointGrid grid : product.getTiePointGrids()) {
+            addExpression(grid.getValidMaskExpression(), expressions);
+        }
+        final ProductNodeGroup<Mask> maskGroup = product.getMaskGroup();
+        for (int i = 0; i < maskGroup.getNodeCount(); i++) {
+            final Mask mask = maskGroup.get(i);
+            if (mask.getImageType() == Mask.BandMathsType.INSTANCE) {
+                addExpression(Mask.BandMathsType.getExpression(mask), expressions);
+            }
+        }
+        return new ArrayList<>(expressions);
+    }
+
+    private static void addExpression(String expression, Set<String> expressions) {
+        if (expression != null && !expression.trim().isEmpty()) {
+            expressions.add(expression);
+        }
+    }
+
+    /*
+     * Discards the graph of a product if its expressions, or the symbols they refer to, may have changed.
+     */
+    private static class Invalidator extends ProductNodeListenerAdapter {
+
+        private static final List<String> PROPERTY_NAMES = Arrays.asList(ProductNode.PROPERTY_NAME_NAME,
+                                                                         VirtualBand.PROPERTY_NAME_EXPRESSION,
+                                                                         Mask.BandMathsType.PROPERTY_NAME_EXPRESSION,
+                                                                         RasterDataNode.PROPERTY_NAME_VALID_PIXEL_EXPRESSION);
+
+        @Override
+        public void nodeChanged(ProductNodeEvent event) {
+            if (PROPERTY_NAMES.contains(event.getPropertyName())) {
+                invalidate(event);
+            }
+        }
+
+        @Override
+        public void nodeAdded(ProductNodeEvent event) {
+            invalidate(event);
+        }
+
+        @Override
+        public void nodeRemoved(ProductNodeEvent event) {
+            invalidate(event);
+        }
+
+        private static void invalidate(ProductNodeEvent event) {
+            final ProductNode sourceNode = event.getSourceNode();
+            if (sourceNode instanceof RasterDataNode && sourceNode.getProduct() != null) {
+                synchronized (graphs) {
+                    graphs.remove(sourceNode.getProduct());
+                }
+            }
+        }
+    }
+
+    /**
+     * An expression whose shared sub-expressions are referred to by symbols.
+     */
+    public static final class SharedExpression {
+
+        private final String expression;
+        private final Map<String, String> symbols;
+
+        private SharedExpression(String expression, Map<String, String> symbols) {
+            this.expression = expression;
+            this.symbols = symbols;
+        }
+
+        /**
+         * @return the rewritten expression
+         */
+        public String getExpression() {
+            return expression;
+        }
+
+        /**
+         * @return maps the names of the symbols used in the rewritten expression to the shared sub-expressions
+         */
+        public Map<String, String> getSymbols() {
+            return Collections.unmodifiableMap(symbols);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.Tokenizer;
+
+import java.util.Map;
+
+/**
+ * Converts a {@link Term} back into the text of a band arithmetic expression, which the parser translates
+ * into an equivalent term. All operations are fully parenthesized.
+ *
+ * @since BEAM 5.0.6
+ */
+class TermDecompiler {
+
+    private final Map<String, String> replacements;
+
+    /**
+     * @param replacements maps the {@link Term#toString() string representation} of sub-terms to
+     *                     the symbol names replacing them, may be empty
+     */
+    TermDecompiler(Map<String, String> replacements) {
+        this.replacements = replacements;
+    }
+
+    /**
+     * @param term the term
+     *
+     * @return the expression
+     *
+     * @throws IllegalArgumentException if the term contains operations which cannot be expressed as text
+     */
+    String decompile(Term term) {
+        final StringBuilder sb = new StringBuilder();
+        append(term, sb);
+        return sb.toString();
+    }
+
+    private void append(Term term, StringBuilder sb) {
+        final String replacement = replacements.get(term.toString());
+        if (replacement != null) {
+            sb.append(replacement);
+        } else if (term instanceof Term.Ref) {
+            sb.append(Tokenizer.createExternalName(((Term.Ref) term).getSymbol().getName()));
+        } else if (term instanceof Term.ConstB) {
+            sb.append(((Term.ConstB) term).getValue());
+        } else if (term instanceof Term.ConstI) {
+            appendNumber(((Term.ConstI) term).getValue(), sb);
+        } else if (term instanceof Term.ConstD) {
+            final double value = ((Term.ConstD) term).getValue();
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new IllegalArgumentException("Constant cannot be decompiled: " + value);
+            }
+            appendNumber(value, sb);
+        } else if (term instanceof Term.Call) {
+            final Term.Call call = (Term.Call) term;
+            sb.append(call.getFunction().getName()).append('(');
+            final Term[] args = call.getArgs();
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                append(args[i], sb);
+            }
+            sb.append(')');
+        } else if (term instanceof Term.Cond) {
+            final Term[] args = ((Term.Cond) term).getArgs();
+            sb.append('(');
+            append(args[0], sb);
+            sb.append(" ? ");
+            append(args[1], sb);
+            sb.append(" : ");
+            append(args[2], sb);
+            sb.append(')');
+        } else if (term instanceof Term.Unary) {
+            sb.append('(').append(getOperator(term));
+            append(((Term.Unary) term).getArgs()[0], sb);
+            sb.append(')');
+        } else if (term instanceof Term.Binary && !(term instanceof Term.Assign)) {
+            final Term[] args = ((Term.Binary) term).getArgs();
+            sb.append('(');
+            append(args[0], sb);
+            sb.append(' ').append(getOperator(term)).append(' ');
+            append(args[1], sb);
+            sb.append(')');
+        } else {
+            throw new IllegalArgumentException("Term cannot be decompiled: " + term);
+        }
+    }
+
+    private static void appendNumber(Number value, StringBuilder sb) {
+        if (value.doubleValue() < 0.0) {
+            sb.append('(').append(value).append(')');
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static String getOperator(Term term) {
+        if (term instanceof Term.NotB) {
+            return "!";
+        } else if (term instanceof Term.NotI) {
+            return "~";
+        } else if (term instanceof Term.Neg) {
+            return "-";
+        } else if (term instanceof Term.AndB) {
+            return "&&";
+        } else if (term instanceof Term.OrB) {
+            return "||";
+        } else if (term instanceof Term.XOrI) {
+            return "^";
+        } else if (term instanceof Term.AndI) {
+            return "&";
+        } else if (term instanceof Term.OrI) {
+            return "|";
+        } else if (term instanceof Term.Add) {
+            return "+";
+        } else if (term instanceof Term.Sub) {
+            return "-";
+        } else if (term instanceof Term.Mul) {
+            return "*";
+        } else if (term instanceof Term.Div) {
+            return "/";
+        } else if (term instanceof Term.Mod) {
+            return "%";
+        } else if (term instanceof Term.EqB || term instanceof Term.EqI || term instanceof Term.EqD) {
+            return "==";
+        } else if (term instanceof Term.NEqB || term instanceof Term.NEqI || term instanceof Term.NEqD) {
+            return "!=";
+        } else if (term instanceof Term.LtI || term instanceof Term.LtD) {
+            return "<";
+        } else if (term instanceof Term.LeI || term instanceof Term.LeD) {
+            return "<=";
+        } else if (term instanceof Term.GtI || term instanceof Term.GtD) {
+            return ">";
+        } else if (term instanceof Term.GeI || term instanceof Term.GeD) {
+            return ">=";
+        }
+        throw new IllegalArgumentException("Term cannot be decompiled: " + term);
+    }
+}
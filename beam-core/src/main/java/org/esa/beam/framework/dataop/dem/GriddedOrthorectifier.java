@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.dem;
+
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.util.Guardian;
+
+/**
+ * An {@link Orthorectifier} which takes the corrections of the source pixel positions from an
+ * {@link OrthorectificationGrid} instead of computing them iteratively for each pixel.
+ * <p/>
+ * The true geographical positions of pixels are computed as by the standard {@link Orthorectifier}.
+ *
+ * @since BEAM 5.0.6
+ */
+public class GriddedOrthorectifier extends Orthorectifier {
+
+    private final OrthorectificationGrid grid;
+
+    /**
+     * Constructs a new <code>GriddedOrthorectifier</code>.
+     *
+     * @param orthorectifier the orthorectifier for which the grid has been created. Must not be <code>null</code>.
+     * @param grid           the grid. Must not be <code>null</code>.
+     */
+    public GriddedOrthorectifier(Orthorectifier orthorectifier, OrthorectificationGrid grid) {
+        super(orthorectifier.getSceneRasterWidth(),
+              orthorectifier.getSceneRasterHeight(),
+              orthorectifier.getPointing(),
+              orthorectifier.getElevationModel(),
+              orthorectifier.getMaxIterationCount());
+        Guardian.assertNotNull("grid", grid);
+        this.grid = grid;
+    }
+
+    public OrthorectificationGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the source pixel coordinate for a <i>true (corrected)</i> geographical coordinate, using
+     * the interpolated displacement of the grid.
+     *
+     * @param geoPos   the <i>true (corrected)</i> geographical coordinate as lat/lon.
+     * @param pixelPos an instance of <code>Point</code> to be used as return value. If this parameter is
+     *                 <code>null</code>, the method creates a new instance which it then returns.
+     *
+     * @return the source pixel coordinate
+     */
+    @Override
+    public PixelPos getPixelPos(GeoPos geoPos, PixelPos pixelPos) {
+        pixelPos = getGeoCoding().getPixelPos(geoPos, pixelPos);
+        if (isPixelPosValid(pixelPos)) {
+            grid.applyDisplacement(pixelPos);
+        }
+        return pixelPos;
+    }
+}
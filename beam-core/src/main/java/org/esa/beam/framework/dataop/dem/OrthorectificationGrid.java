@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.dataop.dem;
+
+import org.esa.beam.framework.datamodel.GeoCoding;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.esa.beam.util.Guardian;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A grid of orthorectification displacements, sub-sampled in source pixel coordinates.
+ * <p/>
+ * For a grid point, the displacement is the difference between the pixel position found by an
+ * {@link Orthorectifier} and the pixel position found by its base geo-coding for the same geographical position.
+ * Similar to a tie-point grid, the displacements between the grid points are interpolated bilinearly, so
+ * that the iterative correction of the orthorectifier is only performed at the grid points.
+ *
+ * @since BEAM 5.0.6
+ */
+public class OrthorectificationGrid {
+
+    private static final int FILE_MAGIC = 0x4f524732; // "ORG2"
+
+    private final int sceneRasterWidth;
+    private final int sceneRasterHeight;
+    private final int step;
+    private final int gridWidth;
+    private final int gridHeight;
+    private final float[] dx;
+    private final float[] dy;
+    private double maxError;
+
+    private OrthorectificationGrid(int sceneRasterWidth, int sceneRasterHeight, int step) {
+        this.sceneRasterWidth = sceneRasterWidth;
+        this.sceneRasterHeight = sceneRasterHeight;
+        this.step = step;
+        this.gridWidth = getGridSize(sceneRasterWidth, step);
+        this.gridHeight = getGridSize(sceneRasterHeight, step);
+        this.dx = new float[gridWidth * gridHeight];
+        this.dy = new float[gridWidth * gridHeight];
+        this.maxError = Double.NaN;
+    }
+
+    /**
+     * Creates the grid for the given orthorectifier. The grid points are computed concurrently, so the
+     * orthorectifier and its elevation model must support concurrent calls of {@code getPixelPos}.
+     *
+     * @param orthorectifier the orthorectifier performing the exact correction
+     * @param step           the distance of the grid points in source pixels. Must be greater than zero.
+     * @param parallelism    the number of threads used
+     *
+     * @return the grid
+     */
+    public static OrthorectificationGrid create(final Orthorectifier orthorectifier, int step, int parallelism) {
+        Guardian.assertNotNull("orthorectifier", orthorectifier);
+        Guardian.assertGreaterThan("step", step, 0);
+        final OrthorectificationGrid grid = new OrthorectificationGrid(orthorectifier.getSceneRasterWidth(),
+                                                                       orthorectifier.getSceneRasterHeight(),
+                                                                       step);
+        final List<Callable<Double>> tasks = new ArrayList<>(grid.gridHeight);
+        for (int j = 0; j < grid.gridHeight; j++) {
+            final int gridY = j;
+            tasks.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    grid.computeRow(orthorectifier, gridY);
+                    return 0.0;
+                }
+            });
+        }
+        invokeAll(tasks, parallelism);
+        return grid;
+    }
+
+    /**
+     * Reads a grid written by {@link #write(File)}.
+     *
+     * @param file the file
+     *
+     * @return the grid
+     *
+     * @throws IOException if the file cannot be read or is not a grid file
+     */
+    public static OrthorectificationGrid read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != FILE_MAGIC) {
+                throw new IOException("Not an orthorectification grid file: " + file);
+            }
+            final int sceneRasterWidth = input.readInt();
+            final int sceneRasterHeight = input.readInt();
+            final int step = input.readInt();
+            final double maxError = input.readDouble();
+            if (sceneRasterWidth <= 0 || sceneRasterHeight <= 0 || step <= 0) {
+                throw new IOException("Invalid orthorectification grid file: " + file);
+            }
+            final OrthorectificationGrid grid = new OrthorectificationGrid(sceneRasterWidth, sceneRasterHeight, step);
+            grid.maxError = maxError;
+            for (int i = 0; i < grid.dx.length; i++) {
+                grid.dx[i] = input.readFloat();
+            }
+            for (int i = 0; i < grid.dy.length; i++) {
+                grid.dy[i] = input.readFloat();
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Writes this grid to the given file.
+     *
+     * @param file the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(sceneRasterWidth);
+            output.writeInt(sceneRasterHeight);
+            output.writeInt(step);
+            output.writeDouble(maxError);
+            for (float value : dx) {
+                output.writeFloat(value);
+            }
+            for (float value : dy) {
+                output.writeFloat(value);
+            }
+        }
+    }
+
+    public int getSceneRasterWidth() {
+        return sceneRasterWidth;
+    }
+
+    public int getSceneRasterHeight() {
+        return sceneRasterHeight;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * @return the maximum interpolation error computed by {@link #computeMaxError(Orthorectifier, int)}, which is
+     *         also written to and read from grid files, or {@code NaN} if it has not been computed
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Adds the interpolated displacement to the given pixel position. If the displacement is not known
+     * at the given position, the pixel position is set invalid.
+     *
+     * @param pixelPos the pixel position found by the base geo-coding
+     */
+    public void applyDisplacement(PixelPos pixelPos) {
+        final float gx = Math.max(0.0f, Math.min(sceneRasterWidth, pixelPos.x));
+        final float gy = Math.max(0.0f, Math.min(sceneRasterHeight, pixelPos.y));
+        final int i = Math.min((int) (gx / step), gridWidth - 2);
+        final int j = Math.min((int) (gy / step), gridHeight - 2);
+        final float x0 = getGridCoordinate(i, sceneRasterWidth);
+        final float y0 = getGridCoordinate(j, sceneRasterHeight);
+        final float wx = (gx - x0) / (getGridCoordinate(i + 1, sceneRasterWidth) - x0);
+        final float wy = (gy - y0) / (getGridCoordinate(j + 1, sceneRasterHeight) - y0);
+        final int index = j * gridWidth + i;
+        final float deltaX = interpolate(dx, index, wx, wy);
+        final float deltaY = interpolate(dy, index, wx, wy);
+        if (Float.isNaN(deltaX) || Float.isNaN(deltaY)) {
+            pixelPos.setInvalid();
+        } else {
+            pixelPos.x += deltaX;
+            pixelPos.y += deltaY;
+        }
+    }
+
+    /**
+     * Computes the maximum distance in source pixels between the pixel positions found by the given orthorectifier
+     * and the pixel positions found by interpolation. The distance is evaluated at the centre of each grid cell,
+     * where the interpolation error is expected to be largest. The result is kept, see {@link #getMaxError()}.
+     *
+     * @param orthorectifier the orthorectifier performing the exact correction
+     * @param parallelism    the number of threads used
+     *
+     * @return the maximum distance, zero if no cell centre could be evaluated
+     */
+    public double computeMaxError(final Orthorectifier orthorectifier, int parallelism) {
+        final List<Callable<Double>> tasks = new ArrayList<>(gridHeight - 1);
+        for (int j = 0; j < gridHeight - 1; j++) {
+            final int gridY = j;
+            tasks.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return computeRowError(orthorectifier, gridY);
+                }
+            });
+        }
+        double maxError = 0.0;
+        for (Double error : invokeAll(tasks, parallelism)) {
+            maxError = Math.max(maxError, error);
+        }
+        this.maxError = maxError;
+        return maxError;
+    }
+
+    private void computeRow(Orthorectifier orthorectifier, int j) {
+        final GeoCoding geoCoding = orthorectifier.getGeoCoding();
+        final PixelPos gridPixelPos = new PixelPos();
+        final PixelPos pixelPos = new PixelPos();
+        final PixelPos correctedPixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        for (int i = 0; i < gridWidth; i++) {
+            gridPixelPos.setLocation(getGridCoordinate(i, sceneRasterWidth), getGridCoordinate(j, sceneRasterHeight));
+            final int index = j * gridWidth + i;
+            dx[index] = Float.NaN;
+            dy[index] = Float.NaN;
+            geoCoding.getGeoPos(gridPixelPos, geoPos);
+            if (geoPos.isValid()) {
+                geoCoding.getPixelPos(geoPos, pixelPos);
+                orthorectifier.getPixelPos(geoPos, correctedPixelPos);
+                if (pixelPos.isValid() && correctedPixelPos.isValid()) {
+                    dx[index] = correctedPixelPos.x - pixelPos.x;
+                    dy[index] = correctedPixelPos.y - pixelPos.y;
+                }
+            }
+        }
+    }
+
+    private double computeRowError(Orthorectifier orthorectifier, int j) {
+        final GeoCoding geoCoding = orthorectifier.getGeoCoding();
+        final PixelPos centrePixelPos = new PixelPos();
+        final PixelPos pixelPos = new PixelPos();
+        final PixelPos correctedPixelPos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        final float y = 0.5f * (getGridCoordinate(j, sceneRasterHeight) + getGridCoordinate(j + 1, sceneRasterHeight));
+        double maxError = 0.0;
+        for (int i = 0; i < gridWidth - 1; i++) {
+            final float x = 0.5f * (getGridCoordinate(i, sceneRasterWidth) + getGridCoordinate(i + 1, sceneRasterWidth));
+            centrePixelPos.setLocation(x, y);
+            geoCoding.getGeoPos(centrePixelPos, geoPos);
+            if (!geoPos.isValid()) {
+                continue;
+            }
+            geoCoding.getPixelPos(geoPos, pixelPos);
+            if (!pixelPos.isValid()) {
+                continue;
+            }
+            applyDisplacement(pixelPos);
+            orthorectifier.getPixelPos(geoPos, correctedPixelPos);
+            if (pixelPos.isValid() && correctedPixelPos.isValid()) {
+                maxError = Math.max(maxError, pixelPos.distance(correctedPixelPos));
+            }
+        }
+        return maxError;
+    }
+
+    private float getGridCoordinate(int gridIndex, int sceneRasterSize) {
+        return Math.min(gridIndex * step, sceneRasterSize);
+    }
+
+    private float interpolate(float[] values, int index, float wx, float wy) {
+        final float v00 = values[index];
+        final float v10 = values[index + 1];
+        final float v01 = values[index + gridWidth];
+        final float v11 = values[index + gridWidth + 1];
+        return (1.0f - wy) * ((1.0f - wx) * v00 + wx * v10) + wy * ((1.0f - wx) * v01 + wx * v11);
+    }
+
+    private static int getGridSize(int sceneRasterSize, int step) {
+        // the last grid point lies on the scene border
+        return (sceneRasterSize + step - 1) / step + 1;
+    }
+
+    private static List<Double> invokeAll(List<Callable<Double>> tasks, int parallelism) {
+        final List<Double> results = new ArrayList<>(tasks.size());
+        if (parallelism <= 1) {
+            for (Callable<Double> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return results;
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "orthorectification-grid");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (Future<Double> future : executorService.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executorService.shutdownNow();
+        }
+        return results;
+    }
+}
@@ -135,6 +135,22 @@ public class Orthorectifier implements GeoCoding {
         return imageToMapTransform;
     }
 
+    /**
+     * @return the scene raster width of the product which uses this orthorectifier as geo coding
+     * @since BEAM 5.0.6
+     */
+    public int getSceneRasterWidth() {
+        return sceneRasterWidth;
+    }
+
+    /**
+     * @return the scene raster height of the product which uses this orthorectifier as geo coding
+     * @since BEAM 5.0.6
+     */
+    public int getSceneRasterHeight() {
+        return sceneRasterHeight;
+    }
+
     public Pointing getPointing() {
         return pointing;
     }
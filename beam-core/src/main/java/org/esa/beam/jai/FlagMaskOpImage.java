@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.jai;
+
+import com.bc.ceres.core.Assert;
+import com.bc.ceres.jai.NoDataRaster;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+
+import javax.media.jai.PlanarImage;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * An {@code OpImage} which computes the mask of a single flag of a flag band at a given pyramid level.
+ * <p/>
+ * Equivalent to a {@link VirtualBandOpImage} mask created for the expression {@code <flagBand>.<flagName>}, but
+ * without parsing and interpreting the expression. The raw tiles of the flag band are read from the flag band's
+ * source image, so all flag masks of a flag band share the tiles decoded once and kept in the tile cache.
+ *
+ * @since BEAM 5.0.6
+ */
+public class FlagMaskOpImage extends SingleBandedOpImage {
+
+    private static final int TRUE = 255;
+    private static final int FALSE = 0;
+
+    private final RasterDataNode flagBand;
+    private final int flagMask;
+
+    private volatile NoDataRaster noDataRaster;
+
+    /**
+     * Constructs a new image.
+     *
+     * @param flagBand the flag band
+     * @param flagMask the mask of the flag, a pixel is set if all bits of the mask are set in the flag band
+     * @param level    the resolution level
+     */
+    public FlagMaskOpImage(RasterDataNode flagBand, int flagMask, ResolutionLevel level) {
+        super(DataBuffer.TYPE_BYTE,
+              flagBand.getSceneRasterWidth(),
+              flagBand.getSceneRasterHeight(),
+              flagBand.getProduct().getPreferredTileSize(),
+              null,
+              level);
+        Assert.notNull(level, "level");
+        this.flagBand = flagBand;
+        this.flagMask = flagMask;
+    }
+
+    public RasterDataNode getFlagBand() {
+        return flagBand;
+    }
+
+    public int getFlagMask() {
+        return flagMask;
+    }
+
+    @Override
+    public Raster computeTile(int tileX, int tileY) {
+        final Rectangle destRect = getTileRect(tileX, tileY);
+        final Raster flagRaster = getFlagRaster(tileX, tileY, destRect);
+        if (flagRaster instanceof NoDataRaster) {
+            if (noDataRaster == null) {
+                synchronized (this) {
+                    if (noDataRaster == null) {
+                        noDataRaster = createNoDataRaster(FALSE);
+                    }
+                }
+            }
+            return noDataRaster.createTranslatedChild(tileXToX(tileX), tileYToY(tileY));
+        }
+
+        final WritableRaster dest = createWritableRaster(getSampleModel(), new Point(tileXToX(tileX), tileYToY(tileY)));
+        final int[] samples = flagRaster.getSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0,
+                                                    (int[]) null);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (samples[i] & flagMask) == flagMask ? TRUE : FALSE;
+        }
+        dest.setSamples(destRect.x, destRect.y, destRect.width, destRect.height, 0, samples);
+        return dest;
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster, Rectangle destRect) {
+        // not used, computeTile() computes the tiles directly
+    }
+
+    private Raster getFlagRaster(int tileX, int tileY, Rectangle destRect) {
+        final RenderedImage flagImage = ImageManager.getInstance().getSourceImage(flagBand, getLevel());
+        if (flagImage.getTileWidth() == getTileWidth() && flagImage.getTileHeight() == getTileHeight()
+            && flagImage.getTileGridXOffset() == getTileGridXOffset()
+            && flagImage.getTileGridYOffset() == getTileGridYOffset()) {
+            // same tiling, use the tile without copying it
+            return flagImage.getTile(tileX, tileY);
+        }
+        return flagImage.getData(destRect);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.jai;
+
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A single file holding all raw data tiles of an image, as an alternative to one file per tile.
+ * <p/>
+ * The file starts with a header giving the tile grid size and the compression, followed by an index
+ * holding the position, the stored length and the raw length of each tile. The (optionally compressed)
+ * raw tile data follows the index in arbitrary order. All values are stored in big endian byte order,
+ * the raw tile data is stored as written by {@link TiledFileOpImage#writeRawDataTile}.
+ * <p/>
+ * Tiles are read by positional access, the file is memory-mapped if its size permits it.
+ * Instances of this class are thread safe.
+ *
+ * @see TileContainerWriter
+ */
+public class TileContainerFile {
+
+    /**
+     * The tile format name used in the image header of images stored in a tile container.
+     */
+    public static final String TILE_FORMAT = "raw.rtc";
+    /**
+     * The name of the tile container file within an image (level) directory.
+     */
+    public static final String FILE_NAME = "tiles.rtc";
+
+    public static final int COMPRESSION_NONE = 0;
+    public static final int COMPRESSION_DEFLATE = 1;
+
+    static final int MAGIC = 0x52544343; // "RTCC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5 * 4;
+    static final int INDEX_ENTRY_SIZE = 8 + 4 + 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer mappedBuffer;
+    private final int compression;
+    private final int numXTiles;
+    private final int numYTiles;
+    private final long[] tilePositions;
+    private final int[] tileLengths;
+    private final int[] tileRawLengths;
+
+    private TileContainerFile(FileChannel channel, int compression, int numXTiles, int numYTiles) throws IOException {
+        this.channel = channel;
+        this.compression = compression;
+        this.numXTiles = numXTiles;
+        this.numYTiles = numYTiles;
+        final int numTiles = numXTiles * numYTiles;
+        tilePositions = new long[numTiles];
+        tileLengths = new int[numTiles];
+        tileRawLengths = new int[numTiles];
+        final ByteBuffer index = ByteBuffer.allocate(numTiles * INDEX_ENTRY_SIZE);
+        readFully(channel, HEADER_SIZE, index);
+        for (int i = 0; i < numTiles; i++) {
+            tilePositions[i] = index.getLong();
+            tileLengths[i] = index.getInt();
+            tileRawLengths[i] = index.getInt();
+        }
+        if (channel.size() <= Integer.MAX_VALUE) {
+            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } else {
+            mappedBuffer = null;
+        }
+    }
+
+    /**
+     * Opens a tile container file for reading.
+     *
+     * @param file The file.
+     *
+     * @return The tile container.
+     *
+     * @throws IOException If the file cannot be opened or is not a tile container file.
+     */
+    public static TileContainerFile open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, 0, header);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a tile container file: " + file);
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported tile container version " + version + ": " + file);
+            }
+            final int compression = header.getInt();
+            if (compression != COMPRESSION_NONE && compression != COMPRESSION_DEFLATE) {
+                throw new IOException("Unsupported tile container compression " + compression + ": " + file);
+            }
+            final int numXTiles = header.getInt();
+            final int numYTiles = header.getInt();
+            return new TileContainerFile(channel, compression, numXTiles, numYTiles);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    public int getNumXTiles() {
+        return numXTiles;
+    }
+
+    public int getNumYTiles() {
+        return numYTiles;
+    }
+
+    /**
+     * Reads the data of a tile into the data buffer of the given raster.
+     *
+     * @param tileX  The tile X index.
+     * @param tileY  The tile Y index.
+     * @param raster The raster to read into.
+     *
+     * @throws IOException If an I/O error occurs or the tile has not been written.
+     */
+    public void readTile(int tileX, int tileY, WritableRaster raster) throws IOException {
+        final int tileIndex = getTileIndex(tileX, tileY);
+        final long position = tilePositions[tileIndex];
+        final int length = tileLengths[tileIndex];
+        final int rawLength = tileRawLengths[tileIndex];
+        if (position < 0) {
+            throw new IOException("Tile " + tileX + "," + tileY + " has not been written.");
+        }
+        ByteBuffer tileData;
+        if (mappedBuffer != null) {
+            tileData = mappedBuffer.duplicate();
+            tileData.position((int) position);
+            tileData.limit((int) position + length);
+        } else {
+            tileData = ByteBuffer.allocate(length);
+            readFully(channel, position, tileData);
+        }
+        if (compression == COMPRESSION_DEFLATE) {
+            tileData = inflate(tileData, rawLength);
+        }
+        tileData.order(ByteOrder.BIG_ENDIAN);
+        copyFromBytes(tileData, TiledFileOpImage.getDataObject(raster));
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    int getTileIndex(int tileX, int tileY) {
+        if (tileX < 0 || tileX >= numXTiles || tileY < 0 || tileY >= numYTiles) {
+            throw new IllegalArgumentException("Tile index out of bounds: " + tileX + "," + tileY);
+        }
+        return tileY * numXTiles + tileX;
+    }
+
+    static byte[] toBytes(Raster raster) {
+        final Object dataObject = TiledFileOpImage.getDataObject(raster);
+        final ByteBuffer buffer;
+        if (dataObject instanceof byte[]) {
+            return ((byte[]) dataObject).clone();
+        } else if (dataObject instanceof short[]) {
+            final short[] data = (short[]) dataObject;
+            buffer = ByteBuffer.allocate(data.length * 2);
+            buffer.asShortBuffer().put(data);
+        } else if (dataObject instanceof int[]) {
+            final int[] data = (int[]) dataObject;
+            buffer = ByteBuffer.allocate(data.length * 4);
+            buffer.asIntBuffer().put(data);
+        } else if (dataObject instanceof float[]) {
+            final float[] data = (float[]) dataObject;
+            buffer = ByteBuffer.allocate(data.length * 4);
+            buffer.asFloatBuffer().put(data);
+        } else if (dataObject instanceof double[]) {
+            final double[] data = (double[]) dataObject;
+            buffer = ByteBuffer.allocate(data.length * 8);
+            buffer.asDoubleBuffer().put(data);
+        } else {
+            throw new IllegalArgumentException(
+                    "raster: Unexpected type returned by raster.getDataBuffer().getData(): " + dataObject);
+        }
+        return buffer.array();
+    }
+
+    static void copyFromBytes(ByteBuffer buffer, Object dataObject) throws IOException {
+        if (dataObject instanceof byte[]) {
+            final byte[] data = (byte[]) dataObject;
+            checkLength(buffer, data.length);
+            buffer.get(data, 0, data.length);
+        } else if (dataObject instanceof short[]) {
+            final short[] data = (short[]) dataObject;
+            checkLength(buffer, data.length * 2);
+            buffer.asShortBuffer().get(data, 0, data.length);
+        } else if (dataObject instanceof int[]) {
+            final int[] data = (int[]) dataObject;
+            checkLength(buffer, data.length * 4);
+            buffer.asIntBuffer().get(data, 0, data.length);
+        } else if (dataObject instanceof float[]) {
+            final float[] data = (float[]) dataObject;
+            checkLength(buffer, data.length * 4);
+            buffer.asFloatBuffer().get(data, 0, data.length);
+        } else if (dataObject instanceof double[]) {
+            final double[] data = (double[]) dataObject;
+            checkLength(buffer, data.length * 8);
+            buffer.asDoubleBuffer().get(data, 0, data.length);
+        } else {
+            throw new IllegalArgumentException(
+                    "raster: Unexpected type returned by raster.getDataBuffer().getData(): " + dataObject);
+        }
+    }
+
+    static byte[] deflate(byte[] rawData) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(rawData);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, rawData.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    final byte[] newBuffer = new byte[2 * buffer.length];
+                    System.arraycopy(buffer, 0, newBuffer, 0, length);
+                    buffer = newBuffer;
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            final byte[] compressedData = new byte[length];
+            System.arraycopy(buffer, 0, compressedData, 0, length);
+            return compressedData;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static ByteBuffer inflate(ByteBuffer compressedData, int rawLength) throws IOException {
+        final byte[] input = new byte[compressedData.remaining()];
+        compressedData.get(input);
+        final byte[] output = new byte[rawLength];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                final int n = inflater.inflate(output, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("Corrupt tile data, expected " + rawLength + " bytes but got " + length + ".");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt tile data.", e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(output);
+    }
+
+    static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of tile container file at position " + position);
+            }
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private static void checkLength(ByteBuffer buffer, int expectedLength) throws IOException {
+        if (buffer.remaining() < expectedLength) {
+            throw new EOFException("Tile data too short, expected " + expectedLength
+                                   + " bytes but got " + buffer.remaining() + ".");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.jai;
+
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the tiles of an image into a single {@link TileContainerFile}.
+ * <p/>
+ * {@link #writeTile} may be called concurrently from multiple threads, tiles may be written in any order.
+ * Tiles are serialised and compressed by the calling thread and then appended to the file using positional
+ * writes. The tile index is written when the writer is {@link #close() closed}, which requires all tiles to
+ * have been written. A container which cannot be completed is removed by {@link #abort()}.
+ */
+public class TileContainerWriter {
+
+    private final File file;
+    private final FileChannel channel;
+    private final int compression;
+    private final int numXTiles;
+    private final int numYTiles;
+    private final long[] tilePositions;
+    private final int[] tileLengths;
+    private final int[] tileRawLengths;
+    private final AtomicLong nextPosition;
+    private boolean closed;
+
+    public TileContainerWriter(File file, int numXTiles, int numYTiles, int compression) throws IOException {
+        if (compression != TileContainerFile.COMPRESSION_NONE && compression != TileContainerFile.COMPRESSION_DEFLATE) {
+            throw new IllegalArgumentException("compression");
+        }
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.WRITE);
+        this.compression = compression;
+        this.numXTiles = numXTiles;
+        this.numYTiles = numYTiles;
+        final int numTiles = numXTiles * numYTiles;
+        tilePositions = new long[numTiles];
+        tileLengths = new int[numTiles];
+        tileRawLengths = new int[numTiles];
+        Arrays.fill(tilePositions, -1L);
+        nextPosition = new AtomicLong(TileContainerFile.HEADER_SIZE + (long) numTiles * TileContainerFile.INDEX_ENTRY_SIZE);
+    }
+
+    /**
+     * Writes the data of the given tile raster.
+     *
+     * @param tileX  The tile X index.
+     * @param tileY  The tile Y index.
+     * @param raster The tile raster.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTile(int tileX, int tileY, Raster raster) throws IOException {
+        if (tileX < 0 || tileX >= numXTiles || tileY < 0 || tileY >= numYTiles) {
+            throw new IllegalArgumentException("Tile index out of bounds: " + tileX + "," + tileY);
+        }
+        final byte[] rawData = TileContainerFile.toBytes(raster);
+        final byte[] tileData;
+        if (compression == TileContainerFile.COMPRESSION_DEFLATE) {
+            tileData = TileContainerFile.deflate(rawData);
+        } else {
+            tileData = rawData;
+        }
+        final long position = nextPosition.getAndAdd(tileData.length);
+        writeFully(ByteBuffer.wrap(tileData), position);
+        final int tileIndex = tileY * numXTiles + tileX;
+        synchronized (this) {
+            tilePositions[tileIndex] = position;
+            tileLengths[tileIndex] = tileData.length;
+            tileRawLengths[tileIndex] = rawData.length;
+        }
+    }
+
+    /**
+     * Writes the header and the tile index and closes the file. If not all tiles have been written,
+     * the file is deleted instead, so that an incomplete container is never taken for a valid one.
+     *
+     * @throws IOException If an I/O error occurs or if tiles are missing.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        for (int i = 0; i < tilePositions.length; i++) {
+            if (tilePositions[i] < 0) {
+                abort();
+                throw new IOException("Tile " + (i % numXTiles) + "," + (i / numXTiles) + " has not been written, "
+                                      + "deleted incomplete tile container " + file);
+            }
+        }
+        closed = true;
+        try {
+            final int numTiles = numXTiles * numYTiles;
+            final ByteBuffer buffer = ByteBuffer.allocate(TileContainerFile.HEADER_SIZE
+                                                          + numTiles * TileContainerFile.INDEX_ENTRY_SIZE);
+            buffer.putInt(TileContainerFile.MAGIC);
+            buffer.putInt(TileContainerFile.VERSION);
+            buffer.putInt(compression);
+            buffer.putInt(numXTiles);
+            buffer.putInt(numYTiles);
+            for (int i = 0; i < numTiles; i++) {
+                buffer.putLong(tilePositions[i]);
+                buffer.putInt(tileLengths[i]);
+                buffer.putInt(tileRawLengths[i]);
+            }
+            buffer.flip();
+            writeFully(buffer, 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes and deletes the file without writing the tile index. Does nothing if the writer has already
+     * been closed.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            if (!file.delete() && file.exists()) {
+                throw new IOException("Failed to delete incomplete tile container " + file);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
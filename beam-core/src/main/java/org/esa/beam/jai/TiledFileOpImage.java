@@ -53,6 +53,7 @@ public class TiledFileOpImage extends SourcelessOpImage {
     private ImageInputStreamFactory inputStreamFactory;
     private boolean disposed;
     private ImageHeader imageHeader;
+    private TileContainerFile tileContainer;
 
     public static TiledFileOpImage create(File imageDir, Properties defaultImageProperties) throws IOException {
         final VirtualDir dir = VirtualDir.create(imageDir);
@@ -75,7 +76,10 @@ public class TiledFileOpImage extends SourcelessOpImage {
               imageHeader.getImageLayout().getHeight(null));
         this.imageDir = imageDir;
         this.imageHeader = imageHeader;
-        if (this.imageHeader.getTileFormat().equalsIgnoreCase("raw.zip")) {
+        if (this.imageHeader.getTileFormat().equalsIgnoreCase(TileContainerFile.TILE_FORMAT)) {
+            // resolved through the virtual directory, which extracts the container if the product is zipped
+            tileContainer = TileContainerFile.open(imageDir.getFile(TileContainerFile.FILE_NAME));
+        } else if (this.imageHeader.getTileFormat().equalsIgnoreCase("raw.zip")) {
             inputStreamFactory = new RawZipImageInputStreamFactory();
         } else if (this.imageHeader.getTileFormat().equalsIgnoreCase("raw")) {
             inputStreamFactory = new RawImageInputStreamFactory();
@@ -127,6 +131,10 @@ public class TiledFileOpImage extends SourcelessOpImage {
     }
 
     private void readRawDataTile(int tileX, int tileY, WritableRaster targetRaster) throws IOException {
+        if (tileContainer != null) {
+            tileContainer.readTile(tileX, tileY, targetRaster);
+            return;
+        }
         final ImageInputStream imageInputStream = inputStreamFactory.createImageInputStream(tileX, tileY);
         try {
             readRawDataTile(imageInputStream, targetRaster);
@@ -252,6 +260,14 @@ public class TiledFileOpImage extends SourcelessOpImage {
         }
         disposed = true;
         inputStreamFactory = null;
+        if (tileContainer != null) {
+            try {
+                tileContainer.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            tileContainer = null;
+        }
         super.dispose();
     }
 
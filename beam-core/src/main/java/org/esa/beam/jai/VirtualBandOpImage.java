@@ -18,12 +18,18 @@ package org.esa.beam.jai;
 
 import com.bc.ceres.core.Assert;
 import com.bc.ceres.jai.NoDataRaster;
+import com.bc.jexp.EvalEnv;
+import com.bc.jexp.EvalException;
 import com.bc.jexp.ParseException;
+import com.bc.jexp.Symbol;
 import com.bc.jexp.Term;
+import com.bc.jexp.WritableNamespace;
+import com.bc.jexp.impl.ParserImpl;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.datamodel.RasterDataNode;
 import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+import org.esa.beam.framework.dataop.barithm.ExpressionGraph;
 import org.esa.beam.framework.dataop.barithm.RasterDataEvalEnv;
 import org.esa.beam.framework.dataop.barithm.RasterDataSymbol;
 import org.esa.beam.util.ImageUtils;
@@ -36,6 +42,8 @@ import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -55,6 +63,7 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
     private final boolean mask;
     private final Product[] products;
     private final int defaultProductIndex;
+    private final ExpressionGraph.SharedExpression sharedExpression;
     private final Map<Point, Term> termMap = new ConcurrentHashMap<Point, Term>();
 
     private volatile NoDataRaster noDataRaster;
@@ -172,6 +181,12 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
         this.products = products;
         this.defaultProductIndex = defaultProductIndex;
         this.fillValue = fillValue;
+        if (ExpressionGraph.isEnabled()) {
+            final Product product = products[defaultProductIndex];
+            this.sharedExpression = ExpressionGraph.getInstance(product).rewrite(expression, product);
+        } else {
+            this.sharedExpression = null;
+        }
     }
 
     public String getExpression() {
@@ -269,7 +284,16 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
     private Term parseExpression() {
         final Term term;
         try {
-            term = BandArithmetic.parseExpression(expression, products, defaultProductIndex);
+            if (sharedExpression != null) {
+                // shared sub-expressions are taken from their mask images
+                final WritableNamespace namespace = BandArithmetic.createDefaultNamespace(products, defaultProductIndex);
+                for (Map.Entry<String, String> entry : sharedExpression.getSymbols().entrySet()) {
+                    namespace.registerSymbol(new SharedSubexpressionSymbol(entry.getKey(), entry.getValue()));
+                }
+                term = new ParserImpl(namespace, false).parse(sharedExpression.getExpression());
+            } else {
+                term = BandArithmetic.parseExpression(expression, products, defaultProductIndex);
+            }
         } catch (ParseException e) {
             throw new RuntimeException(MessageFormat.format(
                     "Could not parse expression: ''{0}''. {1}", expression, e.getMessage()), e);
@@ -296,19 +320,98 @@ public class VirtualBandOpImage extends SingleBandedOpImage {
                 sourceImage = ImageManager.getInstance().getSourceImage(rasterDataNode, getLevel());
                 dataType = rasterDataNode.getDataType();
             }
-            final Raster sourceRaster = sourceImage.getData(destRect);
-            if (sourceRaster instanceof NoDataRaster) {
+            final DataBuffer dataBuffer = getDataBuffer(sourceImage, destRect);
+            if (dataBuffer == null) {
                 return false;
             }
-            DataBuffer dataBuffer = sourceRaster.getDataBuffer();
-            if (dataBuffer.getSize() != destRect.width * destRect.height) {
-                final WritableRaster writableRaster = sourceRaster.createCompatibleWritableRaster(destRect);
-                sourceImage.copyData(writableRaster);
-                dataBuffer = writableRaster.getDataBuffer();
-            }
             symbol.setData(ProductData.createInstance(dataType, ImageUtils.getPrimitiveArray(dataBuffer)));
         }
+        if (sharedExpression != null) {
+            final List<SharedSubexpressionSymbol> symbols = new ArrayList<>();
+            collectSharedSubexpressionSymbols(term, symbols);
+            for (SharedSubexpressionSymbol symbol : symbols) {
+                final RenderedImage maskImage = ImageManager.getInstance().getMaskImage(products[defaultProductIndex],
+                                                                                         symbol.subexpression,
+                                                                                         getLevel());
+                final DataBuffer dataBuffer = getDataBuffer(maskImage, destRect);
+                if (dataBuffer == null) {
+                    return false;
+                }
+                symbol.data = (byte[]) ImageUtils.getPrimitiveArray(dataBuffer);
+            }
+        }
         return true;
     }
 
+    private static DataBuffer getDataBuffer(RenderedImage sourceImage, Rectangle destRect) {
+        final Raster sourceRaster = sourceImage.getData(destRect);
+        if (sourceRaster instanceof NoDataRaster) {
+            return null;
+        }
+        DataBuffer dataBuffer = sourceRaster.getDataBuffer();
+        if (dataBuffer.getSize() != destRect.width * destRect.height) {
+            final WritableRaster writableRaster = sourceRaster.createCompatibleWritableRaster(destRect);
+            sourceImage.copyData(writableRaster);
+            dataBuffer = writableRaster.getDataBuffer();
+        }
+        return dataBuffer;
+    }
+
+    private static void collectSharedSubexpressionSymbols(Term term, List<SharedSubexpressionSymbol> symbols) {
+        if (term instanceof Term.Ref && ((Term.Ref) term).getSymbol() instanceof SharedSubexpressionSymbol) {
+            final SharedSubexpressionSymbol symbol = (SharedSubexpressionSymbol) ((Term.Ref) term).getSymbol();
+            if (!symbols.contains(symbol)) {
+                symbols.add(symbol);
+            }
+        }
+        for (Term child : term.getChildren()) {
+            collectSharedSubexpressionSymbols(child, symbols);
+        }
+    }
+
+    /**
+     * A symbol whose data are taken from the mask image of a shared sub-expression.
+     */
+    private static final class SharedSubexpressionSymbol implements Symbol {
+
+        private final String name;
+        private final String subexpression;
+        private byte[] data;
+
+        private SharedSubexpressionSymbol(String name, String subexpression) {
+            this.name = name;
+            this.subexpression = subexpression;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getRetType() {
+            return Term.TYPE_B;
+        }
+
+        @Override
+        public boolean evalB(EvalEnv env) throws EvalException {
+            return data[((RasterDataEvalEnv) env).getElemIndex()] != 0;
+        }
+
+        @Override
+        public int evalI(EvalEnv env) throws EvalException {
+            return evalB(env) ? 1 : 0;
+        }
+
+        @Override
+        public double evalD(EvalEnv env) throws EvalException {
+            return evalB(env) ? 1.0 : 0.0;
+        }
+
+        @Override
+        public String evalS(EvalEnv env) throws EvalException {
+            return Boolean.toString(evalB(env));
+        }
+    }
+
 }
\ No newline at end of file
@@ -3,7 +3,8 @@ package org.esa.beam.nn;
 /**
  * This class serves for defining a structure containing the output of a NN together
  * with the corresponding Jacobi matrix. An instance of this class is returned by the
- * {@link org.esa.beam.nn.NNffbpAlphaTabFast#calcJacobi(double[])} method.
+ * {@link org.esa.beam.nn.NNffbpAlphaTabFast#calcJacobi(double[])} and
+ * {@link org.esa.beam.nn.NNffbpAlphaTabEvaluator#calcJacobi(double[])} methods.
  *
  * @author K. Schiller
  *         Copyright GKSS/KOF
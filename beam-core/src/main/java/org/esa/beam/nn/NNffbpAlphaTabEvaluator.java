@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.nn;
+
+/**
+ * Computes the outputs of a {@link NNffbpAlphaTabNet}, either for a single input vector or for a batch
+ * of input vectors, e.g. all pixels of a tile.
+ * <p/>
+ * For batches the vectors are stored variable by variable in flat arrays, i.e. the value of input
+ * variable {@code i} of vector {@code k} is at index {@code i * n + k}, where {@code n} is the number of
+ * vectors. Outputs are stored in the same way, Jacobi matrices at index {@code (o * numInputs + i) * n + k}
+ * for the derivative of output {@code o} with respect to input {@code i}. The signals of a plane are
+ * computed for a block of vectors as a matrix-matrix product, so that each weight is loaded once for
+ * several vectors. The results are identical to those computed for single vectors.
+ * <p/>
+ * An evaluator keeps the signals of the neurons in buffers. Large batches are computed in blocks, so the
+ * buffers are small. An evaluator is cheap to create, but must not be used by more than one thread at a time.
+ *
+ * @since BEAM 5.0.6
+ */
+public final class NNffbpAlphaTabEvaluator {
+
+    // the number of vectors computed at once, so that the signals of all planes stay in the CPU cache
+    private static final int BLOCK_SIZE = 64;
+
+    private final NNffbpAlphaTabNet net;
+    private final double[] inmin;
+    private final double[] inmax;
+    private final double[] outmin;
+    private final double[] outmax;
+    private final int nplanes;
+    private final int nnIn;
+    private final int nnOut;
+    private final NNCalc nnCalc;
+
+    private int capacity;
+    /**
+     * The activation signals of the neurons of each plane.
+     */
+    private double[][] act;
+    /**
+     * The derivatives of the activation function of the neurons of plane {@code pl + 1}.
+     */
+    private double[][] help;
+    /**
+     * The derivatives of the activation signals of the neurons of each plane with respect to the inputs.
+     */
+    private double[][] dActDX;
+
+    NNffbpAlphaTabEvaluator(NNffbpAlphaTabNet net, double[] inmin, double[] inmax) {
+        this(net, inmin, inmax, net.getOutminArray(), net.getOutmaxArray());
+    }
+
+    NNffbpAlphaTabEvaluator(NNffbpAlphaTabNet net, double[] inmin, double[] inmax, double[] outmin, double[] outmax) {
+        this.net = net;
+        this.inmin = inmin;
+        this.inmax = inmax;
+        this.outmin = outmin;
+        this.outmax = outmax;
+        nplanes = net.getNumPlanes();
+        nnIn = net.getNumInputs();
+        nnOut = net.getNumOutputs();
+        nnCalc = new NNCalc();
+        nnCalc.setNnOutput(new double[nnOut]);
+        nnCalc.setJacobiMatrix(new double[nnOut][nnIn]);
+    }
+
+    /**
+     * @return the net evaluated.
+     */
+    public NNffbpAlphaTabNet getNet() {
+        return net;
+    }
+
+    /**
+     * Computes the output vector for a given input vector.
+     *
+     * @param nnInp the input vector
+     * @return the output vector
+     */
+    public double[] calc(double[] nnInp) {
+        final double[] nnOutput = new double[nnOut];
+        calc(nnInp, nnOutput, 1);
+        return nnOutput;
+    }
+
+    /**
+     * Computes the output vector together with the Jacobi matrix for a given input vector.
+     *
+     * @param nnInp the input vector
+     * @return the output and the Jacobi matrix. The same instance is returned by each call of this method.
+     */
+    public NNCalc calcJacobi(double[] nnInp) {
+        final double[] jacobians = new double[nnOut * nnIn];
+        calcJacobi(nnInp, nnCalc.getNnOutput(), jacobians, 1);
+        final double[][] jacobiMatrix = nnCalc.getJacobiMatrix();
+        for (int o = 0; o < nnOut; o++) {
+            System.arraycopy(jacobians, o * nnIn, jacobiMatrix[o], 0, nnIn);
+        }
+        return nnCalc;
+    }
+
+    /**
+     * Computes the output vectors for a batch of input vectors.
+     *
+     * @param inputs  the input vectors, at least {@code numInputs * n} values
+     * @param outputs receives the output vectors, at least {@code numOutputs * n} values
+     * @param n       the number of vectors
+     */
+    public void calc(double[] inputs, double[] outputs, int n) {
+        for (int k0 = 0; k0 < n; k0 += BLOCK_SIZE) {
+            final int b = Math.min(BLOCK_SIZE, n - k0);
+            ensureCapacity(b, false);
+            final double[] act0 = act[0];
+            for (int i = 0; i < nnIn; i++) {
+                final double min = inmin[i];
+                final double range = inmax[i] - min;
+                for (int k = 0; k < b; k++) {
+                    act0[i * b + k] = (inputs[i * n + k0 + k] - min) / range;
+                }
+            }
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                propagate(pl, b);
+            }
+            final double[] actOut = act[nplanes - 1];
+            for (int o = 0; o < nnOut; o++) {
+                final double min = outmin[o];
+                final double range = outmax[o] - min;
+                for (int k = 0; k < b; k++) {
+                    outputs[o * n + k0 + k] = actOut[o * b + k] * range + min;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the output vectors for a batch of input vectors given as {@code float} values.
+     *
+     * @param inputs  the input vectors, at least {@code numInputs * n} values
+     * @param outputs receives the output vectors, at least {@code numOutputs * n} values
+     * @param n       the number of vectors
+     */
+    public void calc(float[] inputs, float[] outputs, int n) {
+        for (int k0 = 0; k0 < n; k0 += BLOCK_SIZE) {
+            final int b = Math.min(BLOCK_SIZE, n - k0);
+            ensureCapacity(b, false);
+            final double[] act0 = act[0];
+            for (int i = 0; i < nnIn; i++) {
+                final double min = inmin[i];
+                final double range = inmax[i] - min;
+                for (int k = 0; k < b; k++) {
+                    act0[i * b + k] = (inputs[i * n + k0 + k] - min) / range;
+                }
+            }
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                propagate(pl, b);
+            }
+            final double[] actOut = act[nplanes - 1];
+            for (int o = 0; o < nnOut; o++) {
+                final double min = outmin[o];
+                final double range = outmax[o] - min;
+                for (int k = 0; k < b; k++) {
+                    outputs[o * n + k0 + k] = (float) (actOut[o * b + k] * range + min);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the output vectors together with the Jacobi matrices for a batch of input vectors.
+     *
+     * @param inputs    the input vectors, at least {@code numInputs * n} values
+     * @param outputs   receives the output vectors, at least {@code numOutputs * n} values
+     * @param jacobians receives the Jacobi matrices, at least {@code numOutputs * numInputs * n} values
+     * @param n         the number of vectors
+     */
+    public void calcJacobi(double[] inputs, double[] outputs, double[] jacobians, int n) {
+        for (int k0 = 0; k0 < n; k0 += BLOCK_SIZE) {
+            final int b = Math.min(BLOCK_SIZE, n - k0);
+            ensureCapacity(b, true);
+            final double[] act0 = act[0];
+            for (int i = 0; i < nnIn; i++) {
+                final double min = inmin[i];
+                final double range = inmax[i] - min;
+                for (int k = 0; k < b; k++) {
+                    act0[i * b + k] = (inputs[i * n + k0 + k] - min) / range;
+                }
+            }
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                propagate(pl, b);
+                propagateDerivatives(pl, b);
+            }
+            final double[] actOut = act[nplanes - 1];
+            final double[] dActDXOut = dActDX[nplanes - 1];
+            for (int o = 0; o < nnOut; o++) {
+                final double min = outmin[o];
+                final double range = outmax[o] - min;
+                for (int k = 0; k < b; k++) {
+                    outputs[o * n + k0 + k] = actOut[o * b + k] * range + min;
+                }
+                for (int i = 0; i < nnIn; i++) {
+                    final int offset = (o * nnIn + i);
+                    for (int k = 0; k < b; k++) {
+                        jacobians[offset * n + k0 + k] = dActDXOut[offset * b + k] * range;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the activation signals of plane {@code pl + 1} from those of plane {@code pl}.
+     */
+    private void propagate(int pl, int n) {
+        final double[] src = act[pl];
+        final double[] dst = act[pl + 1];
+        final double[] wgt = net.getWeights(pl);
+        final double[] bias = net.getBiases(pl);
+        final int srcSize = net.getSize(pl);
+        final int dstSize = net.getSize(pl + 1);
+        for (int i = 0; i < dstSize; i++) {
+            final int dstOffset = i * n;
+            final int wgtOffset = i * srcSize;
+            final double b = bias[i];
+            int k = 0;
+            // four vectors at once, so that each weight is loaded once for four products
+            for (; k + 3 < n; k += 4) {
+                double sum0 = 0.0;
+                double sum1 = 0.0;
+                double sum2 = 0.0;
+                double sum3 = 0.0;
+                for (int j = 0, srcIndex = k; j < srcSize; j++, srcIndex += n) {
+                    final double w = wgt[wgtOffset + j];
+                    sum0 += w * src[srcIndex];
+                    sum1 += w * src[srcIndex + 1];
+                    sum2 += w * src[srcIndex + 2];
+                    sum3 += w * src[srcIndex + 3];
+                }
+                dst[dstOffset + k] = NNffbpAlphaTabNet.activation(b + sum0);
+                dst[dstOffset + k + 1] = NNffbpAlphaTabNet.activation(b + sum1);
+                dst[dstOffset + k + 2] = NNffbpAlphaTabNet.activation(b + sum2);
+                dst[dstOffset + k + 3] = NNffbpAlphaTabNet.activation(b + sum3);
+            }
+            for (; k < n; k++) {
+                double sum = 0.0;
+                for (int j = 0, srcIndex = k; j < srcSize; j++, srcIndex += n) {
+                    sum += wgt[wgtOffset + j] * src[srcIndex];
+                }
+                dst[dstOffset + k] = NNffbpAlphaTabNet.activation(b + sum);
+            }
+        }
+    }
+
+    /**
+     * Computes the derivatives of the activation signals of plane {@code pl + 1} from those of plane {@code pl}.
+     */
+    private void propagateDerivatives(int pl, int n) {
+        final double[] actPl1 = act[pl + 1];
+        final double[] helpPl = help[pl];
+        final double[] wgt = net.getWeights(pl);
+        final int srcSize = net.getSize(pl);
+        final int dstSize = net.getSize(pl + 1);
+        for (int k = 0; k < dstSize * n; k++) {
+            helpPl[k] = actPl1[k] * (1.0 - actPl1[k]);
+        }
+        final double[] dst = dActDX[pl + 1];
+        if (pl == 0) {
+            // the derivatives of the input plane form a diagonal matrix
+            for (int i = 0; i < dstSize; i++) {
+                for (int j = 0; j < nnIn; j++) {
+                    final double w = wgt[i * srcSize + j];
+                    final double d = 1.0 / (inmax[j] - inmin[j]);
+                    final int dstOffset = (i * nnIn + j) * n;
+                    for (int k = 0; k < n; k++) {
+                        dst[dstOffset + k] = helpPl[i * n + k] * w * d;
+                    }
+                }
+            }
+            return;
+        }
+        final double[] src = dActDX[pl];
+        for (int i = 0; i < dstSize; i++) {
+            final int helpOffset = i * n;
+            final int wgtOffset = i * srcSize;
+            for (int j = 0; j < nnIn; j++) {
+                final int dstOffset = (i * nnIn + j) * n;
+                int k = 0;
+                for (; k + 3 < n; k += 4) {
+                    final double h0 = helpPl[helpOffset + k];
+                    final double h1 = helpPl[helpOffset + k + 1];
+                    final double h2 = helpPl[helpOffset + k + 2];
+                    final double h3 = helpPl[helpOffset + k + 3];
+                    double sum0 = 0.0;
+                    double sum1 = 0.0;
+                    double sum2 = 0.0;
+                    double sum3 = 0.0;
+                    for (int m = 0, srcIndex = j * n + k; m < srcSize; m++, srcIndex += nnIn * n) {
+                        final double w = wgt[wgtOffset + m];
+                        sum0 += h0 * w * src[srcIndex];
+                        sum1 += h1 * w * src[srcIndex + 1];
+                        sum2 += h2 * w * src[srcIndex + 2];
+                        sum3 += h3 * w * src[srcIndex + 3];
+                    }
+                    dst[dstOffset + k] = sum0;
+                    dst[dstOffset + k + 1] = sum1;
+                    dst[dstOffset + k + 2] = sum2;
+                    dst[dstOffset + k + 3] = sum3;
+                }
+                for (; k < n; k++) {
+                    final double h = helpPl[helpOffset + k];
+                    double sum = 0.0;
+                    for (int m = 0, srcIndex = j * n + k; m < srcSize; m++, srcIndex += nnIn * n) {
+                        sum += h * wgt[wgtOffset + m] * src[srcIndex];
+                    }
+                    dst[dstOffset + k] = sum;
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int n, boolean derivatives) {
+        if (act == null || n > capacity) {
+            capacity = Math.max(n, capacity);
+            act = new double[nplanes][];
+            for (int pl = 0; pl < nplanes; pl++) {
+                act[pl] = new double[net.getSize(pl) * capacity];
+            }
+            help = null;
+            dActDX = null;
+        }
+        if (derivatives && dActDX == null) {
+            help = new double[nplanes - 1][];
+            dActDX = new double[nplanes][];
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                help[pl] = new double[net.getSize(pl + 1) * capacity];
+                dActDX[pl + 1] = new double[net.getSize(pl + 1) * nnIn * capacity];
+            }
+        }
+    }
+}
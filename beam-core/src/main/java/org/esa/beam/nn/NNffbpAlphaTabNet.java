@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.nn;
+
+import org.esa.beam.nn.util.FormattedStringReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+
+/**
+ * An immutable neural net (NN) of type ffbp, as generated by the training program "ffbp1.0".
+ * <p/>
+ * A net only holds the definition, i.e. the input and output ranges, the weights and the biases,
+ * and can be shared by any number of threads. NN outputs are computed by an
+ * {@link NNffbpAlphaTabEvaluator}, which is cheap to create and must be used by a single thread only.
+ * The activation function is tabulated in the same way as during the training.
+ *
+ * @see NNffbpAlphaTabFast
+ * @since BEAM 5.0.6
+ */
+public final class NNffbpAlphaTabNet {
+
+    /**
+     * Specifies the cutting of the activation function. For values below
+     * alphaStart alphaTab[0] is used; for values greater (-alphaStart)
+     * alphaTab[nAlpha - 1] is used.
+     */
+    static final double ALPHA_START = -10.0;
+    /**
+     * Specifies the length of the table containing the tabulated activation
+     * function.
+     */
+    static final int NUM_ALPHA = 100000;
+    /**
+     * The table containing the tabulated activation function as used during the
+     * training of the NN. It is the same for all nets.
+     */
+    static final double[] ALPHA_TAB = new double[NUM_ALPHA];
+    /**
+     * The reciprocal of the increment of the entries of {@link #ALPHA_TAB}.
+     */
+    static final double REC_DELTA_ALPHA;
+
+    static {
+        double delta = (-2.0 * ALPHA_START) / (NUM_ALPHA - 1.0);
+        double sum = ALPHA_START + (0.5 * delta);
+        for (int i = 0; i < NUM_ALPHA; i++) {
+            ALPHA_TAB[i] = 1.0 / (1.0 + Math.exp(-sum));
+            sum += delta;
+        }
+        REC_DELTA_ALPHA = 1.0 / delta;
+    }
+
+    private final double[] inmin;
+    private final double[] inmax;
+    private final double[] outmin;
+    private final double[] outmax;
+    /**
+     * The number of neurons in each plane.
+     */
+    private final int[] size;
+    /**
+     * The weights between the neurons of plane {@code pl} and plane {@code pl + 1}, stored
+     * row by row in a {@code size[pl + 1] x size[pl]} matrix.
+     */
+    private final double[][] wgt;
+    /**
+     * The biases of the neurons of plane {@code pl + 1}.
+     */
+    private final double[][] bias;
+
+    /**
+     * Creates a neural net by reading the definition from the input stream.
+     *
+     * @param neuralNetStream the neural net definition as a input stream
+     * @throws IOException if the neural net could not be read
+     */
+    public NNffbpAlphaTabNet(InputStream neuralNetStream) throws IOException {
+        this(readNeuralNet(neuralNetStream));
+    }
+
+    /**
+     * Creates a neural net by reading the definition from the string.
+     *
+     * @param neuralNet the neural net definition as a string
+     * @throws IOException if the neural net could not be read
+     */
+    public NNffbpAlphaTabNet(String neuralNet) throws IOException {
+        try (StringReader in = new StringReader(neuralNet)) {
+            FormattedStringReader inf = new FormattedStringReader(in);
+            double[] h;
+            inf.noComments();
+            char ch = '0';
+            while (ch != '#') {
+                ch = (char) in.read();
+            }
+            inf.rString();            //read the rest of the line which has the #
+            final int nnIn = (int) inf.rlong();
+            inmin = new double[nnIn];
+            inmax = new double[nnIn];
+            for (int i = 0; i < nnIn; i++) {
+                h = inf.rdouble(2);
+                inmin[i] = h[0];
+                inmax[i] = h[1];
+            }
+            final int nnOut = (int) inf.rlong();
+            outmin = new double[nnOut];
+            outmax = new double[nnOut];
+            for (int i = 0; i < nnOut; i++) {
+                h = inf.rdouble(2);
+                outmin[i] = h[0];
+                outmax[i] = h[1];
+            }
+            while (ch != '=') {
+                ch = (char) in.read();
+            }
+            in.mark(1000000);
+            final int nplanes = (int) inf.rlong();
+            in.reset();
+            long[] hh = inf.rlong(nplanes + 1);
+            size = new int[nplanes];
+            for (int i = 0; i < nplanes; i++) {
+                size[i] = (int) hh[i + 1];
+            }
+            wgt = new double[nplanes - 1][];
+            bias = new double[nplanes - 1][];
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                wgt[pl] = new double[size[pl + 1] * size[pl]];
+                bias[pl] = new double[size[pl + 1]];
+            }
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                inf.rString();
+                for (int i = 0; i < size[pl + 1]; i++) {
+                    bias[pl][i] = inf.rdouble();
+                }
+            }
+            for (int pl = 0; pl < nplanes - 1; pl++) {
+                inf.rString();
+                for (int i = 0; i < size[pl + 1] * size[pl]; i++) {
+                    wgt[pl][i] = inf.rdouble();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of input variables.
+     */
+    public int getNumInputs() {
+        return inmin.length;
+    }
+
+    /**
+     * @return the number of output variables.
+     */
+    public int getNumOutputs() {
+        return outmin.length;
+    }
+
+    /**
+     * @return the smallest value of each input variable seen during the training.
+     */
+    public double[] getInmin() {
+        return inmin.clone();
+    }
+
+    /**
+     * @return the biggest value of each input variable seen during the training.
+     */
+    public double[] getInmax() {
+        return inmax.clone();
+    }
+
+    /**
+     * @return the smallest value of each output variable seen during the training.
+     */
+    public double[] getOutmin() {
+        return outmin.clone();
+    }
+
+    /**
+     * @return the biggest value of each output variable seen during the training.
+     */
+    public double[] getOutmax() {
+        return outmax.clone();
+    }
+
+    /**
+     * Creates a new evaluator for this net. Evaluators are not thread-safe, each thread must use its own.
+     *
+     * @return a new evaluator.
+     */
+    public NNffbpAlphaTabEvaluator createEvaluator() {
+        return new NNffbpAlphaTabEvaluator(this, inmin, inmax);
+    }
+
+    int getNumPlanes() {
+        return size.length;
+    }
+
+    int getSize(int plane) {
+        return size[plane];
+    }
+
+    double[] getWeights(int plane) {
+        return wgt[plane];
+    }
+
+    double[] getBiases(int plane) {
+        return bias[plane];
+    }
+
+    double[] getOutminArray() {
+        return outmin;
+    }
+
+    double[] getOutmaxArray() {
+        return outmax;
+    }
+
+    static double activation(double x) {
+        int index = (int) ((x - ALPHA_START) * REC_DELTA_ALPHA);
+        if (index < 0) {
+            index = 0;
+        }
+        if (index >= NUM_ALPHA) {
+            index = NUM_ALPHA - 1;
+        }
+        return ALPHA_TAB[index];
+    }
+
+    private static String readNeuralNet(InputStream neuralNetStream) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(neuralNetStream))) {
+            final StringBuilder sb = new StringBuilder();
+            String line = reader.readLine();
+            while (line != null) {
+                // have to append line terminator, cause it's not included in line
+                sb.append(line).append('\n');
+                line = reader.readLine();
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.util.math;
+
+/**
+ * Linear spectral unmixing of batches of spectra stored in flat arrays.
+ * <p/>
+ * The spectra of a batch are stored channel by channel, i.e. the value of channel {@code i} of
+ * spectrum {@code j} is at index {@code i * numSpectra + j}. The abundances are stored endmember by
+ * endmember in the same way. This is the layout obtained by copying the tiles of the source bands
+ * one after another, so no transposition is required.
+ * <p/>
+ * Implementations precompute everything which only depends on the endmembers and do not allocate
+ * memory when unmixing. Scratch space is provided by a {@link Workspace}, which must not be shared
+ * between threads.
+ *
+ * @since BEAM 5.0.6
+ */
+public interface BatchSpectralUnmixing extends SpectralUnmixing {
+
+    /**
+     * @return the number of spectral channels.
+     */
+    int getNumChannels();
+
+    /**
+     * @return the number of endmembers.
+     */
+    int getNumEndmembers();
+
+    /**
+     * Creates the scratch space required for unmixing batches of up to {@code maxNumSpectra} spectra.
+     *
+     * @param maxNumSpectra the maximum number of spectra of a batch.
+     *
+     * @return the workspace, to be used by a single thread only.
+     */
+    Workspace createWorkspace(int maxNumSpectra);
+
+    /**
+     * Performs a linear spectral unmixing of a batch of spectra.
+     *
+     * @param spectra    the spectra, an array of at least {@code numChannels * numSpectra} elements.
+     * @param abundances the array receiving the abundances, at least {@code numEndmembers * numSpectra} elements.
+     * @param numSpectra the number of spectra.
+     * @param workspace  the workspace, created for at least {@code numSpectra} spectra.
+     */
+    void unmix(double[] spectra, double[] abundances, int numSpectra, Workspace workspace);
+
+    /**
+     * Calculates the spectra for a batch of abundances.
+     *
+     * @param abundances the abundances, an array of at least {@code numEndmembers * numSpectra} elements.
+     * @param spectra    the array receiving the spectra, at least {@code numChannels * numSpectra} elements.
+     * @param numSpectra the number of spectra.
+     */
+    void mix(double[] abundances, double[] spectra, int numSpectra);
+
+    /**
+     * Scratch space used by a single thread. The contents are specific to the implementation.
+     */
+    interface Workspace {
+
+        /**
+         * @return the maximum number of spectra of a batch.
+         */
+        int getMaxNumSpectra();
+    }
+}
@@ -60,4 +60,21 @@ public class ConstrainedLSU extends UnconstrainedLSU {
 
         return LinearAlgebra.subtract(abundances, a, LinearAlgebra.multiplyAndSubtract(z, abundances, 1.0));
     }
+
+    @Override
+    public void unmix(double[] spectra, double[] abundances, int numSpectra, Workspace workspace) {
+        super.unmix(spectra, abundances, numSpectra, workspace);
+
+        final int numEndmembers = a.length;
+        for (int k = 0; k < numSpectra; k++) {
+            double sum = 0.0;
+            for (int i = 0; i < numEndmembers; i++) {
+                sum += abundances[i * numSpectra + k];
+            }
+            final double d = sum - 1.0;
+            for (int i = 0; i < numEndmembers; i++) {
+                abundances[i * numSpectra + k] -= a[i] * d;
+            }
+        }
+    }
 }
@@ -18,22 +18,41 @@ package org.esa.beam.util.math;
 
 import Jama.Matrix;
 
+import java.util.Arrays;
+
 /**
  * Performs a fully constrained linear spectral unmixing, where all
  * abundances are non-negative and their sum is equal to unity.
+ * <p/>
+ * The abundances are those of the constrained unmixing with the smallest error among all subsets
+ * of endmembers which yield non-negative abundances. Since BEAM 5.0.6 the constrained unmixing for
+ * a subset is computed from the projections of the spectrum onto the endmembers and the inverse
+ * Gram matrix of the subset, which are precomputed for all subsets. Hence the spectrum is only
+ * accessed once, regardless of the number of subsets. The search is started with the subset found
+ * for the previous spectrum of a batch, and subsets whose error cannot be smaller than the best
+ * error found so far are skipped, because removing endmembers never decreases the error.
  *
  * @author Helmut Schiller (GKSS)
  * @author Ralf Quast
  * @version $Revision$ $Date$
  * @since 4.1
  */
-public class FullyConstrainedLSU implements SpectralUnmixing {
+public class FullyConstrainedLSU implements BatchSpectralUnmixing {
+
+    // errors must be smaller than this value to be accepted
+    private static final double MAX_ERROR = 1.0e21;
 
     private final int nchem;
     private final int nmemb;
 
-    private final SpectralUnmixing[][] trialModels;
-    private final boolean[][][] sortedemcombs;
+    private final UnconstrainedLSU mixingModel;
+    private final double[] transposedEndmembers;
+    // the subsets of endmembers as bit masks, ordered by decreasing number of endmembers
+    private final int[] sortedSubsets;
+    private final int[][] subsetMembers;
+    private final double[][] subsetInverseGrams;
+    private final double[][] subsetCorrections;
+    private final double[] subsetCorrectionWeights;
 
     public FullyConstrainedLSU(double[][] endmembers) {
         if (!LinearAlgebra.isMatrix(endmembers)) {
@@ -43,45 +62,34 @@ public class FullyConstrainedLSU implements SpectralUnmixing {
         nchem = endmembers.length;
         nmemb = endmembers[0].length;
 
-        final int nposs = (1 << nmemb) - 1;
-        int rb[] = new int[nposs];
-        for (int i = 0; i < nposs; i++) {
-            rb[i] = i + 1;
-        }
+        mixingModel = new UnconstrainedLSU(endmembers);
+        final Matrix matrix = new Matrix(endmembers);
+        transposedEndmembers = UnconstrainedLSU.toFlatArray(matrix.transpose().getArray());
+        final Matrix gram = matrix.transpose().times(matrix);
 
-        final boolean[][] emcombs = new boolean[nposs][nmemb];
-        for (int k = 0; k < nposs; k++) {
-            int zpot = 1;
-            for (int l = 0; l < nmemb; l++) {
-                int h = zpot & rb[k];
-                emcombs[k][l] = h > 0;
-                zpot *= 2;
-            }
-        }
-        final int[] numbin = new int[nposs];
-        for (int k = 0; k < nposs; k++) {
-            numbin[k] = countTrue(emcombs[k]);
-        }
-        sortedemcombs = new boolean[nmemb][][];
-        trialModels = new ConstrainedLSU[nmemb][];
-        for (int nem = nmemb - 1; nem >= 0; nem--) {
-            int nc = 0;
-            for (int p = 0; p < nposs; p++) {
-                if (nem + 1 == numbin[p]) {
-                    nc++;
-                }
-            }
-            sortedemcombs[nmemb - nem - 1] = new boolean[nc][nmemb];
-            trialModels[nmemb - nem - 1] = new ConstrainedLSU[nc];
+        final int nposs = 1 << nmemb;
+        subsetMembers = new int[nposs][];
+        subsetInverseGrams = new double[nposs][];
+        subsetCorrections = new double[nposs][];
+        subsetCorrectionWeights = new double[nposs];
+        for (int subset = 1; subset < nposs; subset++) {
+            final int[] members = getMembers(subset);
+            final double[][] inverseGram = gram.getMatrix(members, members).inverse().getArrayCopy();
+            final double[] z = new double[members.length];
+            Arrays.fill(z, 1.0);
+            final double q = LinearAlgebra.innerProduct(LinearAlgebra.multiply(z, inverseGram), z);
+            subsetMembers[subset] = members;
+            subsetInverseGrams[subset] = UnconstrainedLSU.toFlatArray(inverseGram);
+            subsetCorrections[subset] = LinearAlgebra.multiply(LinearAlgebra.multiply(inverseGram, z), 1.0 / q);
+            subsetCorrectionWeights[subset] = 1.0 / q;
         }
-        for (int nem = nmemb - 1; nem >= 0; nem--) {
-            int nc = 0;
-            for (int p = 0; p < nposs; p++) {
-                if (nem + 1 == numbin[p]) {
-                    System.arraycopy(emcombs[p], 0, sortedemcombs[nmemb - nem - 1][nc], 0, nmemb);
-                    double[][] trem = extractColumns(endmembers, sortedemcombs[nmemb - nem - 1][nc]);
-                    trialModels[nmemb - nem - 1][nc] = new ConstrainedLSU(trem);
-                    nc++;
+
+        sortedSubsets = new int[nposs - 1];
+        int index = 0;
+        for (int nem = nmemb; nem > 0; nem--) {
+            for (int subset = 1; subset < nposs; subset++) {
+                if (Integer.bitCount(subset) == nem) {
+                    sortedSubsets[index++] = subset;
                 }
             }
         }
@@ -90,119 +98,198 @@ public class FullyConstrainedLSU implements SpectralUnmixing {
     @Override
     public double[][] unmix(double[][] spectra) {
         final int colCount = spectra[0].length;
+        final double[] flatSpectra = UnconstrainedLSU.toFlatArray(spectra);
+        final double[] flatAbundances = new double[nmemb * colCount];
+        unmix(flatSpectra, flatAbundances, colCount, createWorkspace(colCount));
 
-        final Matrix res = new Matrix(nmemb, colCount);
-        for (int nspek = 0; nspek < colCount; nspek++) {
-            final double[][] singlesp = extractSingleColum(spectra, nspek);
-            double totalerrbest=1.e21;
-            for (int nc = 0; nc < nmemb; nc++) {
-                boolean foundlegal = false;
-                final int nmods = trialModels[nc].length;
-                final boolean allabupos[] = new boolean[nmods];
-                final double[][][] abuc = new double[nmods][][];
-                for (int m = 0; m < nmods; m++) {
-                    allabupos[m] = true;
-                }
-                final double err[] = new double[nmods];
-                for (int m = 0; m < nmods; m++) {
-                    abuc[m] = trialModels[nc][m].unmix(singlesp);
-                    for (int k = 0; k < abuc[m].length; k++) {
-                        if (abuc[m][k][0] < 0.0) {
-                            allabupos[m] = false;
-                        }
-                    }
-                    if (allabupos[m]) {
-                        foundlegal = true;
-                        final double[][] rspek = trialModels[nc][m].mix(abuc[m]);
-                        double sum = 0.0;
-                        for (int k = 0; k < nchem; k++) {
-                            final double diff = singlesp[k][0] - rspek[k][0];
-                            sum += diff * diff;
-                        }
-                        err[m] = sum;
-                    }
-                }
-                if (foundlegal) {
-                    int mbest = -1;
-                    double errbest = Double.POSITIVE_INFINITY;
-                    for (int m = 0; m < nmods; m++) {
-                        if (allabupos[m]) {
-                            if (err[m] < errbest) {
-                                errbest = err[m];
-                                mbest = m;
-                            }
-                        }
-                    }
-                    if (mbest != -1) {
-                        final double[][] abucd = abuc[mbest];
-                        final double[][] abu = new double[nmemb][1];
-                        int take = 0;
-                        for (int k = 0; k < nmemb; k++) {
-                            if (sortedemcombs[nc][mbest][k]) {
-                                abu[k][0] = abucd[take][0];
-                                take++;
-                            }
-                        }
-                        if( errbest< totalerrbest) {
-                            res.setMatrix(0, nmemb-1, nspek, nspek, new Matrix(abu));
-                            totalerrbest=errbest;
-                        }
-                    }
-                }
-            }
+        final double[][] abundances = new double[nmemb][colCount];
+        for (int i = 0; i < nmemb; i++) {
+            System.arraycopy(flatAbundances, i * colCount, abundances[i], 0, colCount);
         }
-
-        return res.getArrayCopy();
+        return abundances;
     }
 
     @Override
     public double[][] mix(double[][] abundances) {
-        return trialModels[0][0].mix(abundances);
+        return mixingModel.mix(abundances);
     }
 
-    private static double[][] extractColumns(double[][] a, boolean[] columns) {
-        final int rowCount = a.length;
-        final int colCount = a[0].length;
+    @Override
+    public int getNumChannels() {
+        return nchem;
+    }
 
-        int hm = 0;
-        for (final boolean column : columns) {
-            if (column) {
-                hm++;
+    @Override
+    public int getNumEndmembers() {
+        return nmemb;
+    }
+
+    @Override
+    public Workspace createWorkspace(int maxNumSpectra) {
+        return new FclsWorkspace(maxNumSpectra, nmemb);
+    }
+
+    @Override
+    public void unmix(double[] spectra, double[] abundances, int numSpectra, Workspace workspace) {
+        final FclsWorkspace ws = (FclsWorkspace) workspace;
+        final double[] projections = ws.projections;
+        final double[] projection = ws.projection;
+        final double[] coefficients = ws.coefficients;
+
+        UnconstrainedLSU.multiply(transposedEndmembers, nmemb, nchem, spectra, projections, numSpectra);
+
+        for (int k = 0; k < numSpectra; k++) {
+            double norm = 0.0;
+            for (int i = 0; i < nchem; i++) {
+                final double value = spectra[i * numSpectra + k];
+                norm += value * value;
+            }
+            for (int i = 0; i < nmemb; i++) {
+                projection[i] = projections[i * numSpectra + k];
+            }
+            for (int i = 0; i < nmemb; i++) {
+                abundances[i * numSpectra + k] = 0.0;
+            }
+            if (Double.isNaN(norm)) {
+                continue;
+            }
+            final int subset = findBestSubset(projection, norm, ws);
+            if (subset != 0) {
+                computeConstrainedAbundances(subset, projection, norm, coefficients);
+                final int[] members = subsetMembers[subset];
+                for (int i = 0; i < members.length; i++) {
+                    abundances[members[i] * numSpectra + k] = coefficients[i];
+                }
+                ws.lastSubset = subset;
             }
         }
+    }
 
-        final double[][] c = new double[rowCount][hm];
+    @Override
+    public void mix(double[] abundances, double[] spectra, int numSpectra) {
+        mixingModel.mix(abundances, spectra, numSpectra);
+    }
 
-        for (int j = 0, k = 0; j < colCount; j++) {
-            if (columns[j]) {
-                for (int i = 0; i < rowCount; i++) {
-                    c[i][k] = a[i][j];
-                }
-                k++;
+    private int findBestSubset(double[] projection, double norm, FclsWorkspace ws) {
+        final double[] errorBounds = ws.errorBounds;
+        final double[] coefficients = ws.coefficients;
+
+        double bestError = MAX_ERROR;
+        int bestSubset = 0;
+
+        // neighbouring spectra are likely to be unmixed by the same subset
+        final int lastSubset = ws.lastSubset;
+        double lastError = Double.NaN;
+        boolean lastFeasible = false;
+        if (lastSubset != 0) {
+            lastError = computeConstrainedAbundances(lastSubset, projection, norm, coefficients);
+            lastFeasible = allNonNegative(coefficients, subsetMembers[lastSubset].length);
+            if (lastFeasible && lastError < bestError) {
+                bestError = lastError;
+                bestSubset = lastSubset;
             }
         }
 
-        return c;
+        for (final int subset : sortedSubsets) {
+            // the error of a subset is not smaller than the error of any of its supersets
+            double bound = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < nmemb; j++) {
+                final int bit = 1 << j;
+                if ((subset & bit) == 0) {
+                    bound = Math.max(bound, errorBounds[subset | bit]);
+                }
+            }
+            if (bound >= bestError) {
+                errorBounds[subset] = bound;
+                continue;
+            }
+            final double error;
+            final boolean feasible;
+            if (subset == lastSubset) {
+                error = lastError;
+                feasible = lastFeasible;
+            } else {
+                error = computeConstrainedAbundances(subset, projection, norm, coefficients);
+                feasible = allNonNegative(coefficients, subsetMembers[subset].length);
+            }
+            errorBounds[subset] = Math.max(bound, error);
+            if (feasible && error < bestError) {
+                bestError = error;
+                bestSubset = subset;
+            }
+        }
+        return bestSubset;
     }
 
-    private static double[][] extractSingleColum(double[][] a, int j) {
-        final double[][] c = new double[a.length][1];
+    /**
+     * Computes the abundances of the constrained unmixing for a subset of endmembers.
+     *
+     * @return the squared error of the mixed spectrum.
+     */
+    private double computeConstrainedAbundances(int subset, double[] projection, double norm, double[] coefficients) {
+        final int[] members = subsetMembers[subset];
+        final double[] inverseGram = subsetInverseGrams[subset];
+        final double[] correction = subsetCorrections[subset];
+        final int n = members.length;
 
-        for (int i = 0; i < a.length; i++) {
-            c[i][0] = a[i][j];
+        double sum = 0.0;
+        double explained = 0.0;
+        for (int i = 0; i < n; i++) {
+            double u = 0.0;
+            for (int j = 0; j < n; j++) {
+                u += inverseGram[i * n + j] * projection[members[j]];
+            }
+            coefficients[i] = u;
+            sum += u;
+            explained += u * projection[members[i]];
+        }
+        final double d = sum - 1.0;
+        for (int i = 0; i < n; i++) {
+            coefficients[i] -= correction[i] * d;
         }
+        // the error of the unconstrained unmixing plus the error introduced by the constraint
+        return norm - explained + d * d * subsetCorrectionWeights[subset];
+    }
 
-        return c;
+    private static boolean allNonNegative(double[] coefficients, int n) {
+        for (int i = 0; i < n; i++) {
+            if (coefficients[i] < 0.0) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static int countTrue(boolean[] combs) {
-        int count = 0;
-        for (final boolean comb : combs) {
-            if (comb) {
-                count++;
+    private int[] getMembers(int subset) {
+        final int[] members = new int[Integer.bitCount(subset)];
+        for (int j = 0, k = 0; j < nmemb; j++) {
+            if ((subset & (1 << j)) != 0) {
+                members[k++] = j;
             }
         }
+        return members;
+    }
+
+    private static final class FclsWorkspace implements Workspace {
+
+        private final int maxNumSpectra;
+        private final double[] projections;
+        private final double[] projection;
+        private final double[] coefficients;
+        private final double[] errorBounds;
+        private int lastSubset;
 
-        return count;
+        private FclsWorkspace(int maxNumSpectra, int nmemb) {
+            this.maxNumSpectra = maxNumSpectra;
+            projections = new double[nmemb * maxNumSpectra];
+            projection = new double[nmemb];
+            coefficients = new double[nmemb];
+            errorBounds = new double[1 << nmemb];
+        }
+
+        @Override
+        public int getMaxNumSpectra() {
+            return maxNumSpectra;
+        }
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@
 package org.esa.beam.util.math;
 
 import java.text.MessageFormat;
+import java.util.Arrays;
 
 /**
  * The class {@code LookupTable} performs the function of multilinear
@@ -28,6 +29,11 @@ import java.text.MessageFormat;
  */
 public class LookupTable {
 
+    /**
+     * The number of lookup points processed in one go by the bulk interpolation methods.
+     */
+    static final int BLOCK_SIZE = 64;
+
     /**
      * The lookup values.
      */
@@ -247,6 +253,81 @@ public class LookupTable {
         return v[0];
     }
 
+    /**
+     * Computes interpolated values for a batch of lookup points. The coordinates are laid
+     * out dimension by dimension, i.e. the ith coordinate of the kth lookup point is
+     * {@code coordinates[i * n + k]}.
+     * <p/>
+     * The interpolated values are identical to those returned by {@link #getValue(double...)},
+     * but the bracketing vertices of a lookup point are searched starting from those of the
+     * preceding lookup point, which is much faster when neighbouring lookup points are close
+     * to each other, as is the case for pixels of a tile. Unlike the single-point methods, this
+     * method does not need any workspace arrays and may be called concurrently.
+     *
+     * @param coordinates        the coordinates of the lookup points.
+     * @param interpolatedValues the interpolated values, an array of (at least) length {@code n}.
+     * @param n                  the number of lookup points.
+     *
+     * @throws IllegalArgumentException if {@code n} is negative or any array is too short.
+     * @throws NullPointerException     if any array is {@code null}.
+     * @since BEAM 5.0.6
+     */
+    public final void getValues(final double[] coordinates, final double[] interpolatedValues, final int n)
+            throws IllegalArgumentException, NullPointerException {
+        ensureLegalBatch(coordinates, dimensions.length, n);
+        ensureLegalBatch(interpolatedValues, 1, n);
+
+        final FracIndex[] fracIndexes = FracIndex.createArray(dimensions.length);
+        final int[] origins = new int[BLOCK_SIZE];
+        final double[] fractions = new double[dimensions.length * BLOCK_SIZE];
+        final double[] v = new double[o.length];
+
+        for (int k0 = 0; k0 < n; k0 += BLOCK_SIZE) {
+            final int blockSize = Math.min(BLOCK_SIZE, n - k0);
+            computeFracIndexes(dimensions, strides, coordinates, n, k0, blockSize, fracIndexes, origins, fractions);
+
+            for (int k = 0; k < blockSize; ++k) {
+                final int origin = origins[k];
+                for (int j = 0; j < v.length; ++j) {
+                    v[j] = values.getValue(origin + o[j]);
+                }
+                for (int i = dimensions.length; i-- > 0; ) {
+                    final int m = 1 << i;
+                    final double f = fractions[i * BLOCK_SIZE + k];
+
+                    for (int j = 0; j < m; ++j) {
+                        v[j] += f * (v[m + j] - v[j]);
+                    }
+                }
+                interpolatedValues[k0 + k] = v[0];
+            }
+        }
+    }
+
+    /**
+     * Returns a lookup table of reduced dimension, where the ith dimension is fixed at the
+     * given coordinate. Use this method when a coordinate, such as a band or an aerosol
+     * model, is constant for a large number of lookups.
+     * <p/>
+     * The values of the returned table are interpolated along the ith dimension in advance,
+     * so its interpolated values agree with those of this table up to rounding errors.
+     *
+     * @param i          the index number of the dimension being fixed.
+     * @param coordinate the coordinate value the dimension is fixed at.
+     *
+     * @return the lookup table of reduced dimension.
+     *
+     * @throws IllegalArgumentException if {@code i} is not a valid dimension index or the lookup
+     *                                  table has only a single dimension.
+     * @since BEAM 5.0.6
+     */
+    public final LookupTable getSlice(final int i, final double coordinate) throws IllegalArgumentException {
+        final IntervalPartition[] sliceDimensions = removeDimension(dimensions, i);
+        final double[] sliceValues = computeSliceValues(values, strides, dimensions, i, coordinate);
+
+        return new LookupTable(new Array.Double(sliceValues), sliceDimensions);
+    }
+
     /**
      * Computes the {@link FracIndex} of a coordinate value with respect to a given
      * interval partition. The integral component of the returned {@link FracIndex}
@@ -286,6 +367,134 @@ public class LookupTable {
         fracIndex.truncate();
     }
 
+    /**
+     * Computes the {@link FracIndex} of a coordinate value with respect to a given
+     * interval partition, like {@link #computeFracIndex}. The integral component of
+     * the given {@link FracIndex} is used as first guess, so the search is fast when
+     * the coordinate value falls into the same or an adjacent subinterval.
+     *
+     * @param partition  the interval partition.
+     * @param coordinate the coordinate value.
+     * @param fracIndex  the {@link FracIndex}, holding the first guess on input.
+     */
+    static void updateFracIndex(final IntervalPartition partition, final double coordinate,
+                                final FracIndex fracIndex) {
+        final int last = partition.getCardinal() - 2;
+
+        int lo = fracIndex.i;
+        if (!isBracketing(partition, coordinate, lo, last)) {
+            if (isBracketing(partition, coordinate, lo + 1, last)) {
+                lo = lo + 1;
+            } else if (isBracketing(partition, coordinate, lo - 1, last)) {
+                lo = lo - 1;
+            } else {
+                computeFracIndex(partition, coordinate, fracIndex);
+                return;
+            }
+        }
+
+        fracIndex.i = lo;
+        fracIndex.f = (coordinate - partition.get(lo)) / (partition.get(lo + 1) - partition.get(lo));
+        fracIndex.truncate();
+    }
+
+    /**
+     * Tests if the subinterval at the given index is the one found by {@link #computeFracIndex}.
+     */
+    private static boolean isBracketing(final IntervalPartition partition, final double coordinate,
+                                        final int lo, final int last) {
+        return lo >= 0 && lo <= last
+               && (lo == 0 || coordinate >= partition.get(lo))
+               && (lo == last || coordinate < partition.get(lo + 1));
+    }
+
+    /**
+     * Computes the array offsets of the lower grid cell vertices and the fractional indices
+     * for a block of lookup points.
+     *
+     * @param dimensions  the dimensions.
+     * @param strides     the strides defining the layout of the lookup value array.
+     * @param coordinates the coordinates of all lookup points, laid out dimension by dimension.
+     * @param n           the number of all lookup points.
+     * @param k0          the index of the first lookup point in the block.
+     * @param blockSize   the number of lookup points in the block.
+     * @param fracIndexes the fractional indices of the preceding lookup point, used as first guess.
+     * @param origins     the array offsets of the lower grid cell vertices.
+     * @param fractions   the fractional components, laid out dimension by dimension with a
+     *                    stride of {@link #BLOCK_SIZE}.
+     */
+    static void computeFracIndexes(final IntervalPartition[] dimensions, final int[] strides,
+                                   final double[] coordinates, final int n, final int k0, final int blockSize,
+                                   final FracIndex[] fracIndexes, final int[] origins, final double[] fractions) {
+        Arrays.fill(origins, 0, blockSize, 0);
+
+        for (int i = 0; i < dimensions.length; ++i) {
+            final IntervalPartition dimension = dimensions[i];
+            final FracIndex fracIndex = fracIndexes[i];
+            final int stride = strides[i];
+            final int coordinateOffset = i * n + k0;
+            final int fractionOffset = i * BLOCK_SIZE;
+
+            for (int k = 0; k < blockSize; ++k) {
+                updateFracIndex(dimension, coordinates[coordinateOffset + k], fracIndex);
+                origins[k] += fracIndex.i * stride;
+                fractions[fractionOffset + k] = fracIndex.f;
+            }
+        }
+    }
+
+    /**
+     * Computes the lookup values of a slice, where the ith dimension is fixed at the given coordinate.
+     *
+     * @param values     the lookup values.
+     * @param strides    the strides defining the layout of the lookup value array.
+     * @param dimensions the dimensions.
+     * @param i          the index number of the dimension being fixed.
+     * @param coordinate the coordinate value the dimension is fixed at.
+     *
+     * @return the lookup values of the slice.
+     */
+    static double[] computeSliceValues(final Array values, final int[] strides, final IntervalPartition[] dimensions,
+                                       final int i, final double coordinate) {
+        final FracIndex fracIndex = new FracIndex();
+        computeFracIndex(dimensions[i], coordinate, fracIndex);
+
+        final int stride = strides[i];
+        final int blockLength = stride * dimensions[i].getCardinal();
+        final int blockCount = values.getLength() / blockLength;
+        final double f = fracIndex.f;
+
+        final double[] sliceValues = new double[blockCount * stride];
+        final double[] upper = new double[stride];
+        for (int block = 0; block < blockCount; ++block) {
+            final int origin = block * blockLength + fracIndex.i * stride;
+            final int offset = block * stride;
+
+            values.copyTo(origin, sliceValues, offset, stride);
+            values.copyTo(origin + stride, upper, 0, stride);
+            for (int j = 0; j < stride; ++j) {
+                sliceValues[offset + j] += f * (upper[j] - sliceValues[offset + j]);
+            }
+        }
+
+        return sliceValues;
+    }
+
+    static IntervalPartition[] removeDimension(final IntervalPartition[] dimensions, final int i)
+            throws IllegalArgumentException {
+        if (i < 0 || i >= dimensions.length) {
+            throw new IllegalArgumentException(MessageFormat.format("illegal dimension index {0}", i));
+        }
+        if (dimensions.length == 1) {
+            throw new IllegalArgumentException("dimensions.length == 1");
+        }
+        final IntervalPartition[] remaining = new IntervalPartition[dimensions.length - 1];
+        System.arraycopy(dimensions, 0, remaining, 0, i);
+        System.arraycopy(dimensions, i + 1, remaining, i, remaining.length - i);
+
+        return remaining;
+    }
+
     /**
      * Computes the relative array offsets of the lookup values for the vertices
      * of a coordinate grid cell.
@@ -358,6 +567,21 @@ public class LookupTable {
         }
     }
 
+    static void ensureLegalBatch(final double[] array, final int count, final int n) throws
+                                                                                    IllegalArgumentException,
+                                                                                    NullPointerException {
+        if (array == null) {
+            throw new NullPointerException("array == null");
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("n < 0");
+        }
+        if (array.length < count * n) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "array.length = {0} is less than the expected length {1}", array.length, count * n));
+        }
+    }
+
     static void ensureLegalArray(Array array, final int length) throws
                                                                 IllegalArgumentException,
                                                                 NullPointerException {
@@ -110,4 +110,51 @@ public class MatrixLookupTable {
     public final double[][] getValues(final double... coordinates) throws IllegalArgumentException {
         return matrixFactory.createMatrix(m, n, vectorLookupTable.getValues(coordinates));
     }
+
+    /**
+     * Returns interpolated value matrices for a batch of lookup points. The coordinates are
+     * laid out dimension by dimension, i.e. the ith coordinate of the kth lookup point is
+     * {@code coordinates[i * n + k]}.
+     *
+     * @param coordinates the coordinates of the lookup points.
+     * @param n           the number of lookup points.
+     * @return the interpolated value matrices, one for each lookup point.
+     * @throws IllegalArgumentException if {@code n} is negative or the {@code coordinates}
+     *                                  array is too short.
+     * @throws NullPointerException     if the {@code coordinates} array is {@code null}.
+     * @see VectorLookupTable#getValues(double[], double[], int)
+     * @since BEAM 5.0.6
+     */
+    public final double[][][] getValues(final double[] coordinates, final int n) throws IllegalArgumentException {
+        final int length = m * this.n;
+        final double[] interpolatedValues = new double[length * n];
+        vectorLookupTable.getValues(coordinates, interpolatedValues, n);
+
+        final double[][][] matrices = new double[n][][];
+        for (int k = 0; k < n; ++k) {
+            final double[] values = new double[length];
+            for (int l = 0; l < length; ++l) {
+                values[l] = interpolatedValues[l * n + k];
+            }
+            matrices[k] = matrixFactory.createMatrix(m, this.n, values);
+        }
+
+        return matrices;
+    }
+
+    /**
+     * Returns a lookup table of reduced dimension, where the ith dimension is fixed at the
+     * given coordinate.
+     *
+     * @param i          the index number of the dimension being fixed.
+     * @param coordinate the coordinate value the dimension is fixed at.
+     * @return the lookup table of reduced dimension.
+     * @throws IllegalArgumentException if {@code i} is not a valid dimension index or the lookup
+     *                                  table has only a single dimension.
+     * @see LookupTable#getSlice(int, double)
+     * @since BEAM 5.0.6
+     */
+    public final MatrixLookupTable getSlice(final int i, final double coordinate) throws IllegalArgumentException {
+        return new MatrixLookupTable(m, n, matrixFactory, vectorLookupTable.getSlice(i, coordinate));
+    }
 }
@@ -27,10 +27,12 @@ import java.text.MessageFormat;
  * @version $Revision$ $Date$
  * @since 4.1
  */
-public class UnconstrainedLSU implements SpectralUnmixing {
+public class UnconstrainedLSU implements BatchSpectralUnmixing {
 
     private final double[][] endmemberMatrix;
     private final double[][] inverseEndmemberMatrix;
+    private final double[] flatEndmemberMatrix;
+    private final double[] flatInverseEndmemberMatrix;
 
     /**
      * Constructs a new instance of this class.
@@ -46,6 +48,8 @@ public class UnconstrainedLSU implements SpectralUnmixing {
 
         endmemberMatrix = endmembers;
         inverseEndmemberMatrix = new Matrix(endmembers).inverse().getArrayCopy();
+        flatEndmemberMatrix = toFlatArray(endmemberMatrix);
+        flatInverseEndmemberMatrix = toFlatArray(inverseEndmemberMatrix);
     }
 
     /**
@@ -84,4 +88,65 @@ public class UnconstrainedLSU implements SpectralUnmixing {
 
         return LinearAlgebra.multiply(endmemberMatrix, abundances);
     }
+
+    @Override
+    public int getNumChannels() {
+        return endmemberMatrix.length;
+    }
+
+    @Override
+    public int getNumEndmembers() {
+        return endmemberMatrix[0].length;
+    }
+
+    @Override
+    public Workspace createWorkspace(final int maxNumSpectra) {
+        return new Workspace() {
+            @Override
+            public int getMaxNumSpectra() {
+                return maxNumSpectra;
+            }
+        };
+    }
+
+    @Override
+    public void unmix(double[] spectra, double[] abundances, int numSpectra, Workspace workspace) {
+        multiply(flatInverseEndmemberMatrix, getNumEndmembers(), getNumChannels(), spectra, abundances, numSpectra);
+    }
+
+    @Override
+    public void mix(double[] abundances, double[] spectra, int numSpectra) {
+        multiply(flatEndmemberMatrix, getNumChannels(), getNumEndmembers(), abundances, spectra, numSpectra);
+    }
+
+    /**
+     * Computes {@code c = a b}, where {@code a} is a {@code m x n} matrix stored row by row and {@code b} and
+     * {@code c} are {@code n x numCols} and {@code m x numCols} matrixes stored row by row with {@code numCols}
+     * columns. The innermost loop runs along the rows of {@code b} and {@code c}.
+     */
+    static void multiply(double[] a, int m, int n, double[] b, double[] c, int numCols) {
+        for (int i = 0; i < m; i++) {
+            final int cOffset = i * numCols;
+            final double a0 = a[i * n];
+            for (int k = 0; k < numCols; k++) {
+                c[cOffset + k] = a0 * b[k];
+            }
+            for (int j = 1; j < n; j++) {
+                final double aij = a[i * n + j];
+                final int bOffset = j * numCols;
+                for (int k = 0; k < numCols; k++) {
+                    c[cOffset + k] += aij * b[bOffset + k];
+                }
+            }
+        }
+    }
+
+    static double[] toFlatArray(double[][] matrix) {
+        final int colCount = matrix[0].length;
+        final double[] array = new double[matrix.length * colCount];
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, array, i * colCount, colCount);
+        }
+        return array;
+    }
 }
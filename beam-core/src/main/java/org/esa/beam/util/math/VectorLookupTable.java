@@ -203,6 +203,101 @@ public class VectorLookupTable {
         return getValues(fracIndexes);
     }
 
+    /**
+     * Computes interpolated value arrays for a batch of lookup points. The coordinates are
+     * laid out dimension by dimension, i.e. the ith coordinate of the kth lookup point is
+     * {@code coordinates[i * n + k]}. The interpolated values are laid out in the same way,
+     * i.e. the jth element of the value array interpolated for the kth lookup point is
+     * {@code interpolatedValues[j * n + k]}.
+     * <p/>
+     * The interpolated values are identical to those returned by {@link #getValues(double...)},
+     * but the bracketing vertices of a lookup point are searched starting from those of the
+     * preceding lookup point, which is much faster when neighbouring lookup points are close
+     * to each other. Unlike {@link #getValues(double...)}, this method may be called concurrently.
+     *
+     * @param coordinates        the coordinates of the lookup points.
+     * @param interpolatedValues the interpolated values, an array of (at least) length
+     *                           {@code n} times the length of the lookup vector.
+     * @param n                  the number of lookup points.
+     *
+     * @throws IllegalArgumentException if {@code n} is negative or any array is too short.
+     * @throws NullPointerException     if any array is {@code null}.
+     * @since BEAM 5.0.6
+     */
+    public final void getValues(final double[] coordinates, final double[] interpolatedValues, final int n)
+            throws IllegalArgumentException, NullPointerException {
+        final int length = getLength();
+
+        LookupTable.ensureLegalBatch(coordinates, dimensions.length, n);
+        LookupTable.ensureLegalBatch(interpolatedValues, length, n);
+
+        final FracIndex[] fracIndexes = FracIndex.createArray(dimensions.length);
+        final int[] origins = new int[LookupTable.BLOCK_SIZE];
+        final double[] fractions = new double[dimensions.length * LookupTable.BLOCK_SIZE];
+        final double[][] w = new double[o.length][length];
+
+        for (int k0 = 0; k0 < n; k0 += LookupTable.BLOCK_SIZE) {
+            final int blockSize = Math.min(LookupTable.BLOCK_SIZE, n - k0);
+            LookupTable.computeFracIndexes(dimensions, strides, coordinates, n, k0, blockSize,
+                                           fracIndexes, origins, fractions);
+
+            for (int k = 0; k < blockSize; ++k) {
+                final int origin = origins[k];
+                for (int i = 0; i < w.length; ++i) {
+                    values.copyTo(origin + o[i], w[i], 0, length);
+                }
+                for (int i = dimensions.length; i-- > 0; ) {
+                    final int m = 1 << i;
+                    final double f = fractions[i * LookupTable.BLOCK_SIZE + k];
+
+                    for (int j = 0; j < m; ++j) {
+                        final double[] lower = w[j];
+                        final double[] upper = w[m + j];
+                        for (int l = 0; l < length; ++l) {
+                            lower[l] += f * (upper[l] - lower[l]);
+                        }
+                    }
+                }
+                final double[] result = w[0];
+                for (int l = 0; l < length; ++l) {
+                    interpolatedValues[l * n + k0 + k] = result[l];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a lookup table of reduced dimension, where the ith dimension is fixed at the
+     * given coordinate. Use this method when a coordinate, such as a band or an aerosol
+     * model, is constant for a large number of lookups.
+     *
+     * @param i          the index number of the dimension being fixed.
+     * @param coordinate the coordinate value the dimension is fixed at.
+     *
+     * @return the lookup table of reduced dimension.
+     *
+     * @throws IllegalArgumentException if {@code i} is not a valid dimension index or the lookup
+     *                                  table has only a single dimension.
+     * @see LookupTable#getSlice(int, double)
+     * @since BEAM 5.0.6
+     */
+    public final VectorLookupTable getSlice(final int i, final double coordinate) throws IllegalArgumentException {
+        final IntervalPartition[] sliceDimensions = LookupTable.removeDimension(dimensions, i);
+        final double[] sliceValues = LookupTable.computeSliceValues(values, strides, dimensions, i, coordinate);
+
+        return new VectorLookupTable(getLength(), new Array.Double(sliceValues), sliceDimensions);
+    }
+
+    /**
+     * Returns the length of the lookup vector.
+     *
+     * @return the length of the lookup vector.
+     * @since BEAM 5.0.6
+     */
+    public final int getLength() {
+        return v[0].length;
+    }
+
     double[] getValues(final FracIndex... fracIndexes) {
         int origin = 0;
         for (int i = 0; i < dimensions.length; ++i) {
@@ -87,6 +87,31 @@ public class DimapProductWriterTest_WriteBandRasterData extends TestCase {
         }
     }
 
+    public void testSyncMakesDataVisibleBeforeClose() throws IOException {
+        int sceneWidth = 16;
+        int sceneHeight = 12;
+        Product product = new Product("name", BeamConstants.MERIS_FR_L1B_PRODUCT_TYPE_NAME,
+                                      sceneWidth, sceneHeight);
+        Band band = new Band("band", ProductData.TYPE_INT8, sceneWidth, sceneHeight);
+        product.addBand(band);
+
+        _productWriter.writeProductNodes(product, _outputFile);
+        _productWriter.sync();
+        ProductData sourceBuffer = getFilledSourceData(sceneWidth * sceneHeight);
+        _productWriter.writeBandRasterData(band, 0, 0, sceneWidth, sceneHeight, sourceBuffer,
+                                           ProgressMonitor.NULL);
+        try {
+            _productWriter.sync();
+            byte[] currentArray = getCurrentByteArray(band);
+            assertEquals(sceneWidth * sceneHeight, currentArray.length);
+            for (int i = 0; i < currentArray.length; i++) {
+                assertEquals(sourceBuffer.getElemIntAt(i), currentArray[i]);
+            }
+        } finally {
+            _productWriter.close();
+        }
+    }
+
     public void testWriteBandRasterData_SourceBuffer_toSmall() {
         int sceneWidth = 16;
         int sceneHeight = 12;
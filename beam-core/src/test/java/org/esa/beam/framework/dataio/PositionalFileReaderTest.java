@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class PositionalFileReaderTest {
+
+    private static final int NUM_SHORTS = 200000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("PositionalFileReaderTest", ".bin");
+        final ByteBuffer buffer = ByteBuffer.allocate(NUM_SHORTS * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < NUM_SHORTS; i++) {
+            buffer.putShort((short) i);
+        }
+        Files.write(file.toPath(), buffer.array());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testReadShorts() throws IOException {
+        assertReadShorts(false);
+    }
+
+    @Test
+    public void testReadShorts_MemoryMapped() throws IOException {
+        assertReadShorts(true);
+    }
+
+    @Test
+    public void testReadBytes() throws IOException {
+        try (PositionalFileReader reader = new PositionalFileReader(file, ByteOrder.LITTLE_ENDIAN, false)) {
+            assertEquals(NUM_SHORTS * 2, reader.getSize());
+            final ByteBuffer buffer = ByteBuffer.allocate(4);
+            reader.readFully(6, buffer);
+            assertEquals(0, buffer.position());
+            assertEquals(4, buffer.limit());
+            assertEquals(3, buffer.get());
+            assertEquals(0, buffer.get());
+            assertEquals(4, buffer.get());
+            assertEquals(0, buffer.get());
+
+            final ByteBuffer decoded = reader.read(6, 4);
+            assertEquals(ByteOrder.LITTLE_ENDIAN, decoded.order());
+            assertEquals(3, decoded.getShort());
+            assertEquals(4, decoded.getShort());
+        }
+    }
+
+    @Test
+    public void testReadBeyondEndOfFile() throws IOException {
+        try (PositionalFileReader reader = new PositionalFileReader(file, ByteOrder.LITTLE_ENDIAN, false)) {
+            reader.readFully(NUM_SHORTS * 2 - 2, new short[2], 0, 2);
+            fail("EOFException expected");
+        } catch (EOFException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final PositionalFileReader reader = new PositionalFileReader(file, ByteOrder.LITTLE_ENDIAN, false);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                final int first = t * 1000;
+                results.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        final short[] line = new short[500];
+                        for (int i = 0; i < 100; i++) {
+                            final int start = first + i * 7;
+                            reader.readFully(2L * start, line, 0, line.length);
+                            for (int x = 0; x < line.length; x++) {
+                                if (line[x] != (short) (start + x)) {
+                                    return false;
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executorService.shutdown();
+            reader.close();
+        }
+    }
+
+    private void assertReadShorts(boolean memoryMapped) throws IOException {
+        try (PositionalFileReader reader = new PositionalFileReader(file, ByteOrder.LITTLE_ENDIAN, memoryMapped)) {
+            assertEquals(memoryMapped, reader.isMemoryMapped());
+            final short[] data = new short[NUM_SHORTS + 1];
+            // larger than the decode buffer, hence read in chunks
+            reader.readFully(0, data, 1, NUM_SHORTS);
+            for (int i = 0; i < NUM_SHORTS; i++) {
+                assertEquals((short) i, data[i + 1]);
+            }
+            final int[] ints = new int[2];
+            reader.readFully(4, ints, 0, 2);
+            assertEquals(2 | (3 << 16), ints[0]);
+            assertEquals(4 | (5 << 16), ints[1]);
+        }
+    }
+}
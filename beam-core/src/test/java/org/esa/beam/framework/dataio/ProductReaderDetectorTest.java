@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.dataio;
+
+import org.esa.beam.util.io.BeamFileFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ProductReaderDetectorTest {
+
+    private File testDir;
+    private File indexFile;
+    private File inputFile;
+
+    @Before
+    public void setUp() throws Exception {
+        testDir = File.createTempFile("ProductReaderDetectorTest", "");
+        assertTrue(testDir.delete());
+        assertTrue(testDir.mkdir());
+        indexFile = new File(testDir, "index.txt");
+        inputFile = new File(testDir, "input.abc");
+        writeFile(inputFile, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(testDir);
+    }
+
+    @Test
+    public void testSelection() throws Exception {
+        final TestPlugIn suitable1 = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final TestPlugIn unable = new TestPlugIn(".xyz", DecodeQualification.UNABLE) {
+        };
+        final TestPlugIn suitable2 = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final TestPlugIn intended = new TestPlugIn(".xyz", DecodeQualification.INTENDED) {
+        };
+
+        final ProductReaderDetector sequential = new ProductReaderDetector(null, 1);
+        assertSame(suitable2, sequential.findPlugIn(inputFile, Arrays.<ProductReaderPlugIn>asList(suitable1, unable, suitable2)));
+        assertSame(intended, sequential.findPlugIn(inputFile, Arrays.<ProductReaderPlugIn>asList(suitable1, intended, suitable2)));
+        assertNull(sequential.findPlugIn(inputFile, Arrays.<ProductReaderPlugIn>asList(unable)));
+
+        final ProductReaderDetector parallel = new ProductReaderDetector(null, 4);
+        assertSame(suitable2, parallel.findPlugIn(inputFile, Arrays.<ProductReaderPlugIn>asList(suitable1, unable, suitable2)));
+        assertSame(intended, parallel.findPlugIn(inputFile, Arrays.<ProductReaderPlugIn>asList(suitable1, intended, suitable2)));
+    }
+
+    @Test
+    public void testParallelProbingStopsAtFirstIntendedPlugIn() throws Exception {
+        final BlockingPlugIn blocking = new BlockingPlugIn();
+        final TestPlugIn intended = new TestPlugIn(".xyz", DecodeQualification.INTENDED) {
+            @Override
+            public DecodeQualification getDecodeQualification(Object input) {
+                // the blocking request shall be running when the intended plug-in is known
+                try {
+                    blocking.started.await(BlockingPlugIn.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getDecodeQualification(input);
+            }
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(intended, blocking);
+
+        final ProductReaderDetector detector = new ProductReaderDetector(null, 2);
+        final long startTime = System.currentTimeMillis();
+        assertSame(intended, detector.findPlugIn(inputFile, plugIns));
+        assertTrue(System.currentTimeMillis() - startTime < BlockingPlugIn.TIMEOUT_MILLIS);
+        // the remaining request is cancelled, but not interrupted
+        blocking.release.countDown();
+        assertTrue(blocking.finished.await(BlockingPlugIn.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertFalse(blocking.interrupted.get());
+    }
+
+    @Test
+    public void testPlugInsWithMatchingExtensionAreAskedFirst() throws Exception {
+        final TestPlugIn other = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final TestPlugIn matching = new TestPlugIn(".ABC", DecodeQualification.INTENDED) {
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(other, matching);
+
+        final ProductReaderDetector detector = new ProductReaderDetector(null, 1);
+        assertSame(matching, detector.findPlugIn(inputFile, plugIns));
+        assertEquals(0, other.calls.get());
+        assertEquals(1, matching.calls.get());
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        final TestPlugIn plugIn1 = new TestPlugIn(".xyz", DecodeQualification.UNABLE) {
+        };
+        final TestPlugIn plugIn2 = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(plugIn1, plugIn2);
+
+        assertSame(plugIn2, new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, plugIns));
+        assertEquals(1, plugIn2.calls.get());
+        assertEquals(1, getIndexFiles().length);
+
+        // a new detector, e.g. in another run, uses the index
+        assertSame(plugIn2, new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile.getPath(), plugIns));
+        assertEquals(1, plugIn1.calls.get());
+        assertEquals(1, plugIn2.calls.get());
+
+        // modified files are probed again
+        writeFile(inputFile, 20);
+        assertSame(plugIn2, new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, plugIns));
+        assertEquals(2, plugIn2.calls.get());
+
+        // another set of plug-ins uses another index
+        final TestPlugIn plugIn3 = new TestPlugIn(".xyz", DecodeQualification.INTENDED) {
+        };
+        final List<ProductReaderPlugIn> otherPlugIns = Arrays.<ProductReaderPlugIn>asList(plugIn1, plugIn2, plugIn3);
+        assertSame(plugIn3, new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, otherPlugIns));
+        assertEquals(1, plugIn3.calls.get());
+        assertEquals(2, getIndexFiles().length);
+
+        // which leaves the index of the first set intact
+        final int callCount = plugIn2.calls.get();
+        assertSame(plugIn2, new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, plugIns));
+        assertEquals(callCount, plugIn2.calls.get());
+    }
+
+    @Test
+    public void testIndexDetectsModifiedFilesInDirectories() throws Exception {
+        final TestPlugIn plugIn = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(plugIn);
+        final File inputDir = new File(testDir, "input.dir");
+        assertTrue(inputDir.mkdir());
+        final File file = new File(inputDir, "data.bin");
+        writeFile(file, 10);
+        final long lastModified = inputDir.lastModified();
+
+        assertSame(plugIn, new ProductReaderDetector(indexFile, 1).findPlugIn(inputDir, plugIns));
+        assertSame(plugIn, new ProductReaderDetector(indexFile, 1).findPlugIn(inputDir, plugIns));
+        assertEquals(1, plugIn.calls.get());
+
+        // modifying a file does not modify its directory
+        writeFile(file, 20);
+        assertEquals(lastModified, inputDir.lastModified());
+        assertSame(plugIn, new ProductReaderDetector(indexFile, 1).findPlugIn(inputDir, plugIns));
+        assertEquals(2, plugIn.calls.get());
+    }
+
+    @Test
+    public void testIndexFileName() throws Exception {
+        assertEquals(new File(testDir, "index-1a2b.txt"), ProductReaderDetector.getIndexFile(indexFile, "1a2b"));
+        assertEquals(new File(testDir, "index-1a2b"),
+                     ProductReaderDetector.getIndexFile(new File(testDir, "index"), "1a2b"));
+    }
+
+    @Test
+    public void testIndexRemembersUndecodableFiles() throws Exception {
+        final TestPlugIn plugIn = new TestPlugIn(".xyz", DecodeQualification.UNABLE) {
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(plugIn);
+
+        assertNull(new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, plugIns));
+        assertNull(new ProductReaderDetector(indexFile, 1).findPlugIn(inputFile, plugIns));
+        assertEquals(1, plugIn.calls.get());
+    }
+
+    @Test
+    public void testNonFileInputsAreNotIndexed() throws Exception {
+        final TestPlugIn plugIn = new TestPlugIn(".xyz", DecodeQualification.SUITABLE) {
+        };
+        final List<ProductReaderPlugIn> plugIns = Arrays.<ProductReaderPlugIn>asList(plugIn);
+
+        final ProductReaderDetector detector = new ProductReaderDetector(indexFile, 1);
+        final Object input = new Object();
+        assertSame(plugIn, detector.findPlugIn(input, plugIns));
+        assertSame(plugIn, detector.findPlugIn(input, plugIns));
+        assertEquals(2, plugIn.calls.get());
+        assertEquals(0, getIndexFiles().length);
+    }
+
+    private File[] getIndexFiles() {
+        return testDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("index-");
+            }
+        });
+    }
+
+    private static void delete(File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void writeFile(File file, int length) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[length]);
+        }
+    }
+
+    private static class BlockingPlugIn extends TestPlugIn {
+
+        private static final long TIMEOUT_MILLIS = 10000;
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+
+        private BlockingPlugIn() {
+            super(".xyz", DecodeQualification.SUITABLE);
+        }
+
+        @Override
+        public DecodeQualification getDecodeQualification(Object input) {
+            started.countDown();
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return super.getDecodeQualification(input);
+        }
+    }
+
+    private static class TestPlugIn implements ProductReaderPlugIn {
+
+        private final String extension;
+        private final DecodeQualification qualification;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private TestPlugIn(String extension, DecodeQualification qualification) {
+            this.extension = extension;
+            this.qualification = qualification;
+        }
+
+        @Override
+        public DecodeQualification getDecodeQualification(Object input) {
+            calls.incrementAndGet();
+            return qualification;
+        }
+
+        @Override
+        public Class[] getInputTypes() {
+            return new Class[]{File.class, String.class};
+        }
+
+        @Override
+        public ProductReader createReaderInstance() {
+            return null;
+        }
+
+        @Override
+        public String[] getFormatNames() {
+            return new String[]{"TEST"};
+        }
+
+        @Override
+        public String[] getDefaultFileExtensions() {
+            return new String[]{extension};
+        }
+
+        @Override
+        public String getDescription(Locale locale) {
+            return "Test";
+        }
+
+        @Override
+        public BeamFileFilter getProductFileFilter() {
+            return null;
+        }
+    }
+}
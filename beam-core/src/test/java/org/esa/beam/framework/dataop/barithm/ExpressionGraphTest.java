@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataop.barithm;
+
+import com.bc.jexp.EvalEnv;
+import com.bc.jexp.Term;
+import com.bc.jexp.impl.AbstractFunction;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ExpressionGraphTest {
+
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 3;
+
+    @Test
+    public void testSharedSubexpressions() throws Exception {
+        final Product product = createProduct();
+        product.getBand("b").setValidPixelExpression("a > 0 && c < 10");
+        product.getBand("d").setValidPixelExpression("a > 0 && c > 5");
+
+        final ExpressionGraph graph = ExpressionGraph.getInstance(product);
+        assertEquals(1, graph.getSharedSubexpressions().size());
+        assertEquals("(a > 0)", graph.getSharedSubexpressions().iterator().next());
+
+        final ExpressionGraph.SharedExpression sharedExpression = graph.rewrite("a > 0 && c < 10", product);
+        assertNotNull(sharedExpression);
+        assertEquals("(_shared_0 && (c < 10))", sharedExpression.getExpression());
+        assertEquals(Collections.singletonMap("_shared_0", "(a > 0)"), sharedExpression.getSymbols());
+
+        // an expression is never replaced as a whole
+        assertNull(graph.rewrite("a > 0", product));
+        assertNull(graph.rewrite("c < 10", product));
+    }
+
+    @Test
+    public void testGraphIsUpdatedIfExpressionsChange() throws Exception {
+        final Product product = createProduct();
+        assertTrue(ExpressionGraph.getInstance(product).getSharedSubexpressions().isEmpty());
+
+        product.getBand("b").setValidPixelExpression("a > 0 && c < 10");
+        product.addMask("m", "!(a > 0) || d == 2", "", Color.RED, 0.5);
+        assertEquals(1, ExpressionGraph.getInstance(product).getSharedSubexpressions().size());
+    }
+
+    @Test
+    public void testGraphIsReusedUntilExpressionsChange() throws Exception {
+        final Product product = createProduct();
+        final ExpressionGraph graph = ExpressionGraph.getInstance(product);
+        assertSame(graph, ExpressionGraph.getInstance(product));
+        product.getBand("a").setDescription("no expression");
+        assertSame(graph, ExpressionGraph.getInstance(product));
+
+        product.getBand("b").setValidPixelExpression("a > 0");
+        final ExpressionGraph changedGraph = ExpressionGraph.getInstance(product);
+        assertNotSame(graph, changedGraph);
+        assertSame(changedGraph, ExpressionGraph.getInstance(product));
+
+        product.addBand("e", "a + 1");
+        assertNotSame(changedGraph, ExpressionGraph.getInstance(product));
+    }
+
+    @Test
+    public void testDecompiledExpressionIsParsedToSameTerm() throws Exception {
+        final Product product = createProduct();
+        final String[] expressions = {
+                "a > 0 && !(c < 10) || d == 2",
+                "a * -2.5 + b / 3 - c % 2 >= d",
+                "(a & 3) | (b ^ 1) != ~c",
+                "a < 0 ? -a : a",
+                "sin(a) + max(b, c) <= 1.0E-5",
+                "-(a + b) > 2 and not false",
+        };
+        final TermDecompiler decompiler = new TermDecompiler(Collections.<String, String>emptyMap());
+        for (String expression : expressions) {
+            final Term term = product.parseExpression(expression);
+            final String decompiled = decompiler.decompile(term);
+            assertEquals(expression, term.toString(), product.parseExpression(decompiled).toString());
+        }
+    }
+
+    /**
+     * Compares the number of evaluations of a sub-expression shared by two masks with and without
+     * sharing it.
+     */
+    @Test
+    public void testSharedSubexpressionIsEvaluatedOncePerPixel() throws Exception {
+        final AtomicInteger evaluationCount = new AtomicInteger();
+        final AbstractFunction.B countingFunction = new AbstractFunction.B("countedPositive", 1) {
+            @Override
+            public boolean evalB(EvalEnv env, Term[] args) {
+                evaluationCount.incrementAndGet();
+                return args[0].evalD(env) > 0;
+            }
+        };
+        final String oldProperty = System.getProperty(ExpressionGraph.ENABLED_PROPERTY);
+        BandArithmetic.registerFunction(countingFunction);
+        try {
+            System.setProperty(ExpressionGraph.ENABLED_PROPERTY, "false");
+            computeMasks(createProduct());
+            final int countBefore = evaluationCount.getAndSet(0);
+
+            System.setProperty(ExpressionGraph.ENABLED_PROPERTY, "true");
+            computeMasks(createProduct());
+            final int countAfter = evaluationCount.get();
+
+            assertEquals(2 * WIDTH * HEIGHT, countBefore);
+            assertEquals(WIDTH * HEIGHT, countAfter);
+        } finally {
+            BandArithmetic.deregisterFunction(countingFunction);
+            if (oldProperty != null) {
+                System.setProperty(ExpressionGraph.ENABLED_PROPERTY, oldProperty);
+            } else {
+                System.clearProperty(ExpressionGraph.ENABLED_PROPERTY);
+            }
+        }
+    }
+
+    private static void computeMasks(Product product) {
+        final Mask m1 = product.addMask("m1", "countedPositive(a) && c < 10", "", Color.RED, 0.5);
+        final Mask m2 = product.addMask("m2", "countedPositive(a) && c > 5", "", Color.RED, 0.5);
+        final int[] expected1 = new int[WIDTH * HEIGHT];
+        final int[] expected2 = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < expected1.length; i++) {
+            expected1[i] = i % 3 > 0 && i < 10 ? 255 : 0;
+            expected2[i] = i % 3 > 0 && i > 5 ? 255 : 0;
+        }
+        assertArrayEquals(expected1, m1.getSourceImage().getData().getSamples(0, 0, WIDTH, HEIGHT, 0, (int[]) null));
+        assertArrayEquals(expected2, m2.getSourceImage().getData().getSamples(0, 0, WIDTH, HEIGHT, 0, (int[]) null));
+    }
+
+    private static Product createProduct() {
+        final Product product = new Product("P", "T", WIDTH, HEIGHT);
+        final float[] a = new float[WIDTH * HEIGHT];
+        final float[] c = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i % 3 - 1;
+            c[i] = i;
+        }
+        addBand(product, "a", a);
+        addBand(product, "b", new float[WIDTH * HEIGHT]);
+        addBand(product, "c", c);
+        addBand(product, "d", new float[WIDTH * HEIGHT]);
+        return product;
+    }
+
+    private static void addBand(Product product, String name, float[] data) {
+        final Band band = product.addBand(name, ProductData.TYPE_FLOAT32);
+        band.setRasterData(ProductData.createInstance(data));
+    }
+}
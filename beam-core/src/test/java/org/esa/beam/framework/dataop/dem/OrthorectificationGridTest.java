@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.framework.dataop.dem;
+
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.PixelPos;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class OrthorectificationGridTest {
+
+    @Test
+    public void testInterpolatedPixelPosIsCloseToExactPixelPos() {
+        final Orthorectifier exact = createOrthorectifier();
+        final OrthorectificationGrid grid = OrthorectificationGrid.create(exact, 10, 2);
+        assertEquals(10, grid.getStep());
+        assertEquals(OrthorectifierTest.SCENE_WIDTH, grid.getSceneRasterWidth());
+        assertEquals(OrthorectifierTest.SCENE_HEIGHT, grid.getSceneRasterHeight());
+
+        final GriddedOrthorectifier gridded = new GriddedOrthorectifier(exact, grid);
+        for (float lat = 1.25f; lat < 10.0f; lat += 2.5f) {
+            for (float lon = 1.25f; lon < 10.0f; lon += 2.5f) {
+                final GeoPos geoPos = new GeoPos(lat, lon);
+                final PixelPos expected = exact.getPixelPos(geoPos, null);
+                final PixelPos actual = gridded.getPixelPos(geoPos, null);
+                assertEquals(expected.x, actual.x, 0.1f);
+                assertEquals(expected.y, actual.y, 0.1f);
+            }
+        }
+        assertTrue(grid.computeMaxError(exact, 2) < 0.1);
+    }
+
+    @Test
+    public void testSequentialAndParallelCreationAreEqual() {
+        final Orthorectifier exact = createOrthorectifier();
+        final OrthorectificationGrid sequential = OrthorectificationGrid.create(exact, 7, 1);
+        final OrthorectificationGrid parallel = OrthorectificationGrid.create(exact, 7, 4);
+        assertSamePixelPos(sequential, parallel);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final Orthorectifier exact = createOrthorectifier();
+        final OrthorectificationGrid grid = OrthorectificationGrid.create(exact, 10, 1);
+        assertTrue(Double.isNaN(grid.getMaxError()));
+        final double maxError = grid.computeMaxError(exact, 1);
+        assertEquals(maxError, grid.getMaxError(), 0.0);
+        final File file = File.createTempFile("ortho", ".grid");
+        try {
+            grid.write(file);
+            final OrthorectificationGrid readGrid = OrthorectificationGrid.read(file);
+            assertEquals(maxError, readGrid.getMaxError(), 0.0);
+            assertEquals(grid.getStep(), readGrid.getStep());
+            assertEquals(grid.getSceneRasterWidth(), readGrid.getSceneRasterWidth());
+            assertEquals(grid.getSceneRasterHeight(), readGrid.getSceneRasterHeight());
+            assertSamePixelPos(grid, readGrid);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertSamePixelPos(OrthorectificationGrid expectedGrid, OrthorectificationGrid actualGrid) {
+        for (int y = 0; y <= OrthorectifierTest.SCENE_HEIGHT; y += 3) {
+            for (int x = 0; x <= OrthorectifierTest.SCENE_WIDTH; x += 3) {
+                final PixelPos expected = new PixelPos(x + 0.5f, y + 0.5f);
+                final PixelPos actual = new PixelPos(x + 0.5f, y + 0.5f);
+                expectedGrid.applyDisplacement(expected);
+                actualGrid.applyDisplacement(actual);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    private static Orthorectifier createOrthorectifier() {
+        return new Orthorectifier2(OrthorectifierTest.SCENE_WIDTH,
+                                   OrthorectifierTest.SCENE_HEIGHT,
+                                   new PointingMock(new GeoCodingMock()),
+                                   null,
+                                   OrthorectifierTest.MAX_ITERATION_COUNT);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2011 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.jai;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.FlagCoding;
+import org.esa.beam.framework.datamodel.Mask;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+
+import static org.junit.Assert.*;
+
+public class FlagMaskOpImageTest {
+
+    private Product product;
+
+    @Before
+    public void before() {
+        product = new Product("P", "T", 100, 60);
+        product.setPreferredTileSize(32, 32);
+        final Band flagBand = product.addBand("flags", ProductData.TYPE_INT16);
+        final short[] flags = new short[100 * 60];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = (short) (i % 8);
+        }
+        flagBand.setRasterData(ProductData.createInstance(flags));
+        final FlagCoding flagCoding = new FlagCoding("flags");
+        flagCoding.addFlag("F1", 0x01, null);
+        flagCoding.addFlag("F2", 0x02, null);
+        flagCoding.addFlag("F12", 0x03, null);
+        product.getFlagCodingGroup().add(flagCoding);
+        flagBand.setSampleCoding(flagCoding);
+    }
+
+    @Test
+    public void testFlagMaskUsesFlagMaskOpImage() {
+        final Mask mask = product.addMask("m", "flags.F2", "", Color.RED, 0.5);
+        final RenderedImage image = mask.getSourceImage().getImage(0);
+        assertTrue(image instanceof FlagMaskOpImage);
+        assertEquals(0x02, ((FlagMaskOpImage) image).getFlagMask());
+
+        final Mask complexMask = product.addMask("c", "flags.F1 && flags.F2", "", Color.RED, 0.5);
+        assertTrue(complexMask.getSourceImage().getImage(0) instanceof VirtualBandOpImage);
+    }
+
+    @Test
+    public void testSameSamplesAsVirtualBandOpImage() {
+        for (String flagName : new String[]{"F1", "F2", "F12"}) {
+            final String expression = "flags." + flagName;
+            for (int level = 0; level < 2; level++) {
+                final ResolutionLevel resolutionLevel = ResolutionLevel.create(
+                        ImageManager.getMultiLevelModel(product.getBand("flags")), level);
+                final FlagMaskOpImage flagMaskImage = new FlagMaskOpImage(
+                        product.getBand("flags"), product.getBand("flags").getFlagCoding().getFlagMask(flagName),
+                        resolutionLevel);
+                final VirtualBandOpImage virtualBandImage = VirtualBandOpImage.createMask(expression, product,
+                                                                                          resolutionLevel);
+                assertEquals(virtualBandImage.getWidth(), flagMaskImage.getWidth());
+                assertEquals(virtualBandImage.getHeight(), flagMaskImage.getHeight());
+                assertEquals(virtualBandImage.getTileWidth(), flagMaskImage.getTileWidth());
+
+                final Raster expected = virtualBandImage.getData();
+                final Raster actual = flagMaskImage.getData();
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals(expression + " at " + x + "," + y,
+                                     expected.getSample(x, y, 0), actual.getSample(x, y, 0));
+                    }
+                }
+            }
+        }
+    }
+}
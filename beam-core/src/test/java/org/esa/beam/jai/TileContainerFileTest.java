@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.jai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TileContainerFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("TileContainerFileTest", ".rtc");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteAndRead_Deflate() throws IOException {
+        assertWriteAndRead(TileContainerFile.COMPRESSION_DEFLATE, DataBuffer.TYPE_SHORT);
+        assertWriteAndRead(TileContainerFile.COMPRESSION_DEFLATE, DataBuffer.TYPE_FLOAT);
+    }
+
+    @Test
+    public void testWriteAndRead_Uncompressed() throws IOException {
+        assertWriteAndRead(TileContainerFile.COMPRESSION_NONE, DataBuffer.TYPE_SHORT);
+        assertWriteAndRead(TileContainerFile.COMPRESSION_NONE, DataBuffer.TYPE_FLOAT);
+    }
+
+    @Test
+    public void testDeflateReducesSize() throws IOException {
+        final TileContainerWriter writer = new TileContainerWriter(file, 1, 1, TileContainerFile.COMPRESSION_DEFLATE);
+        // a constant tile compresses very well
+        writer.writeTile(0, 0, Raster.createBandedRaster(DataBuffer.TYPE_INT, 64, 64, 1, null));
+        writer.close();
+        assertTrue(file.length() < 64 * 64 * 4 / 10);
+    }
+
+    @Test
+    public void testIncompleteContainerIsDeleted() throws IOException {
+        final TileContainerWriter writer = new TileContainerWriter(file, 2, 1, TileContainerFile.COMPRESSION_DEFLATE);
+        writer.writeTile(1, 0, createTile(DataBuffer.TYPE_SHORT, 1, 0));
+        try {
+            writer.close();
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // ok
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        final TileContainerWriter writer = new TileContainerWriter(file, 1, 1, TileContainerFile.COMPRESSION_NONE);
+        writer.writeTile(0, 0, createTile(DataBuffer.TYPE_SHORT, 0, 0));
+        writer.abort();
+        assertFalse(file.exists());
+        // closing an aborted writer does nothing
+        writer.close();
+        assertFalse(file.exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenInvalidFile() throws IOException {
+        TileContainerFile.open(file);
+    }
+
+    private void assertWriteAndRead(int compression, int dataType) throws IOException {
+        final TileContainerWriter writer = new TileContainerWriter(file, 3, 2, compression);
+        // write in arbitrary order
+        for (int tileY = 1; tileY >= 0; tileY--) {
+            for (int tileX = 0; tileX < 3; tileX++) {
+                writer.writeTile(tileX, tileY, createTile(dataType, tileX, tileY));
+            }
+        }
+        writer.close();
+
+        final TileContainerFile container = TileContainerFile.open(file);
+        try {
+            assertEquals(compression, container.getCompression());
+            assertEquals(3, container.getNumXTiles());
+            assertEquals(2, container.getNumYTiles());
+            for (int tileY = 0; tileY < 2; tileY++) {
+                for (int tileX = 0; tileX < 3; tileX++) {
+                    final Raster expected = createTile(dataType, tileX, tileY);
+                    final WritableRaster actual = expected.createCompatibleWritableRaster(expected.getBounds());
+                    container.readTile(tileX, tileY, actual);
+                    for (int y = expected.getMinY(); y < expected.getMinY() + expected.getHeight(); y++) {
+                        for (int x = expected.getMinX(); x < expected.getMinX() + expected.getWidth(); x++) {
+                            assertEquals(expected.getSampleDouble(x, y, 0), actual.getSampleDouble(x, y, 0), 0.0);
+                        }
+                    }
+                }
+            }
+        } finally {
+            container.close();
+        }
+    }
+
+    private static Raster createTile(int dataType, int tileX, int tileY) {
+        final int w = 16;
+        final int h = 8;
+        final DataBuffer dataBuffer;
+        if (dataType == DataBuffer.TYPE_SHORT) {
+            dataBuffer = new DataBufferShort(w * h);
+        } else {
+            dataBuffer = new DataBufferFloat(w * h);
+        }
+        for (int i = 0; i < w * h; i++) {
+            dataBuffer.setElemDouble(i, 100 * tileY + 10 * tileX + (i % 7) - 3.5);
+        }
+        final SampleModel sampleModel = new BandedSampleModel(dataType, w, h, 1);
+        return Raster.createWritableRaster(sampleModel, dataBuffer, new Point(tileX * w, tileY * h));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.nn;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class NNffbpAlphaTabEvaluatorTest {
+
+    private static final int N = 1003;
+
+    private NNffbpAlphaTabNet net;
+    private double[][] inputVectors;
+
+    @Before
+    public void setUp() throws Exception {
+        try (InputStream stream = NNffbpAlphaTabEvaluatorTest.class.getResourceAsStream("nn_test.net")) {
+            net = new NNffbpAlphaTabNet(stream);
+        }
+        final double[] inmin = net.getInmin();
+        final double[] inmax = net.getInmax();
+        final Random random = new Random(42);
+        inputVectors = new double[N][net.getNumInputs()];
+        for (double[] inputVector : inputVectors) {
+            for (int i = 0; i < inputVector.length; i++) {
+                inputVector[i] = inmin[i] + random.nextDouble() * (inmax[i] - inmin[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testNet() {
+        assertEquals(6, net.getNumInputs());
+        assertEquals(1, net.getNumOutputs());
+        assertEquals(-1.610930, net.getInmin()[0], 0.0);
+        assertEquals(3.998400, net.getInmax()[0], 0.0);
+        assertEquals(0.0, net.getOutmin()[0], 0.0);
+        assertEquals(1.0, net.getOutmax()[0], 0.0);
+    }
+
+    @Test
+    public void testCalcJacobi() {
+        final NNCalc nnCalc = net.createEvaluator().calcJacobi(new double[]{1.0, 3.4, 6.988, 4.4, 7.0, 16.21});
+        assertEquals(0.9999546066706964, nnCalc.getNnOutput()[0], 1.0e-6);
+        assertEquals(-7.3325278006568306E-6, nnCalc.getJacobiMatrix()[0][0], 1.0e-6);
+        assertEquals(1.2507178214659703E-5, nnCalc.getJacobiMatrix()[0][5], 1.0e-6);
+    }
+
+    @Test
+    public void testBatchCalcEqualsSingleCalc() {
+        final NNffbpAlphaTabEvaluator evaluator = net.createEvaluator();
+        final double[] outputs = new double[net.getNumOutputs() * N];
+        evaluator.calc(toBatch(inputVectors), outputs, N);
+
+        final NNffbpAlphaTabFast nn = new NNffbpAlphaTabFast(net);
+        for (int k = 0; k < N; k++) {
+            final double[] expected = nn.calc(inputVectors[k]);
+            for (int o = 0; o < expected.length; o++) {
+                assertEquals(expected[o], outputs[o * N + k], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchCalcWithFloats() {
+        final NNffbpAlphaTabEvaluator evaluator = net.createEvaluator();
+        final double[] inputs = toBatch(inputVectors);
+        final float[] floatInputs = new float[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            floatInputs[i] = (float) inputs[i];
+        }
+        final float[] outputs = new float[net.getNumOutputs() * N];
+        evaluator.calc(floatInputs, outputs, N);
+
+        for (int k = 0; k < N; k++) {
+            final double[] inputVector = new double[net.getNumInputs()];
+            for (int i = 0; i < inputVector.length; i++) {
+                inputVector[i] = floatInputs[i * N + k];
+            }
+            final double[] expected = evaluator.calc(inputVector);
+            for (int o = 0; o < expected.length; o++) {
+                assertEquals((float) expected[o], outputs[o * N + k], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchCalcJacobiEqualsSingleCalcJacobi() {
+        final int nnIn = net.getNumInputs();
+        final int nnOut = net.getNumOutputs();
+        final NNffbpAlphaTabEvaluator evaluator = net.createEvaluator();
+        final double[] outputs = new double[nnOut * N];
+        final double[] jacobians = new double[nnOut * nnIn * N];
+        evaluator.calcJacobi(toBatch(inputVectors), outputs, jacobians, N);
+
+        final NNffbpAlphaTabFast nn = new NNffbpAlphaTabFast(net);
+        for (int k = 0; k < N; k++) {
+            final NNCalc expected = nn.calcJacobi(inputVectors[k]);
+            for (int o = 0; o < nnOut; o++) {
+                assertEquals(expected.getNnOutput()[o], outputs[o * N + k], 0.0);
+                for (int i = 0; i < nnIn; i++) {
+                    assertEquals(expected.getJacobiMatrix()[o][i], jacobians[(o * nnIn + i) * N + k], 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluatorsSharingNet() throws Exception {
+        final double[] inputs = toBatch(inputVectors);
+        final double[] expected = new double[net.getNumOutputs() * N];
+        net.createEvaluator().calc(inputs, expected, N);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<double[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executorService.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws Exception {
+                        final NNffbpAlphaTabEvaluator evaluator = net.createEvaluator();
+                        final double[] outputs = new double[net.getNumOutputs() * N];
+                        evaluator.calc(inputs, outputs, N);
+                        return outputs;
+                    }
+                }));
+            }
+            for (Future<double[]> future : futures) {
+                assertArrayEquals(expected, future.get(), 0.0);
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private double[] toBatch(double[][] vectors) {
+        final int n = vectors.length;
+        final int size = vectors[0].length;
+        final double[] batch = new double[size * n];
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < size; i++) {
+                batch[i * n + k] = vectors[k][i];
+            }
+        }
+        return batch;
+    }
+}
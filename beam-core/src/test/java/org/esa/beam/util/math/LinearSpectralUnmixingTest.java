@@ -71,6 +71,136 @@ public class LinearSpectralUnmixingTest extends TestCase {
                 1e-15);
     }
 
+    public void testFullyConstrainedUnmixing() throws IOException {
+        final double[][] e = endmembers.getArray();
+        final double[][] s = spectra.getArray();
+        SpectralUnmixing mlmFc = new FullyConstrainedLSU(e);
+        Matrix abundFullyConstrBeam = new Matrix(mlmFc.unmix(s));
+
+        Matrix abundFullyConstrExpected = new Matrix(unmixFullyConstrainedExhaustively(e, s));
+        assertEquals("Difference of abundances (BEAM minus EXPECTED, fully constrained)",
+                0.0,
+                maxAbs(abundFullyConstrBeam.minus(abundFullyConstrExpected)),
+                1e-7);
+
+        final double[][] abundances = abundFullyConstrBeam.getArray();
+        for (double[] row : abundances) {
+            for (double abundance : row) {
+                assertTrue("Abundances must not be negative (fully constrained)", abundance >= 0.0);
+            }
+        }
+        assertEquals("Sum of abundances must be 1 (fully constrained)",
+                0.0,
+                maxAbsDeltaRowSumFromOne(abundFullyConstrBeam),
+                1e-12);
+    }
+
+    public void testFullyConstrainedUnmixingIndependentOfSpectraOrder() throws IOException {
+        final double[][] s = spectra.getArray();
+        final int colCount = s[0].length;
+        final double[][] reversed = new double[s.length][colCount];
+        for (int i = 0; i < s.length; i++) {
+            for (int j = 0; j < colCount; j++) {
+                reversed[i][j] = s[i][colCount - 1 - j];
+            }
+        }
+        SpectralUnmixing mlmFc = new FullyConstrainedLSU(endmembers.getArray());
+        final double[][] abundances = mlmFc.unmix(s);
+        final double[][] reversedAbundances = mlmFc.unmix(reversed);
+        for (int i = 0; i < abundances.length; i++) {
+            for (int j = 0; j < colCount; j++) {
+                assertEquals(abundances[i][j], reversedAbundances[i][colCount - 1 - j], 1e-12);
+            }
+        }
+    }
+
+    public void testBatchUnmixing() throws IOException {
+        final double[][] e = endmembers.getArray();
+        final double[][] s = spectra.getArray();
+        assertBatchUnmixingEqualsMatrixUnmixing(new UnconstrainedLSU(e), s);
+        assertBatchUnmixingEqualsMatrixUnmixing(new ConstrainedLSU(e), s);
+        assertBatchUnmixingEqualsMatrixUnmixing(new FullyConstrainedLSU(e), s);
+    }
+
+    private static void assertBatchUnmixingEqualsMatrixUnmixing(BatchSpectralUnmixing mlm, double[][] s) {
+        final int colCount = s[0].length;
+        final int numChannels = mlm.getNumChannels();
+        final int numEndmembers = mlm.getNumEndmembers();
+        assertEquals(s.length, numChannels);
+
+        final double[] flatSpectra = new double[numChannels * colCount];
+        for (int i = 0; i < numChannels; i++) {
+            System.arraycopy(s[i], 0, flatSpectra, i * colCount, colCount);
+        }
+        final double[] flatAbundances = new double[numEndmembers * colCount];
+        mlm.unmix(flatSpectra, flatAbundances, colCount, mlm.createWorkspace(colCount));
+        final double[] flatMixed = new double[numChannels * colCount];
+        mlm.mix(flatAbundances, flatMixed, colCount);
+
+        final double[][] abundances = mlm.unmix(s);
+        final double[][] mixed = mlm.mix(abundances);
+        for (int i = 0; i < numEndmembers; i++) {
+            for (int j = 0; j < colCount; j++) {
+                assertEquals(abundances[i][j], flatAbundances[i * colCount + j], 1e-15);
+            }
+        }
+        for (int i = 0; i < numChannels; i++) {
+            for (int j = 0; j < colCount; j++) {
+                assertEquals(mixed[i][j], flatMixed[i * colCount + j], 1e-15);
+            }
+        }
+    }
+
+    /**
+     * Tries the constrained unmixing for all subsets of endmembers and selects the one with non-negative
+     * abundances and smallest error.
+     */
+    private static double[][] unmixFullyConstrainedExhaustively(double[][] e, double[][] s) {
+        final int nchem = e.length;
+        final int nmemb = e[0].length;
+        final int colCount = s[0].length;
+        final double[][] abundances = new double[nmemb][colCount];
+        for (int j = 0; j < colCount; j++) {
+            final double[][] spectrum = new double[nchem][1];
+            for (int i = 0; i < nchem; i++) {
+                spectrum[i][0] = s[i][j];
+            }
+            double errorBest = Double.POSITIVE_INFINITY;
+            for (int subset = 1; subset < 1 << nmemb; subset++) {
+                final int[] members = new int[Integer.bitCount(subset)];
+                for (int m = 0, k = 0; m < nmemb; m++) {
+                    if ((subset & (1 << m)) != 0) {
+                        members[k++] = m;
+                    }
+                }
+                final double[][] trialEndmembers = new Matrix(e).getMatrix(0, nchem - 1, members).getArrayCopy();
+                final ConstrainedLSU model = new ConstrainedLSU(trialEndmembers);
+                final double[][] trialAbundances = model.unmix(spectrum);
+                boolean feasible = true;
+                for (double[] trialAbundance : trialAbundances) {
+                    feasible &= trialAbundance[0] >= 0.0;
+                }
+                if (feasible) {
+                    final double[][] mixed = model.mix(trialAbundances);
+                    double error = 0.0;
+                    for (int i = 0; i < nchem; i++) {
+                        error += (spectrum[i][0] - mixed[i][0]) * (spectrum[i][0] - mixed[i][0]);
+                    }
+                    if (error < errorBest) {
+                        errorBest = error;
+                        for (int m = 0; m < nmemb; m++) {
+                            abundances[m][j] = 0.0;
+                        }
+                        for (int k = 0; k < members.length; k++) {
+                            abundances[members[k]][j] = trialAbundances[k][0];
+                        }
+                    }
+                }
+            }
+        }
+        return abundances;
+    }
+
     private static double maxAbs(Matrix matrix) {
         int nrows = matrix.getRowDimension();
         int ncols = matrix.getColumnDimension();
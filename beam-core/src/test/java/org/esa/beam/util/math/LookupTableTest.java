@@ -112,4 +112,102 @@ public class LookupTableTest extends TestCase {
             assertEquals(expected, b, 1.0E-10);
         }
     }
+
+    public void testBulkInterpolation() {
+        final LookupTable lut = createRandomLookupTable(new Random(31415));
+        final int n = 1000;
+        final double[] coordinates = createCoordinates(lut.getDimensions(), n, new Random(27182));
+
+        final double[] values = new double[n];
+        lut.getValues(coordinates, values, n);
+
+        final double[] x = new double[3];
+        for (int k = 0; k < n; ++k) {
+            for (int i = 0; i < 3; ++i) {
+                x[i] = coordinates[i * n + k];
+            }
+            assertEquals(lut.getValue(x), values[k], 0.0);
+        }
+    }
+
+    public void testBulkInterpolationWithIllegalArguments() {
+        final LookupTable lut = createRandomLookupTable(new Random(31415));
+
+        try {
+            lut.getValues(new double[29], new double[10], 10);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            lut.getValues(new double[30], new double[9], 10);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testSlice() {
+        final LookupTable lut = createRandomLookupTable(new Random(31415));
+        final Random rng = new Random(27182);
+
+        for (int i = 0; i < 3; ++i) {
+            final IntervalPartition dimension = lut.getDimension(i);
+            final double c = dimension.getMin() + rng.nextDouble() * (dimension.getMax() - dimension.getMin());
+            final LookupTable slice = lut.getSlice(i, c);
+            assertEquals(2, slice.getDimensionCount());
+
+            for (int k = 0; k < 100; ++k) {
+                final double[] x = new double[3];
+                final double[] y = new double[2];
+                for (int j = 0, l = 0; j < 3; ++j) {
+                    if (j == i) {
+                        x[j] = c;
+                    } else {
+                        final IntervalPartition d = lut.getDimension(j);
+                        x[j] = y[l++] = d.getMin() + rng.nextDouble() * (d.getMax() - d.getMin());
+                    }
+                }
+                assertEquals(lut.getValue(x), slice.getValue(y), 1.0E-12);
+            }
+        }
+
+        try {
+            new LookupTable(new double[]{0, 1}, new double[]{0, 1}).getSlice(0, 0.5);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static LookupTable createRandomLookupTable(Random rng) {
+        final IntervalPartition[] dimensions = IntervalPartition.createArray(
+                new double[]{0, 1, 2, 4, 8}, new double[]{-1, 0, 0.5, 1, 1.5, 3}, new double[]{10, 20});
+
+        final double[] values = new double[LookupTable.getVertexCount(dimensions)];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = rng.nextDouble();
+        }
+
+        return new LookupTable(values, dimensions);
+    }
+
+    /**
+     * Creates coordinates which vary smoothly, like those of neighbouring pixels, with occasional
+     * jumps and values outside of the coordinate grid.
+     */
+    static double[] createCoordinates(IntervalPartition[] dimensions, int n, Random rng) {
+        final double[] coordinates = new double[dimensions.length * n];
+        for (int i = 0; i < dimensions.length; ++i) {
+            final double min = dimensions[i].getMin() - 0.5;
+            final double max = dimensions[i].getMax() + 0.5;
+            double x = min + rng.nextDouble() * (max - min);
+            for (int k = 0; k < n; ++k) {
+                if (rng.nextDouble() < 0.05) {
+                    x = min + rng.nextDouble() * (max - min);
+                } else {
+                    x = Math.max(min, Math.min(max, x + (rng.nextDouble() - 0.5) * 0.2));
+                }
+                coordinates[i * n + k] = x;
+            }
+        }
+        return coordinates;
+    }
 }
@@ -18,6 +18,7 @@ package org.esa.beam.util.math;
 import junit.framework.TestCase;
 
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Tests for class {@link VectorLookupTable}.
@@ -78,4 +79,53 @@ public class VectorLookupTableTest extends TestCase {
         assertTrue(Arrays.equals(new double[]{1.5, 5.5}, lut.getValues(0.5, 0.5)));
         assertTrue(Arrays.equals(new double[]{2.5, 6.5}, lut.getValues(1.0, 0.5)));
     }
+
+    public void testBulkInterpolation() {
+        final VectorLookupTable lut = createRandomLookupTable(3, new Random(31415));
+        final int n = 1000;
+        final double[] coordinates = LookupTableTest.createCoordinates(lut.getDimensions(), n, new Random(27182));
+
+        final double[] values = new double[3 * n];
+        lut.getValues(coordinates, values, n);
+
+        final double[] x = new double[3];
+        for (int k = 0; k < n; ++k) {
+            for (int i = 0; i < 3; ++i) {
+                x[i] = coordinates[i * n + k];
+            }
+            final double[] expected = lut.getValues(x);
+            for (int l = 0; l < 3; ++l) {
+                assertEquals(expected[l], values[l * n + k], 0.0);
+            }
+        }
+    }
+
+    public void testSlice() {
+        final VectorLookupTable lut = createRandomLookupTable(2, new Random(31415));
+        final VectorLookupTable slice = lut.getSlice(1, 0.7);
+        assertEquals(2, slice.getDimensionCount());
+        assertEquals(2, slice.getLength());
+
+        final Random rng = new Random(27182);
+        for (int k = 0; k < 100; ++k) {
+            final double x0 = rng.nextDouble() * 8.0;
+            final double x2 = 10.0 + rng.nextDouble() * 10.0;
+            final double[] expected = lut.getValues(x0, 0.7, x2).clone();
+            final double[] actual = slice.getValues(x0, x2);
+            assertEquals(expected[0], actual[0], 1.0E-12);
+            assertEquals(expected[1], actual[1], 1.0E-12);
+        }
+    }
+
+    private static VectorLookupTable createRandomLookupTable(int length, Random rng) {
+        final IntervalPartition[] dimensions = IntervalPartition.createArray(
+                new double[]{0, 1, 2, 4, 8}, new double[]{-1, 0, 0.5, 1, 1.5, 3}, new double[]{10, 20});
+
+        final float[] values = new float[length * LookupTable.getVertexCount(dimensions)];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = rng.nextFloat();
+        }
+
+        return new VectorLookupTable(length, values, dimensions);
+    }
 }
@@ -20,8 +20,11 @@ import com.bc.ceres.binding.ConversionException;
 import com.bc.ceres.binding.Converter;
 import com.bc.ceres.binding.ConverterRegistry;
 import com.sun.media.imageio.stream.FileChannelImageInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
 import java.util.AbstractMap;
@@ -195,6 +198,42 @@ public class CsvFile implements CsvSourceParser, CsvSource {
         recordsParsed = true;
     }
 
+    @Override
+    public void parseRecords(RecordHandler handler) throws IOException {
+        final int expectedTokenCount = simpleFeatureType.getAttributeCount() + (hasFeatureId ? 1 : 0);
+        final Object[] values = new Object[simpleFeatureType.getAttributeCount()];
+        // the stream reads lines byte-wise, so ISO-8859-1 keeps the character and byte positions identical
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), "ISO-8859-1"),
+                                                        256 * 1024)) {
+            final long dataStart = (long) propertiesByteSize + headerByteSize;
+            if (reader.skip(dataStart) != dataStart) {
+                return;
+            }
+            String line;
+            long recordIndex = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = getTokens(line);
+                if (tokens.length != expectedTokenCount) {
+                    continue;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    final String token = tokens[i + (hasFeatureId ? 1 : 0)];
+                    Object value = null;
+                    if (!VectorDataNodeIO.NULL_TEXT.equals(token)) {
+                        try {
+                            value = converters[i].parse(token);
+                        } catch (ConversionException e) {
+                            BeamLogManager.getSystemLogger().warning(String.format("Problem in '%s': %s",
+                                    csv.getPath(), e.getMessage()));
+                        }
+                    }
+                    values[i] = value;
+                }
+                handler.handleRecord(recordIndex++, values);
+            }
+        }
+    }
+
     @Override
     public CsvSource parseMetadata() throws IOException {
         parseProperties();
@@ -51,6 +51,16 @@ public interface CsvSourceParser {
      */
     void parseRecords(int offset, int numRecords) throws IOException;
 
+    /**
+     * Parses all records in a single sequential pass and passes the values of each record to the given handler.
+     * Before calling this method, {@link CsvSourceParser#parseMetadata()} must have been called.
+     *
+     * @param handler the handler receiving the records.
+     * @throws IOException if something goes wrong.
+     * @since BEAM 5.0.6
+     */
+    void parseRecords(RecordHandler handler) throws IOException;
+
     /**
      * @return A view on the {@link CsvSource} parsed using this interface.
      * @throws IOException if something goes wrong.
@@ -69,4 +79,19 @@ public interface CsvSourceParser {
      */
     void close();
 
+    /**
+     * Receives the records parsed by {@link CsvSourceParser#parseRecords(RecordHandler)}.
+     *
+     * @since BEAM 5.0.6
+     */
+    interface RecordHandler {
+
+        /**
+         * @param recordIndex the index of the record.
+         * @param values      the values of the record, in the order of the attributes of the feature type;
+         *                    {@code null} for missing values. The array is reused for the next record.
+         * @throws IOException if something goes wrong.
+         */
+        void handleRecord(long recordIndex, Object[] values) throws IOException;
+    }
 }
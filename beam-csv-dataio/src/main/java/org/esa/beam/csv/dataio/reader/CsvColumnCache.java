@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.csv.dataio.reader;
+
+import org.esa.beam.csv.dataio.CsvSourceParser;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.SystemUtils;
+import org.esa.beam.util.io.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A columnar binary cache of the band values of a CSV file. The CSV file is parsed once in a single
+ * sequential pass, the values of each band are stored in a binary file of their own, which is memory-mapped
+ * for reading. Hence all band reads are served without parsing text again.
+ * <p/>
+ * The cache entry of a CSV file is identified by the path, the modification time and the size of the file,
+ * so it is rebuilt whenever the file changes. Entries of previous versions of the file are removed then.
+ *
+ * @since BEAM 5.0.6
+ */
+class CsvColumnCache {
+
+    /**
+     * The system property used to configure the cache directory. If set to an empty value, the cache is not used.
+     */
+    static final String CACHE_DIR_PROPERTY = "beam.csv.reader.cacheDir";
+
+    private static final String CACHE_DIR_NAME = "csv-columns";
+    private static final String VERSION = "v1";
+
+    private final ByteBuffer[] columns;
+    private final int[] dataTypes;
+    private final int numRecords;
+
+    private CsvColumnCache(ByteBuffer[] columns, int[] dataTypes, int numRecords) {
+        this.columns = columns;
+        this.dataTypes = dataTypes;
+        this.numRecords = numRecords;
+    }
+
+    /**
+     * @return The configured cache directory, or {@code null} if the cache shall not be used.
+     */
+    static File getConfiguredCacheDir() {
+        final String path = System.getProperty(CACHE_DIR_PROPERTY);
+        if (path == null) {
+            return new File(SystemUtils.getDefaultBeamCacheDir(), CACHE_DIR_NAME);
+        } else if (path.trim().isEmpty()) {
+            return null;
+        }
+        return new File(path);
+    }
+
+    /**
+     * Opens the cache entry for the given CSV file, the entry is created if it does not exist.
+     *
+     * @param cacheDir         the cache directory
+     * @param csvFile          the CSV file
+     * @param parser           the parser of the CSV file, its metadata must have been parsed
+     * @param attributeIndexes for each column, the index of the attribute in the feature type of the CSV file
+     * @param dataTypes        for each column, the product data type
+     * @return the cache
+     * @throws IOException if the cache entry cannot be created or read
+     */
+    static CsvColumnCache open(File cacheDir, File csvFile, CsvSourceParser parser,
+                               int[] attributeIndexes, int[] dataTypes) throws IOException {
+        final String prefix = getEntryPrefix(csvFile);
+        final File entryDir = new File(cacheDir, prefix + csvFile.lastModified() + "-" + csvFile.length());
+        if (!entryDir.isDirectory()) {
+            removeOutdatedEntries(cacheDir, prefix);
+            createEntry(entryDir, parser, attributeIndexes, dataTypes);
+        }
+        final ByteBuffer[] columns = new ByteBuffer[dataTypes.length];
+        int numRecords = Integer.MAX_VALUE;
+        for (int i = 0; i < columns.length; i++) {
+            final File columnFile = getColumnFile(entryDir, i);
+            try (RandomAccessFile raf = new RandomAccessFile(columnFile, "r")) {
+                columns[i] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            numRecords = Math.min(numRecords, columns[i].capacity() / ProductData.getElemSize(dataTypes[i]));
+        }
+        return new CsvColumnCache(columns, dataTypes, columns.length > 0 ? numRecords : 0);
+    }
+
+    int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Reads the values of a column into the given buffer. Elements beyond the last record are set
+     * to NaN for floating point types and to zero for integer types.
+     *
+     * @param columnIndex the index of the column
+     * @param offset      the index of the first record
+     * @param destBuffer  the buffer
+     */
+    void readColumn(int columnIndex, int offset, ProductData destBuffer) {
+        final int numElems = destBuffer.getNumElems();
+        final int count = Math.max(0, Math.min(numElems, numRecords - offset));
+        // duplicates keep concurrent reads independent of each other
+        final ByteBuffer column = columns[columnIndex].duplicate();
+        switch (dataTypes[columnIndex]) {
+            case ProductData.TYPE_FLOAT32: {
+                final float[] elems = (float[]) destBuffer.getElems();
+                if (count > 0) {
+                    column.position(offset * 4);
+                    column.asFloatBuffer().get(elems, 0, count);
+                }
+                Arrays.fill(elems, count, numElems, Float.NaN);
+                break;
+            }
+            case ProductData.TYPE_FLOAT64: {
+                final double[] elems = (double[]) destBuffer.getElems();
+                if (count > 0) {
+                    column.position(offset * 8);
+                    column.asDoubleBuffer().get(elems, 0, count);
+                }
+                Arrays.fill(elems, count, numElems, Double.NaN);
+                break;
+            }
+            case ProductData.TYPE_INT8: {
+                final byte[] elems = (byte[]) destBuffer.getElems();
+                if (count > 0) {
+                    column.position(offset);
+                    column.get(elems, 0, count);
+                }
+                Arrays.fill(elems, count, numElems, (byte) 0);
+                break;
+            }
+            case ProductData.TYPE_INT16: {
+                final short[] elems = (short[]) destBuffer.getElems();
+                if (count > 0) {
+                    column.position(offset * 2);
+                    column.asShortBuffer().get(elems, 0, count);
+                }
+                Arrays.fill(elems, count, numElems, (short) 0);
+                break;
+            }
+            case ProductData.TYPE_INT32: {
+                final int[] elems = (int[]) destBuffer.getElems();
+                if (count > 0) {
+                    column.position(offset * 4);
+                    column.asIntBuffer().get(elems, 0, count);
+                }
+                Arrays.fill(elems, count, numElems, 0);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException(
+                        "Unsupported type '" + ProductData.getTypeString(destBuffer.getType()) + "'.");
+            }
+        }
+    }
+
+    static String getEntryPrefix(File csvFile) throws IOException {
+        final String path = csvFile.getCanonicalPath();
+        return VERSION + "-" + FileUtils.getFilenameWithoutExtension(csvFile) + "-"
+               + Integer.toHexString(path.hashCode()) + "-";
+    }
+
+    private static void removeOutdatedEntries(File cacheDir, String prefix) {
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory() && file.getName().startsWith(prefix)) {
+                    FileUtils.deleteTree(file);
+                }
+            }
+        }
+    }
+
+    private static void createEntry(File entryDir, CsvSourceParser parser,
+                                    final int[] attributeIndexes, final int[] dataTypes) throws IOException {
+        final File cacheDir = entryDir.getParentFile();
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Failed to create cache directory '" + cacheDir + "'");
+        }
+        // write into a temporary directory which is renamed when complete, so that incomplete entries are never used
+        final File tempDir = Files.createTempDirectory(cacheDir.toPath(), entryDir.getName() + ".tmp").toFile();
+        try {
+            final DataOutputStream[] outputs = new DataOutputStream[dataTypes.length];
+            try {
+                for (int i = 0; i < outputs.length; i++) {
+                    outputs[i] = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(getColumnFile(tempDir, i)), 64 * 1024));
+                }
+                parser.parseRecords(new CsvSourceParser.RecordHandler() {
+                    @Override
+                    public void handleRecord(long recordIndex, Object[] values) throws IOException {
+                        for (int i = 0; i < outputs.length; i++) {
+                            writeValue(outputs[i], dataTypes[i], (Number) values[attributeIndexes[i]]);
+                        }
+                    }
+                });
+            } finally {
+                for (DataOutputStream output : outputs) {
+                    if (output != null) {
+                        output.close();
+                    }
+                }
+            }
+            if (!tempDir.renameTo(entryDir) && !entryDir.isDirectory()) {
+                throw new IOException("Failed to create cache entry '" + entryDir + "'");
+            }
+        } finally {
+            if (tempDir.exists()) {
+                FileUtils.deleteTree(tempDir);
+            }
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, int dataType, Number value) throws IOException {
+        switch (dataType) {
+            case ProductData.TYPE_FLOAT32:
+                output.writeFloat(value != null ? value.floatValue() : Float.NaN);
+                break;
+            case ProductData.TYPE_FLOAT64:
+                output.writeDouble(value != null ? value.doubleValue() : Double.NaN);
+                break;
+            case ProductData.TYPE_INT8:
+                output.writeByte(value != null ? value.byteValue() : 0);
+                break;
+            case ProductData.TYPE_INT16:
+                output.writeShort(value != null ? value.shortValue() : 0);
+                break;
+            case ProductData.TYPE_INT32:
+                output.writeInt(value != null ? value.intValue() : 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type '" + ProductData.getTypeString(dataType) + "'.");
+        }
+    }
+
+    private static File getColumnFile(File entryDir, int columnIndex) {
+        return new File(entryDir, columnIndex + ".bin");
+    }
+}
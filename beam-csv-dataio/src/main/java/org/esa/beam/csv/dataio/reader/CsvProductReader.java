@@ -29,8 +29,13 @@ import org.esa.beam.util.StringUtils;
 import org.esa.beam.util.logging.BeamLogManager;
 import org.opengis.feature.type.AttributeDescriptor;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -43,7 +48,12 @@ public class CsvProductReader extends AbstractProductReader {
 
     private static final String PROPERTY_NAME_SCENE_RASTER_WIDTH = "sceneRasterWidth";
 
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
     private CsvSourceParser parser;
+    private CsvSource source;
+    private File cacheDir;
+    private CsvColumnCache columnCache;
+    private boolean columnCacheFailed;
 
     /**
      * Constructs a new abstract product reader.
@@ -61,12 +71,14 @@ public class CsvProductReader extends AbstractProductReader {
         if (parser != null) {
             parser.close();
         }
+        columnCache = null;
     }
 
     @Override
     protected Product readProductNodesImpl() throws IOException {
+        cacheDir = CsvColumnCache.getConfiguredCacheDir();
         parser = CsvFile.createCsvSourceParser(getInput().toString());
-        CsvSource source = parser.parseMetadata();
+        source = parser.parseMetadata();
         String sceneRasterWidthProperty = source.getProperties().get(PROPERTY_NAME_SCENE_RASTER_WIDTH);
         final int sceneRasterWidth;
         final int sceneRasterHeight;
@@ -112,14 +124,65 @@ public class CsvProductReader extends AbstractProductReader {
                 destOffsetY * destWidth, sourceOffsetY * destWidth + destWidth * destHeight));
         pm.beginTask("reading band data...", destWidth * destHeight);
 
-        Object[] values;
-        synchronized (parser) {
-            values = parser.parseRecords(destOffsetY * destWidth, destWidth * destHeight, destBand.getName());
+        final CsvColumnCache cache = getColumnCache();
+        final Integer columnIndex = cache != null ? columnIndexes.get(destBand.getName()) : null;
+        if (columnIndex != null) {
+            cache.readColumn(columnIndex, destOffsetY * destWidth, destBuffer);
+        } else {
+            Object[] values;
+            synchronized (parser) {
+                values = parser.parseRecords(destOffsetY * destWidth, destWidth * destHeight, destBand.getName());
+            }
+            getProductData(values, destBuffer);
         }
-        getProductData(values, destBuffer);
         pm.done();
     }
 
+    /**
+     * Gets the column cache, which is created on first use by parsing the whole file once.
+     *
+     * @return the column cache, or {@code null} if the cache is disabled or could not be created
+     */
+    private CsvColumnCache getColumnCache() {
+        if (cacheDir == null) {
+            return null;
+        }
+        synchronized (parser) {
+            if (columnCache == null && !columnCacheFailed) {
+                // the columns are the attributes turned into bands by readProductNodesImpl(), bands added to
+                // the product later on are not backed by the file
+                final List<AttributeDescriptor> descriptors = source.getFeatureType().getAttributeDescriptors();
+                final List<Integer> attributeIndexList = new ArrayList<>();
+                final List<Integer> dataTypeList = new ArrayList<>();
+                for (int i = 0; i < descriptors.size(); i++) {
+                    final Class<?> binding = descriptors.get(i).getType().getBinding();
+                    if (isAccessibleBandType(binding)) {
+                        columnIndexes.put(descriptors.get(i).getName().toString(), attributeIndexList.size());
+                        attributeIndexList.add(i);
+                        dataTypeList.add(getProductDataType(binding));
+                    }
+                }
+                final int[] attributeIndexes = new int[attributeIndexList.size()];
+                final int[] dataTypes = new int[dataTypeList.size()];
+                for (int i = 0; i < attributeIndexes.length; i++) {
+                    attributeIndexes[i] = attributeIndexList.get(i);
+                    dataTypes[i] = dataTypeList.get(i);
+                }
+                final File csvFile = new File(getInput().toString());
+                try {
+                    columnCache = CsvColumnCache.open(cacheDir, csvFile, parser, attributeIndexes, dataTypes);
+                } catch (Exception e) {
+                    columnCacheFailed = true;
+                    columnIndexes.clear();
+                    BeamLogManager.getSystemLogger().log(Level.WARNING, MessageFormat.format(
+                            "Failed to create column cache for ''{0}'', parsing the file for each band: {1}",
+                            csvFile, e.getMessage()), e);
+                }
+            }
+            return columnCache;
+        }
+    }
+
     void getProductData(Object[] elems, ProductData destBuffer) {
         switch (destBuffer.getType()) {
             case ProductData.TYPE_FLOAT32: {
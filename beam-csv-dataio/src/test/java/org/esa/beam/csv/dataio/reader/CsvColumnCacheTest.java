@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.csv.dataio.reader;
+
+import org.esa.beam.csv.dataio.CsvFile;
+import org.esa.beam.csv.dataio.CsvSourceParser;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+public class CsvColumnCacheTest {
+
+    private File tempDir;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("csv-column-cache").toFile();
+        cacheDir = new File(tempDir, "cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteTree(tempDir);
+    }
+
+    @Test
+    public void testReadColumn_Float() throws Exception {
+        final File csvFile = getResourceFile("simple_format_example.txt");
+        final CsvSourceParser parser = CsvFile.createCsvSourceParser(csvFile.getPath());
+        try {
+            parser.parseMetadata();
+            // radiance_1, radiance_2
+            final CsvColumnCache cache = CsvColumnCache.open(cacheDir, csvFile, parser, new int[]{4, 5},
+                                                             new int[]{ProductData.TYPE_FLOAT32, ProductData.TYPE_FLOAT32});
+            assertEquals(4, cache.getNumRecords());
+
+            final ProductData data = ProductData.createInstance(ProductData.TYPE_FLOAT32, 6);
+            cache.readColumn(0, 0, data);
+            assertArrayEquals(new float[]{Float.NaN, 18.3f, 10.5f, 11.5f, Float.NaN, Float.NaN},
+                              (float[]) data.getElems(), 1.0e-6f);
+            cache.readColumn(1, 1, data);
+            assertArrayEquals(new float[]{2.4f, 10.6f, 11.6f, Float.NaN, Float.NaN, Float.NaN},
+                              (float[]) data.getElems(), 1.0e-6f);
+
+            // values must equal those parsed from the text
+            final Object[] values = parser.parseRecords(0, 4, "radiance_2");
+            final ProductData expected = ProductData.createInstance(ProductData.TYPE_FLOAT32, 4);
+            new CsvProductReader(null).getProductData(values, expected);
+            final ProductData actual = ProductData.createInstance(ProductData.TYPE_FLOAT32, 4);
+            cache.readColumn(1, 0, actual);
+            assertArrayEquals((float[]) expected.getElems(), (float[]) actual.getElems(), 0.0f);
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Test
+    public void testReadColumn_Integer() throws Exception {
+        final File csvFile = getResourceFile("simple_format_4_integer_features.txt");
+        final CsvSourceParser parser = CsvFile.createCsvSourceParser(csvFile.getPath());
+        try {
+            parser.parseMetadata();
+            // class, anotherOne
+            final CsvColumnCache cache = CsvColumnCache.open(cacheDir, csvFile, parser, new int[]{1, 4},
+                                                             new int[]{ProductData.TYPE_INT32, ProductData.TYPE_INT32});
+            assertEquals(4, cache.getNumRecords());
+
+            final ProductData data = ProductData.createInstance(ProductData.TYPE_INT32, 5);
+            cache.readColumn(0, 0, data);
+            // unparseable values are stored as zero
+            assertArrayEquals(new int[]{1, 4, 0, -1, 0}, (int[]) data.getElems());
+            cache.readColumn(1, 0, data);
+            assertArrayEquals(new int[]{0, -10000, -10000, 1000, 0}, (int[]) data.getElems());
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Test
+    public void testEntryIsReusedAndReplacedIfFileChanges() throws Exception {
+        final File csvFile = new File(tempDir, "example.txt");
+        Files.copy(getResourceFile("simple_format_example.txt").toPath(), csvFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(csvFile.setLastModified(1000000000L));
+
+        openCache(csvFile);
+        final String[] entries = cacheDir.list();
+        assertEquals(1, entries.length);
+        assertTrue(entries[0].startsWith(CsvColumnCache.getEntryPrefix(csvFile)));
+
+        openCache(csvFile);
+        assertArrayEquals(entries, cacheDir.list());
+
+        assertTrue(csvFile.setLastModified(2000000000L));
+        openCache(csvFile);
+        final String[] newEntries = cacheDir.list();
+        assertEquals(1, newEntries.length);
+        assertFalse(entries[0].equals(newEntries[0]));
+    }
+
+    private void openCache(File csvFile) throws IOException {
+        final CsvSourceParser parser = CsvFile.createCsvSourceParser(csvFile.getPath());
+        try {
+            parser.parseMetadata();
+            final CsvColumnCache cache = CsvColumnCache.open(cacheDir, csvFile, parser, new int[]{4},
+                                                             new int[]{ProductData.TYPE_FLOAT32});
+            assertEquals(4, cache.getNumRecords());
+        } finally {
+            parser.close();
+        }
+    }
+
+    private File getResourceFile(String name) {
+        return new File(getClass().getResource(name).getFile());
+    }
+}
@@ -23,12 +23,16 @@ import org.esa.beam.framework.datamodel.MetadataAttribute;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.io.FileUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.awt.image.Raster;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -40,12 +44,23 @@ import static org.junit.Assert.assertEquals;
 public class CsvProductReaderTest {
 
     private ProductReader reader;
+    private File cacheDir;
 
     @Before
     public void setUp() throws Exception {
+        // keep the column cache out of the user's BEAM cache directory
+        cacheDir = Files.createTempDirectory("csv-columns").toFile();
+        System.setProperty(CsvColumnCache.CACHE_DIR_PROPERTY, cacheDir.getPath());
         reader = new CsvProductReader(new CsvProductReaderPlugIn());
     }
 
+    @After
+    public void tearDown() throws Exception {
+        reader.close();
+        System.clearProperty(CsvColumnCache.CACHE_DIR_PROPERTY);
+        FileUtils.deleteTree(cacheDir);
+    }
+
     @Test
     public void testRead_QuadraticProduct() throws Exception {
         final Product product = readTestProduct("simple_format_4_features.txt");
@@ -144,6 +159,22 @@ public class CsvProductReaderTest {
         assertEquals(Float.NaN, radiance2Data.getSampleFloat(2, 1, 0), 1.0E-6);
     }
 
+    @Test
+    public void testReadBandRasterData_WithAddedBand() throws Exception {
+        final Product product = readTestProduct("simple_format_example.txt");
+        product.addBand("radiance_sum", "radiance_1 + radiance_2");
+
+        final Raster radiance2Data = product.getBand("radiance_2").getSourceImage().getData();
+        assertEquals(13.4f, radiance2Data.getSampleFloat(0, 0, 0), 1.0E-6);
+        assertEquals(11.6f, radiance2Data.getSampleFloat(0, 1, 0), 1.0E-6);
+        final Raster sumData = product.getBand("radiance_sum").getSourceImage().getData();
+        assertEquals(18.3f + 2.4f, sumData.getSampleFloat(1, 0, 0), 1.0E-5);
+        // the column cache has been used
+        final String[] cacheFiles = cacheDir.list();
+        assertNotNull(cacheFiles);
+        assertTrue(cacheFiles.length > 0);
+    }
+
     private Product readTestProduct(String name) throws IOException {
         return reader.readProductNodes(getClass().getResource(name).getFile(), null);
     }
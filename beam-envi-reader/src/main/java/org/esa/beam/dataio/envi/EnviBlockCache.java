@@ -0,0 +1,239 @@
+package org.esa.beam.dataio.envi;
+
+import org.esa.beam.framework.dataio.PositionalFileReader;
+import org.esa.beam.framework.datamodel.ProductData;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache for band interleaved (BIL and BIP) ENVI image files.
+ * <p/>
+ * The image is divided into blocks of full-width lines. When a line of any band is requested, the
+ * complete block is read once from the file and de-interleaved into separate buffers for all bands,
+ * so that subsequent requests for the other bands are served from memory. Blocks are evicted in
+ * least-recently-used order as soon as the configured memory limit is exceeded.
+ * <p/>
+ * The file is accessed by a {@link PositionalFileReader}, hence concurrent requests for
+ * different blocks do not block each other.
+ */
+class EnviBlockCache {
+
+    /**
+     * The system property used to configure the maximum memory used by the cache, in mega bytes.
+     */
+    static final String SYSPROP_BLOCK_CACHE_SIZE = "beam.envi.blockCacheSize";
+    static final int DEFAULT_BLOCK_CACHE_SIZE = 64;
+
+    private static final int MAX_BLOCK_HEIGHT = 64;
+
+    private final PositionalFileReader fileReader;
+    private final long headerOffset;
+    private final int width;
+    private final int height;
+    private final int numBands;
+    private final int dataType;
+    private final int elemSize;
+    private final boolean pixelInterleaved;
+    private final long maxSizeInBytes;
+    private final int blockHeight;
+    private final LinkedHashMap<Integer, Block> blocks;
+    private long sizeInBytes;
+
+    EnviBlockCache(PositionalFileReader fileReader, long headerOffset, int width, int height, int numBands,
+                   int dataType, boolean pixelInterleaved, long maxSizeInBytes) {
+        this.fileReader = fileReader;
+        this.headerOffset = headerOffset;
+        this.width = width;
+        this.height = height;
+        this.numBands = numBands;
+        this.dataType = dataType;
+        this.elemSize = ProductData.getElemSize(dataType);
+        this.pixelInterleaved = pixelInterleaved;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.blockHeight = computeBlockHeight(maxSizeInBytes, (long) width * numBands * elemSize, height);
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    static long getConfiguredMaxSizeInBytes() {
+        return Long.getLong(SYSPROP_BLOCK_CACHE_SIZE, DEFAULT_BLOCK_CACHE_SIZE) * 1024L * 1024L;
+    }
+
+    static int computeBlockHeight(long maxSizeInBytes, long lineSizeInBytes, int height) {
+        // allow at least four blocks to be held in memory, so that concurrent tile rows do not thrash the cache
+        final long linesPerBlock = maxSizeInBytes / (4 * lineSizeInBytes);
+        return (int) Math.max(1, Math.min(Math.min(MAX_BLOCK_HEIGHT, height), linesPerBlock));
+    }
+
+    int getBlockHeight() {
+        return blockHeight;
+    }
+
+    /**
+     * Copies a line segment of the given band into the destination array.
+     *
+     * @param bandIndex the index of the band within the image file
+     * @param x         the first pixel X of the segment
+     * @param y         the line
+     * @param w         the number of pixels to copy
+     * @param dest      the destination array, its type must correspond to the data type of the image
+     * @param destPos   the first index to write to in the destination array
+     *
+     * @throws IOException if the block containing the line could not be read
+     */
+    void readLine(int bandIndex, int x, int y, int w, Object dest, int destPos) throws IOException {
+        final Block block = getBlock(y / blockHeight);
+        final int srcPos = (y - block.y) * width + x;
+        System.arraycopy(block.bandData[bandIndex], srcPos, dest, destPos, w);
+    }
+
+    void clear() {
+        synchronized (blocks) {
+            blocks.clear();
+            sizeInBytes = 0;
+        }
+    }
+
+    long getSizeInBytes() {
+        synchronized (blocks) {
+            return sizeInBytes;
+        }
+    }
+
+    int getNumBlocks() {
+        synchronized (blocks) {
+            return blocks.size();
+        }
+    }
+
+    private Block getBlock(int blockIndex) throws IOException {
+        Block block;
+        synchronized (blocks) {
+            block = blocks.get(blockIndex);
+            if (block == null) {
+                block = new Block(blockIndex * blockHeight, Math.min(blockHeight, height - blockIndex * blockHeight));
+                blocks.put(blockIndex, block);
+            }
+        }
+        synchronized (block) {
+            if (block.bandData == null) {
+                try {
+                    block.bandData = readBlock(block.y, block.h);
+                } catch (IOException e) {
+                    synchronized (blocks) {
+                        if (blocks.get(blockIndex) == block) {
+                            blocks.remove(blockIndex);
+                        }
+                    }
+                    throw e;
+                }
+                synchronized (blocks) {
+                    if (blocks.get(blockIndex) == block) {
+                        block.sizeInBytes = (long) block.h * width * numBands * elemSize;
+                        sizeInBytes += block.sizeInBytes;
+                        evict(block);
+                    }
+                }
+            }
+        }
+        return block;
+    }
+
+    private void evict(Block keep) {
+        final Iterator<Map.Entry<Integer, Block>> iterator = blocks.entrySet().iterator();
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            final Block block = iterator.next().getValue();
+            if (block != keep) {
+                sizeInBytes -= block.sizeInBytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    private Object[] readBlock(int y, int h) throws IOException {
+        final int numPixels = h * width;
+        final long lineSizeInBytes = (long) width * numBands * elemSize;
+        final Object interleaved = createArray(dataType, numPixels * numBands);
+        fileReader.readFully(headerOffset + y * lineSizeInBytes, interleaved, 0, numPixels * numBands);
+
+        final Object[] bandData = new Object[numBands];
+        for (int b = 0; b < numBands; b++) {
+            bandData[b] = createArray(dataType, numPixels);
+        }
+        if (pixelInterleaved) {
+            deinterleavePixels(interleaved, bandData, numPixels);
+        } else {
+            for (int line = 0; line < h; line++) {
+                for (int b = 0; b < numBands; b++) {
+                    System.arraycopy(interleaved, (line * numBands + b) * width, bandData[b], line * width, width);
+                }
+            }
+        }
+        return bandData;
+    }
+
+    private void deinterleavePixels(Object interleaved, Object[] bandData, int numPixels) {
+        if (interleaved instanceof byte[]) {
+            final byte[] src = (byte[]) interleaved;
+            for (int b = 0; b < numBands; b++) {
+                final byte[] dst = (byte[]) bandData[b];
+                for (int i = 0, j = b; i < numPixels; i++, j += numBands) {
+                    dst[i] = src[j];
+                }
+            }
+        } else if (interleaved instanceof short[]) {
+            final short[] src = (short[]) interleaved;
+            for (int b = 0; b < numBands; b++) {
+                final short[] dst = (short[]) bandData[b];
+                for (int i = 0, j = b; i < numPixels; i++, j += numBands) {
+                    dst[i] = src[j];
+                }
+            }
+        } else if (interleaved instanceof int[]) {
+            final int[] src = (int[]) interleaved;
+            for (int b = 0; b < numBands; b++) {
+                final int[] dst = (int[]) bandData[b];
+                for (int i = 0, j = b; i < numPixels; i++, j += numBands) {
+                    dst[i] = src[j];
+                }
+            }
+        } else if (interleaved instanceof float[]) {
+            final float[] src = (float[]) interleaved;
+            for (int b = 0; b < numBands; b++) {
+                final float[] dst = (float[]) bandData[b];
+                for (int i = 0, j = b; i < numPixels; i++, j += numBands) {
+                    dst[i] = src[j];
+                }
+            }
+        } else if (interleaved instanceof double[]) {
+            final double[] src = (double[]) interleaved;
+            for (int b = 0; b < numBands; b++) {
+                final double[] dst = (double[]) bandData[b];
+                for (int i = 0, j = b; i < numPixels; i++, j += numBands) {
+                    dst[i] = src[j];
+                }
+            }
+        } else {
+            throw new IllegalStateException("Unsupported data type: " + ProductData.getTypeString(dataType));
+        }
+    }
+
+    static Object createArray(int dataType, int numElems) {
+        return ProductData.createInstance(dataType, numElems).getElems();
+    }
+
+    private static class Block {
+
+        private final int y;
+        private final int h;
+        private Object[] bandData;
+        private long sizeInBytes;
+
+        private Block(int y, int h) {
+            this.y = y;
+            this.h = h;
+        }
+    }
+}
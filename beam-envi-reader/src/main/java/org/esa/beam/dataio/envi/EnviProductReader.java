@@ -3,6 +3,7 @@ package org.esa.beam.dataio.envi;
 import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.dataio.envi.Header.BeamProperties;
 import org.esa.beam.framework.dataio.AbstractProductReader;
+import org.esa.beam.framework.dataio.PositionalFileReader;
 import org.esa.beam.framework.dataio.ProductReaderPlugIn;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.util.Debug;
@@ -18,7 +19,6 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
 
 import javax.imageio.stream.FileCacheImageInputStream;
-import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
@@ -42,6 +42,8 @@ import java.util.zip.ZipFile;
 class EnviProductReader extends AbstractProductReader {
 
     private ImageInputStream imageInputStream;
+    private PositionalFileReader imageFileReader;
+    private EnviBlockCache blockCache;
     private ZipFile productZip;
     private Header header;
 
@@ -140,7 +142,6 @@ class EnviProductReader extends AbstractProductReader {
 
         final int sourceMinX = sourceOffsetX;
         final int sourceMinY = sourceOffsetY;
-        final int sourceMaxX = sourceOffsetX + sourceWidth - 1;
         final int sourceMaxY = sourceOffsetY + sourceHeight - 1;
         Product product = destBand.getProduct();
         final int sourceRasterWidth = product.getSceneRasterWidth();
@@ -149,6 +150,61 @@ class EnviProductReader extends AbstractProductReader {
         final int headerOffset = header.getHeaderOffset();
         final int bandIndex = product.getBandIndex(destBand.getName());
 
+        if (blockCache != null) {
+            // band interleaved by line or by pixel, served from the de-interleaved blocks
+            final Object destElems = destBuffer.getElems();
+            pm.beginTask("Reading band '" + destBand.getName() + "'...", sourceMaxY - sourceMinY);
+            try {
+                int destPos = 0;
+                for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+                    if (pm.isCanceled()) {
+                        break;
+                    }
+                    blockCache.readLine(bandIndex, sourceMinX, sourceY, destWidth, destElems, destPos);
+                    destPos += destWidth;
+                    pm.worked(1);
+                }
+            } finally {
+                pm.done();
+            }
+        } else if (imageFileReader != null) {
+            // band sequential (bsq), read by positional reads from the image file
+            final long bandSizeInBytes = (long) header.getNumSamples() * header.getNumLines() * elemSize;
+            final long bandStartPosition = headerOffset + bandSizeInBytes * bandIndex;
+            final Object destElems = destBuffer.getElems();
+            pm.beginTask("Reading band '" + destBand.getName() + "'...", sourceMaxY - sourceMinY);
+            try {
+                int destPos = 0;
+                for (int sourceY = sourceMinY; sourceY <= sourceMaxY; sourceY += sourceStepY) {
+                    if (pm.isCanceled()) {
+                        break;
+                    }
+                    final long sourcePosY = (long) sourceY * (long) sourceRasterWidth;
+                    final long pos = bandStartPosition + elemSize * (sourcePosY + sourceMinX);
+                    imageFileReader.readFully(pos, destElems, destPos, destWidth);
+                    destPos += destWidth;
+                    pm.worked(1);
+                }
+            } finally {
+                pm.done();
+            }
+        } else {
+            readBandRasterDataFromStream(sourceMinX, sourceMinY, sourceMaxY, sourceWidth, sourceStepY,
+                                         destBand, destWidth, destBuffer, pm);
+        }
+    }
+
+    private void readBandRasterDataFromStream(int sourceMinX, int sourceMinY, int sourceMaxY,
+                                              int sourceWidth, int sourceStepY,
+                                              Band destBand, int destWidth, ProductData destBuffer,
+                                              ProgressMonitor pm) throws IOException {
+        Product product = destBand.getProduct();
+        final int sourceRasterWidth = product.getSceneRasterWidth();
+        final int elemSize = destBuffer.getElemSize();
+
+        final int headerOffset = header.getHeaderOffset();
+        final int bandIndex = product.getBandIndex(destBand.getName());
+
         String interleave = header.getInterleave();
         if ("bil".equalsIgnoreCase(interleave)) {
             // band interleaved by line
@@ -233,6 +289,14 @@ class EnviProductReader extends AbstractProductReader {
 
     @Override
     public void close() throws IOException {
+        if (blockCache != null) {
+            blockCache.clear();
+            blockCache = null;
+        }
+        if (imageFileReader != null) {
+            imageFileReader.close();
+            imageFileReader = null;
+        }
         if (imageInputStream != null) {
             imageInputStream.close();
         }
@@ -272,10 +336,20 @@ class EnviProductReader extends AbstractProductReader {
     private void initializeInputStreamForBandData(File inputFile, ByteOrder byteOrder) throws IOException {
         if (EnviProductReaderPlugIn.isCompressedFile(inputFile)) {
             imageInputStream = createImageStreamFromZip(inputFile);
+            imageInputStream.setByteOrder(byteOrder);
         } else {
-            imageInputStream = createImageStreamFromFile(inputFile);
+            imageFileReader = new PositionalFileReader(getEnviImageFile(inputFile), byteOrder);
+            final String interleave = header.getInterleave();
+            final boolean bil = "bil".equalsIgnoreCase(interleave);
+            final boolean bip = "bip".equalsIgnoreCase(interleave);
+            if (bil || bip) {
+                blockCache = new EnviBlockCache(imageFileReader, header.getHeaderOffset(),
+                                                header.getNumSamples(), header.getNumLines(),
+                                                getBandNames(header).length,
+                                                DataTypeUtils.toBeam(header.getDataType()), bip,
+                                                EnviBlockCache.getConfiguredMaxSizeInBytes());
+            }
         }
-        imageInputStream.setByteOrder(byteOrder);
     }
 
     private static void applyBeamProperties(Product product, BeamProperties beamProperties) throws IOException {
@@ -342,11 +416,6 @@ class EnviProductReader extends AbstractProductReader {
         throw new IOException("Not able to initialise band input stream.");
     }
 
-    private static ImageInputStream createImageStreamFromFile(final File file) throws IOException {
-        final File imageFile = getEnviImageFile(file);
-        return new FileImageInputStream(imageFile);
-    }
-
     private void initGeoCoding(final Product product) {
         final EnviMapInfo enviMapInfo = header.getMapInfo();
         if (enviMapInfo == null) {
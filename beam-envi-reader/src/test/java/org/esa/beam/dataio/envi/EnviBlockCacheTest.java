@@ -0,0 +1,125 @@
+package org.esa.beam.dataio.envi;
+
+import org.esa.beam.framework.dataio.PositionalFileReader;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class EnviBlockCacheTest {
+
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 7;
+    private static final int NUM_BANDS = 3;
+    private static final int HEADER_OFFSET = 16;
+
+    private File imageFile;
+    private PositionalFileReader fileReader;
+
+    @Before
+    public void setUp() throws Exception {
+        imageFile = File.createTempFile("EnviBlockCacheTest", ".img");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (fileReader != null) {
+            fileReader.close();
+        }
+        imageFile.delete();
+    }
+
+    @Test
+    public void testComputeBlockHeight() {
+        assertEquals(64, EnviBlockCache.computeBlockHeight(64 * 1024 * 1024, 1000, 10000));
+        assertEquals(10, EnviBlockCache.computeBlockHeight(64 * 1024 * 1024, 1000, 10));
+        assertEquals(16, EnviBlockCache.computeBlockHeight(64 * 1000, 1000, 10000));
+        assertEquals(1, EnviBlockCache.computeBlockHeight(1000, 1000, 10000));
+    }
+
+    @Test
+    public void testReadBip() throws IOException {
+        writeImage(true, ByteOrder.BIG_ENDIAN);
+        final EnviBlockCache cache = createCache(true, ByteOrder.BIG_ENDIAN, 1024 * 1024);
+
+        assertBandsReadCorrectly(cache);
+    }
+
+    @Test
+    public void testReadBil() throws IOException {
+        writeImage(false, ByteOrder.LITTLE_ENDIAN);
+        final EnviBlockCache cache = createCache(false, ByteOrder.LITTLE_ENDIAN, 1024 * 1024);
+
+        assertBandsReadCorrectly(cache);
+    }
+
+    @Test
+    public void testMemoryIsBounded() throws IOException {
+        writeImage(true, ByteOrder.BIG_ENDIAN);
+        final int lineSize = WIDTH * NUM_BANDS * 2;
+        // room for two lines only, hence blocks of a single line
+        final EnviBlockCache cache = createCache(true, ByteOrder.BIG_ENDIAN, 2 * lineSize);
+        assertEquals(1, cache.getBlockHeight());
+
+        assertBandsReadCorrectly(cache);
+
+        assertEquals(2, cache.getNumBlocks());
+        assertEquals(2 * lineSize, cache.getSizeInBytes());
+
+        cache.clear();
+        assertEquals(0, cache.getNumBlocks());
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    private void assertBandsReadCorrectly(EnviBlockCache cache) throws IOException {
+        for (int b = 0; b < NUM_BANDS; b++) {
+            final short[] line = new short[WIDTH - 1];
+            for (int y = 0; y < HEIGHT; y++) {
+                cache.readLine(b, 1, y, WIDTH - 1, line, 0);
+                for (int x = 1; x < WIDTH; x++) {
+                    assertEquals(value(b, x, y), line[x - 1]);
+                }
+            }
+        }
+    }
+
+    private EnviBlockCache createCache(boolean bip, ByteOrder byteOrder, long maxSizeInBytes) throws IOException {
+        fileReader = new PositionalFileReader(imageFile, byteOrder);
+        return new EnviBlockCache(fileReader, HEADER_OFFSET, WIDTH, HEIGHT, NUM_BANDS, ProductData.TYPE_INT16,
+                                  bip, maxSizeInBytes);
+    }
+
+    private void writeImage(boolean bip, ByteOrder byteOrder) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_OFFSET + WIDTH * HEIGHT * NUM_BANDS * 2);
+        buffer.order(byteOrder);
+        buffer.position(HEADER_OFFSET);
+        for (int y = 0; y < HEIGHT; y++) {
+            if (bip) {
+                for (int x = 0; x < WIDTH; x++) {
+                    for (int b = 0; b < NUM_BANDS; b++) {
+                        buffer.putShort(value(b, x, y));
+                    }
+                }
+            } else {
+                for (int b = 0; b < NUM_BANDS; b++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        buffer.putShort(value(b, x, y));
+                    }
+                }
+            }
+        }
+        Files.write(imageFile.toPath(), buffer.array());
+    }
+
+    private static short value(int b, int x, int y) {
+        return (short) (1000 * b + 10 * y + x);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.geotiff;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps decoded multi-sample rasters of a TIFF image, so that a region decoded for the request of one band
+ * serves the requests of the other bands for the same region.
+ * <p/>
+ * As all bands of a product share the same tile layout, the bands request identical regions. An entry is
+ * removed as soon as each band has been served from it; entries of bands which are never requested are
+ * evicted in least-recently-used order when the memory limit is exceeded.
+ * <p/>
+ * Concurrent requests for the same region are decoded only once, requests for different regions
+ * do not block each other.
+ */
+class DecodedRasterCache {
+
+    /**
+     * The system property used to configure the maximum memory used by the cache, in mega bytes.
+     */
+    static final String SYSPROP_DECODE_CACHE_SIZE = "beam.geotiff.decodeCacheSize";
+    static final int DEFAULT_DECODE_CACHE_SIZE = 64;
+
+    interface Decoder {
+
+        Raster decode() throws IOException;
+    }
+
+    private final int numBands;
+    private final long maxSizeInBytes;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long sizeInBytes;
+
+    DecodedRasterCache(int numBands, long maxSizeInBytes) {
+        this.numBands = numBands;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    static long getConfiguredMaxSizeInBytes() {
+        return Long.getLong(SYSPROP_DECODE_CACHE_SIZE, DEFAULT_DECODE_CACHE_SIZE) * 1024L * 1024L;
+    }
+
+    /**
+     * Gets the decoded raster of the given region for the given band. The decoder is called if the region
+     * has not been decoded yet.
+     *
+     * @param key       identifies the region
+     * @param bandIndex the index of the band requesting the region
+     * @param decoder   decodes the region including all samples
+     *
+     * @return the decoded raster including all samples
+     *
+     * @throws IOException if the decoder fails
+     */
+    Raster getRaster(Key key, int bandIndex, Decoder decoder) throws IOException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+        final Raster raster;
+        synchronized (entry) {
+            if (entry.raster == null) {
+                try {
+                    entry.raster = decoder.decode();
+                } catch (IOException | RuntimeException e) {
+                    remove(key, entry);
+                    throw e;
+                }
+                synchronized (entries) {
+                    if (entries.get(key) == entry) {
+                        entry.sizeInBytes = getSizeInBytes(entry.raster);
+                        sizeInBytes += entry.sizeInBytes;
+                        evict(entry);
+                    }
+                }
+            }
+            raster = entry.raster;
+            entry.servedBands.set(bandIndex);
+            if (entry.servedBands.cardinality() >= numBands) {
+                // all bands have got their data, the region is unlikely to be requested again
+                remove(key, entry);
+            }
+        }
+        return raster;
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+            sizeInBytes = 0;
+        }
+    }
+
+    long getSizeInBytes() {
+        synchronized (entries) {
+            return sizeInBytes;
+        }
+    }
+
+    int getNumEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+                sizeInBytes -= entry.sizeInBytes;
+            }
+        }
+    }
+
+    private void evict(Entry keep) {
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            if (entry != keep) {
+                sizeInBytes -= entry.sizeInBytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    static long getSizeInBytes(Raster raster) {
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks()
+               * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    /**
+     * Identifies a region read with certain subsampling parameters.
+     */
+    static final class Key {
+
+        private final int[] values;
+        private final int hashCode;
+
+        Key(int... values) {
+            this.values = values.clone();
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Key && Arrays.equals(values, ((Key) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class Entry {
+
+        private final BitSet servedBands = new BitSet();
+        private Raster raster;
+        private long sizeInBytes;
+    }
+}
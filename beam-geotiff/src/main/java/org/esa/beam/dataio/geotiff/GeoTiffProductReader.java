@@ -70,6 +70,7 @@ import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
+import javax.media.jai.JAI;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -86,8 +87,12 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -104,6 +109,13 @@ public class GeoTiffProductReader extends AbstractProductReader {
     private TIFFImageReader imageReader;
     private boolean isGlobalShifted180;
 
+    private File inputFile;
+    private DecodedRasterCache rasterCache;
+    // additional image readers on their own streams, so that regions can be decoded in parallel. At most as many
+    // readers as the tile scheduler has threads are kept idle, surplus readers are closed when they are released.
+    private final Deque<TIFFImageReader> idleImageReaders = new ArrayDeque<>();
+    private final List<TIFFImageReader> pooledImageReaders = new ArrayList<>();
+
     public GeoTiffProductReader(ProductReaderPlugIn readerPlugIn) {
         super(readerPlugIn);
     }
@@ -141,14 +153,14 @@ public class GeoTiffProductReader extends AbstractProductReader {
             final int destSize = destWidth * destHeight;
             pm.beginTask("Reading data...", 3);
             try {
-                final Raster data = readRect(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
-                                             destOffsetX, destOffsetY, destWidth, destHeight);
-                pm.worked(1);
-
                 Integer bandIdx = bandMap.get(destBand);
                 if (bandIdx == null) {
                     bandIdx = 0;
                 }
+                final Raster data = readRect(bandIdx, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                             destOffsetX, destOffsetY, destWidth, destHeight);
+                pm.worked(1);
+
                 final DataBuffer dataBuffer = data.getDataBuffer();
                 final SampleModel sampleModel = data.getSampleModel();
                 final int dataBufferType = dataBuffer.getDataType();
@@ -193,18 +205,18 @@ public class GeoTiffProductReader extends AbstractProductReader {
         pm.beginTask("Reading data...", 3);
         try {
 
-            final Raster dataLeft = readRect(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+            Integer bandIdx = bandMap.get(destBand);
+            if (bandIdx == null) {
+                bandIdx = 0;
+            }
+            final Raster dataLeft = readRect(bandIdx, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
                                              destOffsetX, destOffsetY, destWidth / 2, destHeight);
-            final Raster dataRight = readRect(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+            final Raster dataRight = readRect(bandIdx, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
                                               destOffsetX + destWidth / 2, destOffsetY, destWidth / 2, destHeight);
             pm.worked(1);
 
             double[] dArrayLeft = new double[destSize / 2];
             double[] dArrayRight = new double[destSize / 2];
-            Integer bandIdx = bandMap.get(destBand);
-            if (bandIdx == null) {
-                bandIdx = 0;
-            }
             final DataBuffer dataBufferLeft = dataLeft.getDataBuffer();
             final DataBuffer dataBufferRight = dataRight.getDataBuffer();
             final SampleModel sampleModelLeft = dataLeft.getSampleModel();
@@ -230,25 +242,118 @@ public class GeoTiffProductReader extends AbstractProductReader {
         }
     }
 
-    private synchronized Raster readRect(int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
-                                         int destOffsetX, int destOffsetY, int destWidth, int destHeight) throws
-                                                                                                          IOException {
-        ImageReadParam readParam = imageReader.getDefaultReadParam();
+    /**
+     * Reads a region of the image including all samples. If the image has multiple samples per pixel, the region
+     * is kept in the decode cache until it has been requested for the other bands too.
+     */
+    private Raster readRect(int bandIdx,
+                            final int sourceOffsetX, final int sourceOffsetY,
+                            final int sourceStepX, final int sourceStepY,
+                            final int destOffsetX, final int destOffsetY,
+                            final int destWidth, final int destHeight) throws IOException {
+        if (rasterCache == null) {
+            return decodeRect(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                              destOffsetX, destOffsetY, destWidth, destHeight);
+        }
+        final DecodedRasterCache.Key key = new DecodedRasterCache.Key(sourceOffsetX, sourceOffsetY,
+                                                                      sourceStepX, sourceStepY,
+                                                                      destOffsetX, destOffsetY,
+                                                                      destWidth, destHeight);
+        return rasterCache.getRaster(key, bandIdx, new DecodedRasterCache.Decoder() {
+            @Override
+            public Raster decode() throws IOException {
+                return decodeRect(sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                  destOffsetX, destOffsetY, destWidth, destHeight);
+            }
+        });
+    }
+
+    private Raster decodeRect(int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
+                              int destOffsetX, int destOffsetY, int destWidth, int destHeight) throws IOException {
+        if (inputFile == null) {
+            // the input stream cannot be opened a second time
+            synchronized (this) {
+                return readRect(imageReader, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                                destOffsetX, destOffsetY, destWidth, destHeight);
+            }
+        }
+        final TIFFImageReader reader = acquireImageReader();
+        try {
+            return readRect(reader, sourceOffsetX, sourceOffsetY, sourceStepX, sourceStepY,
+                            destOffsetX, destOffsetY, destWidth, destHeight);
+        } finally {
+            releaseImageReader(reader);
+        }
+    }
+
+    private static Raster readRect(TIFFImageReader reader,
+                                   int sourceOffsetX, int sourceOffsetY, int sourceStepX, int sourceStepY,
+                                   int destOffsetX, int destOffsetY, int destWidth, int destHeight) throws
+                                                                                                    IOException {
+        ImageReadParam readParam = reader.getDefaultReadParam();
         int subsamplingXOffset = sourceOffsetX % sourceStepX;
         int subsamplingYOffset = sourceOffsetY % sourceStepY;
         readParam.setSourceSubsampling(sourceStepX, sourceStepY, subsamplingXOffset, subsamplingYOffset);
-        RenderedImage subsampledImage = imageReader.readAsRenderedImage(FIRST_IMAGE, readParam);
+        RenderedImage subsampledImage = reader.readAsRenderedImage(FIRST_IMAGE, readParam);
 
         return subsampledImage.getData(new Rectangle(destOffsetX, destOffsetY, destWidth, destHeight));
     }
 
+    private TIFFImageReader acquireImageReader() throws IOException {
+        synchronized (idleImageReaders) {
+            if (!idleImageReaders.isEmpty()) {
+                return idleImageReaders.pop();
+            }
+        }
+        final ImageInputStream stream = ImageIO.createImageInputStream(inputFile);
+        if (stream == null) {
+            throw new IOException("Failed to open '" + inputFile + "'.");
+        }
+        final TIFFImageReader reader = (TIFFImageReader) imageReader.getOriginatingProvider().createReaderInstance();
+        reader.setInput(stream);
+        synchronized (idleImageReaders) {
+            pooledImageReaders.add(reader);
+        }
+        return reader;
+    }
+
+    private void releaseImageReader(TIFFImageReader reader) throws IOException {
+        final int maxIdleImageReaders = Math.max(1, JAI.getDefaultInstance().getTileScheduler().getParallelism());
+        synchronized (idleImageReaders) {
+            if (idleImageReaders.size() < maxIdleImageReaders) {
+                idleImageReaders.push(reader);
+                return;
+            }
+            pooledImageReaders.remove(reader);
+        }
+        closeImageReader(reader);
+    }
+
+    private static void closeImageReader(TIFFImageReader reader) throws IOException {
+        final ImageInputStream stream = (ImageInputStream) reader.getInput();
+        reader.dispose();
+        stream.close();
+    }
+
     @Override
     public synchronized void close() throws IOException {
         super.close();
+        if (rasterCache != null) {
+            rasterCache.clear();
+            rasterCache = null;
+        }
+        synchronized (idleImageReaders) {
+            for (TIFFImageReader reader : pooledImageReaders) {
+                closeImageReader(reader);
+            }
+            pooledImageReaders.clear();
+            idleImageReaders.clear();
+        }
         inputStream.close();
     }
 
     Product readGeoTIFFProduct(final ImageInputStream stream, final File inputFile) throws IOException {
+        this.inputFile = inputFile;
         Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(stream);
         while (imageReaders.hasNext()) {
             final ImageReader reader = imageReaders.next();
@@ -320,6 +425,10 @@ public class GeoTiffProductReader extends AbstractProductReader {
         }
         setPreferredTiling(product);
 
+        if (bandMap.size() > 1) {
+            rasterCache = new DecodedRasterCache(bandMap.size(), DecodedRasterCache.getConfiguredMaxSizeInBytes());
+        }
+
         return product;
     }
 
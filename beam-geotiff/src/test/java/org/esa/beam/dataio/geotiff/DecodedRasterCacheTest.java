@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.geotiff;
+
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class DecodedRasterCacheTest {
+
+    @Test
+    public void testRegionIsDecodedOnceForAllBands() throws IOException {
+        final DecodedRasterCache cache = new DecodedRasterCache(3, 1024 * 1024);
+        final CountingDecoder decoder = new CountingDecoder(10, 10, 3);
+        final DecodedRasterCache.Key key = new DecodedRasterCache.Key(0, 0, 1, 1, 0, 0, 10, 10);
+
+        final Raster raster0 = cache.getRaster(key, 0, decoder);
+        assertEquals(1, cache.getNumEntries());
+        assertEquals(10 * 10 * 3 * 4, cache.getSizeInBytes());
+        assertSame(raster0, cache.getRaster(new DecodedRasterCache.Key(0, 0, 1, 1, 0, 0, 10, 10), 2, decoder));
+        assertEquals(1, cache.getNumEntries());
+        assertSame(raster0, cache.getRaster(key, 1, decoder));
+        assertEquals(1, decoder.count);
+
+        // all bands have been served
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getSizeInBytes());
+        cache.getRaster(key, 0, decoder);
+        assertEquals(2, decoder.count);
+    }
+
+    @Test
+    public void testDifferentRegionsAreDecodedSeparately() throws IOException {
+        final DecodedRasterCache cache = new DecodedRasterCache(2, 1024 * 1024);
+        final CountingDecoder decoder = new CountingDecoder(10, 10, 2);
+
+        cache.getRaster(new DecodedRasterCache.Key(0, 0, 1, 1, 0, 0, 10, 10), 0, decoder);
+        cache.getRaster(new DecodedRasterCache.Key(0, 0, 1, 1, 10, 0, 10, 10), 0, decoder);
+        cache.getRaster(new DecodedRasterCache.Key(0, 0, 2, 2, 0, 0, 10, 10), 0, decoder);
+        assertEquals(3, decoder.count);
+        assertEquals(3, cache.getNumEntries());
+
+        cache.clear();
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRegionsAreEvicted() throws IOException {
+        final int rasterSize = 10 * 10 * 2 * 4;
+        final DecodedRasterCache cache = new DecodedRasterCache(2, 2 * rasterSize);
+        final CountingDecoder decoder = new CountingDecoder(10, 10, 2);
+        final DecodedRasterCache.Key key1 = new DecodedRasterCache.Key(0, 0, 1, 1, 0, 0, 10, 10);
+        final DecodedRasterCache.Key key2 = new DecodedRasterCache.Key(0, 0, 1, 1, 10, 0, 10, 10);
+        final DecodedRasterCache.Key key3 = new DecodedRasterCache.Key(0, 0, 1, 1, 20, 0, 10, 10);
+
+        cache.getRaster(key1, 0, decoder);
+        cache.getRaster(key2, 0, decoder);
+        assertEquals(2, cache.getNumEntries());
+        cache.getRaster(key3, 0, decoder);
+        assertEquals(2, cache.getNumEntries());
+        assertEquals(2 * rasterSize, cache.getSizeInBytes());
+        assertEquals(3, decoder.count);
+
+        // key1 has been evicted, key2 is still there
+        cache.getRaster(key2, 1, decoder);
+        assertEquals(3, decoder.count);
+        cache.getRaster(key1, 1, decoder);
+        assertEquals(4, decoder.count);
+    }
+
+    @Test
+    public void testFailedDecodeIsNotCached() throws IOException {
+        final DecodedRasterCache cache = new DecodedRasterCache(2, 1024 * 1024);
+        final DecodedRasterCache.Key key = new DecodedRasterCache.Key(0, 0, 1, 1, 0, 0, 10, 10);
+        try {
+            cache.getRaster(key, 0, new DecodedRasterCache.Decoder() {
+                @Override
+                public Raster decode() throws IOException {
+                    throw new IOException("failed");
+                }
+            });
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // ok
+        }
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    private static class CountingDecoder implements DecodedRasterCache.Decoder {
+
+        private final int width;
+        private final int height;
+        private final int numBands;
+        private int count;
+
+        private CountingDecoder(int width, int height, int numBands) {
+            this.width = width;
+            this.height = height;
+            this.numBands = numBands;
+        }
+
+        @Override
+        public Raster decode() {
+            count++;
+            return Raster.createBandedRaster(DataBuffer.TYPE_INT, width, height, numBands, new Point(0, 0));
+        }
+    }
+}
@@ -50,7 +50,17 @@ public class GPF {
 
     public static final String DISABLE_TILE_CACHE_PROPERTY = "beam.gpf.disableTileCache";
     public static final String USE_FILE_TILE_CACHE_PROPERTY = "beam.gpf.useFileTileCache";
+    public static final String USE_COST_AWARE_TILE_CACHE_PROPERTY = "beam.gpf.useCostAwareTileCache";
+    /**
+     * Per-operator quotas of the cost-aware tile cache, given as comma-separated list of
+     * {@code <operator-alias>:<quota-in-MB>} pairs, e.g. "Reproject:512,Meris.CorrectRadiometry:128".
+     */
+    public static final String TILE_CACHE_QUOTAS_PROPERTY = "beam.gpf.tileCacheQuotas";
     public static final String TILE_COMPUTATION_OBSERVER_PROPERTY = "beam.gpf.tileComputationObserver";
+    /**
+     * The file the {@link org.esa.beam.framework.gpf.monitor.PerformanceMetricsObserver} writes its JSON report to.
+     */
+    public static final String METRICS_REPORT_PROPERTY = "beam.gpf.metricsReport";
 
     public static final String SOURCE_PRODUCT_FIELD_NAME = "sourceProduct";
     public static final String TARGET_PRODUCT_FIELD_NAME = "targetProduct";
@@ -396,11 +406,29 @@ public class GPF {
       * @param pm          a monitor to inform the user about progress
       */
      public static void writeProduct(Product product, File file, String formatName, boolean clearCacheAfterRowWrite, boolean incremental, ProgressMonitor pm) {
+         writeProduct(product, file, formatName, clearCacheAfterRowWrite, incremental, false, pm);
+     }
+
+    /**
+      * Writes a product with the specified format to the given file.
+      *
+      * @param product     the product
+      * @param file        the product file
+      * @param formatName  the name of a supported product format, e.g. "HDF5". If <code>null</code>, the default format
+      *                    "BEAM-DIMAP" will be used
+      * @param clearCacheAfterRowWrite if true, the internal tile cache is cleared after a tile row has been written.
+      * @param incremental switch the product writer in incremental mode or not.
+      * @param resume      if true, the writing of a partially written product is continued using its write journal.
+      * @param pm          a monitor to inform the user about progress
+      * @since BEAM 5.0.6
+      */
+     public static void writeProduct(Product product, File file, String formatName, boolean clearCacheAfterRowWrite, boolean incremental, boolean resume, ProgressMonitor pm) {
          WriteOp writeOp = new WriteOp(product, file, formatName);
          writeOp.setDeleteOutputOnFailure(true);
          writeOp.setWriteEntireTileRows(true);
          writeOp.setClearCacheAfterRowWrite(clearCacheAfterRowWrite);
          writeOp.setIncremental(incremental);
+         writeOp.setResume(resume);
          writeOp.writeProduct(pm);
      }
 
@@ -0,0 +1,666 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import javax.media.jai.TileCache;
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tile cache for GPF operator images which takes into account how expensive it is to compute a tile.
+ * <p/>
+ * Eviction follows the <i>GreedyDual-Size</i> strategy: each tile has a priority which is the compute time
+ * per byte of the tile plus an inflation value. The tile with the lowest priority is evicted first, and its
+ * priority becomes the new inflation value, so that tiles which have not been accessed for a long time age out
+ * even if they were expensive to compute. Tiles whose compute time is not known are treated as cheap, for them
+ * the strategy degrades to LRU.
+ * <p/>
+ * The compute time of a tile is recorded by the {@link OperatorImage} computing it, see
+ * {@link #recordComputeTime(long)}. Tiles are grouped by the operator that computed them. For each operator a
+ * quota may be set, which limits the memory used by its tiles. Hits, misses and evictions are counted
+ * in total and per operator.
+ * <p/>
+ * The tiles are stored in segments, each guarded by its own lock, so that threads accessing different tiles
+ * rarely block each other. The memory capacity and the quotas apply to the cache as a whole, when space is
+ * needed the tile with the lowest priority over all segments is evicted.
+ *
+ * @since BEAM 5.0.6
+ */
+public class CostAwareTileCache implements TileCache {
+
+    public static final int DEFAULT_NUM_SEGMENTS = 16;
+
+    private static final ThreadLocal<long[]> COMPUTE_TIME = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private static final Object DEFAULT_GROUP_KEY = new Object();
+
+    private final Segment[] segments;
+    private final ConcurrentMap<Object, Group> groups;
+    private final ConcurrentMap<String, Long> quotas;
+    private final Counters counters;
+    private final AtomicLong size;
+    private final AtomicLong sequence;
+    private final AtomicLong inflationBits;
+    private volatile long memoryCapacity;
+    private volatile float memoryThreshold;
+    private volatile Comparator tileComparator;
+
+    public CostAwareTileCache(long memoryCapacity) {
+        this(memoryCapacity, DEFAULT_NUM_SEGMENTS);
+    }
+
+    public CostAwareTileCache(long memoryCapacity, int numSegments) {
+        if (numSegments <= 0) {
+            throw new IllegalArgumentException("numSegments <= 0");
+        }
+        this.memoryCapacity = memoryCapacity;
+        this.memoryThreshold = 0.75F;
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment();
+        }
+        this.groups = new ConcurrentHashMap<>();
+        this.quotas = new ConcurrentHashMap<>();
+        this.counters = new Counters();
+        this.size = new AtomicLong();
+        this.sequence = new AtomicLong();
+        this.inflationBits = new AtomicLong(Double.doubleToLongBits(0.0));
+    }
+
+    /**
+     * Records the time taken by the current thread to compute the tile it will add next.
+     * Called by operator images after computing a tile. Tiles added without a recorded time are considered cheap.
+     *
+     * @param nanos The compute time in nanoseconds.
+     */
+    public static void recordComputeTime(long nanos) {
+        COMPUTE_TIME.get()[0] = nanos;
+    }
+
+    /**
+     * Limits the memory used by the tiles of the operator with the given alias (or name, if it has no alias).
+     *
+     * @param operatorName The operator alias or name.
+     * @param quota        The quota in bytes, a negative value removes the quota.
+     */
+    public void setQuota(String operatorName, long quota) {
+        if (quota < 0) {
+            quotas.remove(operatorName);
+        } else {
+            quotas.put(operatorName, quota);
+        }
+        for (Group group : groups.values()) {
+            if (operatorName.equals(group.name)) {
+                group.quota = quota;
+                if (quota >= 0) {
+                    evict(quota, group);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param operatorName The operator alias or name.
+     * @return The quota in bytes, or {@code -1} if no quota is set.
+     */
+    public long getQuota(String operatorName) {
+        final Long quota = quotas.get(operatorName);
+        return quota != null ? quota : -1L;
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of all tiles.
+     */
+    public Statistics getStatistics() {
+        return counters.toStatistics();
+    }
+
+    /**
+     * @param operatorContext An operator context.
+     * @return The hit, miss and eviction counts of the tiles computed by the given operator.
+     */
+    public Statistics getStatistics(OperatorContext operatorContext) {
+        final Group group = groups.get(operatorContext);
+        return group != null ? group.counters.toStatistics() : new Statistics(0, 0, 0);
+    }
+
+    /**
+     * Discards the statistics of the given operator, called when the operator is disposed.
+     *
+     * @param operatorContext An operator context.
+     */
+    void removeStatistics(OperatorContext operatorContext) {
+        groups.remove(operatorContext);
+    }
+
+    /**
+     * @return The memory currently used by the cached tiles in bytes.
+     */
+    public long getMemoryUsage() {
+        return size.get();
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster data) {
+        add(owner, tileX, tileY, data, null);
+    }
+
+    @Override
+    public void add(RenderedImage owner, int tileX, int tileY, Raster data, Object tileCacheMetric) {
+        final Key key = new Key(owner, tileX, tileY);
+        final Group group = getGroup(owner, tileCacheMetric);
+        final long size = getSizeInBytes(data);
+        final long[] computeTime = COMPUTE_TIME.get();
+        final double costPerByte = size > 0 ? computeTime[0] / (double) size : 0.0;
+        // the recorded time only applies to the tile added next
+        computeTime[0] = 0;
+        final Segment segment = getSegment(key);
+        segment.remove(key);
+        final long groupQuota = group.quota;
+        if (size > memoryCapacity || groupQuota >= 0 && size > groupQuota) {
+            return;
+        }
+        if (groupQuota >= 0) {
+            evict(groupQuota - size, group);
+        }
+        evict(memoryCapacity - size, null);
+        segment.add(new Entry(key, data, group, size, costPerByte));
+    }
+
+    @Override
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        final Key key = new Key(owner, tileX, tileY);
+        getSegment(key).remove(key);
+    }
+
+    @Override
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        final Key key = new Key(owner, tileX, tileY);
+        final Raster tile = getSegment(key).get(key);
+        final Counters groupCounters = getGroup(owner, null).counters;
+        if (tile != null) {
+            counters.hits.incrementAndGet();
+            groupCounters.hits.incrementAndGet();
+        } else {
+            counters.misses.incrementAndGet();
+            groupCounters.misses.incrementAndGet();
+        }
+        return tile;
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner) {
+        final List<Raster> tiles = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.collectTiles(owner, tiles);
+        }
+        return tiles.isEmpty() ? null : tiles.toArray(new Raster[tiles.size()]);
+    }
+
+    @Override
+    public void removeTiles(RenderedImage owner) {
+        for (Segment segment : segments) {
+            segment.removeTiles(owner);
+        }
+    }
+
+    @Override
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles, Object tileCacheMetric) {
+        for (int i = 0; i < tileIndices.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
+        }
+    }
+
+    @Override
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        final Raster[] tiles = new Raster[tileIndices.length];
+        for (int i = 0; i < tileIndices.length; i++) {
+            tiles[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return tiles;
+    }
+
+    @Override
+    public void flush() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        inflationBits.set(Double.doubleToLongBits(0.0));
+    }
+
+    @Override
+    public void memoryControl() {
+        evict((long) (memoryThreshold * memoryCapacity), null);
+    }
+
+    /**
+     * Not supported, the capacity is given by {@link #setMemoryCapacity(long)}.
+     */
+    @Override
+    public void setTileCapacity(int tileCapacity) {
+    }
+
+    @Override
+    public int getTileCapacity() {
+        return 0;
+    }
+
+    @Override
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("memoryCapacity < 0");
+        }
+        this.memoryCapacity = memoryCapacity;
+        evict(memoryCapacity, null);
+    }
+
+    @Override
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    @Override
+    public void setMemoryThreshold(float memoryThreshold) {
+        if (memoryThreshold < 0.0F || memoryThreshold > 1.0F) {
+            throw new IllegalArgumentException("memoryThreshold must be in the range [0, 1]");
+        }
+        this.memoryThreshold = memoryThreshold;
+        memoryControl();
+    }
+
+    @Override
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    /**
+     * The comparator is stored but not used, since tiles are ordered by their compute cost.
+     */
+    @Override
+    public void setTileComparator(Comparator comparator) {
+        this.tileComparator = comparator;
+    }
+
+    @Override
+    public Comparator getTileComparator() {
+        return tileComparator;
+    }
+
+    /**
+     * Evicts tiles in priority order until the memory used (by the given group, if not null) is at most
+     * the given size. The segments are locked one at a time, the tile with the lowest priority over all
+     * segments is evicted first. If the tile has been accessed since its segment was looked at, it is not
+     * evicted and the search is repeated.
+     */
+    private void evict(long maxSize, Group group) {
+        while (getSize(group) > maxSize) {
+            Candidate victim = null;
+            for (Segment segment : segments) {
+                final Candidate candidate = segment.peek(group);
+                if (candidate != null && (victim == null || candidate.isBefore(victim))) {
+                    victim = candidate;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            victim.segment.evict(victim);
+        }
+    }
+
+    private long getSize(Group group) {
+        return group != null ? group.size.get() : size.get();
+    }
+
+    private double getInflation() {
+        return Double.longBitsToDouble(inflationBits.get());
+    }
+
+    private void raiseInflation(double inflation) {
+        while (true) {
+            final long bits = inflationBits.get();
+            if (inflation <= Double.longBitsToDouble(bits)
+                || inflationBits.compareAndSet(bits, Double.doubleToLongBits(inflation))) {
+                return;
+            }
+        }
+    }
+
+    private Segment getSegment(Key key) {
+        final int hash = key.hashCode();
+        return segments[((hash ^ (hash >>> 16)) & 0x7fffffff) % segments.length];
+    }
+
+    private Group getGroup(RenderedImage owner, Object tileCacheMetric) {
+        Object groupKey = tileCacheMetric;
+        if (owner instanceof OperatorImage) {
+            groupKey = ((OperatorImage) owner).getOperatorContext();
+        }
+        if (groupKey == null) {
+            groupKey = DEFAULT_GROUP_KEY;
+        }
+        Group group = groups.get(groupKey);
+        if (group == null) {
+            final String name = getGroupName(groupKey);
+            final Long quota = name != null ? quotas.get(name) : null;
+            group = new Group(name, quota != null ? quota : -1L);
+            final Group existingGroup = groups.putIfAbsent(groupKey, group);
+            if (existingGroup != null) {
+                group = existingGroup;
+            }
+        }
+        return group;
+    }
+
+    private static String getGroupName(Object groupKey) {
+        if (groupKey instanceof OperatorContext) {
+            final OperatorContext operatorContext = (OperatorContext) groupKey;
+            final String alias = operatorContext.getOperatorSpi().getOperatorDescriptor().getAlias();
+            return alias != null ? alias : operatorContext.getOperatorSpi().getOperatorDescriptor().getName();
+        }
+        return null;
+    }
+
+    static long getSizeInBytes(Raster raster) {
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks()
+               * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+
+    /**
+     * A snapshot of cache statistics.
+     */
+    public static final class Statistics {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        Statistics(long hitCount, long missCount, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return The ratio of hits to requests, or {@code 0} if there were no requests yet.
+         */
+        public double getHitRatio() {
+            final long requestCount = hitCount + missCount;
+            return requestCount > 0 ? hitCount / (double) requestCount : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, evictions=%d, hit ratio=%.3f",
+                                 hitCount, missCount, evictionCount, getHitRatio());
+        }
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private Statistics toStatistics() {
+            return new Statistics(hits.get(), misses.get(), evictions.get());
+        }
+    }
+
+    private static final class Group {
+
+        private final String name;
+        private final Counters counters;
+        private final AtomicLong size;
+        private volatile long quota;
+
+        private Group(String name, long quota) {
+            this.name = name;
+            this.quota = quota;
+            this.counters = new Counters();
+            this.size = new AtomicLong();
+        }
+    }
+
+    private static final class Key {
+
+        private final RenderedImage owner;
+        private final int tileX;
+        private final int tileY;
+        private final int hashCode;
+
+        private Key(RenderedImage owner, int tileX, int tileY) {
+            this.owner = owner;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.hashCode = 31 * (31 * System.identityHashCode(owner) + tileX) + tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            //noinspection ObjectEquality
+            return owner == key.owner && tileX == key.tileX && tileY == key.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+        private final Raster tile;
+        private final Group group;
+        private final long size;
+        private final double costPerByte;
+        // only changed by the owning segment while the entry is not queued, but read by other threads
+        private volatile double priority;
+        private volatile long sequence;
+
+        private Entry(Key key, Raster tile, Group group, long size, double costPerByte) {
+            this.key = key;
+            this.tile = tile;
+            this.group = group;
+            this.size = size;
+            this.costPerByte = costPerByte;
+        }
+    }
+
+    private static final Comparator<Entry> PRIORITY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            final int c = Double.compare(e1.priority, e2.priority);
+            return c != 0 ? c : Long.compare(e1.sequence, e2.sequence);
+        }
+    };
+
+    /**
+     * The entry with the lowest priority in a segment, with its priority and sequence at the time it was found.
+     */
+    private static final class Candidate {
+
+        private final Segment segment;
+        private final Entry entry;
+        private final double priority;
+        private final long sequence;
+
+        private Candidate(Segment segment, Entry entry) {
+            this.segment = segment;
+            this.entry = entry;
+            this.priority = entry.priority;
+            this.sequence = entry.sequence;
+        }
+
+        private boolean isBefore(Candidate other) {
+            final int c = Double.compare(priority, other.priority);
+            return c != 0 ? c < 0 : sequence < other.sequence;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<Key, Entry> entries = new HashMap<>();
+        private final TreeSet<Entry> evictionQueue = new TreeSet<>(PRIORITY_ORDER);
+        // the entries of evictionQueue by group, so that the lowest priority entry of a group is found without a scan
+        private final Map<Group, TreeSet<Entry>> groupEvictionQueues = new HashMap<>();
+
+        private synchronized void add(Entry entry) {
+            removeEntry(entries.get(entry.key), false);
+            touch(entry);
+            entries.put(entry.key, entry);
+            size.addAndGet(entry.size);
+            entry.group.size.addAndGet(entry.size);
+        }
+
+        private synchronized Raster get(Key key) {
+            final Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            dequeue(entry);
+            touch(entry);
+            return entry.tile;
+        }
+
+        private synchronized void remove(Key key) {
+            removeEntry(entries.get(key), false);
+        }
+
+        private synchronized void collectTiles(RenderedImage owner, List<Raster> tiles) {
+            for (Entry entry : entries.values()) {
+                //noinspection ObjectEquality
+                if (entry.key.owner == owner) {
+                    tiles.add(entry.tile);
+                }
+            }
+        }
+
+        private synchronized void removeTiles(RenderedImage owner) {
+            final List<Entry> ownerEntries = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                //noinspection ObjectEquality
+                if (entry.key.owner == owner) {
+                    ownerEntries.add(entry);
+                }
+            }
+            for (Entry entry : ownerEntries) {
+                removeEntry(entry, false);
+            }
+        }
+
+        private synchronized void clear() {
+            for (Entry entry : new ArrayList<>(entries.values())) {
+                removeEntry(entry, false);
+            }
+        }
+
+        /**
+         * @return The entry with the lowest priority (of the given group, if not null), or null if there is none.
+         */
+        private synchronized Candidate peek(Group group) {
+            final TreeSet<Entry> queue = group != null ? groupEvictionQueues.get(group) : evictionQueue;
+            return queue != null && !queue.isEmpty() ? new Candidate(this, queue.first()) : null;
+        }
+
+        /**
+         * Evicts the entry of the given candidate, unless it has been accessed or removed since it was peeked.
+         */
+        private synchronized void evict(Candidate candidate) {
+            final Entry entry = candidate.entry;
+            //noinspection ObjectEquality
+            if (entry.sequence == candidate.sequence && entries.get(entry.key) == entry) {
+                raiseInflation(entry.priority);
+                removeEntry(entry, true);
+            }
+        }
+
+        private void touch(Entry entry) {
+            entry.priority = getInflation() + entry.costPerByte;
+            entry.sequence = sequence.getAndIncrement();
+            evictionQueue.add(entry);
+            TreeSet<Entry> groupQueue = groupEvictionQueues.get(entry.group);
+            if (groupQueue == null) {
+                groupQueue = new TreeSet<>(PRIORITY_ORDER);
+                groupEvictionQueues.put(entry.group, groupQueue);
+            }
+            groupQueue.add(entry);
+        }
+
+        private void dequeue(Entry entry) {
+            evictionQueue.remove(entry);
+            final TreeSet<Entry> groupQueue = groupEvictionQueues.get(entry.group);
+            if (groupQueue != null) {
+                groupQueue.remove(entry);
+                if (groupQueue.isEmpty()) {
+                    groupEvictionQueues.remove(entry.group);
+                }
+            }
+        }
+
+        private void removeEntry(Entry entry, boolean evicted) {
+            if (entry == null) {
+                return;
+            }
+            entries.remove(entry.key);
+            dequeue(entry);
+            size.addAndGet(-entry.size);
+            entry.group.size.addAndGet(-entry.size);
+            if (evicted) {
+                counters.evictions.incrementAndGet();
+                entry.group.counters.evictions.incrementAndGet();
+            }
+        }
+    }
+}
@@ -94,6 +94,7 @@ public class OperatorContext {
     private PropertySet parameterSet;
     private boolean initialising;
     private boolean requiresAllBands;
+    private final SourceAccessProfile sourceAccessProfile = new SourceAccessProfile();
 
     public OperatorContext(Operator operator) {
         if (operator == null) {
@@ -132,10 +133,14 @@ public class OperatorContext {
         if (tileCache == null) {
             boolean useFileTileCache = Boolean.parseBoolean(
                     System.getProperty(GPF.USE_FILE_TILE_CACHE_PROPERTY, "false"));
+            boolean useCostAwareTileCache = Boolean.parseBoolean(
+                    System.getProperty(GPF.USE_COST_AWARE_TILE_CACHE_PROPERTY, "false"));
             if (useFileTileCache) {
                 tileCache = new SwappingTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity(),
                         new DefaultSwapSpace(SwappingTileCache.DEFAULT_SWAP_DIR,
                                 BeamLogManager.getSystemLogger()));
+            } else if (useCostAwareTileCache) {
+                tileCache = createCostAwareTileCache();
             } else {
                 tileCache = JAI.getDefaultInstance().getTileCache();
             }
@@ -147,6 +152,34 @@ public class OperatorContext {
         return tileCache;
     }
 
+    private static CostAwareTileCache createCostAwareTileCache() {
+        CostAwareTileCache costAwareTileCache = new CostAwareTileCache(JAI.getDefaultInstance().getTileCache().getMemoryCapacity());
+        String quotas = System.getProperty(GPF.TILE_CACHE_QUOTAS_PROPERTY);
+        if (quotas != null) {
+            for (String quota : quotas.split(",")) {
+                int sepIndex = quota.lastIndexOf(':');
+                try {
+                    if (sepIndex <= 0) {
+                        throw new NumberFormatException();
+                    }
+                    long quotaMB = Long.parseLong(quota.substring(sepIndex + 1).trim());
+                    costAwareTileCache.setQuota(quota.substring(0, sepIndex).trim(), quotaMB * 1024L * 1024L);
+                } catch (NumberFormatException e) {
+                    BeamLogManager.getSystemLogger().warning(
+                            String.format("Ignoring invalid tile cache quota '%s', expected <operator>:<MB>", quota));
+                }
+            }
+        }
+        return costAwareTileCache;
+    }
+
+    /**
+     * @return The tile cache shared by all GPF operator images, or {@code null} if it has not been created yet.
+     */
+    public static synchronized TileCache getSharedTileCache() {
+        return tileCache;
+    }
+
     public String getId() {
         if (id == null) {
             OperatorDescriptor descriptor = getOperatorSpi().getOperatorDescriptor();
@@ -366,6 +399,10 @@ public class OperatorContext {
 
     public Tile getSourceTile(RasterDataNode rasterDataNode, Rectangle region, BorderExtender borderExtender) {
         suspendWatch();
+        if (targetProduct != null) {
+            sourceAccessProfile.recordAccess(rasterDataNode, region,
+                                             targetProduct.getSceneRasterWidth(), targetProduct.getSceneRasterHeight());
+        }
         MultiLevelImage image = rasterDataNode.getSourceImage();
         /////////////////////////////////////////////////////////////////////
         //
@@ -383,6 +420,14 @@ public class OperatorContext {
         return new TileImpl(rasterDataNode, awtRaster);
     }
 
+    /**
+     * @return The profile of the source regions accessed by the tiles of this operator.
+     * @since BEAM 5.0.6
+     */
+    SourceAccessProfile getSourceAccessProfile() {
+        return sourceAccessProfile;
+    }
+
     public OperatorImage getTargetImage(Band band) {
         return targetImageMap.get(band);
     }
@@ -402,6 +447,11 @@ public class OperatorContext {
                 image.dispose();
             }
             targetImageMap.clear();
+            sourceAccessProfile.clear();
+            TileCache sharedTileCache = getSharedTileCache();
+            if (sharedTileCache instanceof CostAwareTileCache) {
+                ((CostAwareTileCache) sharedTileCache).removeStatistics(this);
+            }
             operator.dispose();
         }
     }
@@ -77,6 +77,32 @@ public class OperatorExecutor {
          * for debugging purpose
          */
         PULL_ROW_BAND_COLUMN,
+        /**
+         * Computes the first tile alone to learn which source tiles the operators require, then
+         * reads the source tiles of upcoming tiles ahead in separate threads, so that reading and computing
+         * overlap. All bands of a tile are computed together. Tiles are scheduled in row order, or in
+         * wavefront order (anti-diagonals) if an operator in the graph accesses neighbouring source pixels,
+         * which keeps the working set in the tile cache small.
+         *
+         * @since BEAM 5.0.6
+         */
+        SCHEDULE_DEPENDENCY_AWARE,
+    }
+
+    /**
+     * Decides which tiles are scheduled for computation.
+     *
+     * @since BEAM 5.0.6
+     */
+    public interface TileFilter {
+
+        /**
+         * @param image The image.
+         * @param tileX The tile X index.
+         * @param tileY The tile Y index.
+         * @return {@code true} if the tile shall be computed.
+         */
+        boolean accept(PlanarImage image, int tileX, int tileY);
     }
 
     private final int tileCountX;
@@ -86,6 +112,7 @@ public class OperatorExecutor {
     private final int parallelism;
     private volatile OperatorException error = null;
     private boolean scheduleRowsSeparate = false;
+    private TileFilter tileFilter;
 
     public OperatorExecutor(PlanarImage[] images, int tileCountX, int tileCountY) {
         this(images, tileCountX, tileCountY, JAI.getDefaultInstance().getTileScheduler().getParallelism());
@@ -103,6 +130,17 @@ public class OperatorExecutor {
         this.scheduleRowsSeparate = scheduleRowsSeparate;
     }
 
+    /**
+     * Restricts the computation to the tiles accepted by the given filter, e.g. to the tiles
+     * missing in a partially written product. Tiles not accepted count as worked.
+     *
+     * @param tileFilter The filter, or {@code null} to compute all tiles.
+     * @since BEAM 5.0.6
+     */
+    public void setTileFilter(TileFilter tileFilter) {
+        this.tileFilter = tileFilter;
+    }
+
     public void execute(ProgressMonitor pm) {
         execute(ExecutionOrder.SCHEDULE_ROW_BAND_COLUMN, pm);
     }
@@ -129,6 +167,8 @@ public class OperatorExecutor {
                 scheduleRowColumnBand(semaphore, pm);
             } else if (effectiveExecutionOrder == ExecutionOrder.SCHEDULE_BAND_ROW_COLUMN) {
                 scheduleBandRowColumn(semaphore, listeners, pm);
+            } else if (effectiveExecutionOrder == ExecutionOrder.SCHEDULE_DEPENDENCY_AWARE) {
+                scheduleDependencyAware(semaphore, pm);
             } else if (effectiveExecutionOrder == ExecutionOrder.PULL_ROW_BAND_COLUMN) {
                 executeRowBandColumn(pm);
             } else {
@@ -195,7 +235,7 @@ public class OperatorExecutor {
             final TileComputationListener[] listeners = new TileComputationListener[]{tcl};
             for (int tileY = 0; tileY < tileCountY; tileY++) {
                 for (int tileX = 0; tileX < tileCountX; tileX++) {
-                    scheduleTile(images[0], tileX, tileY, semaphore, listeners, pm);
+                    scheduleTileStack(tileX, tileY, semaphore, listeners, pm);
                 }
                 if (scheduleRowsSeparate) {
                     // wait until all threads / tiles are finished
@@ -206,8 +246,82 @@ public class OperatorExecutor {
         }
     }
 
+    private void scheduleDependencyAware(Semaphore semaphore, ProgressMonitor pm) {
+        if (images.length == 0 || tileCountX == 0 || tileCountY == 0) {
+            return;
+        }
+        final TileComputationListener tcl = new OperatorTileComputationListenerStack(semaphore, images, pm);
+        final TileComputationListener[] listeners = new TileComputationListener[]{tcl};
+        final SourceTilePrefetcher prefetcher = new SourceTilePrefetcher(images,
+                                                                         SourceTilePrefetcher.getConfiguredThreadCount());
+        try {
+            // compute the first tile alone, afterwards the source accesses of the operators are known
+            final Point[] tileOrder = createTileOrder(tileCountX, tileCountY, false);
+            scheduleTileStack(tileOrder[0].x, tileOrder[0].y, semaphore, listeners, pm);
+            acquirePermits(semaphore, parallelism);
+            semaphore.release(parallelism);
+
+            final boolean wavefront = prefetcher.hasNeighbourhoodAccess();
+            BeamLogManager.getSystemLogger().fine(String.format("Scheduling %d tiles in %s order", tileOrder.length,
+                                                                wavefront ? "wavefront" : "row"));
+            final Point[] remainingOrder = wavefront ? createTileOrder(tileCountX, tileCountY, true) : tileOrder;
+            final int lookAhead = Math.max(1, parallelism);
+            for (int i = 1; i < remainingOrder.length && i <= lookAhead; i++) {
+                prefetcher.prefetch(remainingOrder[i].x, remainingOrder[i].y);
+            }
+            for (int i = 1; i < remainingOrder.length; i++) {
+                if (i + lookAhead < remainingOrder.length) {
+                    prefetcher.prefetch(remainingOrder[i + lookAhead].x, remainingOrder[i + lookAhead].y);
+                }
+                scheduleTileStack(remainingOrder[i].x, remainingOrder[i].y, semaphore, listeners, pm);
+            }
+        } finally {
+            prefetcher.dispose();
+        }
+    }
+
+    /**
+     * Creates the order in which tiles are scheduled, either row by row or in wavefront order, i.e. along the
+     * anti-diagonals. In both orders the first tile is (0,0).
+     */
+    static Point[] createTileOrder(int tileCountX, int tileCountY, boolean wavefront) {
+        final Point[] tileOrder = new Point[tileCountX * tileCountY];
+        int index = 0;
+        if (wavefront) {
+            for (int diagonal = 0; diagonal < tileCountX + tileCountY - 1; diagonal++) {
+                final int minTileY = Math.max(0, diagonal - tileCountX + 1);
+                final int maxTileY = Math.min(diagonal, tileCountY - 1);
+                for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                    tileOrder[index++] = new Point(diagonal - tileY, tileY);
+                }
+            }
+        } else {
+            for (int tileY = 0; tileY < tileCountY; tileY++) {
+                for (int tileX = 0; tileX < tileCountX; tileX++) {
+                    tileOrder[index++] = new Point(tileX, tileY);
+                }
+            }
+        }
+        return tileOrder;
+    }
+
+    private void scheduleTileStack(int tileX, int tileY, Semaphore semaphore, TileComputationListener[] listeners,
+                                   ProgressMonitor pm) {
+        // the listener computes the other images' tiles
+        PlanarImage image = getFirstAcceptedImage(tileX, tileY);
+        if (image != null) {
+            scheduleTile(image, tileX, tileY, semaphore, listeners, pm);
+        } else {
+            pm.worked(images.length);
+        }
+    }
+
     private void scheduleTile(final PlanarImage image, int tileX, int tileY, Semaphore semaphore,
                               TileComputationListener[] listeners, ProgressMonitor pm) {
+        if (!isAccepted(image, tileX, tileY)) {
+            pm.worked(1);
+            return;
+        }
 
         BeamLogManager.getSystemLogger().finest(String.format("Scheduling tile x=%d/%d y=%d/%d for %s",
                                                               tileX + 1, tileCountX, tileY + 1, tileCountY, image));
@@ -228,6 +342,19 @@ public class OperatorExecutor {
         /////////////////////////////////////////////////////////////////////
     }
 
+    private boolean isAccepted(PlanarImage image, int tileX, int tileY) {
+        return tileFilter == null || tileFilter.accept(image, tileX, tileY);
+    }
+
+    private PlanarImage getFirstAcceptedImage(int tileX, int tileY) {
+        for (PlanarImage image : images) {
+            if (isAccepted(image, tileX, tileY)) {
+                return image;
+            }
+        }
+        return null;
+    }
+
     private static void acquirePermits(Semaphore semaphore, int permits) {
         try {
             semaphore.acquire(permits);
@@ -272,6 +399,10 @@ public class OperatorExecutor {
             for (final PlanarImage image : images) {
                 for (int tileX = 0; tileX < tileCountX; tileX++) {
                     checkForCancelation(pm);
+                    if (!isAccepted(image, tileX, tileY)) {
+                        pm.worked(1);
+                        continue;
+                    }
                     /////////////////////////////////////////////////////////////////////
                     //
                     // Note: GPF pull-processing is triggered here!!!
@@ -301,7 +432,7 @@ public class OperatorExecutor {
         public void tileComputed(Object eventSource, TileRequest[] requests, PlanarImage image, int tileX, int tileY,
                                  Raster raster) {
             for (PlanarImage planarImage : images) {
-                if (image != planarImage) {
+                if (image != planarImage && isAccepted(planarImage, tileX, tileY)) {
                     BeamLogManager.getSystemLogger().finest(String.format("Scheduling tile x=%d/%d y=%d/%d for %s",
                                                                           tileX + 1, tileCountX, tileY + 1, tileCountY, planarImage));
                     planarImage.getTile(tileX, tileY);
@@ -63,20 +63,27 @@ public class OperatorImage extends SourcelessOpImage {
     protected void computeRect(PlanarImage[] ignored, WritableRaster tile, Rectangle destRect) {
         long startNanos = System.nanoTime();
 
-        Tile targetTile;
-        if (operatorContext.isComputingImageOf(getTargetBand())) {
-            targetTile = createTargetTile(getTargetBand(), tile, destRect);
-        } else if (requiresAllBands()) {
-            targetTile = operatorContext.getSourceTile(getTargetBand(), destRect);
-        } else {
-            targetTile = null;
+        final SourceAccessProfile sourceAccessProfile = operatorContext.getSourceAccessProfile();
+        final Rectangle enclosingRect = sourceAccessProfile.beginTile(destRect);
+        try {
+            Tile targetTile;
+            if (operatorContext.isComputingImageOf(getTargetBand())) {
+                targetTile = createTargetTile(getTargetBand(), tile, destRect);
+            } else if (requiresAllBands()) {
+                targetTile = operatorContext.getSourceTile(getTargetBand(), destRect);
+            } else {
+                targetTile = null;
+            }
+            operatorContext.startWatch();
+            // computeTile() may have been deactivated
+            if (targetTile != null && operatorContext.isComputeTileMethodUsable()) {
+                operatorContext.getOperator().computeTile(getTargetBand(), targetTile, ProgressMonitor.NULL);
+            }
+            operatorContext.stopWatch();
+        } finally {
+            sourceAccessProfile.endTile(enclosingRect);
         }
-        operatorContext.startWatch();
-        // computeTile() may have been deactivated
-        if (targetTile != null && operatorContext.isComputeTileMethodUsable()) {
-            operatorContext.getOperator().computeTile(getTargetBand(), targetTile, ProgressMonitor.NULL);
-        }
-        operatorContext.stopWatch();
+        CostAwareTileCache.recordComputeTime(System.nanoTime() - startNanos);
 //        long nettoNanos = operatorContext.getNettoTime();
 
         operatorContext.fireTileComputed(this, destRect, startNanos);
@@ -99,21 +99,28 @@ public class OperatorImageTileStack extends OperatorImage {
         Map<Band, Tile> targetTiles = new HashMap<Band, Tile>(targetBands.length * 2);
         Map<Band, WritableRaster> writableRasters = new HashMap<Band, WritableRaster>(targetBands.length);
 
-        for (Band band : targetBands) {
-            if (band == getTargetBand() || operatorContext.isComputingImageOf(band)) {
-                WritableRaster tileRaster = getWritableRaster(band, tile);
-                writableRasters.put(band, tileRaster);
-                Tile targetTile = createTargetTile(band, tileRaster, destRect);
-                targetTiles.put(band, targetTile);
-            } else if (requiresAllBands()) {
-                Tile targetTile = operatorContext.getSourceTile(band, destRect);
-                targetTiles.put(band, targetTile);
+        final SourceAccessProfile sourceAccessProfile = operatorContext.getSourceAccessProfile();
+        final Rectangle enclosingRect = sourceAccessProfile.beginTile(destRect);
+        try {
+            for (Band band : targetBands) {
+                if (band == getTargetBand() || operatorContext.isComputingImageOf(band)) {
+                    WritableRaster tileRaster = getWritableRaster(band, tile);
+                    writableRasters.put(band, tileRaster);
+                    Tile targetTile = createTargetTile(band, tileRaster, destRect);
+                    targetTiles.put(band, targetTile);
+                } else if (requiresAllBands()) {
+                    Tile targetTile = operatorContext.getSourceTile(band, destRect);
+                    targetTiles.put(band, targetTile);
+                }
             }
-        }
 
-        operatorContext.startWatch();
-        operatorContext.getOperator().computeTileStack(targetTiles, destRect, ProgressMonitor.NULL);
-        operatorContext.stopWatch();
+            operatorContext.startWatch();
+            operatorContext.getOperator().computeTileStack(targetTiles, destRect, ProgressMonitor.NULL);
+            operatorContext.stopWatch();
+        } finally {
+            sourceAccessProfile.endTile(enclosingRect);
+        }
+        CostAwareTileCache.recordComputeTime(System.nanoTime() - startNanos);
 //        long nettoNanos = operatorContext.getNettoTime();
 
         final int tileX = XToTileX(destRect.x);
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.gpf.internal;
+
+import org.esa.beam.framework.datamodel.RasterDataNode;
+
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records which source rasters an operator reads while computing its target tiles and by how much the
+ * requested source regions exceed the target tile. The profile is learned from the tiles computed so far
+ * and is used by the {@link OperatorExecutor} to predict the source tiles of the tiles still to be computed.
+ * <p/>
+ * Margins are only recorded for sources having the size of the target product; the source regions of
+ * other sources cannot be predicted from the target region.
+ *
+ * @since BEAM 5.0.6
+ */
+class SourceAccessProfile {
+
+    private final ThreadLocal<Rectangle> targetRectangle = new ThreadLocal<>();
+    private final ConcurrentHashMap<RasterDataNode, Insets> marginsMap = new ConcurrentHashMap<>();
+    private final Map<RasterDataNode, Boolean> unpredictableSources = new ConcurrentHashMap<>();
+
+    /**
+     * Called before the computation of a target tile in the current thread.
+     *
+     * @param targetRectangle The target tile rectangle.
+     * @return The rectangle of the enclosing tile computation, which must be passed to {@link #endTile}.
+     */
+    Rectangle beginTile(Rectangle targetRectangle) {
+        final Rectangle previous = this.targetRectangle.get();
+        this.targetRectangle.set(targetRectangle);
+        return previous;
+    }
+
+    /**
+     * Called after the computation of a target tile in the current thread.
+     *
+     * @param previous The value returned by {@link #beginTile}.
+     */
+    void endTile(Rectangle previous) {
+        if (previous != null) {
+            targetRectangle.set(previous);
+        } else {
+            targetRectangle.remove();
+        }
+    }
+
+    /**
+     * Records the access of a source region from within a target tile computation.
+     *
+     * @param sourceNode   The source raster.
+     * @param sourceRegion The region requested.
+     * @param targetWidth  The width of the target product.
+     * @param targetHeight The height of the target product.
+     */
+    void recordAccess(RasterDataNode sourceNode, Rectangle sourceRegion, int targetWidth, int targetHeight) {
+        final Rectangle target = targetRectangle.get();
+        if (target == null) {
+            return;
+        }
+        if (sourceNode.getSceneRasterWidth() != targetWidth || sourceNode.getSceneRasterHeight() != targetHeight) {
+            unpredictableSources.put(sourceNode, Boolean.TRUE);
+            return;
+        }
+        final int top = target.y - sourceRegion.y;
+        final int left = target.x - sourceRegion.x;
+        final int bottom = sourceRegion.y + sourceRegion.height - (target.y + target.height);
+        final int right = sourceRegion.x + sourceRegion.width - (target.x + target.width);
+        while (true) {
+            final Insets margins = marginsMap.get(sourceNode);
+            if (margins == null) {
+                if (marginsMap.putIfAbsent(sourceNode, new Insets(top, left, bottom, right)) == null) {
+                    return;
+                }
+            } else {
+                if (top <= margins.top && left <= margins.left && bottom <= margins.bottom && right <= margins.right) {
+                    return;
+                }
+                final Insets merged = new Insets(Math.max(top, margins.top), Math.max(left, margins.left),
+                                                 Math.max(bottom, margins.bottom), Math.max(right, margins.right));
+                if (marginsMap.replace(sourceNode, margins, merged)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The margins of the predictable sources accessed so far. The returned map is a snapshot.
+     */
+    Map<RasterDataNode, Insets> getSourceMargins() {
+        final HashMap<RasterDataNode, Insets> snapshot = new HashMap<>(marginsMap);
+        for (RasterDataNode node : unpredictableSources.keySet()) {
+            snapshot.remove(node);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return {@code true} if any source region exceeded its target tile, e.g. for neighbourhood operations.
+     */
+    boolean hasNeighbourhoodAccess() {
+        for (Insets margins : getSourceMargins().values()) {
+            if (margins.top > 0 || margins.left > 0 || margins.bottom > 0 || margins.right > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        marginsMap.clear();
+        unpredictableSources.clear();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.gpf.internal;
+
+import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.jai.BandOpImage;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RenderedOp;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Reads the source tiles required by target tiles ahead of their computation, so that reading from
+ * source products overlaps with the computation of other tiles.
+ * <p/>
+ * The source tiles are found by following the dependencies of the target images: through the
+ * {@link SourceAccessProfile}s of GPF operators, and through {@link OpImage#mapDestRect} of other
+ * JAI images, e.g. the warp images of a reprojection. Only the tiles of product reader images
+ * ({@link BandOpImage}s) are prefetched. They are put into the tile cache of their images, prefetching
+ * is therefore skipped for images without tile cache.
+ *
+ * @since BEAM 5.0.6
+ */
+class SourceTilePrefetcher {
+
+    /**
+     * The system property used to configure the number of threads reading source tiles ahead.
+     */
+    static final String PREFETCH_THREADS_PROPERTY = "beam.gpf.prefetchThreads";
+    static final int DEFAULT_PREFETCH_THREADS = 2;
+
+    private static final int MAX_DEPTH = 32;
+
+    private final PlanarImage[] targetImages;
+    private final ExecutorService executorService;
+    private final Set<SourceTile> requestedTiles;
+    private final AtomicInteger numPrefetchedTiles;
+    private volatile boolean disposed;
+
+    SourceTilePrefetcher(PlanarImage[] targetImages, int numThreads) {
+        this.targetImages = targetImages;
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, numThreads), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "gpf-prefetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.requestedTiles = new HashSet<>();
+        this.numPrefetchedTiles = new AtomicInteger();
+    }
+
+    static int getConfiguredThreadCount() {
+        return Integer.getInteger(PREFETCH_THREADS_PROPERTY, DEFAULT_PREFETCH_THREADS);
+    }
+
+    /**
+     * Requests the asynchronous reading of the source tiles of the given target tile position,
+     * unless they have been requested before.
+     *
+     * @param tileX The tile X index.
+     * @param tileY The tile Y index.
+     */
+    void prefetch(int tileX, int tileY) {
+        for (final SourceTile sourceTile : getSourceTiles(tileX, tileY)) {
+            if (requestedTiles.add(sourceTile) && sourceTile.image.getTileCache() != null) {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!disposed) {
+                            readTile(sourceTile);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return The number of source tiles read so far.
+     */
+    int getNumPrefetchedTiles() {
+        return numPrefetchedTiles.get();
+    }
+
+    /**
+     * @return {@code true} if an operator upstream of the target images accesses source regions larger
+     *         than its target tiles.
+     */
+    boolean hasNeighbourhoodAccess() {
+        final Set<OperatorContext> contexts = Collections.newSetFromMap(new IdentityHashMap<OperatorContext, Boolean>());
+        for (PlanarImage targetImage : targetImages) {
+            collectOperatorContexts(targetImage, 0, contexts);
+        }
+        for (OperatorContext context : contexts) {
+            if (context.getSourceAccessProfile().hasNeighbourhoodAccess()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops prefetching. Reads in progress are completed, pending requests are dropped.
+     */
+    void dispose() {
+        disposed = true;
+        // don't interrupt, an interrupt closes the file channels of some readers
+        executorService.shutdown();
+    }
+
+    Set<SourceTile> getSourceTiles(int tileX, int tileY) {
+        final Set<SourceTile> sourceTiles = new LinkedHashSet<>();
+        final Set<RenderedImage> path = Collections.newSetFromMap(new IdentityHashMap<RenderedImage, Boolean>());
+        for (PlanarImage targetImage : targetImages) {
+            collectSourceTiles(targetImage, targetImage.getTileRect(tileX, tileY), 0, path, sourceTiles);
+        }
+        return sourceTiles;
+    }
+
+    private void readTile(SourceTile sourceTile) {
+        try {
+            sourceTile.image.getTile(sourceTile.tileX, sourceTile.tileY);
+            numPrefetchedTiles.incrementAndGet();
+        } catch (RuntimeException e) {
+            // the error will be reported by the computation of the target tile
+            BeamLogManager.getSystemLogger().log(Level.FINE, "Failed to prefetch tile of " + sourceTile.image, e);
+        }
+    }
+
+    private static void collectSourceTiles(RenderedImage image, Rectangle region, int depth,
+                                           Set<RenderedImage> path, Set<SourceTile> sourceTiles) {
+        final RenderedImage unwrapped = unwrap(image);
+        if (unwrapped == null || depth > MAX_DEPTH || !path.add(unwrapped)) {
+            return;
+        }
+        try {
+            final Rectangle bounds = new Rectangle(unwrapped.getMinX(), unwrapped.getMinY(),
+                                                   unwrapped.getWidth(), unwrapped.getHeight());
+            final Rectangle clippedRegion = region.intersection(bounds);
+            if (clippedRegion.isEmpty()) {
+                return;
+            }
+            if (unwrapped instanceof OperatorImage) {
+                final OperatorContext context = ((OperatorImage) unwrapped).getOperatorContext();
+                if (context.isDisposed()) {
+                    return;
+                }
+                final Map<RasterDataNode, Insets> sourceMargins = context.getSourceAccessProfile().getSourceMargins();
+                for (Map.Entry<RasterDataNode, Insets> entry : sourceMargins.entrySet()) {
+                    final Insets margins = entry.getValue();
+                    final Rectangle sourceRegion = new Rectangle(clippedRegion.x - margins.left,
+                                                                 clippedRegion.y - margins.top,
+                                                                 clippedRegion.width + margins.left + margins.right,
+                                                                 clippedRegion.height + margins.top + margins.bottom);
+                    if (!sourceRegion.isEmpty()) {
+                        collectSourceTiles(entry.getKey().getSourceImage(), sourceRegion, depth + 1, path, sourceTiles);
+                    }
+                }
+            } else if (unwrapped instanceof BandOpImage) {
+                final BandOpImage bandImage = (BandOpImage) unwrapped;
+                final Point[] tileIndices = bandImage.getTileIndices(clippedRegion);
+                if (tileIndices != null) {
+                    for (Point tileIndex : tileIndices) {
+                        sourceTiles.add(new SourceTile(bandImage, tileIndex.x, tileIndex.y));
+                    }
+                }
+            } else if (unwrapped instanceof OpImage) {
+                final OpImage opImage = (OpImage) unwrapped;
+                for (int i = 0; i < opImage.getNumSources(); i++) {
+                    final Rectangle sourceRegion;
+                    try {
+                        sourceRegion = opImage.mapDestRect(clippedRegion, i);
+                    } catch (RuntimeException e) {
+                        // the image cannot tell, e.g. some area operations
+                        continue;
+                    }
+                    if (sourceRegion != null) {
+                        collectSourceTiles(opImage.getSourceImage(i), sourceRegion, depth + 1, path, sourceTiles);
+                    }
+                }
+            }
+        } finally {
+            path.remove(unwrapped);
+        }
+    }
+
+    private static void collectOperatorContexts(RenderedImage image, int depth, Set<OperatorContext> contexts) {
+        final RenderedImage unwrapped = unwrap(image);
+        if (unwrapped == null || depth > MAX_DEPTH) {
+            return;
+        }
+        if (unwrapped instanceof OperatorImage) {
+            final OperatorContext context = ((OperatorImage) unwrapped).getOperatorContext();
+            if (!context.isDisposed() && contexts.add(context)) {
+                for (RasterDataNode sourceNode : context.getSourceAccessProfile().getSourceMargins().keySet()) {
+                    collectOperatorContexts(sourceNode.getSourceImage(), depth + 1, contexts);
+                }
+            }
+        } else if (unwrapped instanceof OpImage) {
+            final OpImage opImage = (OpImage) unwrapped;
+            for (int i = 0; i < opImage.getNumSources(); i++) {
+                collectOperatorContexts(opImage.getSourceImage(i), depth + 1, contexts);
+            }
+        }
+    }
+
+    private static RenderedImage unwrap(RenderedImage image) {
+        RenderedImage unwrapped = image;
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            if (unwrapped instanceof MultiLevelImage) {
+                unwrapped = ((MultiLevelImage) unwrapped).getImage(0);
+            } else if (unwrapped instanceof RenderedOp) {
+                unwrapped = ((RenderedOp) unwrapped).getRendering();
+            } else {
+                return unwrapped;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A tile of a source image.
+     */
+    static final class SourceTile {
+
+        final OpImage image;
+        final int tileX;
+        final int tileY;
+
+        SourceTile(OpImage image, int tileX, int tileY) {
+            this.image = image;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SourceTile)) {
+                return false;
+            }
+            final SourceTile other = (SourceTile) o;
+            return image == other.image && tileX == other.tileX && tileY == other.tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(image) + tileX) + tileY;
+        }
+    }
+}
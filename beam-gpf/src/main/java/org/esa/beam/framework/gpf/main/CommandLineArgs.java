@@ -60,6 +60,7 @@ public class CommandLineArgs {
     private boolean helpRequested;
     private boolean stackTraceDump;
     private boolean clearCacheAfterRowWrite;
+    private boolean resume;
 
     private long tileCacheCapacity;
     private int tileSchedulerParallelism;
@@ -116,6 +117,8 @@ public class CommandLineArgs {
                     helpRequested = true;
                 } else if (arg.equals("-x")) {
                     clearCacheAfterRowWrite = true;
+                } else if (arg.equals("-resume")) {
+                    resume = true;
                 } else if (arg.equals("-e")) {
                     // already parsed
                 } else if (arg.equals("-t")) {
@@ -238,6 +241,10 @@ public class CommandLineArgs {
         return clearCacheAfterRowWrite;
     }
 
+    public boolean isResume() {
+        return resume;
+    }
+
     public SortedMap<String, String> getParameterMap() {
         return parameterMap;
     }
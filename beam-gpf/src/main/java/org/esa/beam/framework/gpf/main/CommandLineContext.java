@@ -29,7 +29,7 @@ import java.util.logging.Logger;
 interface CommandLineContext extends SimpleFileSystem {
     Product readProduct(String productFilepath) throws IOException;
 
-    void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite) throws IOException;
+    void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite, boolean resume) throws IOException;
 
     Graph readGraph(String filePath, Map<String, String> templateVariables) throws GraphException, IOException;
 
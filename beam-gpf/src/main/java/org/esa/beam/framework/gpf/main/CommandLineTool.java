@@ -277,7 +277,8 @@ class CommandLineTool implements GraphProcessingObserver {
             // framework writes target product
             String filePath = commandLineArgs.getTargetFilePath();
             String formatName = commandLineArgs.getTargetFormatName();
-            writeProduct(targetProduct, filePath, formatName, commandLineArgs.isClearCacheAfterRowWrite());
+            writeProduct(targetProduct, filePath, formatName, commandLineArgs.isClearCacheAfterRowWrite(),
+                         commandLineArgs.isResume());
         }
 
         // Fill velocity context with operator metadata
@@ -345,6 +346,7 @@ class CommandLineTool implements GraphProcessingObserver {
             configuration.createChild("formatName").setValue(commandLineArgs.getTargetFormatName());
             configuration.createChild("clearCacheAfterRowWrite").setValue(
                     Boolean.toString(commandLineArgs.isClearCacheAfterRowWrite()));
+            configuration.createChild("resume").setValue(Boolean.toString(commandLineArgs.isResume()));
 
             Node targetNode = new Node(WRITE_OP_ID_PREFIX + lastNode.getId(), writeOperatorAlias);
             targetNode.addSource(new NodeSource("source", lastNode.getId()));
@@ -496,8 +498,8 @@ class CommandLineTool implements GraphProcessingObserver {
     }
 
     void writeProduct(Product targetProduct, String filePath, String formatName,
-                      boolean clearCacheAfterRowWrite) throws IOException {
-        commandLineContext.writeProduct(targetProduct, filePath, formatName, clearCacheAfterRowWrite);
+                      boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
+        commandLineContext.writeProduct(targetProduct, filePath, formatName, clearCacheAfterRowWrite, resume);
     }
 
     Graph readGraph(String filePath, Map<String, String> templateVariables) throws IOException, GraphException {
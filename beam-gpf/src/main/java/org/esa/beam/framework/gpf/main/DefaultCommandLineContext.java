@@ -59,8 +59,8 @@ class DefaultCommandLineContext implements CommandLineContext {
     }
 
     @Override
-    public void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite) throws IOException {
-        GPF.writeProduct(targetProduct, new File(filePath), formatName, clearCacheAfterRowWrite, false, ProgressMonitor.NULL);
+    public void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
+        GPF.writeProduct(targetProduct, new File(filePath), formatName, clearCacheAfterRowWrite, false, resume, ProgressMonitor.NULL);
     }
 
     @Override
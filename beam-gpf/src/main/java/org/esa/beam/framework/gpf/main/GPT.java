@@ -24,6 +24,9 @@ import java.util.Locale;
  * The entry point for the GPF command-line tool (Graph Processing Tool, GPT).
  * For usage, see org/esa/beam/framework/gpf/main/CommandLineUsage.txt
  * or use the option "-h".
+ * <p/>
+ * With {@code -daemon <port>} the tool keeps running and executes the jobs submitted by
+ * {@code -submit <port> ...}, see {@link GptDaemon}.
  *
  * @since BEAM 4.10 (renamed from {@code Main}).
  */
@@ -31,6 +34,9 @@ public class GPT {
 
     public static void main(String... args) {
         try {
+            if (args.length > 0 && GptDaemon.SUBMIT_OPTION.equals(args[0])) {
+                System.exit(GptDaemon.runClient(System.out, System.err, args));
+            }
             run(args);
         } catch (Throwable e) {
             String message;
@@ -50,6 +56,10 @@ public class GPT {
         }
         Locale.setDefault(Locale.ENGLISH); // Force usage of english locale
         SystemUtils.init3rdPartyLibs(GPT.class.getClassLoader());
+        if (args.length > 0 && GptDaemon.DAEMON_OPTION.equals(args[0])) {
+            GptDaemon.runDaemon(args);
+            return;
+        }
         final CommandLineTool commandLineTool = new CommandLineTool();
         commandLineTool.run(args);
     }
@@ -0,0 +1,613 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.gpf.main;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.graph.Graph;
+import org.esa.beam.framework.gpf.graph.GraphException;
+import org.esa.beam.framework.gpf.graph.GraphProcessingObserver;
+import org.esa.beam.util.SystemUtils;
+import org.esa.beam.util.logging.BeamLogManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A long-running GPT process which executes processing jobs submitted by local clients. Running jobs
+ * in a daemon avoids paying the JVM start-up and the plugin initialisation for every single job.
+ * <p/>
+ * The daemon only listens on the loopback interface. A client ({@code gpt -submit <port> ...}) sends the
+ * usual GPT arguments together with its working directory. The daemon runs the job with its own
+ * {@link CommandLineTool} and {@link CommandLineContext}, streams the job's output and log back to
+ * the client and finally reports the job's exit status. Up to {@link #MAX_JOBS_PROPERTY} jobs run
+ * concurrently, further jobs are queued.
+ * <p/>
+ * Jobs run with the permissions of the daemon's owner, therefore a client must present the daemon's secret.
+ * The secret is kept in a file only readable by its owner, by default {@code gpt-daemon.secret} in the user's
+ * BEAM application data directory (see {@link #SECRET_FILE_PROPERTY}). It is created by the daemon when missing.
+ * <p/>
+ * Note that the JAI tile cache and tile scheduler as well as system properties are shared by all jobs,
+ * hence the options {@code -c}, {@code -q} and {@code -D} of a job affect the whole daemon.
+ *
+ * @since BEAM 5.0.6
+ */
+class GptDaemon {
+
+    static final String DAEMON_OPTION = "-daemon";
+    static final String SUBMIT_OPTION = "-submit";
+
+    /**
+     * The system property used to configure the maximum number of concurrently running jobs.
+     */
+    static final String MAX_JOBS_PROPERTY = "beam.gpt.daemon.maxJobs";
+    static final int DEFAULT_MAX_JOBS = 2;
+
+    /**
+     * The system property used to configure the file holding the secret shared by the daemon and its clients.
+     */
+    static final String SECRET_FILE_PROPERTY = "beam.gpt.daemon.secretFile";
+    static final String DEFAULT_SECRET_FILE_NAME = "gpt-daemon.secret";
+
+    static final int EXIT_STATUS_OK = 0;
+    static final int EXIT_STATUS_FAILED = 1;
+
+    private static final String PROTOCOL_HEADER = "BEAM-GPT-JOB 1";
+    private static final byte MESSAGE_OUTPUT = 'O';
+    private static final byte MESSAGE_LOG = 'L';
+    private static final byte MESSAGE_EXIT = 'X';
+    // DataOutput.writeUTF() is limited to 64K bytes
+    private static final int MAX_CHUNK_LENGTH = 16 * 1024;
+    // limits of a request, checked before anything is allocated; the argument length is given in UTF-8 bytes
+    static final int MAX_ARG_COUNT = 1024;
+    static final int MAX_ARG_LENGTH = 8 * 1024;
+    private static final int REQUEST_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int SECRET_LENGTH = 32;
+
+    private final ServerSocket serverSocket;
+    private final byte[] secret;
+    private final ExecutorService jobExecutor;
+    private final CommandLineContext baseContext;
+    private final AtomicInteger jobCount;
+    private final Logger logger;
+
+    /**
+     * Creates a daemon listening on the given port of the loopback interface.
+     *
+     * @param port        the port, or 0 to use any free port
+     * @param maxJobs     the maximum number of concurrently running jobs
+     * @param baseContext the context used to access products and files, jobs get their own output and logger
+     * @param secretFile  the file holding the secret clients must present, created if missing
+     * @throws IOException if the secret cannot be read or created or the port cannot be bound
+     */
+    GptDaemon(int port, int maxJobs, CommandLineContext baseContext, File secretFile) throws IOException {
+        this.secret = getOrCreateSecret(secretFile).getBytes(StandardCharsets.US_ASCII);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        this.jobExecutor = Executors.newFixedThreadPool(Math.max(1, maxJobs), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "gpt-daemon-job-" + threadCount.incrementAndGet());
+            }
+        });
+        this.baseContext = baseContext;
+        this.jobCount = new AtomicInteger();
+        this.logger = BeamLogManager.getSystemLogger();
+    }
+
+    /**
+     * Runs a daemon as specified by the arguments {@code -daemon <port>}. Blocks until the daemon is closed.
+     *
+     * @param args the command-line arguments
+     * @throws Exception if the arguments are invalid or the port cannot be bound
+     */
+    static void runDaemon(String... args) throws Exception {
+        if (args.length != 2) {
+            throw new Exception("Usage: " + CommandLineTool.TOOL_NAME + " " + DAEMON_OPTION + " <port>");
+        }
+        final int port = parsePort(args[1]);
+        final int maxJobs = Integer.getInteger(MAX_JOBS_PROPERTY, DEFAULT_MAX_JOBS);
+        final GptDaemon daemon = new GptDaemon(port, maxJobs, new DefaultCommandLineContext(), getSecretFile());
+        daemon.logger.info(MessageFormat.format("GPT daemon listening on port {0}, running up to {1} jobs concurrently",
+                                                String.valueOf(daemon.getPort()), maxJobs));
+        daemon.serve();
+    }
+
+    /**
+     * Submits a job as specified by the arguments {@code -submit <port> <gpt-args>} and waits for its completion.
+     *
+     * @param out receives the job's output
+     * @param err receives the job's log
+     * @param args the command-line arguments
+     * @return the exit status of the job
+     * @throws Exception if the arguments are invalid or the daemon cannot be reached
+     */
+    static int runClient(PrintStream out, PrintStream err, String... args) throws Exception {
+        if (args.length < 2) {
+            throw new Exception("Usage: " + CommandLineTool.TOOL_NAME + " " + SUBMIT_OPTION
+                                + " <port> <op>|<graph-file> [options] [<source-file-1> ...]");
+        }
+        final int port = parsePort(args[1]);
+        final String[] jobArgs = Arrays.copyOfRange(args, 2, args.length);
+        return submit(port, readSecret(getSecretFile()), new File("").getAbsoluteFile(), jobArgs, out, err);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts jobs until the daemon is closed.
+     *
+     * @throws IOException if accepting a connection fails
+     */
+    void serve() throws IOException {
+        try {
+            while (!serverSocket.isClosed()) {
+                final Socket socket = serverSocket.accept();
+                jobExecutor.execute(new Job(jobCount.incrementAndGet(), socket));
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting jobs. Running jobs are completed.
+     */
+    void close() throws IOException {
+        serverSocket.close();
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * Submits a job to a daemon and waits for its completion.
+     *
+     * @param port       the daemon's port
+     * @param secret     the daemon's secret
+     * @param workingDir the directory against which relative paths of the job are resolved
+     * @param args       the GPT arguments of the job
+     * @param out        receives the job's output
+     * @param err        receives the job's log
+     * @return the exit status of the job
+     * @throws IOException if the daemon cannot be reached or the connection breaks
+     */
+    static int submit(int port, String secret, File workingDir, String[] args, PrintStream out, PrintStream err) throws IOException {
+        final String[] jobArgs = toAbsolutePaths(args, workingDir);
+        if (jobArgs.length > MAX_ARG_COUNT) {
+            throw new IOException("Too many arguments, at most " + MAX_ARG_COUNT + " are accepted by the GPT daemon");
+        }
+        for (String arg : jobArgs) {
+            if (arg.getBytes(StandardCharsets.UTF_8).length > MAX_ARG_LENGTH) {
+                throw new IOException("Argument too long, at most " + MAX_ARG_LENGTH + " bytes are accepted by the GPT daemon");
+            }
+        }
+        try (Socket socket = new Socket(InetAddress.getByName(null), port)) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeUTF(PROTOCOL_HEADER);
+            output.writeUTF(secret);
+            output.writeUTF(workingDir.getPath());
+            output.writeInt(jobArgs.length);
+            for (String arg : jobArgs) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                final byte type;
+                try {
+                    type = input.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("Connection to GPT daemon closed before the job has completed, " +
+                                          "the request may have been rejected");
+                }
+                if (type == MESSAGE_OUTPUT) {
+                    out.print(input.readUTF());
+                    out.flush();
+                } else if (type == MESSAGE_LOG) {
+                    err.print(input.readUTF());
+                    err.flush();
+                } else if (type == MESSAGE_EXIT) {
+                    return input.readInt();
+                } else {
+                    throw new IOException("Unexpected message type " + type + " received from GPT daemon");
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the paths given in the arguments absolute. Source and target paths may end up in the
+     * parameters of graph nodes, which are not resolved against a job's working directory by the daemon.
+     */
+    static String[] toAbsolutePaths(String[] args, File workingDir) {
+        final String[] result = args.clone();
+        int argCount = 0;
+        for (int i = 0; i < result.length; i++) {
+            final String arg = result[i];
+            if (arg.startsWith("-")) {
+                if (arg.startsWith("-S") || arg.startsWith("-T")) {
+                    final int pos = arg.indexOf('=');
+                    if (pos != -1) {
+                        result[i] = arg.substring(0, pos + 1) + resolve(workingDir, arg.substring(pos + 1).trim());
+                    }
+                } else if (arg.equals("-t") || arg.equals("-p") || arg.equals("-m") || arg.equals("-v")) {
+                    if (i < result.length - 1) {
+                        i++;
+                        result[i] = resolve(workingDir, result[i]);
+                    }
+                } else if (arg.equals("-f") || arg.equals("-q") || arg.equals("-c")) {
+                    i++;
+                }
+            } else {
+                // the first argument is either an operator name or a graph file, same test as in CommandLineArgs
+                if (argCount > 0 || arg.endsWith(".xml") || arg.endsWith(".XML") || arg.contains("/") || arg.contains("\\")) {
+                    result[i] = resolve(workingDir, arg);
+                }
+                argCount++;
+            }
+        }
+        return result;
+    }
+
+    private static String resolve(File workingDir, String path) {
+        if (path.isEmpty() || new File(path).isAbsolute()) {
+            return path;
+        }
+        return new File(workingDir, path).getPath();
+    }
+
+    static File getSecretFile() {
+        final String path = System.getProperty(SECRET_FILE_PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            return new File(path);
+        }
+        return new File(SystemUtils.getApplicationDataDir(true), DEFAULT_SECRET_FILE_NAME);
+    }
+
+    static String readSecret(File secretFile) throws IOException {
+        final String secret = new String(Files.readAllBytes(secretFile.toPath()), StandardCharsets.US_ASCII).trim();
+        if (secret.isEmpty()) {
+            throw new IOException("GPT daemon secret file is empty: " + secretFile);
+        }
+        return secret;
+    }
+
+    /**
+     * Reads the secret from the given file. If the file does not exist, a random secret is written to a new
+     * file which is only readable and writable by its owner.
+     */
+    static String getOrCreateSecret(File secretFile) throws IOException {
+        final Path path = secretFile.toPath();
+        if (!secretFile.exists()) {
+            final byte[] randomBytes = new byte[SECRET_LENGTH];
+            new SecureRandom().nextBytes(randomBytes);
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : randomBytes) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            final File parentDir = secretFile.getAbsoluteFile().getParentFile();
+            if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                throw new IOException("Failed to create directory " + parentDir);
+            }
+            try {
+                if (isPosix(path)) {
+                    Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+                } else {
+                    Files.createFile(path);
+                    restrictToOwner(secretFile);
+                }
+                Files.write(path, sb.toString().getBytes(StandardCharsets.US_ASCII));
+            } catch (FileAlreadyExistsException e) {
+                // created concurrently by another daemon, use its secret
+            }
+        } else if (isPosix(path)) {
+            final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            if (!PosixFilePermissions.fromString("rw-------").containsAll(permissions)) {
+                throw new IOException("GPT daemon secret file must only be accessible by its owner (mode 600): " + secretFile);
+            }
+        }
+        return readSecret(secretFile);
+    }
+
+    private static boolean isPosix(Path path) throws IOException {
+        final Path dir = path.toAbsolutePath().getParent();
+        return Files.getFileStore(Files.exists(path) ? path : dir).supportsFileAttributeView("posix");
+    }
+
+    private static void restrictToOwner(File file) throws IOException {
+        final boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+                                   && file.setWritable(false, false) && file.setWritable(true, true);
+        if (!restricted) {
+            throw new IOException("Failed to restrict access to " + file);
+        }
+    }
+
+    private static int parsePort(String value) throws Exception {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new Exception("Invalid port number '" + value + "'");
+        }
+    }
+
+    private class Job implements Runnable {
+
+        private final int id;
+        private final Socket socket;
+        private DataOutputStream output;
+
+        private Job(int id, Socket socket) {
+            this.id = id;
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                // a client must not block a job slot by sending its request slowly
+                socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                if (!PROTOCOL_HEADER.equals(input.readUTF())) {
+                    logger.warning(MessageFormat.format("GPT daemon job {0}: invalid request rejected", id));
+                    return;
+                }
+                if (!MessageDigest.isEqual(secret, input.readUTF().getBytes(StandardCharsets.US_ASCII))) {
+                    logger.warning(MessageFormat.format("GPT daemon job {0}: request with invalid secret rejected", id));
+                    return;
+                }
+                final File workingDir = new File(readArg(input));
+                final int argCount = input.readInt();
+                if (argCount < 0 || argCount > MAX_ARG_COUNT) {
+                    logger.warning(MessageFormat.format("GPT daemon job {0}: request with {1} arguments rejected", id, argCount));
+                    return;
+                }
+                final String[] args = new String[argCount];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArg(input);
+                }
+                socket.setSoTimeout(0);
+                final int exitStatus = execute(workingDir, args);
+                send(MESSAGE_EXIT, exitStatus);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, MessageFormat.format("GPT daemon job {0}: connection failed", id), e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // ignore
+                }
+            }
+        }
+
+        // same as DataInputStream.readUTF(), but the length is checked before the bytes are read
+        private String readArg(DataInputStream input) throws IOException {
+            final int length = input.readUnsignedShort();
+            if (length > MAX_ARG_LENGTH) {
+                throw new IOException("Argument exceeds " + MAX_ARG_LENGTH + " bytes");
+            }
+            final byte[] bytes = new byte[2 + length];
+            bytes[0] = (byte) (length >>> 8);
+            bytes[1] = (byte) length;
+            input.readFully(bytes, 2, length);
+            return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+
+        private int execute(File workingDir, String[] args) {
+            logger.info(MessageFormat.format("GPT daemon job {0} started: {1}", id, Arrays.toString(args)));
+            final JobContext jobContext = new JobContext(baseContext, workingDir, this);
+            int exitStatus = EXIT_STATUS_OK;
+            try {
+                new CommandLineTool(jobContext).run(args);
+            } catch (Throwable e) {
+                exitStatus = EXIT_STATUS_FAILED;
+                if (CommandLineArgs.isStackTraceDumpEnabled(args) || e instanceof RuntimeException || e instanceof Error) {
+                    final StringWriter stackTrace = new StringWriter();
+                    e.printStackTrace(new PrintWriter(stackTrace));
+                    sendText(MESSAGE_LOG, stackTrace.toString());
+                }
+                final String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+                sendText(MESSAGE_LOG, "\nError: " + message + "\n");
+            } finally {
+                jobContext.dispose();
+            }
+            logger.info(MessageFormat.format("GPT daemon job {0} finished with exit status {1}", id, exitStatus));
+            return exitStatus;
+        }
+
+        private synchronized void sendText(byte type, String text) {
+            try {
+                for (int i = 0; i < text.length(); i += MAX_CHUNK_LENGTH) {
+                    output.writeByte(type);
+                    output.writeUTF(text.substring(i, Math.min(text.length(), i + MAX_CHUNK_LENGTH)));
+                }
+                output.flush();
+            } catch (IOException e) {
+                // the client has gone, the job is completed anyway
+                logger.fine(MessageFormat.format("GPT daemon job {0}: failed to send message: {1}", id, e.getMessage()));
+            }
+        }
+
+        private synchronized void send(byte type, int value) throws IOException {
+            output.writeByte(type);
+            output.writeInt(value);
+            output.flush();
+        }
+    }
+
+    /**
+     * The context of a single job. Output and log are sent to the job's client, relative paths are
+     * resolved against the client's working directory and all products are disposed after the job.
+     */
+    private static class JobContext implements CommandLineContext {
+
+        private final CommandLineContext baseContext;
+        private final File workingDir;
+        private final Job job;
+        private final Logger jobLogger;
+        private final List<Product> products;
+
+        private JobContext(CommandLineContext baseContext, File workingDir, final Job job) {
+            this.baseContext = baseContext;
+            this.workingDir = workingDir;
+            this.job = job;
+            this.jobLogger = Logger.getAnonymousLogger();
+            this.jobLogger.setUseParentHandlers(false);
+            this.jobLogger.addHandler(new Handler() {
+                private final Formatter formatter = new SimpleFormatter();
+
+                @Override
+                public void publish(LogRecord record) {
+                    if (isLoggable(record)) {
+                        final String message = formatter.formatMessage(record);
+                        job.sendText(MESSAGE_LOG, record.getLevel() + ": " + message + "\n");
+                    }
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            this.products = new ArrayList<>();
+        }
+
+        @Override
+        public Product readProduct(String productFilepath) throws IOException {
+            final Product product = baseContext.readProduct(resolve(workingDir, productFilepath));
+            addProduct(product);
+            return product;
+        }
+
+        @Override
+        public void writeProduct(Product targetProduct, String filePath, String formatName,
+                                 boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
+            addProduct(targetProduct);
+            baseContext.writeProduct(targetProduct, resolve(workingDir, filePath), formatName,
+                                     clearCacheAfterRowWrite, resume);
+        }
+
+        @Override
+        public Graph readGraph(String filePath, Map<String, String> templateVariables) throws GraphException, IOException {
+            return baseContext.readGraph(resolve(workingDir, filePath), templateVariables);
+        }
+
+        @Override
+        public void executeGraph(Graph graph, GraphProcessingObserver observer) throws GraphException {
+            baseContext.executeGraph(graph, observer);
+        }
+
+        @Override
+        public void print(String m) {
+            job.sendText(MESSAGE_OUTPUT, m);
+        }
+
+        @Override
+        public Logger getLogger() {
+            return jobLogger;
+        }
+
+        @Override
+        public Reader createReader(String textFilePath) throws FileNotFoundException {
+            return baseContext.createReader(resolve(workingDir, textFilePath));
+        }
+
+        @Override
+        public Writer createWriter(String fileName) throws IOException {
+            return baseContext.createWriter(resolve(workingDir, fileName));
+        }
+
+        @Override
+        public String[] list(String path) throws IOException {
+            return baseContext.list(resolve(workingDir, path));
+        }
+
+        @Override
+        public boolean fileExists(String fileName) {
+            return baseContext.fileExists(resolve(workingDir, fileName));
+        }
+
+        @Override
+        public boolean isFile(String path) {
+            return baseContext.isFile(resolve(workingDir, path));
+        }
+
+        private synchronized void addProduct(Product product) {
+            if (product != null && !products.contains(product)) {
+                products.add(product);
+            }
+        }
+
+        /**
+         * Disposes the products of the job, targets first as they may still refer to their sources.
+         */
+        private synchronized void dispose() {
+            for (int i = products.size() - 1; i >= 0; i--) {
+                products.get(i).dispose();
+            }
+            products.clear();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.monitor;
+
+import org.esa.beam.framework.dataio.AbstractProductReader;
+import org.esa.beam.framework.dataio.ProductReader;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.internal.CostAwareTileCache;
+import org.esa.beam.framework.gpf.internal.OperatorContext;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+import org.esa.beam.framework.gpf.internal.OperatorImageTileStack;
+
+import javax.media.jai.TileCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Performance metrics of a single operator, collected by the {@link PerformanceMetricsObserver}.
+ * <p/>
+ * The metrics are updated lock-free from the threads computing tiles. For operators computing tile stacks,
+ * a tile computation event is fired for each band of the stack, the operator totals count each stack once.
+ *
+ * @since BEAM 5.0.6
+ */
+public class OperatorMetrics implements OperatorMetricsMXBean {
+
+    private final Operator operator;
+    private final AtomicReference<OperatorContext> operatorContext;
+    private final AtomicReference<Band> firstStackBand;
+    private final ConcurrentMap<String, BandMetrics> bandMetrics;
+    private final TimeMetrics totals;
+    private final AtomicLong writerQueueNanos;
+    private final AtomicLong writeNanos;
+    private final AtomicLong bytesWritten;
+
+    OperatorMetrics(Operator operator) {
+        this.operator = operator;
+        this.operatorContext = new AtomicReference<>();
+        this.firstStackBand = new AtomicReference<>();
+        this.bandMetrics = new ConcurrentHashMap<>();
+        this.totals = new TimeMetrics();
+        this.writerQueueNanos = new AtomicLong();
+        this.writeNanos = new AtomicLong();
+        this.bytesWritten = new AtomicLong();
+    }
+
+    void tileComputed(TileComputationEvent event) {
+        final OperatorImage image = event.getImage();
+        operatorContext.compareAndSet(null, image.getOperatorContext());
+
+        final Band band = image.getTargetBand();
+        final long grossNanos = event.getEndNanos() - event.getStartNanos();
+        final long netNanos = event.getNettoNanos();
+        getBandMetrics(band.getName()).add(grossNanos, netNanos);
+        if (image instanceof OperatorImageTileStack) {
+            firstStackBand.compareAndSet(null, band);
+            //noinspection ObjectEquality
+            if (firstStackBand.get() != band) {
+                return;
+            }
+        }
+        totals.add(grossNanos, netNanos);
+    }
+
+    void written(long queueNanos, long writeNanos, long numBytes) {
+        this.writerQueueNanos.addAndGet(queueNanos);
+        this.writeNanos.addAndGet(writeNanos);
+        this.bytesWritten.addAndGet(numBytes);
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The metrics of the operator's target bands, sorted by band name.
+     */
+    public List<BandMetrics> getBandMetrics() {
+        final List<String> bandNames = new ArrayList<>(bandMetrics.keySet());
+        Collections.sort(bandNames);
+        final List<BandMetrics> list = new ArrayList<>(bandNames.size());
+        for (String bandName : bandNames) {
+            list.add(bandMetrics.get(bandName));
+        }
+        return list;
+    }
+
+    /**
+     * @return The tile cache statistics of the operator's target tiles, or {@code null} if the tile cache
+     *         does not provide statistics.
+     */
+    public CostAwareTileCache.Statistics getTileCacheStatistics() {
+        final TileCache tileCache = OperatorContext.getSharedTileCache();
+        final OperatorContext context = operatorContext.get();
+        if (context != null && tileCache instanceof CostAwareTileCache) {
+            return ((CostAwareTileCache) tileCache).getStatistics(context);
+        }
+        return null;
+    }
+
+    /**
+     * @return The readers of the operator's source products which read from a data source.
+     *         Source products computed by other operators have no such reader.
+     */
+    public List<AbstractProductReader> getSourceReaders() {
+        final Map<ProductReader, Boolean> readers = new IdentityHashMap<>();
+        final List<AbstractProductReader> list = new ArrayList<>();
+        for (Product sourceProduct : operator.getSourceProducts()) {
+            final ProductReader reader = sourceProduct.getProductReader();
+            if (reader instanceof AbstractProductReader && readers.put(reader, Boolean.TRUE) == null) {
+                list.add((AbstractProductReader) reader);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public String getOperatorId() {
+        return operator.getId();
+    }
+
+    @Override
+    public String getOperatorAlias() {
+        final String alias = operator.getSpi().getOperatorDescriptor().getAlias();
+        return alias != null ? alias : operator.getClass().getSimpleName();
+    }
+
+    @Override
+    public String[] getBandNames() {
+        final List<String> bandNames = new ArrayList<>(bandMetrics.keySet());
+        Collections.sort(bandNames);
+        return bandNames.toArray(new String[bandNames.size()]);
+    }
+
+    @Override
+    public long getTileCount() {
+        return totals.getTileCount();
+    }
+
+    @Override
+    public long getComputeNanos() {
+        return totals.getComputeNanos();
+    }
+
+    @Override
+    public long getNetComputeNanos() {
+        return totals.getNetComputeNanos();
+    }
+
+    @Override
+    public long getSourceWaitNanos() {
+        return totals.getSourceWaitNanos();
+    }
+
+    @Override
+    public long[] getComputeTimeHistogram() {
+        return totals.getHistogram().getCounts();
+    }
+
+    @Override
+    public long getBytesRead() {
+        long bytesRead = 0;
+        for (AbstractProductReader reader : getSourceReaders()) {
+            bytesRead += reader.getNumBytesRead();
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public double getTileCacheHitRatio() {
+        final CostAwareTileCache.Statistics statistics = getTileCacheStatistics();
+        return statistics != null ? statistics.getHitRatio() : -1.0;
+    }
+
+    @Override
+    public long getWriterQueueNanos() {
+        return writerQueueNanos.get();
+    }
+
+    @Override
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    TimeMetrics getTotals() {
+        return totals;
+    }
+
+    private BandMetrics getBandMetrics(String bandName) {
+        BandMetrics metrics = bandMetrics.get(bandName);
+        if (metrics == null) {
+            metrics = new BandMetrics(bandName);
+            final BandMetrics existingMetrics = bandMetrics.putIfAbsent(bandName, metrics);
+            if (existingMetrics != null) {
+                metrics = existingMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Tile count, compute times and compute time histogram.
+     */
+    public static class TimeMetrics {
+
+        private final AtomicLong tileCount = new AtomicLong();
+        private final AtomicLong computeNanos = new AtomicLong();
+        private final AtomicLong netComputeNanos = new AtomicLong();
+        private final TimeHistogram histogram = new TimeHistogram();
+
+        void add(long grossNanos, long netNanos) {
+            tileCount.incrementAndGet();
+            computeNanos.addAndGet(grossNanos);
+            netComputeNanos.addAndGet(netNanos);
+            histogram.add(grossNanos);
+        }
+
+        public long getTileCount() {
+            return tileCount.get();
+        }
+
+        public long getComputeNanos() {
+            return computeNanos.get();
+        }
+
+        public long getNetComputeNanos() {
+            return netComputeNanos.get();
+        }
+
+        public long getSourceWaitNanos() {
+            return Math.max(0L, getComputeNanos() - getNetComputeNanos());
+        }
+
+        public TimeHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * The metrics of a single target band.
+     */
+    public static final class BandMetrics extends TimeMetrics {
+
+        private final String bandName;
+
+        BandMetrics(String bandName) {
+            this.bandName = bandName;
+        }
+
+        public String getBandName() {
+            return bandName;
+        }
+    }
+}
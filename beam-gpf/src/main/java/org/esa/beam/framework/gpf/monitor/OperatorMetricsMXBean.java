@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.monitor;
+
+/**
+ * The JMX view of the {@link OperatorMetrics} of a single operator. All times are given in nanoseconds.
+ *
+ * @since BEAM 5.0.6
+ */
+public interface OperatorMetricsMXBean {
+
+    String getOperatorId();
+
+    String getOperatorAlias();
+
+    String[] getBandNames();
+
+    long getTileCount();
+
+    /**
+     * @return The time spent in computing tiles, including the time spent waiting for source tiles.
+     */
+    long getComputeNanos();
+
+    /**
+     * @return The time spent in the operator's own tile computation code.
+     */
+    long getNetComputeNanos();
+
+    /**
+     * @return The time spent waiting for source tiles.
+     */
+    long getSourceWaitNanos();
+
+    /**
+     * @return The counts of the tile compute time histogram, see {@link TimeHistogram}.
+     */
+    long[] getComputeTimeHistogram();
+
+    /**
+     * @return The bytes delivered by the product readers of the operator's source products.
+     */
+    long getBytesRead();
+
+    /**
+     * @return The tile cache hit ratio of the operator's target tiles, or {@code -1} if the tile cache
+     *         does not provide statistics.
+     */
+    double getTileCacheHitRatio();
+
+    long getWriterQueueNanos();
+
+    long getWriteNanos();
+
+    long getBytesWritten();
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.monitor;
+
+import org.esa.beam.framework.dataio.AbstractProductReader;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.internal.CostAwareTileCache;
+import org.esa.beam.framework.gpf.internal.OperatorContext;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.media.jai.TileCache;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Collects per-operator and per-band performance metrics: tile counts, tile compute times and their histograms,
+ * the net compute time versus the time spent waiting for source tiles, the bytes delivered by the source product
+ * readers, tile cache hit ratios (if the {@link CostAwareTileCache} is used) and the time spent by
+ * {@link org.esa.beam.gpf.operators.standard.WriteOp WriteOp} waiting for and using the product writer.
+ * <p/>
+ * While observing, the metrics of each operator are registered as {@link OperatorMetricsMXBean} in the platform
+ * MBean server under the domain {@code org.esa.beam.gpf}. When observation stops, a JSON report is written to
+ * the file given by the system property {@link GPF#METRICS_REPORT_PROPERTY}, or logged if it is not set.
+ * <p/>
+ * Only a few atomic counters are updated per tile, so the observer is cheap enough to be used in production.
+ * May be used as a value for the 'beam.config' variable 'beam.gpf.tileComputationObserver'.
+ *
+ * @since BEAM 5.0.6
+ */
+public class PerformanceMetricsObserver extends TileComputationObserver {
+
+    static final String JMX_DOMAIN = "org.esa.beam.gpf";
+
+    private static volatile PerformanceMetricsObserver activeObserver;
+
+    private final ConcurrentMap<Operator, OperatorMetrics> operatorMetrics = new ConcurrentHashMap<>();
+    private final Map<OperatorMetrics, ObjectName> registeredNames = new IdentityHashMap<>();
+    private final AtomicLong startNanosMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong endNanosMax = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records a write of the given operator, if metrics are being observed.
+     *
+     * @param operator   The writing operator.
+     * @param queueNanos The time spent waiting for access to the product writer.
+     * @param writeNanos The time spent in writing.
+     * @param numBytes   The number of bytes written.
+     */
+    public static void recordWrite(Operator operator, long queueNanos, long writeNanos, long numBytes) {
+        final PerformanceMetricsObserver observer = activeObserver;
+        if (observer != null) {
+            observer.getOperatorMetrics(operator).written(queueNanos, writeNanos, numBytes);
+        }
+    }
+
+    @Override
+    public void start() {
+        activeObserver = this;
+    }
+
+    @Override
+    public void tileComputed(TileComputationEvent event) {
+        updateMin(startNanosMin, event.getStartNanos());
+        updateMax(endNanosMax, event.getEndNanos());
+        final Operator operator = event.getImage().getOperatorContext().getOperator();
+        getOperatorMetrics(operator).tileComputed(event);
+    }
+
+    @Override
+    public void stop() {
+        if (activeObserver == this) {
+            activeObserver = null;
+        }
+        try {
+            final String reportPath = System.getProperty(GPF.METRICS_REPORT_PROPERTY);
+            if (reportPath != null) {
+                final File reportFile = new File(reportPath);
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8")) {
+                    writeReport(writer);
+                }
+                log(Level.INFO, "Performance metrics written to " + reportFile.getAbsolutePath());
+            } else {
+                final StringBuilder report = new StringBuilder();
+                writeReport(report);
+                log(Level.INFO, "Performance metrics:\n" + report);
+            }
+        } catch (IOException e) {
+            log(Level.WARNING, "Failed to write performance metrics: " + e.getMessage());
+        } finally {
+            unregisterAll();
+        }
+    }
+
+    /**
+     * @return The metrics of all operators observed so far.
+     */
+    public List<OperatorMetrics> getOperatorMetrics() {
+        return new ArrayList<>(operatorMetrics.values());
+    }
+
+    /**
+     * Writes the machine-readable report in JSON format. Times are given in nanoseconds.
+     *
+     * @param out The output.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeReport(Appendable out) throws IOException {
+        final List<OperatorMetrics> metricsList = getOperatorMetrics();
+        final Map<AbstractProductReader, Boolean> readers = new IdentityHashMap<>();
+        final List<AbstractProductReader> readerList = new ArrayList<>();
+
+        out.append("{\n");
+        final long wallClockNanos = endNanosMax.get() - startNanosMin.get();
+        out.append("  \"wallClockNanos\": ").append(String.valueOf(Math.max(0L, wallClockNanos))).append(",\n");
+        final TileCache tileCache = OperatorContext.getSharedTileCache();
+        if (tileCache instanceof CostAwareTileCache) {
+            out.append("  \"tileCache\": ");
+            appendStatistics(out, ((CostAwareTileCache) tileCache).getStatistics());
+            out.append(",\n");
+        }
+        out.append("  \"operators\": [");
+        for (int i = 0; i < metricsList.size(); i++) {
+            final OperatorMetrics metrics = metricsList.get(i);
+            out.append(i > 0 ? ",\n" : "\n");
+            out.append("    {\"id\": ").append(quote(metrics.getOperatorId()));
+            out.append(", \"alias\": ").append(quote(metrics.getOperatorAlias()));
+            out.append(", \"class\": ").append(quote(metrics.getOperator().getClass().getName()));
+            out.append(",\n     ");
+            appendTimes(out, metrics.getTotals());
+            final CostAwareTileCache.Statistics statistics = metrics.getTileCacheStatistics();
+            if (statistics != null) {
+                out.append(",\n     \"tileCache\": ");
+                appendStatistics(out, statistics);
+            }
+            if (metrics.getBytesWritten() > 0) {
+                out.append(",\n     \"writer\": {\"queueNanos\": ").append(String.valueOf(metrics.getWriterQueueNanos()));
+                out.append(", \"writeNanos\": ").append(String.valueOf(metrics.getWriteNanos()));
+                out.append(", \"bytesWritten\": ").append(String.valueOf(metrics.getBytesWritten())).append("}");
+            }
+            out.append(",\n     \"bands\": [");
+            final List<OperatorMetrics.BandMetrics> bandMetricsList = metrics.getBandMetrics();
+            for (int j = 0; j < bandMetricsList.size(); j++) {
+                final OperatorMetrics.BandMetrics bandMetrics = bandMetricsList.get(j);
+                out.append(j > 0 ? ",\n" : "\n");
+                out.append("       {\"name\": ").append(quote(bandMetrics.getBandName())).append(", ");
+                appendTimes(out, bandMetrics);
+                out.append("}");
+            }
+            out.append("]}");
+            for (AbstractProductReader reader : metrics.getSourceReaders()) {
+                if (readers.put(reader, Boolean.TRUE) == null) {
+                    readerList.add(reader);
+                }
+            }
+        }
+        out.append("],\n");
+        out.append("  \"readers\": [");
+        for (int i = 0; i < readerList.size(); i++) {
+            final AbstractProductReader reader = readerList.get(i);
+            out.append(i > 0 ? ",\n" : "\n");
+            out.append("    {\"class\": ").append(quote(reader.getClass().getName()));
+            final Object input = reader.getInput();
+            out.append(", \"input\": ").append(input != null ? quote(input.toString()) : "null");
+            out.append(", \"bytesRead\": ").append(String.valueOf(reader.getNumBytesRead()));
+            out.append(", \"readNanos\": ").append(String.valueOf(reader.getReadNanos())).append("}");
+        }
+        out.append("]\n");
+        out.append("}\n");
+    }
+
+    private OperatorMetrics getOperatorMetrics(Operator operator) {
+        OperatorMetrics metrics = operatorMetrics.get(operator);
+        if (metrics == null) {
+            metrics = new OperatorMetrics(operator);
+            final OperatorMetrics existingMetrics = operatorMetrics.putIfAbsent(operator, metrics);
+            if (existingMetrics != null) {
+                metrics = existingMetrics;
+            } else {
+                register(metrics);
+            }
+        }
+        return metrics;
+    }
+
+    private void register(OperatorMetrics metrics) {
+        try {
+            final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=OperatorMetrics,name="
+                                                   + ObjectName.quote(metrics.getOperatorId() + "@"
+                                                                      + Integer.toHexString(System.identityHashCode(metrics))));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            synchronized (registeredNames) {
+                registeredNames.put(metrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+            log(Level.FINE, "Failed to register operator metrics: " + e.getMessage());
+        }
+    }
+
+    private void unregisterAll() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (registeredNames) {
+            for (ObjectName name : registeredNames.values()) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException e) {
+                    log(Level.FINE, "Failed to unregister operator metrics: " + e.getMessage());
+                }
+            }
+            registeredNames.clear();
+        }
+    }
+
+    private void log(Level level, String message) {
+        if (getLogger() != null) {
+            getLogger().log(level, message);
+        }
+    }
+
+    private static void appendTimes(Appendable out, OperatorMetrics.TimeMetrics times) throws IOException {
+        out.append("\"tileCount\": ").append(String.valueOf(times.getTileCount()));
+        out.append(", \"computeNanos\": ").append(String.valueOf(times.getComputeNanos()));
+        out.append(", \"netComputeNanos\": ").append(String.valueOf(times.getNetComputeNanos()));
+        out.append(", \"sourceWaitNanos\": ").append(String.valueOf(times.getSourceWaitNanos()));
+        final long[] counts = times.getHistogram().getCounts();
+        int numBuckets = counts.length;
+        while (numBuckets > 0 && counts[numBuckets - 1] == 0) {
+            numBuckets--;
+        }
+        out.append(", \"histogram\": {\"upperBoundsMicros\": [");
+        for (int i = 0; i < numBuckets; i++) {
+            out.append(i > 0 ? ", " : "").append(String.valueOf(TimeHistogram.getUpperBoundMicros(i)));
+        }
+        out.append("], \"counts\": [");
+        for (int i = 0; i < numBuckets; i++) {
+            out.append(i > 0 ? ", " : "").append(String.valueOf(counts[i]));
+        }
+        out.append("]}");
+    }
+
+    private static void appendStatistics(Appendable out, CostAwareTileCache.Statistics statistics) throws IOException {
+        out.append("{\"hits\": ").append(String.valueOf(statistics.getHitCount()));
+        out.append(", \"misses\": ").append(String.valueOf(statistics.getMissCount()));
+        out.append(", \"evictions\": ").append(String.valueOf(statistics.getEvictionCount()));
+        out.append(", \"hitRatio\": ").append(String.valueOf(statistics.getHitRatio())).append("}");
+    }
+
+    static String quote(String s) {
+        final StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void updateMin(AtomicLong value, long candidate) {
+        long current = value.get();
+        while (candidate < current && !value.compareAndSet(current, candidate)) {
+            current = value.get();
+        }
+    }
+
+    private static void updateMax(AtomicLong value, long candidate) {
+        long current = value.get();
+        while (candidate > current && !value.compareAndSet(current, candidate)) {
+            current = value.get();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with exponentially growing buckets. Bucket {@code i > 0} counts durations
+ * in the range [2<sup>i-1</sup>, 2<sup>i</sup>) microseconds, bucket {@code 0} counts durations below one
+ * microsecond. Adding a duration is lock-free.
+ *
+ * @since BEAM 5.0.6
+ */
+public final class TimeHistogram {
+
+    public static final int NUM_BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    public void add(long nanos) {
+        counts.incrementAndGet(getBucketIndex(nanos));
+    }
+
+    /**
+     * @return The counts of all buckets.
+     */
+    public long[] getCounts() {
+        final long[] values = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            values[i] = counts.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * @param bucketIndex The bucket index.
+     * @return The exclusive upper bound of the given bucket in microseconds.
+     */
+    public static long getUpperBoundMicros(int bucketIndex) {
+        return 1L << bucketIndex;
+    }
+
+    static int getBucketIndex(long nanos) {
+        final long micros = nanos / 1000L;
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), NUM_BUCKETS - 1);
+    }
+}
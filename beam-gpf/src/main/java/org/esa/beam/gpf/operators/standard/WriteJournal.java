@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.gpf.operators.standard;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * A durable record of the tiles {@link WriteOp} has written, kept next to the output file.
+ * <p/>
+ * The journal is a text file starting with a header line which identifies the product layout,
+ * followed by one line per written tile giving the band index and the tile indices. Lines are only
+ * appended after the tile data has been flushed to the product writer, and the journal is forced to
+ * the storage device on each {@link #commit()}. A line torn by a crash is ignored when the journal is read.
+ *
+ * @since BEAM 5.0.6
+ */
+final class WriteJournal implements Closeable {
+
+    static final String FILE_EXTENSION = ".journal";
+
+    private static final String MAGIC = "BEAM-WRITE-JOURNAL 1 ";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final File file;
+    private final int numBands;
+    private final int tileCountX;
+    private final int tileCountY;
+    private final BitSet writtenTiles;
+    private final StringBuilder pendingRecords;
+    private int numPendingRecords;
+    private FileChannel channel;
+
+    private WriteJournal(File file, int numBands, int tileCountX, int tileCountY) {
+        this.file = file;
+        this.numBands = numBands;
+        this.tileCountX = tileCountX;
+        this.tileCountY = tileCountY;
+        this.writtenTiles = new BitSet(numBands * tileCountX * tileCountY);
+        this.pendingRecords = new StringBuilder();
+    }
+
+    /**
+     * @param outputFile The output file of the product.
+     * @return The journal file belonging to the given output file.
+     */
+    static File getJournalFile(File outputFile) {
+        return new File(outputFile.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Creates a new, empty journal. An existing journal file is overwritten.
+     *
+     * @param file       The journal file.
+     * @param signature  Identifies the product layout, must not contain line breaks.
+     * @param numBands   The number of written bands.
+     * @param tileCountX The number of tiles in X direction.
+     * @param tileCountY The number of tiles in Y direction.
+     * @return The journal.
+     * @throws IOException If an I/O error occurs.
+     */
+    static WriteJournal create(File file, String signature, int numBands, int tileCountX, int tileCountY) throws
+                                                                                                        IOException {
+        final WriteJournal journal = new WriteJournal(file, numBands, tileCountX, tileCountY);
+        journal.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+        journal.append(MAGIC + signature + "\n");
+        journal.channel.force(false);
+        return journal;
+    }
+
+    /**
+     * Opens an existing journal in order to continue writing a product.
+     *
+     * @param file       The journal file.
+     * @param signature  Identifies the product layout, must equal the signature the journal has been created with.
+     * @param numBands   The number of written bands.
+     * @param tileCountX The number of tiles in X direction.
+     * @param tileCountY The number of tiles in Y direction.
+     * @return The journal, or {@code null} if the file does not exist or belongs to a different product layout.
+     * @throws IOException If an I/O error occurs.
+     */
+    static WriteJournal open(File file, String signature, int numBands, int tileCountX, int tileCountY) throws
+                                                                                                      IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        final WriteJournal journal = new WriteJournal(file, numBands, tileCountX, tileCountY);
+        final String content = new String(Files.readAllBytes(file.toPath()), CHARSET);
+        // only lines terminated by a line break are complete
+        int lineEnd = content.indexOf('\n');
+        if (lineEnd < 0 || !content.substring(0, lineEnd).equals(MAGIC + signature)) {
+            return null;
+        }
+        int validLength = lineEnd + 1;
+        while ((lineEnd = content.indexOf('\n', validLength)) >= 0
+               && journal.parseRecord(content.substring(validLength, lineEnd))) {
+            validLength = lineEnd + 1;
+        }
+        journal.channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        // cut off a record torn by a crash, so that new records start on a fresh line
+        final long validByteLength = content.substring(0, validLength).getBytes(CHARSET).length;
+        journal.channel.truncate(validByteLength);
+        journal.channel.position(validByteLength);
+        return journal;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isWritten(int bandIndex, int tileX, int tileY) {
+        return writtenTiles.get(getTileIndex(bandIndex, tileX, tileY));
+    }
+
+    int getNumWritten() {
+        return writtenTiles.cardinality();
+    }
+
+    int getNumPendingRecords() {
+        return numPendingRecords;
+    }
+
+    /**
+     * Adds a written tile. The tile is recorded durably by the next {@link #commit()}, which must only
+     * be called after the tile data has been flushed.
+     */
+    synchronized void add(int bandIndex, int tileX, int tileY) {
+        writtenTiles.set(getTileIndex(bandIndex, tileX, tileY));
+        pendingRecords.append(bandIndex).append(' ').append(tileX).append(' ').append(tileY).append('\n');
+        numPendingRecords++;
+    }
+
+    /**
+     * Appends the pending records to the journal file and forces them to the storage device.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized void commit() throws IOException {
+        if (numPendingRecords > 0 && channel != null) {
+            append(pendingRecords.toString());
+            channel.force(false);
+            pendingRecords.setLength(0);
+            numPendingRecords = 0;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal, called after the product has been written completely.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    synchronized void delete() throws IOException {
+        close();
+        pendingRecords.setLength(0);
+        numPendingRecords = 0;
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to delete write journal '" + file + "'");
+        }
+    }
+
+    private boolean parseRecord(String line) {
+        final String[] tokens = line.split(" ");
+        if (tokens.length != 3) {
+            return false;
+        }
+        try {
+            final int bandIndex = Integer.parseInt(tokens[0]);
+            final int tileX = Integer.parseInt(tokens[1]);
+            final int tileY = Integer.parseInt(tokens[2]);
+            if (bandIndex < 0 || bandIndex >= numBands || tileX < 0 || tileX >= tileCountX
+                || tileY < 0 || tileY >= tileCountY) {
+                return false;
+            }
+            writtenTiles.set(getTileIndex(bandIndex, tileX, tileY));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void append(String text) throws IOException {
+        final ByteBuffer buffer = CHARSET.encode(text);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private int getTileIndex(int bandIndex, int tileX, int tileY) {
+        return (bandIndex * tileCountY + tileY) * tileCountX + tileX;
+    }
+}
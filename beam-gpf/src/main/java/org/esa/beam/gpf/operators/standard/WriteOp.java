@@ -33,11 +33,14 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.framework.gpf.internal.OperatorExecutor;
 import org.esa.beam.framework.gpf.internal.OperatorExecutor.ExecutionOrder;
+import org.esa.beam.framework.gpf.internal.OperatorImage;
+import org.esa.beam.framework.gpf.monitor.PerformanceMetricsObserver;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.util.Guardian;
 import org.esa.beam.util.math.MathUtils;
 
 import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
 import javax.media.jai.TileCache;
 import java.awt.Dimension;
 import java.awt.Rectangle;
@@ -69,6 +72,7 @@ import java.util.Map;
  *         &lt;deleteOutputOnFailure&gt;true&lt;/deleteOutputOnFailure&gt;
  *         &lt;writeEntireTileRows&gt;true&lt;/writeEntireTileRows&gt;
  *         &lt;clearCacheAfterRowWrite&gt;true&lt;/clearCacheAfterRowWrite&gt;
+ *         &lt;resume&gt;false&lt;/resume&gt;
  *     &lt;/parameters&gt;
  * &lt;/node&gt;
  * </pre>
@@ -80,6 +84,9 @@ import java.util.Map;
  *   writeOp.setWriteEntireTileRows(true);
  *   writeOp.writeProduct(progressMonitor);
  * </pre>
+ * <p/>
+ * When writing BEAM-DIMAP products, the operator records the tiles written so far in a journal file next to the
+ * output file (see {@link #setResume(boolean)}). The journal is deleted once the product has been written completely.
  *
  * @author Norman Fomferra
  * @author Marco Zuehlke
@@ -121,6 +128,20 @@ public class WriteOp extends Operator {
                description = "If true, the internal tile cache is cleared after a tile row has been written. Ignored if writeEntireTileRows=false.")
     private boolean clearCacheAfterRowWrite;
 
+    /**
+     * @since BEAM 5.0.6
+     */
+    @Parameter(defaultValue = "false",
+               description = "If true, the writing of a partially written product is continued using its write journal. Only supported for BEAM-DIMAP.")
+    private boolean resume;
+
+    /**
+     * @since BEAM 5.0.6
+     */
+    @Parameter(defaultValue = "false",
+               description = "If true, a write journal is kept, so that a failed write operation can be resumed. Implied by 'resume'. Only supported for BEAM-DIMAP.")
+    private boolean journaling;
+
     private boolean[][][] tilesWritten;
     private final Map<Row, Tile[]> writeCache = new HashMap<>();
 
@@ -132,6 +153,8 @@ public class WriteOp extends Operator {
 
     private boolean outputFileExists = false;
     private boolean incremental = false;
+    private WriteJournal writeJournal;
+    private boolean resumed;
 
     public WriteOp() {
         setParameterDefaultValues();
@@ -190,6 +213,38 @@ public class WriteOp extends Operator {
         this.clearCacheAfterRowWrite = clearCacheAfterRowWrite;
     }
 
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * If set, the operator continues writing a partially written product: the tiles recorded in the
+     * write journal of a previous, failed run are neither computed nor written again. If there is no
+     * matching journal, the product is written from scratch.
+     *
+     * @param resume Whether to continue writing a partially written product.
+     * @since BEAM 5.0.6
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public boolean isJournaling() {
+        return journaling;
+    }
+
+    /**
+     * If set, the operator keeps a write journal, so that the product can be completed by a later run with
+     * {@link #setResume(boolean) resume} set if this run fails. Journaling is always enabled when resuming.
+     * The output of a journaled run is kept on failure, regardless of {@link #setDeleteOutputOnFailure(boolean)}.
+     *
+     * @param journaling Whether to keep a write journal.
+     * @since BEAM 5.0.6
+     */
+    public void setJournaling(boolean journaling) {
+        this.journaling = journaling;
+    }
+
     /**
      * Writes the source product.
      *
@@ -203,7 +258,22 @@ public class WriteOp extends Operator {
             if (clearCacheAfterRowWrite && writeEntireTileRows) {
                 operatorExecutor.setScheduleRowsSeparate(true);
             }
+            if (resumed) {
+                operatorExecutor.setTileFilter(new OperatorExecutor.TileFilter() {
+                    @Override
+                    public boolean accept(PlanarImage image, int tileX, int tileY) {
+                        int bandIndex = writableBands.indexOf(((OperatorImage) image).getTargetBand());
+                        return bandIndex >= 0 && !writeJournal.isWritten(bandIndex, tileX, tileY);
+                    }
+                });
+            }
             operatorExecutor.execute(ExecutionOrder.SCHEDULE_ROW_COLUMN_BAND, "Writing...", pm);
+            if (writeJournal != null) {
+                synchronized (productWriter) {
+                    productWriter.flush();
+                }
+                writeJournal.delete();
+            }
 
             getLogger().info("End writing product " + getTargetProduct().getName() + " to " + getFile());
 
@@ -217,8 +287,11 @@ public class WriteOp extends Operator {
                                                   seconds / h / w));
 
             stopTileComputationObservation();
+        } catch (IOException e) {
+            throw new OperatorException("Not able to write product file: '" + file.getAbsolutePath() + "'", e);
         } catch (OperatorException e) {
-            if (deleteOutputOnFailure && !outputFileExists) {
+            // a journaled product is kept, so that writing it can be resumed
+            if (deleteOutputOnFailure && !outputFileExists && writeJournal == null) {
                 try {
                     productWriter.deleteOutput();
                 } catch (Exception e2) {
@@ -234,7 +307,7 @@ public class WriteOp extends Operator {
     @Override
     public void initialize() throws OperatorException {
         targetProduct = sourceProduct;
-        outputFileExists = targetProduct.getFileLocation() != null && targetProduct.getFileLocation().exists();
+        outputFileExists = file.exists();
         productWriter = ProductIO.getProductWriter(formatName);
         if (productWriter == null) {
             throw new OperatorException("No data product writer for the '" + formatName + "' format available");
@@ -261,6 +334,50 @@ public class WriteOp extends Operator {
         tileCountX = MathUtils.ceilInt(targetProduct.getSceneRasterWidth() / (double) tileSize.width);
         tileCountY = MathUtils.ceilInt(targetProduct.getSceneRasterHeight() / (double) tileSize.height);
         tilesWritten = new boolean[writableBands.size()][tileCountY][tileCountX];
+
+        if ((resume || journaling) && productWriter instanceof DimapProductWriter) {
+            try {
+                initWriteJournal();
+            } catch (IOException e) {
+                throw new OperatorException("Not able to create write journal for '" + file.getAbsolutePath() + "'", e);
+            }
+        }
+    }
+
+    private void initWriteJournal() throws IOException {
+        File journalFile = WriteJournal.getJournalFile(file);
+        String signature = createJournalSignature();
+        int numBands = writableBands.size();
+        if (resume) {
+            writeJournal = WriteJournal.open(journalFile, signature, numBands, tileCountX, tileCountY);
+            if (writeJournal != null) {
+                resumed = true;
+                for (int bandIndex = 0; bandIndex < numBands; bandIndex++) {
+                    for (int tileY = 0; tileY < tileCountY; tileY++) {
+                        for (int tileX = 0; tileX < tileCountX; tileX++) {
+                            tilesWritten[bandIndex][tileY][tileX] = writeJournal.isWritten(bandIndex, tileX, tileY);
+                        }
+                    }
+                }
+                getLogger().info(MessageFormat.format("Resuming to write {0}, {1} tiles have already been written",
+                                                      file, writeJournal.getNumWritten()));
+                return;
+            }
+            getLogger().warning("No matching write journal found for " + file + ", writing the entire product");
+        }
+        writeJournal = WriteJournal.create(journalFile, signature, numBands, tileCountX, tileCountY);
+    }
+
+    private String createJournalSignature() {
+        StringBuilder signature = new StringBuilder();
+        signature.append(formatName).append(' ');
+        signature.append(targetProduct.getSceneRasterWidth()).append('x').append(targetProduct.getSceneRasterHeight());
+        signature.append(' ').append(tileSize.width).append('x').append(tileSize.height);
+        for (Band band : writableBands) {
+            signature.append(' ').append(band.getName().replaceAll("\\s", "_"));
+            signature.append(':').append(band.getDataType());
+        }
+        return signature.toString();
     }
 
     @Override
@@ -287,9 +404,15 @@ public class WriteOp extends Operator {
                 }
             } else {
                 final ProductData rawSamples = targetTile.getRawSamples();
+                final long queueStartNanos = System.nanoTime();
                 synchronized (productWriter) {
+                    final long writeStartNanos = System.nanoTime();
                     productWriter.writeBandRasterData(targetBand, rect.x, rect.y, rect.width, rect.height, rawSamples,
                                                       pm);
+                    PerformanceMetricsObserver.recordWrite(this, writeStartNanos - queueStartNanos,
+                                                           System.nanoTime() - writeStartNanos,
+                                                           (long) rawSamples.getNumElems() * rawSamples.getElemSize());
+                    journalTiles(targetBand, tileY, tileX, tileX + 1);
                 }
                 markTileAsHandled(targetBand, tileX, tileY);
             }
@@ -301,7 +424,7 @@ public class WriteOp extends Operator {
                 }
             }
         } catch (Exception e) {
-            if (deleteOutputOnFailure && !outputFileExists) {
+            if (deleteOutputOnFailure && !outputFileExists && writeJournal == null) {
                 try {
                     productWriter.deleteOutput();
                 } catch (IOException ignored) {
@@ -347,7 +470,9 @@ public class WriteOp extends Operator {
             tileWidth[tileX] = tile.getRectangle().width;
         }
         ProductData sampleLine = ProductData.createInstance(rawSampleOFLine[0].getType(), sceneWidth);
+        final long queueStartNanos = System.nanoTime();
         synchronized (productWriter) {
+            final long writeStartNanos = System.nanoTime();
             for (int y = lineBounds.y; y < lineBounds.y + lineBounds.height; y++) {
                 int targetPos = 0;
                 for (int tileX = 0; tileX < cacheLine.length; tileX++) {
@@ -360,9 +485,40 @@ public class WriteOp extends Operator {
 
                 productWriter.writeBandRasterData(band, 0, y, sceneWidth, 1, sampleLine, ProgressMonitor.NULL);
             }
+            PerformanceMetricsObserver.recordWrite(this, writeStartNanos - queueStartNanos,
+                                                   System.nanoTime() - writeStartNanos,
+                                                   (long) sceneWidth * lineBounds.height * sampleLine.getElemSize());
+            journalTiles(band, lineBounds.y / tileSize.height, 0, cacheLine.length);
         }
     }
 
+    /**
+     * Records written tiles in the write journal. The journal is committed after forcing the band data to disk
+     * about once per tile row of all bands, so that a journal entry never refers to data lost on failure.
+     * Must be called while holding the lock on the product writer.
+     */
+    private void journalTiles(Band band, int tileY, int tileX0, int tileX1) throws IOException {
+        if (writeJournal == null) {
+            return;
+        }
+        int bandIndex = writableBands.indexOf(band);
+        for (int tileX = tileX0; tileX < tileX1; tileX++) {
+            writeJournal.add(bandIndex, tileX, tileY);
+        }
+        if (writeJournal.getNumPendingRecords() >= tileCountX * writableBands.size()) {
+            commitWriteJournal();
+        }
+    }
+
+    /**
+     * Forces the band data written so far to disk and then commits the pending journal records.
+     * Must be called while holding the lock on the product writer.
+     */
+    private void commitWriteJournal() throws IOException {
+        ((DimapProductWriter) productWriter).sync();
+        writeJournal.commit();
+    }
+
     private void markTileAsHandled(Band targetBand, int tileX, int tileY) {
         int bandIndex = writableBands.indexOf(targetBand);
         tilesWritten[bandIndex][tileY][tileX] = true;
@@ -390,6 +546,15 @@ public class WriteOp extends Operator {
 
     @Override
     public void dispose() {
+        if (writeJournal != null) {
+            try {
+                synchronized (productWriter) {
+                    commitWriteJournal();
+                }
+                writeJournal.close();
+            } catch (IOException ignore) {
+            }
+        }
         try {
             productWriter.close();
         } catch (IOException ignore) {
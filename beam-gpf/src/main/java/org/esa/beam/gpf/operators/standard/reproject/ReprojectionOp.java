@@ -28,13 +28,17 @@ import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.ImageGeometry;
 import org.esa.beam.framework.datamodel.ImageInfo;
 import org.esa.beam.framework.datamodel.IndexCoding;
+import org.esa.beam.framework.datamodel.PixelPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.Pointing;
 import org.esa.beam.framework.datamodel.ProductNodeGroup;
 import org.esa.beam.framework.datamodel.RasterDataNode;
 import org.esa.beam.framework.dataop.dem.ElevationModel;
 import org.esa.beam.framework.dataop.dem.ElevationModelDescriptor;
 import org.esa.beam.framework.dataop.dem.ElevationModelRegistry;
+import org.esa.beam.framework.dataop.dem.GriddedOrthorectifier;
+import org.esa.beam.framework.dataop.dem.OrthorectificationGrid;
 import org.esa.beam.framework.dataop.dem.Orthorectifier;
 import org.esa.beam.framework.dataop.dem.Orthorectifier2;
 import org.esa.beam.framework.dataop.resamp.Resampling;
@@ -49,6 +53,7 @@ import org.esa.beam.jai.ImageManager;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.util.Debug;
 import org.esa.beam.util.ProductUtils;
+import org.esa.beam.util.SystemUtils;
 import org.esa.beam.util.io.FileUtils;
 import org.geotools.factory.Hints;
 import org.geotools.referencing.CRS;
@@ -67,7 +72,13 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
 
 /**
  * <p/>
@@ -116,6 +127,8 @@ import java.text.MessageFormat;
  *            &lt;height&gt;116629771&lt;/height&gt;
  *            &lt;orthorectify&gt;false&lt;/orthorectify&gt;
  *            &lt;elevationModelName/&gt;
+ *            &lt;orthorectificationGridStep/&gt;
+ *            &lt;orthorectificationMaxGridError&gt;0.5&lt;/orthorectificationMaxGridError&gt;
  *            &lt;noDataValue&gt;NaN&lt;/noDataValue&gt;
  *            &lt;includeTiePointGrids&gt;true&lt;/includeTiePointGrids&gt;
  *            &lt;addDeltaBands&gt;false&lt;/addDeltaBands&gt;
@@ -137,6 +150,12 @@ import java.text.MessageFormat;
 @SuppressWarnings({"UnusedDeclaration"})
 public class ReprojectionOp extends Operator {
 
+    /**
+     * The system property used to configure the directory in which orthorectification grids are cached.
+     * If set to an empty value, the grids are not cached.
+     */
+    public static final String ORTHORECTIFICATION_GRID_CACHE_DIR_PROPERTY = "beam.reproject.orthorectificationGridCacheDir";
+    private static final String ORTHORECTIFICATION_GRID_CACHE_DIR_NAME = "orthorectification-grids";
 
     @SourceProduct(alias = "source", description = "The product which will be reprojected.")
     private Product sourceProduct;
@@ -194,6 +213,15 @@ public class ReprojectionOp extends Operator {
                              "If not given tie-point data is used.")
     private String elevationModelName;
 
+    @Parameter(description = "If given, the orthorectification is computed exactly only for source pixels on a grid " +
+                             "with this spacing and is interpolated in between. Speeds up orthorectification considerably.")
+    private Integer orthorectificationGridStep;
+
+    @Parameter(description = "The maximum allowed deviation in source pixels of the interpolated from the exact " +
+                             "orthorectification. If exceeded, the exact orthorectification is used.",
+               defaultValue = "0.5")
+    private double orthorectificationMaxGridError;
+
     @Parameter(description = "The value used to indicate no-data.")
     private Double noDataValue;
 
@@ -206,6 +234,7 @@ public class ReprojectionOp extends Operator {
     private boolean addDeltaBands;
 
     private ElevationModel elevationModel;
+    private Map<Pointing, Orthorectifier> orthorectifiers;
     private MultiLevelModel srcModel;
     private MultiLevelModel targetModel;
     private Reproject reprojection;
@@ -254,7 +283,11 @@ public class ReprojectionOp extends Operator {
         * 4. Define some target properties
         */
         if (orthorectify) {
+            if (orthorectificationGridStep != null && orthorectificationGridStep <= 0) {
+                throw new OperatorException("Parameter 'orthorectificationGridStep' must be greater than zero.");
+            }
             elevationModel = createElevationModel();
+            orthorectifiers = new HashMap<>();
         }
         ProductUtils.copyMetadata(sourceProduct, targetProduct);
         ProductUtils.copyFlagCodings(sourceProduct, targetProduct);
@@ -317,12 +350,128 @@ public class ReprojectionOp extends Operator {
     }
 
     private Orthorectifier createOrthorectifier(final RasterDataNode sourceBand) {
-        return new Orthorectifier2(sourceBand.getSceneRasterWidth(),
-                                   sourceBand.getSceneRasterHeight(),
-                                   sourceBand.getPointing(),
-                                   elevationModel, 25);
+        final Pointing pointing = sourceBand.getPointing();
+        Orthorectifier orthorectifier = orthorectifiers.get(pointing);
+        if (orthorectifier == null) {
+            orthorectifier = new Orthorectifier2(sourceBand.getSceneRasterWidth(),
+                                                 sourceBand.getSceneRasterHeight(),
+                                                 pointing,
+                                                 elevationModel, 25);
+            if (orthorectificationGridStep != null) {
+                final OrthorectificationGrid grid = getOrthorectificationGrid(orthorectifier, sourceBand);
+                if (grid != null) {
+                    orthorectifier = new GriddedOrthorectifier(orthorectifier, grid);
+                }
+            }
+            // rasters sharing a pointing share the orthorectifier, so that its grid is computed only once
+            orthorectifiers.put(pointing, orthorectifier);
+        }
+        return orthorectifier;
     }
 
+    private OrthorectificationGrid getOrthorectificationGrid(Orthorectifier orthorectifier, RasterDataNode sourceBand) {
+        final String rasterName = sourceBand.getName();
+        final File gridFile = getOrthorectificationGridFile(sourceBand);
+        OrthorectificationGrid grid = null;
+        if (gridFile != null && gridFile.isFile()) {
+            try {
+                grid = OrthorectificationGrid.read(gridFile);
+                if (!isMatchingGrid(grid, orthorectifier)) {
+                    getLogger().warning("Orthorectification grid " + gridFile + " does not match '" + rasterName
+                                        + "', computing it again");
+                    grid = null;
+                }
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Failed to read orthorectification grid " + gridFile, e);
+            }
+        }
+
+        if (grid == null) {
+            final int parallelism = Runtime.getRuntime().availableProcessors();
+            grid = OrthorectificationGrid.create(orthorectifier, orthorectificationGridStep, parallelism);
+            grid.computeMaxError(orthorectifier, parallelism);
+            // the grid is cached even if its error is too large, so that it is not computed again to find out
+            if (gridFile != null) {
+                try {
+                    final File cacheDir = gridFile.getParentFile();
+                    if (cacheDir.isDirectory() || cacheDir.mkdirs()) {
+                        grid.write(gridFile);
+                    }
+                } catch (IOException e) {
+                    getLogger().log(Level.WARNING, "Failed to write orthorectification grid " + gridFile, e);
+                }
+            }
+        }
+
+        final double maxError = grid.getMaxError();
+        if (!(maxError <= orthorectificationMaxGridError)) {
+            getLogger().info(MessageFormat.format(
+                    "Orthorectification grid error of {0} pixels exceeds {1} pixels for ''{2}'', using exact orthorectification",
+                    maxError, orthorectificationMaxGridError, rasterName));
+            return null;
+        }
+        return grid;
+    }
+
+    private boolean isMatchingGrid(OrthorectificationGrid grid, Orthorectifier orthorectifier) {
+        return grid.getSceneRasterWidth() == orthorectifier.getSceneRasterWidth()
+               && grid.getSceneRasterHeight() == orthorectifier.getSceneRasterHeight()
+               && grid.getStep() == orthorectificationGridStep;
+    }
+
+    private File getOrthorectificationGridFile(RasterDataNode sourceBand) {
+        final File productFile = sourceProduct.getFileLocation();
+        if (productFile == null || !productFile.exists()) {
+            return null;
+        }
+        final String cachePath = System.getProperty(ORTHORECTIFICATION_GRID_CACHE_DIR_PROPERTY);
+        final File cacheDir;
+        if (cachePath == null) {
+            cacheDir = new File(SystemUtils.getDefaultBeamCacheDir(), ORTHORECTIFICATION_GRID_CACHE_DIR_NAME);
+        } else if (cachePath.trim().isEmpty()) {
+            return null;
+        } else {
+            cacheDir = new File(cachePath);
+        }
+        // the key covers everything the displacements depend on. A subset of the product has the same file location,
+        // it is told apart by the geo-positions of its corner pixels.
+        final String key = productFile.getAbsolutePath() + "|" + productFile.lastModified() + "|" + productFile.length()
+                           + "|" + elevationModelName + "|" + orthorectificationGridStep + "|" + sourceBand.getName()
+                           + "|" + sourceBand.getSceneRasterWidth() + "x" + sourceBand.getSceneRasterHeight()
+                           + "|" + getCornerGeoPositions(sourceBand);
+        return new File(cacheDir, FileUtils.getFilenameWithoutExtension(productFile) + "-" + getDigest(key) + ".grid");
+    }
+
+    private static String getCornerGeoPositions(RasterDataNode sourceBand) {
+        final GeoCoding geoCoding = sourceBand.getGeoCoding();
+        final float x2 = sourceBand.getSceneRasterWidth() - 0.5f;
+        final float y2 = sourceBand.getSceneRasterHeight() - 0.5f;
+        final PixelPos[] cornerPixelPositions = {
+                new PixelPos(0.5f, 0.5f), new PixelPos(x2, 0.5f), new PixelPos(0.5f, y2), new PixelPos(x2, y2)
+        };
+        final StringBuilder sb = new StringBuilder();
+        final GeoPos geoPos = new GeoPos();
+        for (PixelPos pixelPos : cornerPixelPositions) {
+            geoCoding.getGeoPos(pixelPos, geoPos);
+            sb.append(geoPos.lat).append(',').append(geoPos.lon).append(';');
+        }
+        return sb.toString();
+    }
+
+    private static String getDigest(String key) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(Charset.forName("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        final StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+        }
+        return sb.toString();
+    }
 
     private void reprojectRasterDataNodes(RasterDataNode[] rasterDataNodes) {
         for (RasterDataNode raster : rasterDataNodes) {
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.internal;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.junit.After;
+import org.junit.Test;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CostAwareTileCacheTest {
+
+    // 10 x 10 int samples
+    private static final long TILE_SIZE = 400;
+
+    private final RenderedImage owner = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    @After
+    public void tearDown() throws Exception {
+        CostAwareTileCache.recordComputeTime(0);
+    }
+
+    @Test
+    public void testAddAndGet() {
+        final CostAwareTileCache cache = new CostAwareTileCache(100 * TILE_SIZE);
+        final Raster tile = createTile();
+        cache.add(owner, 0, 1, tile);
+
+        assertSame(tile, cache.getTile(owner, 0, 1));
+        assertNull(cache.getTile(owner, 1, 0));
+        assertNull(cache.getTile(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), 0, 1));
+        assertEquals(TILE_SIZE, cache.getMemoryUsage());
+        assertEquals(1, cache.getTiles(owner).length);
+
+        final CostAwareTileCache.Statistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(0, statistics.getEvictionCount());
+        assertEquals(1.0 / 3.0, statistics.getHitRatio(), 1.0e-10);
+
+        cache.remove(owner, 0, 1);
+        assertNull(cache.getTile(owner, 0, 1));
+        assertEquals(0, cache.getMemoryUsage());
+        assertNull(cache.getTiles(owner));
+    }
+
+    @Test
+    public void testRemoveTilesAndFlush() {
+        final CostAwareTileCache cache = new CostAwareTileCache(100 * TILE_SIZE);
+        final RenderedImage otherOwner = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        cache.addTiles(owner, new Point[]{new Point(0, 0), new Point(1, 0)},
+                       new Raster[]{createTile(), createTile()}, null);
+        cache.add(otherOwner, 0, 0, createTile());
+        assertEquals(3 * TILE_SIZE, cache.getMemoryUsage());
+
+        cache.removeTiles(owner);
+        assertNull(cache.getTiles(owner));
+        assertNotNull(cache.getTile(otherOwner, 0, 0));
+        assertEquals(TILE_SIZE, cache.getMemoryUsage());
+
+        cache.flush();
+        assertNull(cache.getTile(otherOwner, 0, 0));
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTileIsEvictedIfCostsAreEqual() {
+        final CostAwareTileCache cache = new CostAwareTileCache(2 * TILE_SIZE, 1);
+        cache.add(owner, 0, 0, createTile());
+        cache.add(owner, 1, 0, createTile());
+        assertNotNull(cache.getTile(owner, 0, 0));
+        cache.add(owner, 2, 0, createTile());
+
+        assertNotNull(cache.getTile(owner, 0, 0));
+        assertNull(cache.getTile(owner, 1, 0));
+        assertNotNull(cache.getTile(owner, 2, 0));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testExpensiveTileIsKept() {
+        final CostAwareTileCache cache = new CostAwareTileCache(2 * TILE_SIZE, 1);
+        CostAwareTileCache.recordComputeTime(1000000L);
+        cache.add(owner, 0, 0, createTile());
+        for (int i = 1; i < 4; i++) {
+            CostAwareTileCache.recordComputeTime(1000L);
+            cache.add(owner, i, 0, createTile());
+        }
+
+        assertNotNull(cache.getTile(owner, 0, 0));
+        assertNull(cache.getTile(owner, 1, 0));
+        assertNull(cache.getTile(owner, 2, 0));
+        assertNotNull(cache.getTile(owner, 3, 0));
+    }
+
+    @Test
+    public void testExpensiveTileAgesOut() {
+        final CostAwareTileCache cache = new CostAwareTileCache(2 * TILE_SIZE, 1);
+        CostAwareTileCache.recordComputeTime(4000L);
+        cache.add(owner, 0, 0, createTile());
+        // each eviction of a tile with a cost of 1000 raises the inflation value by 2.5
+        for (int i = 1; i < 10; i++) {
+            CostAwareTileCache.recordComputeTime(1000L);
+            cache.add(owner, i, 0, createTile());
+        }
+        assertNull(cache.getTile(owner, 0, 0));
+    }
+
+    @Test
+    public void testTileLargerThanCapacityIsNotCached() {
+        final CostAwareTileCache cache = new CostAwareTileCache(TILE_SIZE / 2, 1);
+        cache.add(owner, 0, 0, createTile());
+        assertNull(cache.getTile(owner, 0, 0));
+        assertEquals(0, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void testSetMemoryCapacityEvicts() {
+        final CostAwareTileCache cache = new CostAwareTileCache(4 * TILE_SIZE, 1);
+        for (int i = 0; i < 4; i++) {
+            cache.add(owner, i, 0, createTile());
+        }
+        cache.setMemoryCapacity(2 * TILE_SIZE);
+        assertEquals(2 * TILE_SIZE, cache.getMemoryUsage());
+        assertEquals(2 * TILE_SIZE, cache.getMemoryCapacity());
+        assertNotNull(cache.getTile(owner, 3, 0));
+    }
+
+    @Test
+    public void testOperatorQuota() {
+        final Product product = new QuotaOp().getTargetProduct();
+        final OperatorImage image = (OperatorImage) product.getBand("a").getSourceImage().getImage(0);
+        final OperatorContext operatorContext = image.getOperatorContext();
+
+        final CostAwareTileCache cache = new CostAwareTileCache(10 * TILE_SIZE, 1);
+        cache.setQuota("CostAwareTileCacheTest.Quota", 2 * TILE_SIZE);
+        assertEquals(2 * TILE_SIZE, cache.getQuota("CostAwareTileCacheTest.Quota"));
+        assertEquals(-1, cache.getQuota("Unknown"));
+
+        CostAwareTileCache.recordComputeTime(1000000L);
+        cache.add(owner, 0, 0, createTile());
+        for (int i = 0; i < 4; i++) {
+            cache.add(image, i, 0, createTile());
+        }
+        assertEquals(3 * TILE_SIZE, cache.getMemoryUsage());
+        assertNotNull(cache.getTile(owner, 0, 0));
+        assertNull(cache.getTile(image, 0, 0));
+        assertNull(cache.getTile(image, 1, 0));
+        assertNotNull(cache.getTile(image, 2, 0));
+        assertNotNull(cache.getTile(image, 3, 0));
+
+        final CostAwareTileCache.Statistics statistics = cache.getStatistics(operatorContext);
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(2, statistics.getEvictionCount());
+        assertEquals(2, cache.getStatistics().getEvictionCount());
+        assertEquals(3, cache.getStatistics().getHitCount());
+    }
+
+    @Test
+    public void testCapacityAppliesToAllSegments() {
+        final CostAwareTileCache cache = new CostAwareTileCache(2 * TILE_SIZE);
+        cache.add(owner, 0, 0, createTile());
+        cache.add(owner, 1, 0, createTile());
+        assertNotNull(cache.getTile(owner, 0, 0));
+        cache.add(owner, 2, 0, createTile());
+
+        assertEquals(2 * TILE_SIZE, cache.getMemoryUsage());
+        assertNotNull(cache.getTile(owner, 0, 0));
+        assertNull(cache.getTile(owner, 1, 0));
+        assertNotNull(cache.getTile(owner, 2, 0));
+        assertEquals(1, cache.getStatistics().getEvictionCount());
+
+        cache.setMemoryThreshold(0.5F);
+        assertEquals(TILE_SIZE, cache.getMemoryUsage());
+        assertNotNull(cache.getTile(owner, 2, 0));
+    }
+
+    @Test
+    public void testOperatorQuotaWithDefaultNumSegments() {
+        final Product product = new QuotaOp().getTargetProduct();
+        final OperatorImage image = (OperatorImage) product.getBand("a").getSourceImage().getImage(0);
+        final OperatorContext operatorContext = image.getOperatorContext();
+
+        // the quota is smaller than a tile per segment, it must nevertheless be accounted for the whole cache
+        final CostAwareTileCache cache = new CostAwareTileCache(10 * TILE_SIZE,
+                                                                CostAwareTileCache.DEFAULT_NUM_SEGMENTS);
+        cache.setQuota("CostAwareTileCacheTest.Quota", 2 * TILE_SIZE);
+
+        CostAwareTileCache.recordComputeTime(1000000L);
+        cache.add(owner, 0, 0, createTile());
+        for (int i = 0; i < 4; i++) {
+            cache.add(image, i, 0, createTile());
+        }
+        assertEquals(3 * TILE_SIZE, cache.getMemoryUsage());
+        assertNotNull(cache.getTile(owner, 0, 0));
+        assertNull(cache.getTile(image, 0, 0));
+        assertNull(cache.getTile(image, 1, 0));
+        assertNotNull(cache.getTile(image, 2, 0));
+        assertNotNull(cache.getTile(image, 3, 0));
+        assertEquals(2, cache.getStatistics(operatorContext).getEvictionCount());
+
+        cache.setQuota("CostAwareTileCacheTest.Quota", TILE_SIZE);
+        assertEquals(2 * TILE_SIZE, cache.getMemoryUsage());
+        assertNull(cache.getTile(image, 2, 0));
+        assertNotNull(cache.getTile(image, 3, 0));
+    }
+
+    @Test
+    public void testConcurrentAccessKeepsMemoryUsageConsistent() throws Exception {
+        final CostAwareTileCache cache = new CostAwareTileCache(8 * TILE_SIZE, 4);
+        final RenderedImage otherOwner = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        final Throwable[] failure = new Throwable[1];
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 5000; i++) {
+                            final RenderedImage image = random.nextBoolean() ? owner : otherOwner;
+                            final int tileX = random.nextInt(16);
+                            if (random.nextInt(3) == 0) {
+                                CostAwareTileCache.recordComputeTime(random.nextInt(1000000));
+                                cache.add(image, tileX, 0, createTile());
+                            } else {
+                                cache.getTile(image, tileX, 0);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure[0]);
+        final Raster[] tiles = cache.getTiles(owner);
+        final Raster[] otherTiles = cache.getTiles(otherOwner);
+        final int tileCount = (tiles != null ? tiles.length : 0) + (otherTiles != null ? otherTiles.length : 0);
+        assertEquals(tileCount * TILE_SIZE, cache.getMemoryUsage());
+        assertTrue(cache.getMemoryUsage() <= 8 * TILE_SIZE);
+
+        cache.setMemoryCapacity(2 * TILE_SIZE);
+        assertEquals(2 * TILE_SIZE, cache.getMemoryUsage());
+    }
+
+    private static Raster createTile() {
+        return Raster.createBandedRaster(DataBuffer.TYPE_INT, 10, 10, 1, new Point(0, 0));
+    }
+
+    @OperatorMetadata(alias = "CostAwareTileCacheTest.Quota")
+    public static class QuotaOp extends Operator {
+
+        @Override
+        public void initialize() {
+            final Product product = new Product("quota", "quota", 10, 10);
+            product.addBand("a", ProductData.TYPE_INT32);
+            setTargetProduct(product);
+        }
+    }
+}
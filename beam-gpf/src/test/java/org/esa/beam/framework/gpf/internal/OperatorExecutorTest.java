@@ -249,6 +249,43 @@ public class OperatorExecutorTest {
         assertEquals(new Point(1, 1), recordingTileScheduler.requestedTileIndices.get(3));
     }
 
+    @Test
+    public void testManyTilesTwoBands_DependencyAwareOrder() {
+        Product sourceProduct = createSourceProduct();
+        Band bandB = sourceProduct.addBand("b", ProductData.TYPE_INT8);
+        bandB.setRasterData(createDataFor(bandB));
+        bandB.setSynthetic(true);
+        sourceProduct.setPreferredTileSize(50, 50);
+        Operator op = new TestOP(sourceProduct);
+        OperatorExecutor operatorExecutor = OperatorExecutor.create(op);
+        operatorExecutor.execute(OperatorExecutor.ExecutionOrder.SCHEDULE_DEPENDENCY_AWARE, ProgressMonitor.NULL);
+
+        assertEquals(4, recordingTileScheduler.requestedTileIndices.size());
+        assertEquals(new Point(0, 0), recordingTileScheduler.requestedTileIndices.get(0));
+        assertEquals(new Point(1, 0), recordingTileScheduler.requestedTileIndices.get(1));
+        assertEquals(new Point(0, 1), recordingTileScheduler.requestedTileIndices.get(2));
+        assertEquals(new Point(1, 1), recordingTileScheduler.requestedTileIndices.get(3));
+    }
+
+    @Test
+    public void testCreateTileOrder() {
+        assertArrayEquals(new Point[]{
+                new Point(0, 0), new Point(1, 0), new Point(2, 0),
+                new Point(0, 1), new Point(1, 1), new Point(2, 1)
+        }, OperatorExecutor.createTileOrder(3, 2, false));
+        assertArrayEquals(new Point[]{
+                new Point(0, 0),
+                new Point(1, 0), new Point(0, 1),
+                new Point(2, 0), new Point(1, 1),
+                new Point(2, 1)
+        }, OperatorExecutor.createTileOrder(3, 2, true));
+        assertArrayEquals(new Point[]{
+                new Point(0, 0),
+                new Point(0, 1),
+                new Point(0, 2)
+        }, OperatorExecutor.createTileOrder(1, 3, true));
+    }
+
     private Product createSourceProduct() {
         Product product = new Product("source", "source", 100, 100);
         Band bandA = product.addBand("a", ProductData.TYPE_INT8);
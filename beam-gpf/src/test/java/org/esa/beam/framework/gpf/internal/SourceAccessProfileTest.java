@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.gpf.internal;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Test;
+
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SourceAccessProfileTest {
+
+    @Test
+    public void testAccessOutsideOfTileComputationIsIgnored() {
+        final SourceAccessProfile profile = new SourceAccessProfile();
+        profile.recordAccess(createBand(100, 100), new Rectangle(0, 0, 10, 10), 100, 100);
+        assertTrue(profile.getSourceMargins().isEmpty());
+    }
+
+    @Test
+    public void testMarginsAreMerged() {
+        final SourceAccessProfile profile = new SourceAccessProfile();
+        final Band band = createBand(100, 100);
+
+        Rectangle previous = profile.beginTile(new Rectangle(50, 50, 10, 10));
+        profile.recordAccess(band, new Rectangle(50, 50, 10, 10), 100, 100);
+        profile.endTile(previous);
+        Map<?, Insets> margins = profile.getSourceMargins();
+        assertEquals(new Insets(0, 0, 0, 0), margins.get(band));
+        assertFalse(profile.hasNeighbourhoodAccess());
+
+        previous = profile.beginTile(new Rectangle(50, 50, 10, 10));
+        profile.recordAccess(band, new Rectangle(48, 49, 13, 15), 100, 100);
+        profile.endTile(previous);
+        previous = profile.beginTile(new Rectangle(20, 20, 10, 10));
+        profile.recordAccess(band, new Rectangle(19, 17, 10, 10), 100, 100);
+        profile.endTile(previous);
+        margins = profile.getSourceMargins();
+        assertEquals(new Insets(3, 2, 4, 1), margins.get(band));
+        assertTrue(profile.hasNeighbourhoodAccess());
+    }
+
+    @Test
+    public void testSourcesOfOtherSizeAreNotPredictable() {
+        final SourceAccessProfile profile = new SourceAccessProfile();
+        final Band band = createBand(200, 100);
+
+        final Rectangle previous = profile.beginTile(new Rectangle(0, 0, 10, 10));
+        profile.recordAccess(band, new Rectangle(0, 0, 20, 10), 100, 100);
+        profile.endTile(previous);
+        assertTrue(profile.getSourceMargins().isEmpty());
+    }
+
+    @Test
+    public void testNestedTileComputations() {
+        final SourceAccessProfile profile = new SourceAccessProfile();
+        final Band band = createBand(100, 100);
+
+        final Rectangle outer = profile.beginTile(new Rectangle(0, 0, 10, 10));
+        assertNull(outer);
+        final Rectangle inner = profile.beginTile(new Rectangle(10, 0, 10, 10));
+        assertEquals(new Rectangle(0, 0, 10, 10), inner);
+        profile.endTile(inner);
+        profile.recordAccess(band, new Rectangle(0, 0, 10, 10), 100, 100);
+        profile.endTile(outer);
+
+        assertEquals(new Insets(0, 0, 0, 0), profile.getSourceMargins().get(band));
+    }
+
+    private static Band createBand(int width, int height) {
+        final Product product = new Product("p", "t", width, height);
+        return product.addBand("b", ProductData.TYPE_FLOAT32);
+    }
+}
@@ -211,6 +211,15 @@ public class CommandLineArgsTest {
         assertEquals(true, lineArgs.isClearCacheAfterRowWrite());
     }
 
+    @Test
+    public void testResume() throws Exception {
+        CommandLineArgs lineArgs = parseArgs("Reproject");
+        assertEquals(false, lineArgs.isResume());
+
+        lineArgs = parseArgs("Reproject", "-resume");
+        assertEquals(true, lineArgs.isResume());
+    }
+
     @Test
     public void testJAIOptions() throws Exception {
         CommandLineArgs lineArgs;
@@ -277,7 +277,7 @@ public class CommandLineToolGraphTest extends TestCase {
 
         @Override
         public void writeProduct(Product targetProduct, String filePath, String formatName,
-                                 boolean clearCacheAfterRowWrite) throws IOException {
+                                 boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
             logString += "t" + writeProductCounter + "=" + filePath + ";";
             writeProductCounter++;
         }
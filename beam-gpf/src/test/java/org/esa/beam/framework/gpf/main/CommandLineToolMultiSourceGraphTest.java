@@ -198,7 +198,7 @@ public class CommandLineToolMultiSourceGraphTest {
         }
 
         @Override
-        public void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite) throws IOException {
+        public void writeProduct(Product targetProduct, String filePath, String formatName, boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
             logString += "t" + writeProductCounter + "=" + filePath + ";";
             writeProductCounter++;
         }
@@ -152,7 +152,7 @@ public class CommandLineToolOperatorTest {
 
         @Override
         public void writeProduct(Product targetProduct, String filePath, String formatName,
-                                 boolean clearCacheAfterRowWrite) throws IOException {
+                                 boolean clearCacheAfterRowWrite, boolean resume) throws IOException {
             writeProductCounter++;
         }
 
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.framework.gpf.main;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class GptDaemonTest {
+
+    private File secretFile;
+    private String secret;
+    private GptDaemon daemon;
+    private Thread daemonThread;
+    private volatile Throwable daemonFailure;
+
+    @Before
+    public void setUp() throws Exception {
+        secretFile = new File(Files.createTempDirectory("gpt-daemon").toFile(), "secret");
+        daemon = new GptDaemon(0, 2, new TestCommandLineContext(), secretFile);
+        secret = GptDaemon.readSecret(secretFile);
+        daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.serve();
+                } catch (Throwable e) {
+                    daemonFailure = e;
+                }
+            }
+        });
+        daemonThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        daemon.close();
+        daemonThread.join(5000);
+        secretFile.delete();
+        secretFile.getParentFile().delete();
+        assertFalse("daemon still serving after close", daemonThread.isAlive());
+        assertNull("daemon failed: " + daemonFailure, daemonFailure);
+    }
+
+    @Test
+    public void testOutputAndExitStatusOfSuccessfulJob() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final int exitStatus = GptDaemon.submit(daemon.getPort(), secret, new File("."), new String[]{"-h"},
+                                                new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals(GptDaemon.EXIT_STATUS_OK, exitStatus);
+        assertTrue(out.toString().startsWith("Usage:\n  gpt <op>|<graph-file> [options] "));
+    }
+
+    @Test
+    public void testLogAndExitStatusOfFailedJob() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final int exitStatus = GptDaemon.submit(daemon.getPort(), secret, new File("."), new String[]{"-Pa=b"},
+                                                new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals(GptDaemon.EXIT_STATUS_FAILED, exitStatus);
+        assertEquals("", out.toString());
+        assertTrue(err.toString().contains("Error: Either operator name or graph XML file must be given"));
+    }
+
+    @Test
+    public void testConcurrentJobs() throws Exception {
+        final int numJobs = 4;
+        final int[] exitStatus = new int[numJobs];
+        final Thread[] clients = new Thread[numJobs];
+        for (int i = 0; i < numJobs; i++) {
+            final int jobIndex = i;
+            clients[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final PrintStream sink = new PrintStream(new ByteArrayOutputStream());
+                        final String[] args = jobIndex % 2 == 0 ? new String[]{"-h"} : new String[]{"-Pa=b"};
+                        exitStatus[jobIndex] = GptDaemon.submit(daemon.getPort(), secret, new File("."), args, sink, sink);
+                    } catch (Exception e) {
+                        exitStatus[jobIndex] = -1;
+                    }
+                }
+            });
+            clients[i].start();
+        }
+        for (int i = 0; i < numJobs; i++) {
+            clients[i].join(30000);
+            assertEquals(i % 2 == 0 ? GptDaemon.EXIT_STATUS_OK : GptDaemon.EXIT_STATUS_FAILED, exitStatus[i]);
+        }
+    }
+
+    @Test
+    public void testSecretFile() throws Exception {
+        assertEquals(64, secret.length());
+        if (Files.getFileStore(secretFile.toPath()).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(secretFile.toPath())));
+
+            Files.setPosixFilePermissions(secretFile.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+            try {
+                GptDaemon.getOrCreateSecret(secretFile);
+                fail("IOException expected, the secret file is readable by others");
+            } catch (IOException expected) {
+                // ok
+            }
+            Files.setPosixFilePermissions(secretFile.toPath(), PosixFilePermissions.fromString("rw-------"));
+        }
+        // an existing secret is kept
+        assertEquals(secret, GptDaemon.getOrCreateSecret(secretFile));
+    }
+
+    @Test
+    public void testJobWithInvalidSecretIsRejected() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PrintStream sink = new PrintStream(out, true);
+        try {
+            GptDaemon.submit(daemon.getPort(), "not-the-secret", new File("."), new String[]{"-h"}, sink, sink);
+            fail("IOException expected, the daemon closes the connection");
+        } catch (IOException expected) {
+            // ok
+        }
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void testRequestWithTooManyArgumentsIsRejected() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort())) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeUTF("BEAM-GPT-JOB 1");
+            output.writeUTF(secret);
+            output.writeUTF(".");
+            output.writeInt(Integer.MAX_VALUE);
+            output.flush();
+            // the daemon closes the connection without reading further
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        final String[] args = new String[GptDaemon.MAX_ARG_COUNT + 1];
+        Arrays.fill(args, "-h");
+        try {
+            final PrintStream sink = new PrintStream(new ByteArrayOutputStream());
+            GptDaemon.submit(daemon.getPort(), secret, new File("."), args, sink, sink);
+            fail("IOException expected");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testToAbsolutePaths() throws Exception {
+        final File dir = new File("work").getAbsoluteFile();
+        final String[] args = GptDaemon.toAbsolutePaths(new String[]{
+                "Reproject", "-t", "out.dim", "-f", "GeoTIFF", "-c", "16M", "-PcrsCode=EPSG:4326",
+                "-Ssource=in.dim", "in1.dim", new File("in2.dim").getAbsolutePath()
+        }, dir);
+        assertArrayEquals(new String[]{
+                "Reproject", "-t", new File(dir, "out.dim").getPath(), "-f", "GeoTIFF", "-c", "16M",
+                "-PcrsCode=EPSG:4326", "-Ssource=" + new File(dir, "in.dim").getPath(),
+                new File(dir, "in1.dim").getPath(), new File("in2.dim").getAbsolutePath()
+        }, args);
+
+        final String[] graphArgs = GptDaemon.toAbsolutePaths(new String[]{"graph.xml", "-Tout=out.dim"}, dir);
+        assertArrayEquals(new String[]{
+                new File(dir, "graph.xml").getPath(), "-Tout=" + new File(dir, "out.dim").getPath()
+        }, graphArgs);
+    }
+}
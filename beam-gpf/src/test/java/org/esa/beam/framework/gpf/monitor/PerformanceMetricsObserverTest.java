@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.framework.gpf.monitor;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.gpf.GPF;
+import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
+import org.esa.beam.framework.gpf.Tile;
+import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class PerformanceMetricsObserverTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, TimeHistogram.getBucketIndex(0L));
+        assertEquals(0, TimeHistogram.getBucketIndex(999L));
+        assertEquals(1, TimeHistogram.getBucketIndex(1000L));
+        assertEquals(2, TimeHistogram.getBucketIndex(2000L));
+        assertEquals(2, TimeHistogram.getBucketIndex(3999L));
+        assertEquals(11, TimeHistogram.getBucketIndex(1000000L));
+        assertEquals(TimeHistogram.NUM_BUCKETS - 1, TimeHistogram.getBucketIndex(Long.MAX_VALUE));
+
+        final TimeHistogram histogram = new TimeHistogram();
+        histogram.add(1500L);
+        histogram.add(1800L);
+        histogram.add(10L);
+        final long[] counts = histogram.getCounts();
+        assertEquals(TimeHistogram.NUM_BUCKETS, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(2, TimeHistogram.getUpperBoundMicros(1));
+    }
+
+    @Test
+    public void testQuote() {
+        assertEquals("\"a\\\"b\\\\c\\u000a\"", PerformanceMetricsObserver.quote("a\"b\\c\n"));
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        final File reportFile = File.createTempFile("PerformanceMetricsObserverTest", ".json");
+        System.setProperty(GPF.TILE_COMPUTATION_OBSERVER_PROPERTY, PerformanceMetricsObserver.class.getName());
+        System.setProperty(GPF.METRICS_REPORT_PROPERTY, reportFile.getPath());
+        try {
+            final FillOp op = new FillOp();
+            final Product product = op.getTargetProduct();
+            for (Band band : product.getBands()) {
+                band.getSourceImage().getData();
+            }
+            op.stopTileComputationObservation();
+
+            final String report = new String(Files.readAllBytes(reportFile.toPath()), "UTF-8");
+            assertTrue(report, report.contains("\"alias\": \"PerformanceMetricsObserverTest.Fill\""));
+            // 2 bands of 2 x 2 tiles
+            assertTrue(report, report.contains("{\"name\": \"a\", \"tileCount\": 4,"));
+            assertTrue(report, report.contains("{\"name\": \"b\", \"tileCount\": 4,"));
+            assertTrue(report, report.contains("\"class\": \"" + FillOp.class.getName() + "\",\n     \"tileCount\": 8,"));
+            assertTrue(report, report.contains("\"readers\": []"));
+        } finally {
+            System.clearProperty(GPF.TILE_COMPUTATION_OBSERVER_PROPERTY);
+            System.clearProperty(GPF.METRICS_REPORT_PROPERTY);
+            reportFile.delete();
+        }
+    }
+
+    @OperatorMetadata(alias = "PerformanceMetricsObserverTest.Fill")
+    public static class FillOp extends Operator {
+
+        @Override
+        public void initialize() throws OperatorException {
+            final Product product = new Product("fill", "fill", 20, 20);
+            product.addBand("a", ProductData.TYPE_INT32);
+            product.addBand("b", ProductData.TYPE_INT32);
+            product.setPreferredTileSize(10, 10);
+            setTargetProduct(product);
+        }
+
+        @Override
+        public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) throws OperatorException {
+            for (Tile.Pos pos : targetTile) {
+                targetTile.setSample(pos.x, pos.y, pos.x + pos.y);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.gpf.operators.standard;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class WriteJournalTest {
+
+    private static final String SIGNATURE = "BEAM-DIMAP 100x80 50x40 a:30 b:11";
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        journalFile = WriteJournal.getJournalFile(File.createTempFile("WriteJournalTest", ".dim"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journalFile.delete();
+        new File(journalFile.getPath().replace(WriteJournal.FILE_EXTENSION, "")).delete();
+    }
+
+    @Test
+    public void testGetJournalFile() {
+        assertEquals(new File("out/product.dim.journal"), WriteJournal.getJournalFile(new File("out/product.dim")));
+    }
+
+    @Test
+    public void testCommittedTilesAreRestored() throws IOException {
+        try (WriteJournal journal = WriteJournal.create(journalFile, SIGNATURE, 2, 2, 2)) {
+            journal.add(0, 1, 0);
+            journal.add(1, 0, 1);
+            assertEquals(2, journal.getNumPendingRecords());
+            assertTrue(journal.isWritten(0, 1, 0));
+            journal.commit();
+            assertEquals(0, journal.getNumPendingRecords());
+            // not committed
+            journal.add(1, 1, 1);
+        }
+
+        try (WriteJournal journal = WriteJournal.open(journalFile, SIGNATURE, 2, 2, 2)) {
+            assertNotNull(journal);
+            assertEquals(2, journal.getNumWritten());
+            assertTrue(journal.isWritten(0, 1, 0));
+            assertTrue(journal.isWritten(1, 0, 1));
+            assertFalse(journal.isWritten(0, 0, 0));
+            assertFalse(journal.isWritten(1, 1, 1));
+
+            journal.add(1, 1, 1);
+            journal.commit();
+        }
+
+        try (WriteJournal journal = WriteJournal.open(journalFile, SIGNATURE, 2, 2, 2)) {
+            assertNotNull(journal);
+            assertEquals(3, journal.getNumWritten());
+            assertTrue(journal.isWritten(1, 1, 1));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        try (WriteJournal journal = WriteJournal.create(journalFile, SIGNATURE, 2, 2, 2)) {
+            journal.add(0, 0, 0);
+            journal.commit();
+        }
+        // a crash while appending "1 1 1\n"
+        try (OutputStream stream = new FileOutputStream(journalFile, true)) {
+            stream.write("1 1".getBytes("US-ASCII"));
+        }
+
+        try (WriteJournal journal = WriteJournal.open(journalFile, SIGNATURE, 2, 2, 2)) {
+            assertNotNull(journal);
+            assertEquals(1, journal.getNumWritten());
+            assertFalse(journal.isWritten(1, 1, 0));
+            journal.add(0, 1, 1);
+            journal.commit();
+        }
+
+        try (WriteJournal journal = WriteJournal.open(journalFile, SIGNATURE, 2, 2, 2)) {
+            assertNotNull(journal);
+            assertEquals(2, journal.getNumWritten());
+            assertTrue(journal.isWritten(0, 0, 0));
+            assertTrue(journal.isWritten(0, 1, 1));
+        }
+    }
+
+    @Test
+    public void testOtherLayoutIsNotResumed() throws IOException {
+        assertNull(WriteJournal.open(journalFile, SIGNATURE, 2, 2, 2));
+
+        WriteJournal.create(journalFile, SIGNATURE, 2, 2, 2).close();
+        assertNull(WriteJournal.open(journalFile, "BEAM-DIMAP 100x80 50x40 a:30", 1, 2, 2));
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        final WriteJournal journal = WriteJournal.create(journalFile, SIGNATURE, 2, 2, 2);
+        journal.add(0, 0, 0);
+        assertTrue(journalFile.exists());
+        journal.delete();
+        assertFalse(journalFile.exists());
+        // no effect after deletion
+        journal.commit();
+        assertFalse(journalFile.exists());
+    }
+}
@@ -22,6 +22,7 @@ import org.esa.beam.framework.dataio.ProductIO;
 import org.esa.beam.framework.datamodel.*;
 import org.esa.beam.framework.gpf.GPF;
 import org.esa.beam.framework.gpf.Operator;
+import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
 import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.Tile.Pos;
@@ -37,6 +38,7 @@ import javax.media.jai.TileScheduler;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class WriteOpTest extends TestCase {
@@ -117,6 +119,107 @@ public class WriteOpTest extends TestCase {
         productOnDisk.dispose();
     }
 
+    public void testResume() throws Exception {
+        final File journalFile = WriteJournal.getJournalFile(outputFile);
+
+        new WriteOp(new RampOp().getTargetProduct(), outputFile, ProductIO.DEFAULT_FORMAT_NAME).writeProduct(ProgressMonitor.NULL);
+        assertFalse(journalFile.exists());
+
+        // simulate a run which has written the upper row of tiles before it died
+        final String signature = ProductIO.DEFAULT_FORMAT_NAME + " 8x8 4x4 ramp:" + ProductData.TYPE_INT32;
+        try (WriteJournal journal = WriteJournal.create(journalFile, signature, 1, 2, 2)) {
+            journal.add(0, 0, 0);
+            journal.add(0, 1, 0);
+            journal.commit();
+        }
+
+        final RampOp rampOp = new RampOp();
+        final WriteOp writeOp = new WriteOp(rampOp.getTargetProduct(), outputFile, ProductIO.DEFAULT_FORMAT_NAME);
+        writeOp.setResume(true);
+        writeOp.writeProduct(ProgressMonitor.NULL);
+        assertEquals(2, rampOp.tileCount.get());
+        assertFalse(journalFile.exists());
+
+        final Product productOnDisk = ProductIO.readProduct(outputFile);
+        try {
+            final Band band = productOnDisk.getBand("ramp");
+            band.loadRasterData();
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    assertEquals(x + 10 * y, band.getPixelInt(x, y));
+                }
+            }
+        } finally {
+            productOnDisk.dispose();
+        }
+    }
+
+    public void testJournaledOutputIsKeptOnFailure() throws Exception {
+        final File journalFile = WriteJournal.getJournalFile(outputFile);
+
+        final WriteOp failingWriteOp = new WriteOp(new FailingRampOp().getTargetProduct(), outputFile,
+                                                   ProductIO.DEFAULT_FORMAT_NAME);
+        assertTrue(failingWriteOp.isDeleteOutputOnFailure());
+        failingWriteOp.setJournaling(true);
+        try {
+            failingWriteOp.writeProduct(ProgressMonitor.NULL);
+            fail("OperatorException expected");
+        } catch (OperatorException expected) {
+        }
+        assertTrue(outputFile.exists());
+        assertTrue(journalFile.exists());
+
+        final WriteOp writeOp = new WriteOp(new RampOp().getTargetProduct(), outputFile, ProductIO.DEFAULT_FORMAT_NAME);
+        writeOp.setResume(true);
+        writeOp.writeProduct(ProgressMonitor.NULL);
+        assertFalse(journalFile.exists());
+
+        final Product productOnDisk = ProductIO.readProduct(outputFile);
+        try {
+            final Band band = productOnDisk.getBand("ramp");
+            band.loadRasterData();
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    assertEquals(x + 10 * y, band.getPixelInt(x, y));
+                }
+            }
+        } finally {
+            productOnDisk.dispose();
+        }
+    }
+
+    public void testNoJournalWithoutResumeOrJournaling() throws Exception {
+        final File journalFile = WriteJournal.getJournalFile(outputFile);
+        try {
+            new WriteOp(new FailingRampOp().getTargetProduct(), outputFile, ProductIO.DEFAULT_FORMAT_NAME).writeProduct(ProgressMonitor.NULL);
+            fail("OperatorException expected");
+        } catch (OperatorException expected) {
+        }
+        assertFalse(journalFile.exists());
+        assertFalse(outputFile.exists());
+    }
+
+    public static class RampOp extends Operator {
+
+        private final AtomicInteger tileCount = new AtomicInteger();
+
+        @Override
+        public void initialize() {
+            final Product product = new Product("ramp", "ramp", 8, 8);
+            product.addBand("ramp", ProductData.TYPE_INT32);
+            product.setPreferredTileSize(4, 4);
+            setTargetProduct(product);
+        }
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            tileCount.incrementAndGet();
+            for (Pos pos : targetTile) {
+                targetTile.setSample(pos.x, pos.y, pos.x + 10 * pos.y);
+            }
+        }
+    }
+
     /**
      * Some algorithm.
      */
@@ -169,4 +272,15 @@ public class WriteOpTest extends TestCase {
         }
     }
 
+
+    public static class FailingRampOp extends RampOp {
+
+        @Override
+        public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) {
+            if (targetTile.getMinY() > 0) {
+                throw new OperatorException("failure in the lower tile row");
+            }
+            super.computeTile(band, targetTile, pm);
+        }
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.landsat.tgz;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Checkpoints within a gzip file, which allow to start decompressing the file at (almost) any position
+ * of the uncompressed data.
+ * <p/>
+ * A checkpoint is placed at the start of a deflate block which starts on a byte boundary. It records the position
+ * of the block in the uncompressed data and in the file, and the last 32 KB of uncompressed data preceding it,
+ * the window which back-references of the block may refer to. The compressed data following the checkpoint is
+ * handed to a raw {@link Inflater}, with the window as its dictionary.
+ * <p/>
+ * The checkpoints are created by {@link IndexingGzipInputStream}.
+ */
+class GzipIndex {
+
+    static final int WINDOW_SIZE = 32 * 1024;
+    /**
+     * The default number of uncompressed bytes between two checkpoints. At most this number of bytes
+     * needs to be decompressed before reaching a position, and an index needs about 4 KB of memory per MB of data.
+     */
+    static final long DEFAULT_SPACING = 8L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<Checkpoint> checkpoints;
+
+    GzipIndex(List<Checkpoint> checkpoints) {
+        this.checkpoints = Collections.unmodifiableList(new ArrayList<>(checkpoints));
+    }
+
+    List<Checkpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Opens a stream on the uncompressed data of the given gzip file, which is positioned at the given offset.
+     *
+     * @param gzipFile the gzip file this index has been created for
+     * @param offset   the offset within the uncompressed data
+     *
+     * @return the stream
+     *
+     * @throws IOException if the file cannot be read
+     */
+    InputStream openStream(File gzipFile, long offset) throws IOException {
+        if (checkpoints.isEmpty()) {
+            throw new IOException("Empty index for '" + gzipFile.getName() + "'.");
+        }
+        final CheckpointInputStream stream = new CheckpointInputStream(gzipFile);
+        try {
+            stream.start(findCheckpoint(offset));
+            TarIndex.skipFully(stream, offset - stream.position);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return stream;
+    }
+
+    /**
+     * @return the index of the last checkpoint at or before the given offset
+     */
+    int findCheckpoint(long offset) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (checkpoints.get(mid).getOut() <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+            output.writeLong(checkpoint.getOut());
+            output.writeLong(checkpoint.getIn());
+            output.writeInt(checkpoint.getWindow().length);
+            output.write(checkpoint.getWindow());
+        }
+    }
+
+    static GzipIndex read(DataInput input) throws IOException {
+        final int count = input.readInt();
+        final List<Checkpoint> checkpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long out = input.readLong();
+            final long in = input.readLong();
+            final byte[] window = new byte[input.readInt()];
+            input.readFully(window);
+            checkpoints.add(new Checkpoint(out, in, window));
+        }
+        return new GzipIndex(checkpoints);
+    }
+
+    static class Checkpoint {
+
+        private final long out;
+        private final long in;
+        private final byte[] window;
+
+        Checkpoint(long out, long in, byte[] window) {
+            this.out = out;
+            this.in = in;
+            this.window = window;
+        }
+
+        /**
+         * @return the position within the uncompressed data
+         */
+        long getOut() {
+            return out;
+        }
+
+        /**
+         * @return the position of the block within the compressed file
+         */
+        long getIn() {
+            return in;
+        }
+
+        /**
+         * @return the uncompressed data preceding the checkpoint, empty at the start of a gzip member
+         */
+        byte[] getWindow() {
+            return window;
+        }
+
+        boolean isMemberStart() {
+            return window.length == 0;
+        }
+    }
+
+    /*
+     * Inflates the data following a checkpoint. Continues with the next gzip member, if any.
+     */
+    private class CheckpointInputStream extends InputStream {
+
+        private final File gzipFile;
+        private final byte[] input;
+        private FileInputStream fileStream;
+        private Inflater inflater;
+        private int checkpointIndex;
+        private long position;
+
+        private CheckpointInputStream(File gzipFile) {
+            this.gzipFile = gzipFile;
+            input = new byte[BUFFER_SIZE];
+        }
+
+        private void start(int index) throws IOException {
+            release();
+            final Checkpoint checkpoint = checkpoints.get(index);
+            checkpointIndex = index;
+            fileStream = new FileInputStream(gzipFile);
+            fileStream.getChannel().position(checkpoint.getIn());
+            inflater = new Inflater(true);
+            if (!checkpoint.isMemberStart()) {
+                inflater.setDictionary(checkpoint.getWindow());
+            }
+            position = checkpoint.getOut();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (inflater == null) {
+                throw new IOException("Stream closed");
+            }
+            while (true) {
+                final int n;
+                try {
+                    n = inflater.inflate(b, off, len);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt gzip file '" + gzipFile.getName() + "': " + e.getMessage(), e);
+                }
+                if (n > 0) {
+                    position += n;
+                    return n;
+                }
+                if (inflater.finished()) {
+                    final int nextMember = findNextMember();
+                    if (nextMember < 0) {
+                        return -1;
+                    }
+                    start(nextMember);
+                } else if (inflater.needsInput()) {
+                    fillInput();
+                } else if (inflater.needsDictionary()) {
+                    throw new IOException("Corrupt gzip file '" + gzipFile.getName() + "': unexpected dictionary.");
+                }
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 1))];
+            long skipped = 0;
+            while (skipped < n) {
+                final int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (count < 0) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+        }
+
+        private int findNextMember() {
+            for (int i = checkpointIndex + 1; i < checkpoints.size(); i++) {
+                if (checkpoints.get(i).isMemberStart()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void fillInput() throws IOException {
+            final int n = fileStream.read(input);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of gzip file '" + gzipFile.getName() + "'.");
+            }
+            inflater.setInput(input, 0, n);
+        }
+
+        private void release() throws IOException {
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
+            if (fileStream != null) {
+                fileStream.close();
+                fileStream = null;
+            }
+        }
+    }
+}
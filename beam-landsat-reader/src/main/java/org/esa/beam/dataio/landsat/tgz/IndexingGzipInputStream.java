@@ -0,0 +1,555 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.landsat.tgz;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip stream and records {@link GzipIndex.Checkpoint checkpoints} at deflate block boundaries
+ * while doing so. {@link java.util.zip.Inflater} does not report block boundaries, hence the stream is
+ * inflated by this class itself. It is only used for the single pass which indexes an archive, all further
+ * reads are done by the {@code Inflater}, starting at the checkpoints.
+ * <p/>
+ * Deflate blocks are not aligned to bytes, but the {@code Inflater} can only start at a byte. A checkpoint is
+ * therefore placed at the first block starting on a byte boundary after the configured spacing.
+ * <p/>
+ * Streams consisting of several gzip members are supported, every member starts with a checkpoint.
+ */
+class IndexingGzipInputStream extends InputStream {
+
+    private static final int MAX_BITS = 15;
+    private static final int FAST_BITS = 10;
+    private static final int OUT_BUFFER_SIZE = 1 << 17;
+    private static final int OUT_BUFFER_MASK = OUT_BUFFER_SIZE - 1;
+    // decoding stops when this number of bytes is ready to be read, the rest of the buffer keeps the window
+    private static final int FILL_LIMIT = 1 << 16;
+
+    private static final int[] LENGTH_BASE = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+            35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {
+            0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+            3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final int[] DIST_BASE = {
+            1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+            257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DIST_EXTRA = {
+            0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+            7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private enum State {
+        MEMBER_HEADER, BLOCK_HEADER, STORED_BLOCK, HUFFMAN_BLOCK, MEMBER_TRAILER, END
+    }
+
+    private final InputStream in;
+    private final long spacing;
+    private final List<GzipIndex.Checkpoint> checkpoints;
+    private final byte[] inBuffer;
+    private final byte[] outBuffer;
+    private final CRC32 crc;
+    private final Huffman fixedLiteralCodes;
+    private final Huffman fixedDistanceCodes;
+    private final Huffman dynamicLiteralCodes;
+    private final Huffman dynamicDistanceCodes;
+    private final Huffman codeLengthCodes;
+    private final int[] lengths;
+
+    private int inPos;
+    private int inLimit;
+    private long inBase;
+    private long bitBuffer;
+    private int bitCount;
+
+    private long outCount;
+    private long readCount;
+    private long crcCount;
+    private long memberStart;
+    private long lastCheckpoint;
+
+    private State state;
+    private boolean lastBlock;
+    private int storedRemaining;
+    private Huffman literalCodes;
+    private Huffman distanceCodes;
+
+    /**
+     * @param in      the gzip stream, which must start at the beginning of the file the index refers to
+     * @param spacing the minimum number of uncompressed bytes between two checkpoints
+     */
+    IndexingGzipInputStream(InputStream in, long spacing) {
+        this.in = in;
+        this.spacing = spacing;
+        checkpoints = new ArrayList<>();
+        inBuffer = new byte[64 * 1024];
+        outBuffer = new byte[OUT_BUFFER_SIZE];
+        crc = new CRC32();
+        lengths = new int[288 + 32];
+        fixedLiteralCodes = new Huffman(288);
+        fixedDistanceCodes = new Huffman(30);
+        dynamicLiteralCodes = new Huffman(288);
+        dynamicDistanceCodes = new Huffman(30);
+        codeLengthCodes = new Huffman(19);
+        initFixedCodes();
+        state = State.MEMBER_HEADER;
+    }
+
+    /**
+     * @return the index of the part of the stream read so far
+     */
+    GzipIndex getIndex() {
+        return new GzipIndex(checkpoints);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (readCount == outCount) {
+            fill();
+            if (readCount == outCount) {
+                return -1;
+            }
+        }
+        final int n = (int) Math.min(len, outCount - readCount);
+        final int start = (int) (readCount & OUT_BUFFER_MASK);
+        final int firstPart = Math.min(n, OUT_BUFFER_SIZE - start);
+        System.arraycopy(outBuffer, start, b, off, firstPart);
+        System.arraycopy(outBuffer, 0, b, off + firstPart, n - firstPart);
+        readCount += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (readCount == outCount) {
+                fill();
+                if (readCount == outCount) {
+                    break;
+                }
+            }
+            final long step = Math.min(n - skipped, outCount - readCount);
+            readCount += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) (outCount - readCount);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void fill() throws IOException {
+        while (state != State.END && outCount - readCount < FILL_LIMIT) {
+            switch (state) {
+                case MEMBER_HEADER:
+                    readMemberHeader();
+                    break;
+                case BLOCK_HEADER:
+                    readBlockHeader();
+                    break;
+                case STORED_BLOCK:
+                    copyStored();
+                    break;
+                case HUFFMAN_BLOCK:
+                    decodeHuffman();
+                    break;
+                case MEMBER_TRAILER:
+                    readMemberTrailer();
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        updateCrc();
+    }
+
+    private void readMemberHeader() throws IOException {
+        if (getBits(16) != 0x8b1f || getBits(8) != 8) {
+            throw new ZipException("Not in GZIP format");
+        }
+        final int flags = getBits(8);
+        getBits(32); // modification time
+        getBits(16); // extra flags and OS
+        if ((flags & 4) != 0) {
+            skipBytes(getBits(16));
+        }
+        if ((flags & 8) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & 16) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & 2) != 0) {
+            getBits(16);
+        }
+        memberStart = outCount;
+        crc.reset();
+        addCheckpoint(new byte[0]);
+        lastBlock = false;
+        state = State.BLOCK_HEADER;
+    }
+
+    private void readMemberTrailer() throws IOException {
+        updateCrc();
+        dropBits(bitCount & 7);
+        final long expectedCrc = getBits(16) | ((long) getBits(16) << 16);
+        final long expectedSize = getBits(16) | ((long) getBits(16) << 16);
+        if (expectedCrc != crc.getValue()) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        if (expectedSize != ((outCount - memberStart) & 0xffffffffL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        // another member may follow, anything else is ignored as GZIPInputStream does
+        refill();
+        if (bitCount >= 16 && (bitBuffer & 0xffff) == 0x8b1f) {
+            state = State.MEMBER_HEADER;
+        } else {
+            state = State.END;
+        }
+    }
+
+    private void readBlockHeader() throws IOException {
+        if (lastBlock) {
+            state = State.MEMBER_TRAILER;
+            return;
+        }
+        // Inflater cannot start within a byte, so checkpoints are only placed at blocks starting on a byte boundary
+        if (outCount - lastCheckpoint >= spacing && (bitCount & 7) == 0) {
+            addCheckpoint(getWindow());
+        }
+        lastBlock = getBits(1) == 1;
+        final int type = getBits(2);
+        if (type == 0) {
+            dropBits(bitCount & 7);
+            final int length = getBits(16);
+            if ((getBits(16) ^ 0xffff) != length) {
+                throw new ZipException("invalid stored block lengths");
+            }
+            storedRemaining = length;
+            state = State.STORED_BLOCK;
+        } else if (type == 1) {
+            literalCodes = fixedLiteralCodes;
+            distanceCodes = fixedDistanceCodes;
+            state = State.HUFFMAN_BLOCK;
+        } else if (type == 2) {
+            readDynamicCodes();
+            literalCodes = dynamicLiteralCodes;
+            distanceCodes = dynamicDistanceCodes;
+            state = State.HUFFMAN_BLOCK;
+        } else {
+            throw new ZipException("invalid block type");
+        }
+    }
+
+    private void readDynamicCodes() throws IOException {
+        final int literalCount = getBits(5) + 257;
+        final int distanceCount = getBits(5) + 1;
+        final int codeLengthCount = getBits(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("too many length or distance symbols");
+        }
+        Arrays.fill(lengths, 0, 19, 0);
+        for (int i = 0; i < codeLengthCount; i++) {
+            lengths[CODE_LENGTH_ORDER[i]] = getBits(3);
+        }
+        codeLengthCodes.build(lengths, 0, 19);
+        int index = 0;
+        while (index < literalCount + distanceCount) {
+            final int symbol = decode(codeLengthCodes);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+            int length = 0;
+            final int repeat;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("invalid bit length repeat");
+                }
+                length = lengths[index - 1];
+                repeat = 3 + getBits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + getBits(3);
+            } else {
+                repeat = 11 + getBits(7);
+            }
+            if (index + repeat > literalCount + distanceCount) {
+                throw new ZipException("invalid bit length repeat");
+            }
+            Arrays.fill(lengths, index, index + repeat, length);
+            index += repeat;
+        }
+        if (lengths[256] == 0) {
+            throw new ZipException("invalid code -- missing end-of-block");
+        }
+        dynamicLiteralCodes.build(lengths, 0, literalCount);
+        dynamicDistanceCodes.build(lengths, literalCount, distanceCount);
+    }
+
+    private void decodeHuffman() throws IOException {
+        while (outCount - readCount < FILL_LIMIT) {
+            final int symbol = decode(literalCodes);
+            if (symbol < 256) {
+                outBuffer[(int) (outCount++ & OUT_BUFFER_MASK)] = (byte) symbol;
+            } else if (symbol == 256) {
+                state = State.BLOCK_HEADER;
+                return;
+            } else {
+                final int lengthSymbol = symbol - 257;
+                if (lengthSymbol >= LENGTH_BASE.length) {
+                    throw new ZipException("invalid literal/length code");
+                }
+                final int length = LENGTH_BASE[lengthSymbol] + getBits(LENGTH_EXTRA[lengthSymbol]);
+                final int distanceSymbol = decode(distanceCodes);
+                if (distanceSymbol >= DIST_BASE.length) {
+                    throw new ZipException("invalid distance code");
+                }
+                final int distance = DIST_BASE[distanceSymbol] + getBits(DIST_EXTRA[distanceSymbol]);
+                if (distance > outCount - memberStart) {
+                    throw new ZipException("invalid distance too far back");
+                }
+                for (int i = 0; i < length; i++) {
+                    outBuffer[(int) (outCount & OUT_BUFFER_MASK)] =
+                            outBuffer[(int) ((outCount - distance) & OUT_BUFFER_MASK)];
+                    outCount++;
+                }
+            }
+        }
+    }
+
+    private void copyStored() throws IOException {
+        while (storedRemaining > 0 && outCount - readCount < FILL_LIMIT) {
+            if (bitCount >= 8) {
+                outBuffer[(int) (outCount++ & OUT_BUFFER_MASK)] = (byte) getBits(8);
+                storedRemaining--;
+                continue;
+            }
+            if (inPos == inLimit && !loadInput()) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            final int start = (int) (outCount & OUT_BUFFER_MASK);
+            final int n = Math.min(Math.min(storedRemaining, inLimit - inPos),
+                                   Math.min(FILL_LIMIT - (int) (outCount - readCount), OUT_BUFFER_SIZE - start));
+            System.arraycopy(inBuffer, inPos, outBuffer, start, n);
+            inPos += n;
+            outCount += n;
+            storedRemaining -= n;
+        }
+        if (storedRemaining == 0) {
+            state = State.BLOCK_HEADER;
+        }
+    }
+
+    private void addCheckpoint(byte[] window) {
+        checkpoints.add(new GzipIndex.Checkpoint(outCount, inBase + inPos - bitCount / 8, window));
+        lastCheckpoint = outCount;
+    }
+
+    private byte[] getWindow() {
+        final byte[] window = new byte[(int) Math.min(GzipIndex.WINDOW_SIZE, outCount - memberStart)];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = outBuffer[(int) ((outCount - window.length + i) & OUT_BUFFER_MASK)];
+        }
+        return window;
+    }
+
+    private void updateCrc() {
+        while (crcCount < outCount) {
+            final int start = (int) (crcCount & OUT_BUFFER_MASK);
+            final int n = (int) Math.min(outCount - crcCount, OUT_BUFFER_SIZE - start);
+            crc.update(outBuffer, start, n);
+            crcCount += n;
+        }
+    }
+
+    private int decode(Huffman huffman) throws IOException {
+        if (bitCount < MAX_BITS) {
+            refill();
+        }
+        final int entry = huffman.fast[(int) (bitBuffer & ((1 << FAST_BITS) - 1))];
+        final int length = entry & 15;
+        if (entry != 0 && length <= bitCount) {
+            dropBits(length);
+            return entry >>> 4;
+        }
+        // canonical decoding, one bit at a time
+        int code = 0;
+        int first = 0;
+        int index = 0;
+        for (int len = 1; len <= MAX_BITS; len++) {
+            code |= getBits(1);
+            final int count = huffman.count[len];
+            if (code - count < first) {
+                return huffman.symbols[index + (code - first)];
+            }
+            index += count;
+            first = (first + count) << 1;
+            code <<= 1;
+        }
+        throw new ZipException("invalid code");
+    }
+
+    private int getBits(int n) throws IOException {
+        if (bitCount < n) {
+            refill();
+            if (bitCount < n) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+        }
+        final int value = (int) (bitBuffer & ((1L << n) - 1));
+        dropBits(n);
+        return value;
+    }
+
+    private void dropBits(int n) {
+        bitBuffer >>>= n;
+        bitCount -= n;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            getBits(8);
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        while (getBits(8) != 0) {
+            // skip
+        }
+    }
+
+    private void refill() throws IOException {
+        while (bitCount <= 56) {
+            if (inPos == inLimit && !loadInput()) {
+                return;
+            }
+            bitBuffer |= (long) (inBuffer[inPos++] & 0xff) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private boolean loadInput() throws IOException {
+        inBase += inLimit;
+        inPos = 0;
+        inLimit = 0;
+        int n;
+        do {
+            n = in.read(inBuffer);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        inLimit = n;
+        return true;
+    }
+
+    private void initFixedCodes() {
+        Arrays.fill(lengths, 0, 144, 8);
+        Arrays.fill(lengths, 144, 256, 9);
+        Arrays.fill(lengths, 256, 280, 7);
+        Arrays.fill(lengths, 280, 288, 8);
+        Arrays.fill(lengths, 288, 288 + 30, 5);
+        try {
+            fixedLiteralCodes.build(lengths, 0, 288);
+            fixedDistanceCodes.build(lengths, 288, 30);
+        } catch (ZipException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * A canonical Huffman code. Codes of up to FAST_BITS bits are decoded by a single table lookup.
+     */
+    private static final class Huffman {
+
+        private final int[] count;
+        private final int[] symbols;
+        private final int[] fast;
+        private final int[] offsets;
+        private final int[] nextCode;
+
+        private Huffman(int maxSymbols) {
+            count = new int[MAX_BITS + 1];
+            symbols = new int[maxSymbols];
+            fast = new int[1 << FAST_BITS];
+            offsets = new int[MAX_BITS + 2];
+            nextCode = new int[MAX_BITS + 1];
+        }
+
+        private void build(int[] lengths, int offset, int n) throws ZipException {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) {
+                count[lengths[offset + i]]++;
+            }
+            int left = 1;
+            for (int len = 1; len <= MAX_BITS; len++) {
+                left = (left << 1) - count[len];
+                if (left < 0) {
+                    throw new ZipException("invalid code lengths set");
+                }
+            }
+            offsets[1] = 0;
+            for (int len = 1; len < MAX_BITS; len++) {
+                offsets[len + 1] = offsets[len] + count[len];
+            }
+            int code = 0;
+            for (int len = 1; len <= MAX_BITS; len++) {
+                code = (code + (len == 1 ? 0 : count[len - 1])) << 1;
+                nextCode[len] = code;
+            }
+            Arrays.fill(fast, 0);
+            for (int symbol = 0; symbol < n; symbol++) {
+                final int len = lengths[offset + symbol];
+                if (len == 0) {
+                    continue;
+                }
+                symbols[offsets[len]++] = symbol;
+                final int symbolCode = nextCode[len]++;
+                if (len <= FAST_BITS) {
+                    final int reversed = Integer.reverse(symbolCode) >>> (32 - len);
+                    for (int i = reversed; i < fast.length; i += 1 << len) {
+                        fast[i] = (symbol << 4) | len;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2014 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.landsat.tgz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An index over the entries of a tar stream. For each entry the position of its data within the
+ * (uncompressed) tar stream and its size are recorded, so that single entries can be accessed without
+ * unpacking the whole archive.
+ * <p/>
+ * Entry names are normalised, i.e. they use '/' as separator and have no leading "./" or "/" and no trailing "/".
+ * <p/>
+ * The index of a gzip compressed archive also holds the {@link GzipIndex} of the archive file.
+ */
+class TarIndex {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String INDEX_FORMAT = "TarIndex-2";
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> entryMap;
+    private final Map<String, SortedSet<String>> directoryMap;
+    private final GzipIndex gzipIndex;
+
+    TarIndex(List<Entry> entries) {
+        this(entries, null);
+    }
+
+    TarIndex(List<Entry> entries, GzipIndex gzipIndex) {
+        this.gzipIndex = gzipIndex;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.entryMap = new HashMap<>();
+        this.directoryMap = new HashMap<>();
+        directoryMap.put("", new TreeSet<String>());
+        for (Entry entry : entries) {
+            entryMap.put(entry.getName(), entry);
+            registerPath(entry.getName(), entry.isDirectory());
+        }
+    }
+
+    /**
+     * Scans the headers of the given tar stream. Entry data is skipped.
+     *
+     * @param tarStream the (uncompressed) tar stream
+     *
+     * @return the index
+     *
+     * @throws IOException if the stream cannot be read or is not a valid tar stream
+     */
+    static TarIndex scan(InputStream tarStream) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        final byte[] header = new byte[BLOCK_SIZE];
+        long position = 0;
+        String longName = null;
+        while (readBlock(tarStream, header)) {
+            position += BLOCK_SIZE;
+            if (isZeroBlock(header)) {
+                break;
+            }
+            String name = parseString(header, 0, 100);
+            final long size = parseNumber(header, 124, 12);
+            final char type = (char) header[156];
+            if (parseString(header, 257, 6).startsWith("ustar")) {
+                final String prefix = parseString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            final long paddedSize = (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+            if (type == 'L' || type == 'x') {
+                // GNU long name or PAX extended header, both apply to the next entry
+                final byte[] data = readFully(tarStream, (int) size);
+                skipFully(tarStream, paddedSize - size);
+                position += paddedSize;
+                final String extendedName = type == 'L' ? parseString(data, 0, data.length) : parsePaxPath(data);
+                if (extendedName != null) {
+                    longName = extendedName;
+                }
+                continue;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            final boolean directory = type == '5' || name.endsWith("/");
+            final boolean regularFile = type == '0' || type == '\0' || type == '7';
+            final String normalisedName = normalise(name);
+            if (!normalisedName.isEmpty() && (directory || regularFile)) {
+                entries.add(new Entry(normalisedName, position, directory ? 0 : size, directory));
+            }
+            skipFully(tarStream, paddedSize);
+            position += paddedSize;
+        }
+        return new TarIndex(entries);
+    }
+
+    /**
+     * Reads an index previously written by {@link #write}.
+     *
+     * @return the index, or {@code null} if the index file does not exist, is invalid
+     *         or does not belong to the given archive size and modification time
+     */
+    static TarIndex read(File indexFile, long archiveSize, long archiveLastModified) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new InflaterInputStream(new FileInputStream(indexFile))))) {
+            if (!INDEX_FORMAT.equals(input.readUTF())
+                || input.readLong() != archiveSize || input.readLong() != archiveLastModified) {
+                return null;
+            }
+            final int entryCount = input.readInt();
+            final List<Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                final String name = input.readUTF();
+                entries.add(new Entry(name, input.readLong(), input.readLong(), input.readBoolean()));
+            }
+            final GzipIndex gzipIndex = input.readBoolean() ? GzipIndex.read(input) : null;
+            return new TarIndex(entries, gzipIndex);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    void write(File indexFile, long archiveSize, long archiveLastModified) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(indexFile))))) {
+            output.writeUTF(INDEX_FORMAT);
+            output.writeLong(archiveSize);
+            output.writeLong(archiveLastModified);
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                output.writeUTF(entry.getName());
+                output.writeLong(entry.getOffset());
+                output.writeLong(entry.getSize());
+                output.writeBoolean(entry.isDirectory());
+            }
+            output.writeBoolean(gzipIndex != null);
+            if (gzipIndex != null) {
+                gzipIndex.write(output);
+            }
+        }
+    }
+
+    /**
+     * @return the checkpoints within the gzip compressed archive, or {@code null} if the archive is not gzip compressed
+     */
+    GzipIndex getGzipIndex() {
+        return gzipIndex;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    Entry getEntry(String path) {
+        return entryMap.get(normalise(path));
+    }
+
+    boolean isDirectory(String path) {
+        return directoryMap.containsKey(normalise(path));
+    }
+
+    /**
+     * @return the names of the children of the given directory, or {@code null} if the path is not a directory
+     */
+    String[] list(String path) {
+        final SortedSet<String> children = directoryMap.get(normalise(path));
+        if (children == null) {
+            return null;
+        }
+        return children.toArray(new String[children.size()]);
+    }
+
+    String[] getFileNames() {
+        final List<String> fileNames = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (!entry.isDirectory()) {
+                fileNames.add(entry.getName());
+            }
+        }
+        return fileNames.toArray(new String[fileNames.size()]);
+    }
+
+    static String normalise(String path) {
+        String name = path.replace('\\', '/');
+        while (name.startsWith("./")) {
+            name = name.substring(2);
+        }
+        while (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        while (name.endsWith("/")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        if (name.equals(".")) {
+            return "";
+        }
+        return name;
+    }
+
+    private void registerPath(String name, boolean directory) {
+        if (directory && !directoryMap.containsKey(name)) {
+            directoryMap.put(name, new TreeSet<String>());
+        }
+        final int sepIndex = name.lastIndexOf('/');
+        final String parent = sepIndex == -1 ? "" : name.substring(0, sepIndex);
+        final String child = name.substring(sepIndex + 1);
+        if (!directoryMap.containsKey(parent)) {
+            registerPath(parent, true);
+        }
+        directoryMap.get(parent).add(child);
+    }
+
+    private static String parsePaxPath(byte[] data) {
+        // records have the form "<length> <key>=<value>\n"
+        int index = 0;
+        while (index < data.length) {
+            int spaceIndex = index;
+            while (spaceIndex < data.length && data[spaceIndex] != ' ') {
+                spaceIndex++;
+            }
+            if (spaceIndex == data.length) {
+                break;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(new String(data, index, spaceIndex - index, CHARSET));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            if (length <= 0 || index + length > data.length) {
+                break;
+            }
+            final String record = new String(data, spaceIndex + 1, index + length - spaceIndex - 2, CHARSET);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            index += length;
+        }
+        return null;
+    }
+
+    private static String parseString(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, CHARSET);
+    }
+
+    static long parseNumber(byte[] block, int offset, int length) throws IOException {
+        if ((block[offset] & 0x80) != 0) {
+            // base-256 encoding, used for sizes above 8 GB
+            long value = block[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (block[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final byte b = block[i];
+            if (b == 0 || b == ' ') {
+                if (value == 0 && b == ' ') {
+                    continue;
+                }
+                break;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header, illegal octal digit '" + (char) b + "'.");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean readBlock(InputStream stream, byte[] block) throws IOException {
+        int length = 0;
+        while (length < block.length) {
+            final int n = stream.read(block, length, block.length - length);
+            if (n < 0) {
+                if (length == 0) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of tar stream.");
+            }
+            length += n;
+        }
+        return true;
+    }
+
+    private static byte[] readFully(InputStream stream, int length) throws IOException {
+        final byte[] data = new byte[length];
+        if (length > 0 && !readBlock(stream, data)) {
+            throw new EOFException("Unexpected end of tar stream.");
+        }
+        return data;
+    }
+
+    static void skipFully(InputStream stream, long length) throws IOException {
+        while (length > 0) {
+            final long n = stream.skip(length);
+            if (n <= 0) {
+                // skip() may return 0 without being at the end of the stream, so check by reading
+                if (stream.read() < 0) {
+                    throw new EOFException("Unexpected end of tar stream.");
+                }
+                length--;
+            } else {
+                length -= n;
+            }
+        }
+    }
+
+    static class Entry {
+
+        private final String name;
+        private final long offset;
+        private final long size;
+        private final boolean directory;
+
+        Entry(String name, long offset, long size, boolean directory) {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+            this.directory = directory;
+        }
+
+        /**
+         * @return the normalised entry name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the position of the entry data within the uncompressed tar stream
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        boolean isDirectory() {
+            return directory;
+        }
+    }
+}
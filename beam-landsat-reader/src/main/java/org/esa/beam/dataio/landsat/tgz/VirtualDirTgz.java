@@ -18,26 +18,76 @@ package org.esa.beam.dataio.landsat.tgz;
 
 import com.bc.ceres.core.VirtualDir;
 import org.esa.beam.util.io.FileUtils;
+import org.esa.beam.util.logging.BeamLogManager;
 import org.xeustechnologies.jtar.TarEntry;
 import org.xeustechnologies.jtar.TarInputStream;
 import ucar.unidata.io.bzip2.CBZip2InputStream;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
+/**
+ * A {@link VirtualDir} on tar archives, which may be compressed by gzip or bzip2.
+ * <p/>
+ * By default, the archive is accessed via a {@link TarIndex} of its entries: listing the archive does not
+ * unpack anything, and single entries are streamed or extracted on demand. For plain tar archives entries
+ * are read directly at their position within the archive. For gzip compressed archives the index also holds
+ * {@link GzipIndex checkpoints} of the compressed stream, hence entries are read by starting decompression at
+ * the nearest checkpoint, and a file is extracted in parallel, each thread starting at another checkpoint.
+ * Bzip2 compressed archives cannot be accessed randomly, hence the first request for a file starts a single
+ * background pass that extracts all entries in archive order, and every request only waits until its own entry
+ * is available.
+ * <p/>
+ * If the system property {@code beam.tgz.indexDir} is set, the index is stored in that directory and re-used
+ * as long as the size and modification time of the archive do not change, so that compressed archives are not
+ * scanned again. Setting the system property {@code beam.tgz.indexedAccess} to {@code false} restores the
+ * previous behaviour of unpacking the complete archive on the first file request.
+ * <p/>
+ * {@link #close()} deletes the extracted files. The instance can still be used afterwards, files are then
+ * extracted again.
+ */
 public class VirtualDirTgz extends VirtualDir {
 
+    static final String SYSPROP_INDEXED_ACCESS = "beam.tgz.indexedAccess";
+    static final String SYSPROP_INDEX_DIR = "beam.tgz.indexDir";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
     private final File archiveFile;
+    private final boolean indexedAccess;
+    private final Object extractionLock;
+    private final Set<String> extractedEntries;
     private File extractDir;
+    private TarIndex index;
+    private Thread extractionThread;
+    private ExecutorService extractionExecutor;
+    private boolean extractionDone;
+    private IOException extractionError;
+    private volatile boolean closed;
 
     public VirtualDirTgz(File tgz) throws IOException {
         if (tgz == null) {
@@ -45,6 +95,9 @@ public class VirtualDirTgz extends VirtualDir {
         }
         archiveFile = tgz;
         extractDir = null;
+        indexedAccess = Boolean.parseBoolean(System.getProperty(SYSPROP_INDEXED_ACCESS, "true"));
+        extractionLock = new Object();
+        extractedEntries = new HashSet<>();
     }
 
     @Override
@@ -54,28 +107,63 @@ public class VirtualDirTgz extends VirtualDir {
 
     @Override
     public InputStream getInputStream(String path) throws IOException {
-        final File file = getFile(path);
-        return new BufferedInputStream(new FileInputStream(file));
+        if (!indexedAccess) {
+            final File file = getFile(path);
+            return new BufferedInputStream(new FileInputStream(file));
+        }
+        final TarIndex.Entry entry = getFileEntry(path);
+        synchronized (extractionLock) {
+            if (extractedEntries.contains(entry.getName())) {
+                return new BufferedInputStream(new FileInputStream(new File(extractDir, entry.getName())));
+            }
+        }
+        return openEntryStream(entry);
     }
 
     @Override
     public File getFile(String path) throws IOException {
-        ensureUnpacked();
-        final File file = new File(extractDir, path);
-        if (!(file.isFile() || file.isDirectory())) {
-            throw new IOException();
+        if (!indexedAccess) {
+            ensureUnpacked();
+            final File file = new File(extractDir, path);
+            if (!(file.isFile() || file.isDirectory())) {
+                throw new IOException();
+            }
+            return file;
+        }
+        final TarIndex tarIndex = getIndex();
+        if (tarIndex.isDirectory(path)) {
+            final File dir = new File(ensureExtractDir(), TarIndex.normalise(path));
+            ensureDirectory(dir);
+            return dir;
+        }
+        final TarIndex.Entry entry = getFileEntry(path);
+        if (tarIndex.getGzipIndex() != null) {
+            return extractEntryInParallel(entry, tarIndex.getGzipIndex());
+        } else if (isCompressed()) {
+            return awaitExtraction(entry);
+        } else {
+            return extractEntry(entry);
         }
-        return file;
     }
 
     @Override
     public String[] list(String path) throws IOException {
-        final File file = getFile(path);
-        return file.list();
+        if (!indexedAccess) {
+            final File file = getFile(path);
+            return file.list();
+        }
+        final String[] names = getIndex().list(path);
+        if (names == null) {
+            throw new IOException("Not a directory in archive '" + archiveFile.getName() + "': " + path);
+        }
+        return names;
     }
 
     @Override
     public String[] listAllFiles() throws IOException {
+        if (indexedAccess) {
+            return getIndex().getFileNames();
+        }
         final TarInputStream tis = getTarInputStream();
 
         TarEntry entry;
@@ -90,9 +178,36 @@ public class VirtualDirTgz extends VirtualDir {
 
     @Override
     public void close() {
-        if (extractDir != null) {
-            FileUtils.deleteTree(extractDir);
-            extractDir = null;
+        closed = true;
+        final Thread thread;
+        final ExecutorService executor;
+        synchronized (extractionLock) {
+            thread = extractionThread;
+            executor = extractionExecutor;
+            extractionExecutor = null;
+        }
+        try {
+            if (thread != null) {
+                thread.join();
+            }
+            if (executor != null) {
+                // running tasks stop at their next buffer, interrupting them would close their file channels
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (extractionLock) {
+            extractedEntries.clear();
+            if (extractDir != null) {
+                FileUtils.deleteTree(extractDir);
+                extractDir = null;
+            }
+            // allow re-use, files are extracted again
+            extractionDone = false;
+            extractionError = null;
+            closed = false;
         }
     }
 
@@ -191,6 +306,330 @@ public class VirtualDirTgz extends VirtualDir {
         }
     }
 
+    synchronized TarIndex getIndex() throws IOException {
+        if (index == null) {
+            final File indexFile = getIndexFile();
+            if (indexFile != null) {
+                index = TarIndex.read(indexFile, archiveFile.length(), archiveFile.lastModified());
+            }
+            if (index == null) {
+                index = scanArchive();
+                if (indexFile != null) {
+                    try {
+                        index.write(indexFile, archiveFile.length(), archiveFile.lastModified());
+                    } catch (IOException e) {
+                        BeamLogManager.getSystemLogger().warning("Failed to write archive index: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private TarIndex scanArchive() throws IOException {
+        if (isTgz(archiveFile.getName())) {
+            try (IndexingGzipInputStream stream = new IndexingGzipInputStream(new FileInputStream(archiveFile),
+                                                                              GzipIndex.DEFAULT_SPACING)) {
+                return new TarIndex(TarIndex.scan(stream).getEntries(), stream.getIndex());
+            }
+        }
+        try (InputStream stream = openArchiveStream()) {
+            return TarIndex.scan(stream);
+        }
+    }
+
+    private File getIndexFile() throws IOException {
+        final String indexDirPath = System.getProperty(SYSPROP_INDEX_DIR);
+        if (indexDirPath == null) {
+            return null;
+        }
+        final File indexDir = new File(indexDirPath);
+        ensureDirectory(indexDir);
+        final String archivePath = archiveFile.getCanonicalPath();
+        return new File(indexDir, archiveFile.getName() + "-" + Integer.toHexString(archivePath.hashCode()) + ".idx");
+    }
+
+    private TarIndex.Entry getFileEntry(String path) throws IOException {
+        final TarIndex.Entry entry = getIndex().getEntry(path);
+        if (entry == null || entry.isDirectory()) {
+            throw new IOException("File not found in archive '" + archiveFile.getName() + "': " + path);
+        }
+        return entry;
+    }
+
+    private File ensureExtractDir() throws IOException {
+        synchronized (extractionLock) {
+            if (extractDir == null) {
+                extractDir = VirtualDir.createUniqueTempDir();
+            }
+            return extractDir;
+        }
+    }
+
+    private InputStream openEntryStream(TarIndex.Entry entry) throws IOException {
+        final GzipIndex gzipIndex = getIndex().getGzipIndex();
+        if (gzipIndex != null) {
+            return new EntryInputStream(gzipIndex.openStream(archiveFile, entry.getOffset()), entry.getSize());
+        }
+        final InputStream stream = openArchiveStream();
+        try {
+            TarIndex.skipFully(stream, entry.getOffset());
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+        return new EntryInputStream(stream, entry.getSize());
+    }
+
+    /*
+     * Extracts a single entry of a plain tar archive by reading it directly at its position.
+     */
+    private File extractEntry(TarIndex.Entry entry) throws IOException {
+        final File targetFile = new File(ensureExtractDir(), entry.getName());
+        synchronized (entry) {
+            synchronized (extractionLock) {
+                if (extractedEntries.contains(entry.getName())) {
+                    return targetFile;
+                }
+            }
+            ensureDirectory(targetFile.getParentFile());
+            try (InputStream inputStream = openEntryStream(entry)) {
+                copy(inputStream, targetFile, entry.getSize());
+            }
+            synchronized (extractionLock) {
+                extractedEntries.add(entry.getName());
+            }
+        }
+        return targetFile;
+    }
+
+    /*
+     * Extracts a single entry of a gzip compressed archive. The entry is split at the checkpoints of the archive
+     * and the parts are decompressed and written concurrently.
+     */
+    private File extractEntryInParallel(TarIndex.Entry entry, GzipIndex gzipIndex) throws IOException {
+        final File targetFile = new File(ensureExtractDir(), entry.getName());
+        synchronized (entry) {
+            synchronized (extractionLock) {
+                if (extractedEntries.contains(entry.getName())) {
+                    return targetFile;
+                }
+            }
+            ensureDirectory(targetFile.getParentFile());
+            final long entryStart = entry.getOffset();
+            final long entryEnd = entryStart + entry.getSize();
+            final List<Long> partStarts = new ArrayList<>();
+            partStarts.add(entryStart);
+            for (GzipIndex.Checkpoint checkpoint : gzipIndex.getCheckpoints()) {
+                if (checkpoint.getOut() > entryStart && checkpoint.getOut() < entryEnd) {
+                    partStarts.add(checkpoint.getOut());
+                }
+            }
+            partStarts.add(entryEnd);
+            try (RandomAccessFile file = new RandomAccessFile(targetFile, "rw")) {
+                file.setLength(entry.getSize());
+                final FileChannel channel = file.getChannel();
+                final ExecutorService executor = getExtractionExecutor();
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < partStarts.size() - 1; i++) {
+                    final long partStart = partStarts.get(i);
+                    final long partEnd = partStarts.get(i + 1);
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            extractPart(gzipIndex, partStart, partEnd, channel, partStart - entryStart);
+                            return null;
+                        }
+                    }));
+                }
+                awaitAll(futures, entry);
+            } catch (IOException e) {
+                if (!targetFile.delete()) {
+                    targetFile.deleteOnExit();
+                }
+                throw e;
+            }
+            synchronized (extractionLock) {
+                extractedEntries.add(entry.getName());
+            }
+        }
+        return targetFile;
+    }
+
+    private void extractPart(GzipIndex gzipIndex, long start, long end, FileChannel channel, long filePosition)
+            throws IOException {
+        try (InputStream inputStream = gzipIndex.openStream(archiveFile, start)) {
+            final byte[] data = new byte[(int) Math.min(BUFFER_SIZE, end - start)];
+            long remaining = end - start;
+            long position = filePosition;
+            while (remaining > 0) {
+                if (closed) {
+                    throw new IOException("Archive '" + archiveFile.getName() + "' has been closed.");
+                }
+                final int count = inputStream.read(data, 0, (int) Math.min(data.length, remaining));
+                if (count == -1) {
+                    throw new EOFException("Unexpected end of archive '" + archiveFile.getName() + "'.");
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(data, 0, count);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                remaining -= count;
+            }
+        }
+    }
+
+    private void awaitAll(List<Future<Void>> futures, TarIndex.Entry entry) throws IOException {
+        IOException error = null;
+        for (Future<Void> future : futures) {
+            try {
+                if (error != null) {
+                    // the remaining parts are not needed anymore, but must not write to the channel after it is closed
+                    future.cancel(false);
+                }
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    final Throwable cause = e.getCause();
+                    error = cause instanceof IOException ? (IOException) cause
+                            : new IOException("Failed to extract '" + entry.getName() + "'.", cause);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = new IOException("Interrupted while extracting '" + entry.getName() + "'.", e);
+                }
+            } catch (CancellationException e) {
+                // cancelled after a failure
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private ExecutorService getExtractionExecutor() {
+        synchronized (extractionLock) {
+            if (extractionExecutor == null) {
+                final int threadCount = Runtime.getRuntime().availableProcessors();
+                extractionExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "Extracting " + archiveFile.getName());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return extractionExecutor;
+        }
+    }
+
+    /*
+     * Waits until the background extraction of a compressed archive has extracted the given entry.
+     */
+    private File awaitExtraction(TarIndex.Entry entry) throws IOException {
+        synchronized (extractionLock) {
+            if (extractionThread == null && !extractionDone) {
+                startExtraction();
+            }
+            while (!extractedEntries.contains(entry.getName())) {
+                if (extractionError != null) {
+                    throw new IOException("Failed to extract '" + entry.getName() + "' from archive '"
+                                          + archiveFile.getName() + "'.", extractionError);
+                }
+                if (extractionDone) {
+                    throw new IOException("File not extracted from archive '" + archiveFile.getName() + "': "
+                                          + entry.getName());
+                }
+                try {
+                    extractionLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while extracting '" + entry.getName() + "'.", e);
+                }
+            }
+            return new File(extractDir, entry.getName());
+        }
+    }
+
+    private void startExtraction() throws IOException {
+        final File targetDir = ensureExtractDir();
+        final List<TarIndex.Entry> entries = getIndex().getEntries();
+        extractionThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                extractAll(entries, targetDir);
+            }
+        }, "Extracting " + archiveFile.getName());
+        extractionThread.setDaemon(true);
+        extractionThread.start();
+    }
+
+    private void extractAll(List<TarIndex.Entry> entries, File targetDir) {
+        IOException error = null;
+        try (InputStream stream = openArchiveStream()) {
+            long position = 0;
+            for (TarIndex.Entry entry : entries) {
+                if (closed) {
+                    break;
+                }
+                final File targetFile = new File(targetDir, entry.getName());
+                if (entry.isDirectory()) {
+                    ensureDirectory(targetFile);
+                    continue;
+                }
+                TarIndex.skipFully(stream, entry.getOffset() - position);
+                ensureDirectory(targetFile.getParentFile());
+                copy(new EntryInputStream(stream, entry.getSize()), targetFile, entry.getSize());
+                position = entry.getOffset() + entry.getSize();
+                synchronized (extractionLock) {
+                    extractedEntries.add(entry.getName());
+                    extractionLock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            synchronized (extractionLock) {
+                extractionError = error;
+                extractionDone = true;
+                extractionThread = null;
+                extractionLock.notifyAll();
+            }
+        }
+    }
+
+    private void copy(InputStream inputStream, File targetFile, long size) throws IOException {
+        try (OutputStream outStream = new BufferedOutputStream(new FileOutputStream(targetFile))) {
+            final byte[] data = new byte[(int) Math.min(BUFFER_SIZE, Math.max(1, size))];
+            long remaining = size;
+            while (remaining > 0 && !closed) {
+                final int count = inputStream.read(data, 0, (int) Math.min(data.length, remaining));
+                if (count == -1) {
+                    throw new EOFException("Unexpected end of archive '" + archiveFile.getName() + "'.");
+                }
+                outStream.write(data, 0, count);
+                remaining -= count;
+            }
+        }
+    }
+
+    private InputStream openArchiveStream() throws IOException {
+        final InputStream inputStream = new BufferedInputStream(new FileInputStream(archiveFile), BUFFER_SIZE);
+        try {
+            if (isTgz(archiveFile.getName())) {
+                return new GZIPInputStream(inputStream, 64 * 1024);
+            } else if (isTbz(archiveFile.getName())) {
+                return new CBZip2InputStream(inputStream, true);
+            }
+            return inputStream;
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
     private TarInputStream getTarInputStream() throws IOException {
         TarInputStream tis;
         if (isTgz(archiveFile.getName())) {
@@ -205,11 +644,65 @@ public class VirtualDirTgz extends VirtualDir {
         return tis;
     }
 
-    private void ensureDirectory(File targetDir) throws IOException {
+    private static void ensureDirectory(File targetDir) throws IOException {
         if (!targetDir.isDirectory()) {
             if (!targetDir.mkdirs()) {
                 throw new IOException("unable to create directory: " + targetDir.getAbsolutePath());
             }
         }
     }
+
+    /*
+     * Limits the underlying archive stream to the data of a single entry.
+     */
+    private static class EntryInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private EntryInputStream(InputStream in, long size) {
+            super(in);
+            remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
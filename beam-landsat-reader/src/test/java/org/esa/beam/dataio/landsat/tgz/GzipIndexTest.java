@@ -0,0 +1,152 @@
+package org.esa.beam.dataio.landsat.tgz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class GzipIndexTest {
+
+    private static final int SPACING = 100 * 1024;
+
+    private byte[] data;
+    private File gzipFile;
+
+    @Before
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        data = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextInt(16) + (i / 4096 % 8) * 16);
+        }
+        // incompressible, hence stored blocks
+        for (int i = 1024 * 1024; i < 1100 * 1024; i++) {
+            data[i] = (byte) random.nextInt();
+        }
+        gzipFile = File.createTempFile("GzipIndexTest", ".gz");
+        // two members
+        try (OutputStream outputStream = new FileOutputStream(gzipFile)) {
+            final GZIPOutputStream first = new GZIPOutputStream(outputStream);
+            first.write(data, 0, 2 * 1024 * 1024);
+            first.finish();
+            final GZIPOutputStream second = new GZIPOutputStream(outputStream);
+            second.write(data, 2 * 1024 * 1024, data.length - 2 * 1024 * 1024);
+            second.finish();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        gzipFile.delete();
+    }
+
+    @Test
+    public void testIndexingStreamDecompresses() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = new IndexingGzipInputStream(new FileInputStream(gzipFile), SPACING)) {
+            final byte[] buffer = new byte[10000];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+        }
+        assertArrayEquals(data, outputStream.toByteArray());
+    }
+
+    @Test
+    public void testCheckpoints() throws IOException {
+        final GzipIndex index = createIndex();
+        final int checkpointCount = index.getCheckpoints().size();
+        assertTrue(checkpointCount > data.length / (4 * SPACING));
+        assertTrue(checkpointCount <= data.length / SPACING + 2);
+
+        int memberCount = 0;
+        long lastOut = -1;
+        for (GzipIndex.Checkpoint checkpoint : index.getCheckpoints()) {
+            if (checkpoint.isMemberStart()) {
+                memberCount++;
+            } else {
+                assertEquals(GzipIndex.WINDOW_SIZE, checkpoint.getWindow().length);
+            }
+            assertTrue(checkpoint.getOut() > lastOut);
+            lastOut = checkpoint.getOut();
+        }
+        assertEquals(2, memberCount);
+        assertEquals(0, index.getCheckpoints().get(0).getOut());
+        assertEquals(2 * 1024 * 1024, index.getCheckpoints().get(index.findCheckpoint(2 * 1024 * 1024)).getOut());
+    }
+
+    @Test
+    public void testOpenStream() throws IOException {
+        final GzipIndex index = createIndex();
+        final Random random = new Random(17);
+        assertExpectedData(index, 0, 1000);
+        assertExpectedData(index, data.length - 1000, 1000);
+        // across the member boundary
+        assertExpectedData(index, 2 * 1024 * 1024 - 50000, 100000);
+        for (int i = 0; i < 20; i++) {
+            final int offset = random.nextInt(data.length - 200000);
+            assertExpectedData(index, offset, 200000);
+        }
+        try (InputStream inputStream = index.openStream(gzipFile, data.length)) {
+            assertEquals(-1, inputStream.read());
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final GzipIndex index = createIndex();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(outputStream));
+        final GzipIndex readIndex = GzipIndex.read(new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray())));
+
+        assertEquals(index.getCheckpoints().size(), readIndex.getCheckpoints().size());
+        for (int i = 0; i < index.getCheckpoints().size(); i++) {
+            final GzipIndex.Checkpoint expected = index.getCheckpoints().get(i);
+            final GzipIndex.Checkpoint actual = readIndex.getCheckpoints().get(i);
+            assertEquals(expected.getOut(), actual.getOut());
+            assertEquals(expected.getIn(), actual.getIn());
+            assertArrayEquals(expected.getWindow(), actual.getWindow());
+        }
+        assertExpectedData(readIndex, 1500000, 10000);
+    }
+
+    private GzipIndex createIndex() throws IOException {
+        try (IndexingGzipInputStream inputStream = new IndexingGzipInputStream(new FileInputStream(gzipFile), SPACING)) {
+            TarIndex.skipFully(inputStream, data.length);
+            assertEquals(-1, inputStream.read());
+            return inputStream.getIndex();
+        }
+    }
+
+    private void assertExpectedData(GzipIndex index, int offset, int length) throws IOException {
+        final byte[] actual = new byte[length];
+        try (InputStream inputStream = index.openStream(gzipFile, offset)) {
+            int position = 0;
+            while (position < length) {
+                final int count = inputStream.read(actual, position, length - position);
+                assertTrue(count > 0);
+                position += count;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (actual[i] != data[offset + i]) {
+                fail("Unexpected byte at offset " + (offset + i));
+            }
+        }
+    }
+}
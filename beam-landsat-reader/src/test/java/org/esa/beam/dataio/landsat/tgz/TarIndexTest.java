@@ -0,0 +1,107 @@
+package org.esa.beam.dataio.landsat.tgz;
+
+import org.esa.beam.dataio.landsat.TestUtil;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class TarIndexTest {
+
+    @Test
+    public void testScanTar() throws IOException {
+        final File testTar = TestUtil.getTestFile("tgz/test-archive.tar");
+        final TarIndex index;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(testTar))) {
+            index = TarIndex.scan(stream);
+        }
+        assertExpectedIndex(index);
+        assertExpectedContent(testTar, index.getEntry("test-archive/dir1/file3.txt"), "content3");
+        assertExpectedContent(testTar, index.getEntry("test-archive/file1.txt"), "content1");
+    }
+
+    @Test
+    public void testScanTgz() throws IOException {
+        final File testTgz = TestUtil.getTestFile("tgz/test-archive.tgz");
+        try (InputStream stream = new GZIPInputStream(new FileInputStream(testTgz))) {
+            assertExpectedIndex(TarIndex.scan(stream));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final File testTar = TestUtil.getTestFile("tgz/test-archive.tar");
+        final TarIndex index;
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(testTar))) {
+            index = TarIndex.scan(stream);
+        }
+        final File indexFile = File.createTempFile("TarIndexTest", ".idx");
+        try {
+            index.write(indexFile, 1234L, 5678L);
+
+            assertExpectedIndex(TarIndex.read(indexFile, 1234L, 5678L));
+            // index does not belong to the archive anymore
+            assertNull(TarIndex.read(indexFile, 1234L, 5679L));
+            assertNull(TarIndex.read(indexFile, 1235L, 5678L));
+        } finally {
+            indexFile.delete();
+        }
+        assertNull(TarIndex.read(indexFile, 1234L, 5678L));
+    }
+
+    @Test
+    public void testNormalise() {
+        assertEquals("a/b/c.txt", TarIndex.normalise("a/b/c.txt"));
+        assertEquals("a/b/c.txt", TarIndex.normalise("./a/b/c.txt"));
+        assertEquals("a/b/c.txt", TarIndex.normalise("a\\b\\c.txt"));
+        assertEquals("a/b", TarIndex.normalise("/a/b/"));
+        assertEquals("", TarIndex.normalise("."));
+        assertEquals("", TarIndex.normalise(""));
+    }
+
+    @Test
+    public void testParseNumber() throws IOException {
+        assertEquals(9, TarIndex.parseNumber("00000000011\0".getBytes("US-ASCII"), 0, 12));
+        assertEquals(9, TarIndex.parseNumber("         11 ".getBytes("US-ASCII"), 0, 12));
+        final byte[] base256 = new byte[12];
+        base256[0] = (byte) 0x80;
+        base256[7] = 0x02;
+        assertEquals(0x0200000000L, TarIndex.parseNumber(base256, 0, 12));
+    }
+
+    private static void assertExpectedIndex(TarIndex index) {
+        assertNotNull(index);
+        assertEquals(5, index.getEntries().size());
+        assertArrayEquals(new String[]{"test-archive/file1.txt", "test-archive/file2.txt", "test-archive/dir1/file3.txt"},
+                          index.getFileNames());
+        assertEquals(Arrays.asList("test-archive"), Arrays.asList(index.list("")));
+        assertEquals(Arrays.asList("dir1", "file1.txt", "file2.txt"), Arrays.asList(index.list("test-archive")));
+        assertEquals(Arrays.asList("file3.txt"), Arrays.asList(index.list("test-archive/dir1/")));
+        assertNull(index.list("test-archive/file1.txt"));
+        assertTrue(index.isDirectory("test-archive/dir1"));
+        assertFalse(index.isDirectory("test-archive/file1.txt"));
+
+        final TarIndex.Entry entry = index.getEntry("test-archive/dir1/file3.txt");
+        assertNotNull(entry);
+        assertEquals(9, entry.getSize());
+        assertFalse(entry.isDirectory());
+        assertEquals(0, entry.getOffset() % 512);
+        assertNull(index.getEntry("test-archive/dir1/missing.txt"));
+    }
+
+    private static void assertExpectedContent(File tarFile, TarIndex.Entry entry, String expected) throws IOException {
+        try (InputStream stream = new FileInputStream(tarFile)) {
+            TarIndex.skipFully(stream, entry.getOffset());
+            final byte[] data = new byte[(int) entry.getSize()];
+            assertEquals(data.length, stream.read(data));
+            assertEquals(expected, new String(data, "US-ASCII").trim());
+        }
+    }
+}
@@ -3,15 +3,22 @@ package org.esa.beam.dataio.landsat.tgz;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import com.bc.ceres.core.VirtualDir;
 import org.esa.beam.dataio.landsat.TestUtil;
+import org.esa.beam.util.io.FileUtils;
 import org.junit.*;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
 public class VirtualDirTgzTest {
 
@@ -199,6 +206,95 @@ public class VirtualDirTgzTest {
         assertFalse(tempDir.isDirectory());
     }
 
+    @Test
+    public void testTgz_persistedIndex() throws IOException {
+        final File testTgz = TestUtil.getTestFile("tgz/test-archive.tgz");
+        final File indexDir = VirtualDir.createUniqueTempDir();
+        System.setProperty(VirtualDirTgz.SYSPROP_INDEX_DIR, indexDir.getPath());
+        try {
+            virtualDir = new VirtualDirTgz(testTgz);
+            assertEquals(3, virtualDir.listAllFiles().length);
+            final File[] indexFiles = indexDir.listFiles();
+            assertNotNull(indexFiles);
+            assertEquals(1, indexFiles.length);
+            virtualDir.close();
+
+            virtualDir = new VirtualDirTgz(testTgz);
+            assertCorrectList();
+            assertExpectedFile("test-archive/dir1/file3.txt");
+        } finally {
+            System.clearProperty(VirtualDirTgz.SYSPROP_INDEX_DIR);
+            FileUtils.deleteTree(indexDir);
+        }
+    }
+
+    @Test
+    public void testTgz_reuseAfterClose() throws IOException {
+        final File testTgz = TestUtil.getTestFile("tgz/test-archive.tgz");
+        virtualDir = new VirtualDirTgz(testTgz);
+        assertExpectedFile("test-archive/dir1/file3.txt");
+        final File tempDir = virtualDir.getTempDir();
+        virtualDir.close();
+        assertFalse(tempDir.isDirectory());
+
+        assertExpectedFile("test-archive/dir1/file3.txt");
+        assertExpectedInputStream();
+        assertCorrectList();
+    }
+
+    @Test
+    public void testTgz_getLargeFile() throws IOException {
+        final File tempDir = VirtualDir.createUniqueTempDir();
+        try {
+            // large enough to be extracted in several parts
+            final byte[] data = new byte[(int) (2.5 * GzipIndex.DEFAULT_SPACING)];
+            final Random random = new Random(42);
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (random.nextInt(16) + (i / 4096 % 8) * 16);
+            }
+            final File testTgz = new File(tempDir, "large.tgz");
+            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(testTgz))) {
+                writeTarEntry(outputStream, "large/small.txt", "content".getBytes("US-ASCII"));
+                writeTarEntry(outputStream, "large/data.bin", data);
+                outputStream.write(new byte[1024]);
+            }
+
+            virtualDir = new VirtualDirTgz(testTgz);
+            final File file = virtualDir.getFile("large/data.bin");
+            assertEquals(data.length, file.length());
+            final byte[] extracted = new byte[data.length];
+            try (DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+                inputStream.readFully(extracted);
+            }
+            assertArrayEquals(data, extracted);
+            try (DataInputStream inputStream = new DataInputStream(virtualDir.getInputStream("large/small.txt"))) {
+                final byte[] content = new byte[7];
+                inputStream.readFully(content);
+                assertEquals("content", new String(content, "US-ASCII"));
+                assertEquals(-1, inputStream.read());
+            }
+        } finally {
+            if (virtualDir != null) {
+                virtualDir.close();
+            }
+            FileUtils.deleteTree(tempDir);
+        }
+    }
+
+    @Test
+    public void testTgz_withoutIndexedAccess() throws IOException {
+        final File testTgz = TestUtil.getTestFile("tgz/test-archive.tgz");
+        System.setProperty(VirtualDirTgz.SYSPROP_INDEXED_ACCESS, "false");
+        try {
+            virtualDir = new VirtualDirTgz(testTgz);
+            assertExpectedInputStream();
+            assertExpectedFile("test-archive/dir1/file3.txt");
+            assertCorrectList();
+        } finally {
+            System.clearProperty(VirtualDirTgz.SYSPROP_INDEXED_ACCESS);
+        }
+    }
+
     @Test
     public void testGetFilenameFromPath_Windows() {
         final String fullPath = "C:\\bla\\blubber\\theFile.txt";
@@ -269,6 +365,18 @@ public class VirtualDirTgzTest {
         }
     }
 
+    private static void writeTarEntry(OutputStream outputStream, String name, byte[] data) throws IOException {
+        final byte[] header = new byte[512];
+        final byte[] nameBytes = name.getBytes("US-ASCII");
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        final byte[] sizeBytes = String.format("%011o", data.length).getBytes("US-ASCII");
+        System.arraycopy(sizeBytes, 0, header, 124, sizeBytes.length);
+        header[156] = '0';
+        outputStream.write(header);
+        outputStream.write(data);
+        outputStream.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
     private void assertCorrectList() throws IOException {
         String[] list = virtualDir.list("");
         List<String> dirList = Arrays.asList(list);
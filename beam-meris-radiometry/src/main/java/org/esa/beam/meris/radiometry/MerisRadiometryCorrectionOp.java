@@ -16,11 +16,13 @@
 
 package org.esa.beam.meris.radiometry;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.framework.gpf.OperatorException;
 import org.esa.beam.framework.gpf.OperatorSpi;
+import org.esa.beam.framework.gpf.Tile;
 import org.esa.beam.framework.gpf.annotations.OperatorMetadata;
 import org.esa.beam.framework.gpf.annotations.Parameter;
 import org.esa.beam.framework.gpf.annotations.SourceProduct;
@@ -34,6 +36,7 @@ import org.esa.beam.meris.radiometry.smilecorr.SmileCorrectionAuxdata;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.math.RsMathUtils;
 
+import java.awt.Rectangle;
 import java.io.*;
 import java.util.Map;
 import java.util.TreeMap;
@@ -148,6 +151,8 @@ public class MerisRadiometryCorrectionOp extends SampleOperator {
         super.prepareInputs();
         validateSourceProduct();
         initAlgorithms();
+        // all bands of a tile are corrected in one pass by computeTileStack(), sharing source tiles and pixel values
+        deactivateComputeTileMethod();
     }
 
     @Override
@@ -259,39 +264,88 @@ public class MerisRadiometryCorrectionOp extends SampleOperator {
 
         final int bandIndex = targetSample.getIndex();
         final Sample sourceRadiance = sourceSamples[bandIndex];
-        int detectorIndex = -1;
+        final PixelValues pixelValues = new PixelValues();
+        pixelValues.read(sourceSamples);
+        targetSample.set(correct(bandIndex, (Band) sourceRadiance.getNode(), sourceRadiance.getDouble(), pixelValues));
+    }
+
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle,
+                                 ProgressMonitor pm) throws OperatorException {
+        // source tiles are indexed like the source samples
+        final Tile[] sourceTiles = new Tile[flagBandIndex + 1];
+        for (final Band band : getSourceProduct().getBands()) {
+            final int spectralBandIndex = band.getSpectralBandIndex();
+            if (spectralBandIndex != -1) {
+                sourceTiles[spectralBandIndex] = getSourceTile(band, targetRectangle);
+            }
+        }
         if (doCalibration || doSmile || doEqualization) {
-            detectorIndex = sourceSamples[detectorIndexSampleIndex].getInt();
+            sourceTiles[detectorIndexSampleIndex] = getSourceTile(
+                    getSourceProduct().getRasterDataNode(MERIS_DETECTOR_INDEX_DS_NAME), targetRectangle);
         }
-        double value = sourceRadiance.getDouble();
-        boolean isValidDetectorIndex = detectorIndex >= 0;
-        if (doCalibration && isValidDetectorIndex && value < sourceRadiance.getNode().scale(RAW_SATURATION_THRESHOLD)) {
-            value = calibrationAlgorithm.calibrate(bandIndex, detectorIndex, value);
+        if (doRadToRefl) {
+            sourceTiles[sunZenithAngleSampleIndex] = getSourceTile(
+                    getSourceProduct().getRasterDataNode(MERIS_SUN_ZENITH_DS_NAME), targetRectangle);
         }
         if (doSmile) {
-            final Sample flagSample = sourceSamples[flagBandIndex];
-            final boolean invalid = flagSample.getBit(INVALID_BIT_INDEX);
-            if (!invalid && detectorIndex != -1) {
-                final boolean land = flagSample.getBit(LAND_BIT_INDEX);
-                double[] sourceValues = new double[15];
-                for (int i = 0; i < sourceValues.length; i++) {
-                    sourceValues[i] = sourceSamples[i].getDouble();
+            sourceTiles[flagBandIndex] = getSourceTile(
+                    getSourceProduct().getRasterDataNode(MERIS_L1B_FLAGS_DS_NAME), targetRectangle);
+        }
+
+        final Map<Integer, Tile> spectralTargetTiles = new TreeMap<>();
+        for (final Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+            final int spectralBandIndex = entry.getKey().getSpectralBandIndex();
+            if (spectralBandIndex != -1) {
+                spectralTargetTiles.put(spectralBandIndex, entry.getValue());
+            }
+        }
+
+        final PixelValues pixelValues = new PixelValues();
+        final int x1 = targetRectangle.x;
+        final int y1 = targetRectangle.y;
+        final int x2 = x1 + targetRectangle.width - 1;
+        final int y2 = y1 + targetRectangle.height - 1;
+        try {
+            pm.beginTask("Correcting radiometry...", targetRectangle.height);
+            for (int y = y1; y <= y2; y++) {
+                for (int x = x1; x <= x2; x++) {
+                    checkCancellation();
+                    // values depending on the pixel only are retrieved once for all bands
+                    pixelValues.read(sourceTiles, x, y);
+                    for (final Map.Entry<Integer, Tile> entry : spectralTargetTiles.entrySet()) {
+                        final int bandIndex = entry.getKey();
+                        final Tile sourceTile = sourceTiles[bandIndex];
+                        final double value = correct(bandIndex, (Band) sourceTile.getRasterDataNode(),
+                                                     sourceTile.getSampleDouble(x, y), pixelValues);
+                        entry.getValue().setSample(x, y, value);
+                    }
                 }
-                value = smileCorrAlgorithm.correct(bandIndex, detectorIndex, sourceValues, land);
+                pm.worked(1);
             }
+        } finally {
+            pm.done();
+        }
+    }
+
+    private double correct(int bandIndex, Band sourceBand, double value, PixelValues pixelValues) {
+        final int detectorIndex = pixelValues.detectorIndex;
+        boolean isValidDetectorIndex = detectorIndex >= 0;
+        if (doCalibration && isValidDetectorIndex && value < sourceBand.scale(RAW_SATURATION_THRESHOLD)) {
+            value = calibrationAlgorithm.calibrate(bandIndex, detectorIndex, value);
+        }
+        if (pixelValues.smileApplicable) {
+            value = smileCorrAlgorithm.correct(bandIndex, detectorIndex, pixelValues.smileSourceValues, pixelValues.land);
         }
         if (doRadToRefl) {
-            final float solarFlux = ((Band) sourceRadiance.getNode()).getSolarFlux();
-            final float sunZenithSample = sourceSamples[sunZenithAngleSampleIndex].getFloat();
-            value = RsMathUtils.radianceToReflectance((float) value, sunZenithSample, solarFlux);
+            final float solarFlux = sourceBand.getSolarFlux();
+            value = RsMathUtils.radianceToReflectance((float) value, pixelValues.sunZenith, solarFlux);
         }
         if (doEqualization && isValidDetectorIndex) {
             value = equalizationAlgorithm.performEqualization(value, bandIndex, detectorIndex);
         }
 
-        final double croppedValue = Math.min(bandIndexToMaxValueMap.get(bandIndex), value);
-        targetSample.set(croppedValue);
-
+        return Math.min(bandIndexToMaxValueMap.get(bandIndex), value);
     }
 
     private void initAlgorithms() {
@@ -401,6 +455,50 @@ public class MerisRadiometryCorrectionOp extends SampleOperator {
         currentPixel++;
     }
 
+    /**
+     * The source values of a pixel which are used for the correction of all bands.
+     */
+    private final class PixelValues {
+
+        private final double[] smileSourceValues = new double[15];
+        private int detectorIndex;
+        private boolean smileApplicable;
+        private boolean land;
+        private float sunZenith;
+
+        private void read(Sample[] sourceSamples) {
+            if (doCalibration || doSmile || doEqualization) {
+                detectorIndex = sourceSamples[detectorIndexSampleIndex].getInt();
+            } else {
+                detectorIndex = -1;
+            }
+            smileApplicable = doSmile && !sourceSamples[flagBandIndex].getBit(INVALID_BIT_INDEX) && detectorIndex != -1;
+            if (smileApplicable) {
+                land = sourceSamples[flagBandIndex].getBit(LAND_BIT_INDEX);
+                for (int i = 0; i < smileSourceValues.length; i++) {
+                    smileSourceValues[i] = sourceSamples[i].getDouble();
+                }
+            }
+            sunZenith = doRadToRefl ? sourceSamples[sunZenithAngleSampleIndex].getFloat() : 0.0f;
+        }
+
+        private void read(Tile[] sourceTiles, int x, int y) {
+            if (doCalibration || doSmile || doEqualization) {
+                detectorIndex = sourceTiles[detectorIndexSampleIndex].getSampleInt(x, y);
+            } else {
+                detectorIndex = -1;
+            }
+            smileApplicable = doSmile && !sourceTiles[flagBandIndex].getSampleBit(x, y, INVALID_BIT_INDEX) && detectorIndex != -1;
+            if (smileApplicable) {
+                land = sourceTiles[flagBandIndex].getSampleBit(x, y, LAND_BIT_INDEX);
+                for (int i = 0; i < smileSourceValues.length; i++) {
+                    smileSourceValues[i] = sourceTiles[i].getSampleDouble(x, y);
+                }
+            }
+            sunZenith = doRadToRefl ? sourceTiles[sunZenithAngleSampleIndex].getSampleFloat(x, y) : 0.0f;
+        }
+    }
+
     public static class Spi extends OperatorSpi {
 
         public Spi() {
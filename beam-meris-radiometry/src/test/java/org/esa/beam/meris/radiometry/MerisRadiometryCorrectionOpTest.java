@@ -1,9 +1,19 @@
 package org.esa.beam.meris.radiometry;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.esa.beam.framework.gpf.internal.TileImpl;
 import org.junit.Test;
 
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import static org.junit.Assert.*;
+
 public class MerisRadiometryCorrectionOpTest {
 
 
@@ -21,6 +31,43 @@ public class MerisRadiometryCorrectionOpTest {
 
     }
 
+    @Test
+    public void testTileStackIsBitIdenticalToSingleTiles() throws Exception {
+        Product source = TestHelper.createL1bProduct("RR");
+        for (int i = 0; i < 15; i++) {
+            ((VirtualBand) source.getBand("radiance_" + (i + 1))).setExpression(String.format("20 + %d * X + Y", i + 1));
+        }
+        final ProductData detectorIndexData = source.getBand("detector_index").getData();
+        final ProductData flagData = source.getBand("l1_flags").getData();
+        for (int i = 0; i < detectorIndexData.getNumElems(); i++) {
+            detectorIndexData.setElemIntAt(i, (37 * i) % 925);
+            flagData.setElemIntAt(i, i % 3 == 0 ? 0x10 : i % 11 == 0 ? 0x80 : 0);
+        }
+        MerisRadiometryCorrectionOp correctionOp = new MerisRadiometryCorrectionOp();
+        correctionOp.setParameterDefaultValues();
+        correctionOp.setParameter("doRadToRefl", true);
+        correctionOp.setSourceProduct(source);
+        Product targetProduct = correctionOp.getTargetProduct();
+
+        final Rectangle rectangle = new Rectangle(TestHelper.SCENE_WIDTH, TestHelper.SCENE_HEIGHT);
+        for (final Band band : targetProduct.getBands()) {
+            if (band.getSpectralBandIndex() == -1) {
+                continue;
+            }
+            // computed by computeTileStack()
+            final Raster actual = band.getSourceImage().getData();
+            final WritableRaster expected = actual.createCompatibleWritableRaster(rectangle);
+            correctionOp.computeTile(band, new TileImpl(band, expected), ProgressMonitor.NULL);
+            for (int y = 0; y < TestHelper.SCENE_HEIGHT; y++) {
+                for (int x = 0; x < TestHelper.SCENE_WIDTH; x++) {
+                    assertEquals(band.getName() + " at " + x + "," + y,
+                                 Double.doubleToLongBits(expected.getSampleDouble(x, y, 0)),
+                                 Double.doubleToLongBits(actual.getSampleDouble(x, y, 0)));
+                }
+            }
+        }
+    }
+
     void moveFSGBandsAtTheBeginning(Product fsg) {
         Band corrLon = fsg.getBandGroup().get("corr_longitude");
         fsg.getBandGroup().remove(corrLon);
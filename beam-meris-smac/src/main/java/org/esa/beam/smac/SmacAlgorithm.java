@@ -267,21 +267,6 @@ public final class SmacAlgorithm {
                              float[] r_surfRecycle) {
         // array to be returned
         float[] r_return;
-        double us, invUs, us2, uv, invUv, usTimesuv, invUsTimesUv;
-        double dphi, Peq, m, s, cksi, ksiD;
-        double taup, tautot, Res_6s;
-        double uo2, uco2, uch4, uno2, uco;
-        double to3, th2o, to2, tco2, tch4, tno2, tco;
-        double ttetas, ttetav;
-        double ray_phase, ray_ref, taurz, Res_ray;
-        double aer_phase, aer_ref, Res_aer;
-        double atm_ref, tg;
-        double d, del, dp, e, f, ss;
-        double q1, q2, q3;
-        double c1, c2, cp1, cp2;
-        double x, y, z;
-        double aa1, aa2, aa3;
-        double temp;
 
         // try to reuse the recyle array to prevent memory waste. We can reuse if
         // a) it's present and
@@ -292,58 +277,138 @@ public final class SmacAlgorithm {
             r_return = r_surfRecycle;
         }
 
-        // loop over vectors
-        // -----------------
-        int n;
-        for (n = 0; n < r_toa.length; n++) {
-            // check for process flag. If set to false we must set the default value for
-            // invalid pixels and process the next pixel
+        final Workspace workspace = new Workspace(r_toa.length);
+        prepare(sza, saa, vza, vaa, taup550, uh2o, uo3, airPressure, process, r_toa.length, workspace);
+        run(workspace, invalid, r_toa, r_return);
+        return r_return;
+    }
+
+    /**
+     * Computes the terms of the SMAC algorithm which only depend on the geometry and on the atmosphere of the
+     * pixels, but not on the sensor coefficients. The prepared workspace can be used to run the algorithm for
+     * any number of spectral bands by calling {@link #run(Workspace, float, float[], float[])}.
+     *
+     * @param sza         array of sun zenith angles in decimal degrees
+     * @param saa         array of sun azimuth angles in decimal degrees
+     * @param vza         array of view zenith angles in decimal degrees
+     * @param vaa         array of view azimuth angles in decimal degrees
+     * @param taup550     array of aerosol optical thickness at 550nm
+     * @param uh2o        array of water vapour concentrations
+     * @param uo3         array of ozone concentrations
+     * @param airPressure array of air pressure in hPa
+     * @param process     boolean array indicating whether a pixel has to be processed or not
+     * @param numPixels   the number of pixels to be prepared, must not exceed the capacity of the workspace
+     * @param workspace   the workspace receiving the terms
+     */
+    public static void prepare(float[] sza, float[] saa, float[] vza, float[] vaa,
+                               float[] taup550, float[] uh2o, float[] uo3,
+                               float[] airPressure, boolean[] process, int numPixels, Workspace workspace) {
+        Guardian.assertNotNull("workspace", workspace);
+        if (numPixels > workspace.capacity) {
+            throw new IllegalArgumentException("numPixels > workspace.getCapacity()");
+        }
+        double us, us2, uv, usTimesuv, m, dphi, Peq, cksi;
+
+        for (int n = 0; n < numPixels; n++) {
+            workspace.process[n] = process[n];
             if (!process[n]) {
-                r_return[n] = invalid;
                 continue;
             }
             // parameter setup
             us = Math.cos(sza[n] * _cdr);
-            invUs = 1.0 / us;
             us2 = us * us;
-
             uv = Math.cos(vza[n] * _cdr);
-            invUv = 1.0 / uv;
             usTimesuv = us * uv;
-            invUsTimesUv = 1.0 / usTimesuv;
-
             dphi = (saa[n] - vaa[n]) * _cdr;
             Peq = airPressure[n] * _invMaxPressure;
 
             /*------ 1) air mass */
-            m = invUs + invUv;
+            m = 1.0 / us + 1.0 / uv;
 
-            /*------ 2) aerosol optical depth in the spectral band, taup  */
-            taup = _A0taup + _A1taup * taup550[n];
-
-            /*------ 3) gaseous transmissions (downward and upward paths)*/
-            uo2 = 1.0;
-            if (_calcUo2) {
-                uo2 = Math.pow(Peq, _po2);
-            }
-            uco2 = 1.0;
-            if (_calcUco2) {
-                uco2 = Math.pow(Peq, _pco2);
-            }
-            uch4 = 1.0;
-            if (_calcUch4) {
-                uch4 = Math.pow(Peq, _pch4);
-            }
-            uno2 = 1.0;
-            if (_calcUno2) {
-                uno2 = Math.pow(Peq, _pno2);
-            }
-            uco = 1.0;
-            if (_calcUco) {
-                uco = Math.pow(Peq, _pco);
+            /*------ 7) scattering angle cosine */
+            cksi = -(usTimesuv + (Math.sqrt(1.0 - us2) * Math.sqrt(1.0 - uv * uv) * Math.cos(dphi)));
+            if (cksi < -1) {
+                cksi = -1.0;
             }
 
+            workspace.us[n] = us;
+            workspace.uv[n] = uv;
+            workspace.invUsTimesUv[n] = 1.0 / usTimesuv;
+            workspace.aa3[n] = usTimesuv / (us + uv);
+            workspace.m[n] = m;
+            workspace.logM[n] = Math.log(m);
+            workspace.peq[n] = Peq;
+            workspace.logPeq[n] = Math.log(Peq);
+            workspace.taup550[n] = taup550[n];
+            workspace.cksi[n] = cksi;
+            /*------ 8) scattering angle in degree */
+            workspace.ksiD[n] = _crd * Math.acos(cksi);
+            /*------ 9) rayleigh phase function, pour 6s on a delta = 0.0279 */
+            workspace.rayPhase[n] = 0.7190443 * (1.0 + (cksi * cksi)) + 0.0412742;
             /*------ 4) if uh2o <= 0 and uo3 <= 0 no gaseous absorption is computed*/
+            workspace.gasAbsorption[n] = (uh2o[n] > 0.) || (uo3[n] > 0.);
+            workspace.logUo3M[n] = Math.log(uo3[n] * m);
+            workspace.logUh2oM[n] = Math.log(uh2o[n] * m);
+        }
+        workspace.numPixels = numPixels;
+    }
+
+    /**
+     * Performs the SMAC algorithm for the pixels of a workspace, which has been prepared by
+     * {@link #prepare(float[], float[], float[], float[], float[], float[], float[], float[], boolean[], int, Workspace)}.
+     *
+     * @param workspace the prepared workspace
+     * @param invalid   the value set for invalid pixels, i.e. the ones excluded from processing
+     * @param r_toa     array of top of atmosphere reflectances to be corrected
+     * @param r_surf    array receiving the corrected surface reflectances
+     */
+    public final void run(Workspace workspace, float invalid, float[] r_toa, float[] r_surf) {
+        Guardian.assertNotNull("workspace", workspace);
+        double us, invUs, us2, uv, invUv, invUsTimesUv;
+        double m, logM, Peq, logPeq, taup550, cksi, ksiD;
+        double taup, tautot, Res_6s;
+        double to3, th2o, to2, tco2, tch4, tno2, tco;
+        double ttetas, ttetav;
+        double ray_ref, taurz, Res_ray;
+        double aer_phase, aer_ref, Res_aer;
+        double atm_ref, tg, s;
+        double d, del, dp, e, f, ss;
+        double q1, q2, q3;
+        double c1, c2, cp1, cp2;
+        double x, y, z;
+        double aa1, aa2, aa3;
+        double expAkTaup, expMinusAkTaup;
+        double temp;
+
+        // loop over vectors
+        // -----------------
+        final int numPixels = workspace.numPixels;
+        for (int n = 0; n < numPixels; n++) {
+            // check for process flag. If set to false we must set the default value for
+            // invalid pixels and process the next pixel
+            if (!workspace.process[n]) {
+                r_surf[n] = invalid;
+                continue;
+            }
+            us = workspace.us[n];
+            invUs = 1.0 / us;
+            us2 = us * us;
+            uv = workspace.uv[n];
+            invUv = 1.0 / uv;
+            invUsTimesUv = workspace.invUsTimesUv[n];
+            m = workspace.m[n];
+            logM = workspace.logM[n];
+            Peq = workspace.peq[n];
+            logPeq = workspace.logPeq[n];
+            taup550 = workspace.taup550[n];
+            cksi = workspace.cksi[n];
+            ksiD = workspace.ksiD[n];
+
+            /*------ 2) aerosol optical depth in the spectral band, taup  */
+            taup = _A0taup + _A1taup * taup550;
+
+            /*------ 3) and 4) gaseous transmissions (downward and upward paths), where
+                            (u * m)^n is computed as exp(n * (log(u) + log(m))) */
             to3 = 1.0;
             th2o = 1.0;
             to2 = 1.0;
@@ -351,57 +416,46 @@ public final class SmacAlgorithm {
             tch4 = 1.0;
             tno2 = 1.0;
             tco = 1.0;
-            if ((uh2o[n] > 0.) || (uo3[n] > 0.)) {
+            if (workspace.gasAbsorption[n]) {
                 if (_calcTo3) {
-                    to3 = Math.exp(_ao3 * Math.pow((uo3[n] * m), _no3));
+                    to3 = Math.exp(_ao3 * Math.exp(_no3 * workspace.logUo3M[n]));
                 }
                 if (_calcTh2o) {
-                    th2o = Math.exp(_ah2o * Math.pow((uh2o[n] * m), _nh2o));
+                    th2o = Math.exp(_ah2o * Math.exp(_nh2o * workspace.logUh2oM[n]));
                 }
                 if (_calcTo2) {
-                    to2 = Math.exp(_ao2 * Math.pow((uo2 * m), _no2));
+                    to2 = Math.exp(_ao2 * Math.exp(_no2 * logUM(_calcUo2, _po2, logPeq, logM)));
                 }
                 if (_calcTco2) {
-                    tco2 = Math.exp(_aco2 * Math.pow((uco2 * m), _nco2));
+                    tco2 = Math.exp(_aco2 * Math.exp(_nco2 * logUM(_calcUco2, _pco2, logPeq, logM)));
                 }
                 if (_calcTch4) {
-                    tch4 = Math.exp(_ach4 * Math.pow((uch4 * m), _nch4));
+                    tch4 = Math.exp(_ach4 * Math.exp(_nch4 * logUM(_calcUch4, _pch4, logPeq, logM)));
                 }
                 if (_calcTno2) {
-                    tno2 = Math.exp(_ano2 * Math.pow((uno2 * m), _nno2));
+                    tno2 = Math.exp(_ano2 * Math.exp(_nno2 * logUM(_calcUno2, _pno2, logPeq, logM)));
                 }
                 if (_calcTco) {
-                    tco = Math.exp(_aco * Math.pow((uco * m), _nco));
+                    tco = Math.exp(_aco * Math.exp(_nco * logUM(_calcUco, _pco, logPeq, logM)));
                 }
             }
 
             /*------  5) Total scattering transmission */
             temp = _a2T * Peq + _a3T;
             /* downward */
-            ttetas = _a0T + _a1T * taup550[n] * invUs + temp / (1.0 + us);
+            ttetas = _a0T + _a1T * taup550 * invUs + temp / (1.0 + us);
             /* upward   */
-            ttetav = _a0T + _a1T * taup550[n] * invUv + temp / (1.0 + uv);
+            ttetav = _a0T + _a1T * taup550 * invUv + temp / (1.0 + uv);
 
             /*------ 6) spherical albedo of the atmosphere */
-            s = _a0s * Peq + _a3s + _a1s * taup550[n] + _a2s * taup550[n] * taup550[n];
-
-            /*------ 7) scattering angle cosine */
-            cksi = -(usTimesuv + (Math.sqrt(1.0 - us2) * Math.sqrt(1.0 - uv * uv) * Math.cos(dphi)));
-            if (cksi < -1) {
-                cksi = -1.0;
-            }
-
-            /*------ 8) scattering angle in degree */
-            ksiD = _crd * Math.acos(cksi);
+            s = _a0s * Peq + _a3s + _a1s * taup550 + _a2s * taup550 * taup550;
 
             /*------ 9) rayleigh atmospheric reflectance */
-            /* pour 6s on a delta = 0.0279 */
-            ray_phase = 0.7190443 * (1.0 + (cksi * cksi)) + 0.0412742;
             taurz = _taur * Peq;
-            ray_ref = (taurz * ray_phase) * _oneQuarter * invUsTimesUv;
+            ray_ref = (taurz * workspace.rayPhase[n]) * _oneQuarter * invUsTimesUv;
 
             /*-----------------Residu Rayleigh ---------*/
-            temp = taurz * ray_phase * invUsTimesUv;
+            temp = taurz * workspace.rayPhase[n] * invUsTimesUv;
             Res_ray = _resr1 + _resr2 * temp + _resr3 * temp * temp;
 
             /*------ 10) aerosol atmospheric reflectance */
@@ -410,20 +464,22 @@ public final class SmacAlgorithm {
 
             // now the uncommented block :-)
             // -----------------------------
+            expAkTaup = Math.exp(_ak * taup);
+            expMinusAkTaup = Math.exp(-_ak * taup);
             temp = 1.0 / (4.0 * (1.0 - _ak2 * us2));
             e = -3.0 * us2 * _wo * temp;
             f = -_onemwo * 3.0 * _gc * us2 * _wo * temp;
             dp = e / (3.0 * us) + us * f;
             d = e + f;
-            del = Math.exp(_ak * taup) * _onepb2 - Math.exp(-_ak * taup) * _onemb2;
+            del = expAkTaup * _onepb2 - expMinusAkTaup * _onemb2;
             ss = us / (1.0 - _ak2 * us2);
             temp = 3.0 * us;
             q1 = 2.0 + temp + _onemwo * temp * _gc * (1.0 + 2.0 * us);
             q2 = 2.0 - temp - _onemwo * temp * _gc * (1.0 - 2.0 * us);
             q3 = q2 * Math.exp(-taup * invUs);
             temp = (_ww * ss) / del;
-            c1 = temp * (q1 * Math.exp(_ak * taup) * _onepb + q3 * _onemb);
-            c2 = -temp * (q1 * Math.exp(-_ak * taup) * _onemb + q3 * _onepb);
+            c1 = temp * (q1 * expAkTaup * _onepb + q3 * _onemb);
+            c2 = -temp * (q1 * expMinusAkTaup * _onemb + q3 * _onepb);
             cp1 = c1 * _pfac;
             cp2 = -c2 * _pfac;
             temp = _wo * 3.0 * _gc * uv;
@@ -433,7 +489,7 @@ public final class SmacAlgorithm {
             temp = _ak * uv;
             aa1 = uv / (1.0 + temp);
             aa2 = uv / (1.0 - temp);
-            aa3 = usTimesuv / (us + uv);
+            aa3 = workspace.aa3[n];
 
             aer_ref = x * aa1 * (1.0 - Math.exp(-taup / aa1));
             aer_ref += y * aa2 * (1.0 - Math.exp(-taup / aa2));
@@ -461,9 +517,68 @@ public final class SmacAlgorithm {
             /*------------------------ */
             temp = r_toa[n] - (atm_ref * tg);
             temp = temp / ((tg * ttetas * ttetav) + (temp * s));
-            r_return[n] = (float) temp;
+            r_surf[n] = (float) temp;
         }
+    }
 
-        return r_return;
+    // Computes log(u * m) for a gas whose amount u scales with the relative pressure as Peq^p
+    private static double logUM(boolean calcU, double p, double logPeq, double logM) {
+        return calcU ? p * logPeq + logM : logM;
+    }
+
+    /**
+     * Holds the terms of the SMAC algorithm which are independent of the sensor coefficients for a vector of
+     * pixels. A workspace is filled by
+     * {@link SmacAlgorithm#prepare(float[], float[], float[], float[], float[], float[], float[], float[], boolean[], int, Workspace)}
+     * and can then be used by any number of algorithm instances. A workspace must not be shared between threads,
+     * it is meant to be allocated once per thread and reused.
+     */
+    public static final class Workspace {
+
+        private final int capacity;
+        private int numPixels;
+        private final boolean[] process;
+        private final boolean[] gasAbsorption;
+        private final double[] us;
+        private final double[] uv;
+        private final double[] invUsTimesUv;
+        private final double[] aa3;
+        private final double[] m;
+        private final double[] logM;
+        private final double[] peq;
+        private final double[] logPeq;
+        private final double[] taup550;
+        private final double[] cksi;
+        private final double[] ksiD;
+        private final double[] rayPhase;
+        private final double[] logUo3M;
+        private final double[] logUh2oM;
+
+        /**
+         * @param capacity the maximum number of pixels the workspace can hold
+         */
+        public Workspace(int capacity) {
+            this.capacity = capacity;
+            process = new boolean[capacity];
+            gasAbsorption = new boolean[capacity];
+            us = new double[capacity];
+            uv = new double[capacity];
+            invUsTimesUv = new double[capacity];
+            aa3 = new double[capacity];
+            m = new double[capacity];
+            logM = new double[capacity];
+            peq = new double[capacity];
+            logPeq = new double[capacity];
+            taup550 = new double[capacity];
+            cksi = new double[capacity];
+            ksiD = new double[capacity];
+            rayPhase = new double[capacity];
+            logUo3M = new double[capacity];
+            logUh2oM = new double[capacity];
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
     }
-}
\ No newline at end of file
+}
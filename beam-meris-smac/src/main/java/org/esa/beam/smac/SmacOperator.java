@@ -45,6 +45,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +89,7 @@ public class SmacOperator extends Operator {
     private static final String merisBandPrefix = "reflec";  // was "reflectance" in version 1.0 - 1.2
     private static final String SMAC_MASK = "smac_mask";
     private static final String SMAC_MASK_FORWARD = "smac_mask_forward";
+    private static final int MAX_BATCH_SIZE = 16 * 1024;
 
     private final List<Band> inputBandList;
     private final Logger logger;
@@ -96,6 +98,7 @@ public class SmacOperator extends Operator {
     private File auxdataInstallDir;
     private Map<String, String> bandNameMapping;
     private HashMap<String, SmacSensorCoefficients> coefficients;
+    private ThreadLocal<SmacBuffers> smacBuffers;
 
     private TiePointGrid szaBand;
     private TiePointGrid saaBand;
@@ -159,6 +162,7 @@ public class SmacOperator extends Operator {
 
     @Override
     public void initialize() throws OperatorException {
+        smacBuffers = new ThreadLocal<>();
         try {
             prepareProcessing();
             createOutputProduct();
@@ -169,67 +173,110 @@ public class SmacOperator extends Operator {
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) throws OperatorException {
-        // here goes the allocation of data that is constant for the targetRectangle
-
-        // initialize vectors and other data
-        // ---------------------------------
-        int width = targetRectangle.width;
-        int height = targetRectangle.height;
-        int x = targetRectangle.x;
-        int y = targetRectangle.y;
-
-        SourceData sourceData = new SourceData();
-        sourceData.taup550 = new float[width * height];
-        sourceData.process = new boolean[width * height];
-        sourceData.uh2o = new float[width * height];
-        sourceData.uo3 = new float[width * height];
-        sourceData.press = new float[width * height];
-        sourceData.toa = new float[width * height];
-
-        for (int i = 0; i < width * height; i++) {
-            sourceData.taup550[i] = tauAero550;
-            sourceData.uh2o[i] = uH2o;
-            sourceData.uo3[i] = uO3;
-            sourceData.press[i] = surfPress;
-            sourceData.process[i] = true;
-        }
-
-        sourceData.sza = getSourceTile(szaBand, targetRectangle).getSamplesFloat();
-        sourceData.saa = getSourceTile(saaBand, targetRectangle).getSamplesFloat();
-        sourceData.vza = getSourceTile(vzaBand, targetRectangle).getSamplesFloat();
-        sourceData.vaa = getSourceTile(vaaBand, targetRectangle).getSamplesFloat();
-        if (ObjectUtils.equalObjects(sensorType, SensorCoefficientManager.AATSR_NAME)) {
-            sourceData.szaFwd = getSourceTile(szaFwdBand, targetRectangle).getSamplesFloat();
-            sourceData.saaFwd = getSourceTile(saaFwdBand, targetRectangle).getSamplesFloat();
-            sourceData.vzaFwd = getSourceTile(vzaFwdBand, targetRectangle).getSamplesFloat();
-            sourceData.vaaFwd = getSourceTile(vaaFwdBand, targetRectangle).getSamplesFloat();
-        } else if (useMerisADS) {
-            sourceData.uh2o = getSourceTile(wvBand, targetRectangle).getSamplesFloat();
-            sourceData.uo3 = getSourceTile(o3Band, targetRectangle).getSamplesFloat();
-            sourceData.press = getSourceTile(pressBand, targetRectangle).getSamplesFloat();
-            sourceData.elev = getSourceTile(elevBand, targetRectangle).getSamplesFloat();
+        final boolean isMeris = ObjectUtils.equalObjects(sensorType, SensorCoefficientManager.MERIS_NAME);
+        final boolean isAatsr = ObjectUtils.equalObjects(sensorType, SensorCoefficientManager.AATSR_NAME);
+        if (!isMeris && !isAatsr) {
+            return;
         }
 
+        // the sensor coefficients are applied per band, all other terms are computed once per pixel
+        final List<BandContext> bandContexts = new ArrayList<>();
+        boolean hasForwardBands = false;
         for (Map.Entry<Band, Tile> bandTileEntry : targetTiles.entrySet()) {
             Band sourceBand = sourceProduct.getBand(revertMerisBandName(bandTileEntry.getKey().getName(), bandNameMapping));
             sourceBand.setValidPixelExpression(""); // necessary in order to mimic the processor behavior
-            Tile sourceTile = getSourceTile(sourceBand, targetRectangle);
-            sourceData.toa = sourceTile.getSamplesFloat();
-            Tile targetTile = bandTileEntry.getValue();
-            try {
-                if (ObjectUtils.equalObjects(sensorType, SensorCoefficientManager.MERIS_NAME)) {
-                    if (useMerisADS) {
-                        processMerisWithADS(sourceBand, sourceData, targetTile, targetRectangle, new SmacAlgorithm());
-                    } else {
-                        processMeris(sourceBand, sourceData, targetTile, targetRectangle, new SmacAlgorithm());
+            SmacAlgorithm algorithm = new SmacAlgorithm();
+            if (!setBandCoefficients(sourceBand.getName(), algorithm)) {
+                logger.severe(String.format("Sensor coefficient file for spectral band '%s' not found!", sourceBand.getName()));
+                continue;
+            }
+            boolean isForwardBand = isAatsr && sourceBand.getName().contains("fward");
+            hasForwardBands |= isForwardBand;
+            bandContexts.add(new BandContext(sourceBand, getSourceTile(sourceBand, targetRectangle),
+                                             bandTileEntry.getValue(), algorithm, isForwardBand));
+        }
+        if (bandContexts.isEmpty()) {
+            return;
+        }
+
+        final Tile szaTile = getSourceTile(szaBand, targetRectangle);
+        final Tile saaTile = getSourceTile(saaBand, targetRectangle);
+        final Tile vzaTile = getSourceTile(vzaBand, targetRectangle);
+        final Tile vaaTile = isMeris ? getSourceTile(vaaBand, targetRectangle) : null;
+        final Tile maskTile = getSourceTile(sourceProduct.getMaskGroup().get(SMAC_MASK), targetRectangle);
+        Tile szaFwdTile = null;
+        Tile vzaFwdTile = null;
+        Tile maskFwdTile = null;
+        if (hasForwardBands) {
+            szaFwdTile = getSourceTile(szaFwdBand, targetRectangle);
+            vzaFwdTile = getSourceTile(vzaFwdBand, targetRectangle);
+            maskFwdTile = getSourceTile(sourceProduct.getMaskGroup().get(SMAC_MASK_FORWARD), targetRectangle);
+        }
+        final boolean useAds = isMeris && useMerisADS;
+        Tile wvTile = null;
+        Tile o3Tile = null;
+        Tile pressTile = null;
+        Tile elevTile = null;
+        if (useAds) {
+            wvTile = getSourceTile(wvBand, targetRectangle);
+            o3Tile = getSourceTile(o3Band, targetRectangle);
+            pressTile = getSourceTile(pressBand, targetRectangle);
+            elevTile = getSourceTile(elevBand, targetRectangle);
+        }
+
+        final int batchHeight = Math.max(1, Math.min(targetRectangle.height, MAX_BATCH_SIZE / targetRectangle.width));
+        final SmacBuffers buffers = getSmacBuffers(targetRectangle.width * batchHeight, hasForwardBands);
+        for (int y = targetRectangle.y; y < targetRectangle.y + targetRectangle.height; y += batchHeight) {
+            final Rectangle batch = new Rectangle(targetRectangle.x, y, targetRectangle.width,
+                                                  Math.min(batchHeight, targetRectangle.y + targetRectangle.height - y));
+            final int numPixels = batch.width * batch.height;
+
+            getSamples(szaTile, batch, buffers.sza);
+            getSamples(saaTile, batch, buffers.saa);
+            if (useAds) {
+                getSamples(wvTile, batch, buffers.uh2o);
+                getSamples(o3Tile, batch, buffers.uo3);
+                getSamples(pressTile, batch, buffers.press);
+                getSamples(elevTile, batch, buffers.elev);
+                for (int i = 0; i < numPixels; i++) {
+                    buffers.uh2o[i] = relHumTogcm * buffers.uh2o[i];
+                    buffers.uo3[i] = buffers.uo3[i] * duToCmAtm;
+                    buffers.press[i] = RsMathUtils.simpleBarometric(buffers.press[i], buffers.elev[i]);
+                }
+            } else {
+                Arrays.fill(buffers.uh2o, 0, numPixels, uH2o);
+                Arrays.fill(buffers.uo3, 0, numPixels, uO3);
+                Arrays.fill(buffers.press, 0, numPixels, surfPress);
+            }
+            Arrays.fill(buffers.taup550, 0, numPixels, tauAero550);
+
+            if (isAatsr) {
+                prepareAatsrView(vzaTile, szaTile, maskTile, batch, buffers, buffers.nadir);
+                if (hasForwardBands) {
+                    prepareAatsrView(vzaFwdTile, szaFwdTile, maskFwdTile, batch, buffers, buffers.forward);
+                }
+            } else {
+                getSamples(vzaTile, batch, buffers.vza);
+                getSamples(vaaTile, batch, buffers.vaa);
+                getProcessFlags(maskTile, batch, buffers.process);
+                SmacAlgorithm.prepare(buffers.sza, buffers.saa, buffers.vza, buffers.vaa, buffers.taup550,
+                                      buffers.uh2o, buffers.uo3, buffers.press, buffers.process, numPixels,
+                                      buffers.nadir);
+            }
+
+            for (BandContext bandContext : bandContexts) {
+                getSamples(bandContext.sourceTile, batch, buffers.toa);
+                if (isMeris) {
+                    final float solarFlux = bandContext.sourceBand.getSolarFlux();
+                    for (int i = 0; i < numPixels; i++) {
+                        buffers.toa[i] = RsMathUtils.radianceToReflectance(buffers.toa[i], buffers.sza[i], solarFlux);
                     }
-                } else if (ObjectUtils.equalObjects(sensorType, SensorCoefficientManager.AATSR_NAME)) {
-                    processAatsr(sourceBand.getName(), sourceData, targetTile, targetRectangle, new SmacAlgorithm());
                 }
-            } catch (IOException e) {
-                logger.severe("An error occurred during processing: ");
-                logger.severe(e.getMessage());
+                bandContext.algorithm.run(bandContext.isForwardBand ? buffers.forward : buffers.nadir,
+                                          invalidPixel, buffers.toa, buffers.toaCorr);
+                setSamples(bandContext.targetTile, batch, buffers.toaCorr);
             }
+            checkForCancellation();
         }
     }
 
@@ -552,106 +599,6 @@ public class SmacOperator extends Operator {
         return targetBandName;
     }
 
-    private void processMerisWithADS(Band spectralBand, SourceData sourceData, Tile targetTile, Rectangle targetRectangle, SmacAlgorithm algorithm) throws IOException {
-        if (!setBandCoefficients(spectralBand.getName(), algorithm)) {
-            logger.severe(String.format("Sensor coefficient file for spectral band '%s' not found!", spectralBand.getName()));
-            return;
-        }
-
-        float[] toa = RsMathUtils.radianceToReflectance(sourceData.toa, sourceData.sza, spectralBand.getSolarFlux(), null);
-        float[] press = RsMathUtils.simpleBarometric(sourceData.press, sourceData.elev, null);
-        float[] uo3 = dobsonToCmAtm(sourceData.uo3);
-        float[] uh2o = relativeHumidityTogcm2(sourceData.uh2o);
-
-        Mask mask = sourceProduct.getMaskGroup().get(SMAC_MASK);
-        int i = 0;
-        for (int absY = targetRectangle.y; absY < targetRectangle.y + targetRectangle.height; absY++) {
-            checkForCancellation();
-            for (int absX = targetRectangle.x; absX < targetRectangle.x + targetRectangle.width; absX++) {
-                sourceData.process[i] = mask.getSampleInt(absX, absY) != 0;
-                i++;
-            }
-        }
-
-        float[] toa_corr = new float[toa.length];
-        toa_corr = algorithm.run(sourceData.sza, sourceData.saa, sourceData.vza, sourceData.vaa, sourceData.taup550,
-                                 uh2o, uo3, press, sourceData.process, invalidPixel,
-                                 toa, toa_corr);
-
-        targetTile.setSamples(toa_corr);
-    }
-
-    // Processes MERIS data.
-    private void processMeris(Band spectralBand, SourceData sourceData, Tile targetTile, Rectangle targetRectangle, SmacAlgorithm algorithm) throws IOException {
-        if (!setBandCoefficients(spectralBand.getName(), algorithm)) {
-            logger.severe("Sensor coefficient file for spectral band '" + spectralBand.getName() +
-                          "' not found!");
-            return;
-        }
-
-        float[] reflectances = RsMathUtils.radianceToReflectance(sourceData.toa, sourceData.sza, spectralBand.getSolarFlux(), null);
-
-        Mask mask = sourceProduct.getMaskGroup().get(SMAC_MASK);
-        int i = 0;
-        for (int absY = targetRectangle.y; absY < targetRectangle.y + targetRectangle.height; absY++) {
-            checkForCancellation();
-            for (int absX = targetRectangle.x; absX < targetRectangle.x + targetRectangle.width; absX++) {
-                sourceData.process[i] = mask.getSampleInt(absX, absY) != 0;
-                i++;
-            }
-        }
-
-        float[] toa_corr = new float[reflectances.length];
-        toa_corr = algorithm.run(sourceData.sza, sourceData.saa, sourceData.vza, sourceData.vaa, sourceData.taup550,
-                                 sourceData.uh2o, sourceData.uo3, sourceData.press, sourceData.process, invalidPixel,
-                                 reflectances, toa_corr);
-
-        targetTile.setSamples(toa_corr);
-    }
-
-    // Processes a single AATSR band.
-    private void processAatsr(String bandName, SourceData sourceData, Tile targetTile, Rectangle targetRectangle, SmacAlgorithm algorithm) throws IOException {
-        if (!setBandCoefficients(bandName, algorithm)) {
-            logger.severe("Sensor coefficient file for spectral band '" + bandName +
-                          "' not found!");
-            return;
-        }
-
-        boolean isForwardBand = bandName.contains("fward");
-
-        // set the tie point bands and mask according to input band view
-        // and scale sun and view elevation to zenith angles
-        Mask mask;
-        float[] vza;
-        float[] sza;
-        if (isForwardBand) {
-            vza = RsMathUtils.elevationToZenith(sourceData.vzaFwd, null);
-            sza = RsMathUtils.elevationToZenith(sourceData.szaFwd, null);
-            mask = sourceProduct.getMaskGroup().get(SMAC_MASK_FORWARD);
-        } else {
-            vza = RsMathUtils.elevationToZenith(sourceData.vza, null);
-            sza = RsMathUtils.elevationToZenith(sourceData.sza, null);
-            mask = sourceProduct.getMaskGroup().get(SMAC_MASK);
-        }
-
-        int i = 0;
-        for (int absY = targetRectangle.y; absY < targetRectangle.y + targetRectangle.height; absY++) {
-            checkForCancellation();
-            for (int absX = targetRectangle.x; absX < targetRectangle.x + targetRectangle.width; absX++) {
-                sourceData.process[i] = mask.getSampleInt(absX, absY) != 0;
-                i++;
-            }
-        }
-
-        float[] toa_corr = new float[sourceData.toa.length];
-        toa_corr = algorithm.run(sourceData.sza, sourceData.saa, vza, sza, sourceData.taup550,
-                                 sourceData.uh2o, sourceData.uo3, sourceData.press, sourceData.process, invalidPixel,
-                                 sourceData.toa, toa_corr);
-
-        targetTile.setSamples(toa_corr);
-    }
-
-
     private boolean setBandCoefficients(String bandName, SmacAlgorithm algorithm) {
         if (coefficients.containsKey(bandName)) {
             algorithm.setSensorCoefficients(coefficients.get(bandName));
@@ -704,25 +651,56 @@ public class SmacOperator extends Operator {
         return coeffMgr;
     }
 
-    // Converts an array of ozone contents in DU to cm *atm
-    private static float[] dobsonToCmAtm(float[] du) {
-        Assert.notNull(du, "du");
-        for (int n = 0; n < du.length; n++) {
-            du[n] = du[n] * duToCmAtm;
+    private SmacBuffers getSmacBuffers(int numPixels, boolean forward) {
+        SmacBuffers buffers = smacBuffers.get();
+        if (buffers == null || buffers.nadir.getCapacity() < numPixels || (forward && buffers.forward == null)) {
+            buffers = new SmacBuffers(numPixels, forward);
+            smacBuffers.set(buffers);
+        }
+        return buffers;
+    }
+
+    // Prepares the nadir or forward view of AATSR bands. The view elevation and the sun elevation of the view are
+    // scaled to zenith angles and passed as view zenith and view azimuth, as the AATSR processing always did.
+    private static void prepareAatsrView(Tile vzaTile, Tile szaTile, Tile maskTile, Rectangle batch,
+                                         SmacBuffers buffers, SmacAlgorithm.Workspace workspace) {
+        final int numPixels = batch.width * batch.height;
+        getSamples(vzaTile, batch, buffers.vza);
+        getSamples(szaTile, batch, buffers.vaa);
+        for (int i = 0; i < numPixels; i++) {
+            buffers.vza[i] = RsMathUtils.elevationToZenith(buffers.vza[i]);
+            buffers.vaa[i] = RsMathUtils.elevationToZenith(buffers.vaa[i]);
         }
-        return du;
+        getProcessFlags(maskTile, batch, buffers.process);
+        SmacAlgorithm.prepare(buffers.sza, buffers.saa, buffers.vza, buffers.vaa, buffers.taup550,
+                              buffers.uh2o, buffers.uo3, buffers.press, buffers.process, numPixels, workspace);
     }
 
-    // Converts an array of relative humidity values (in %) to water vapour content in g/cm^2. This method uses a simple
-    // linear relation without plausibility checks
-    private static float[] relativeHumidityTogcm2(float[] relHum) {
-        Assert.notNull(relHum, "relHum");
+    private static void getSamples(Tile tile, Rectangle rectangle, float[] samples) {
+        int i = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                samples[i++] = tile.getSampleFloat(x, y);
+            }
+        }
+    }
 
-        for (int n = 0; n < relHum.length; n++) {
-            relHum[n] = relHumTogcm * relHum[n];
+    private static void getProcessFlags(Tile maskTile, Rectangle rectangle, boolean[] process) {
+        int i = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                process[i++] = maskTile.getSampleInt(x, y) != 0;
+            }
         }
+    }
 
-        return relHum;
+    private static void setSamples(Tile tile, Rectangle rectangle, float[] samples) {
+        int i = 0;
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                tile.setSample(x, y, samples[i++]);
+            }
+        }
     }
 
     public static class Spi extends OperatorSpi {
@@ -733,22 +711,59 @@ public class SmacOperator extends Operator {
 
     }
 
-    private class SourceData {
-
-        float[] sza;
-        float[] saa;
-        float[] vza;
-        float[] vaa;
-        float[] szaFwd;
-        float[] saaFwd;
-        float[] vzaFwd;
-        float[] vaaFwd;
-        float[] uh2o;
-        float[] uo3;
-        float[] press;
-        float[] elev;
-        float[] taup550;
-        boolean[] process;
-        float[] toa;
+    /**
+     * The input and output vectors of a batch of pixels and the SMAC workspaces of the nadir and forward view.
+     * The buffers are reused by the calling thread.
+     */
+    private static class SmacBuffers {
+
+        private final float[] sza;
+        private final float[] saa;
+        private final float[] vza;
+        private final float[] vaa;
+        private final float[] uh2o;
+        private final float[] uo3;
+        private final float[] press;
+        private final float[] elev;
+        private final float[] taup550;
+        private final float[] toa;
+        private final float[] toaCorr;
+        private final boolean[] process;
+        private final SmacAlgorithm.Workspace nadir;
+        private final SmacAlgorithm.Workspace forward;
+
+        private SmacBuffers(int numPixels, boolean forward) {
+            sza = new float[numPixels];
+            saa = new float[numPixels];
+            vza = new float[numPixels];
+            vaa = new float[numPixels];
+            uh2o = new float[numPixels];
+            uo3 = new float[numPixels];
+            press = new float[numPixels];
+            elev = new float[numPixels];
+            taup550 = new float[numPixels];
+            toa = new float[numPixels];
+            toaCorr = new float[numPixels];
+            process = new boolean[numPixels];
+            nadir = new SmacAlgorithm.Workspace(numPixels);
+            this.forward = forward ? new SmacAlgorithm.Workspace(numPixels) : null;
+        }
+    }
+
+    private static class BandContext {
+
+        private final Band sourceBand;
+        private final Tile sourceTile;
+        private final Tile targetTile;
+        private final SmacAlgorithm algorithm;
+        private final boolean isForwardBand;
+
+        private BandContext(Band sourceBand, Tile sourceTile, Tile targetTile, SmacAlgorithm algorithm, boolean isForwardBand) {
+            this.sourceBand = sourceBand;
+            this.sourceTile = sourceTile;
+            this.targetTile = targetTile;
+            this.algorithm = algorithm;
+            this.isForwardBand = isForwardBand;
+        }
     }
 }
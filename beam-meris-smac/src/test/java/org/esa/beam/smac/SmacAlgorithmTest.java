@@ -20,8 +20,10 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URL;
 
 public class SmacAlgorithmTest extends TestCase {
 
@@ -251,4 +253,36 @@ public class SmacAlgorithmTest extends TestCase {
         }
     }
 
-}
\ No newline at end of file
+    public void testRunWithWorkspaceSharedByCoefficientSets() throws Exception {
+        float[] sza = {_defSza, _defSza};
+        float[] saa = {_defSaa, _defSaa};
+        float[] vza = {_defVza, _defVza};
+        float[] vaa = {_defVaa, _defVaa};
+        float[] taup550 = {_defTaup550, _defTaup550};
+        float[] uh2o = {_defUh2o, _defUh2o};
+        float[] uo3 = {_defUo3, _defUo3};
+        float[] pressure = {_defPressure, _defPressure};
+        float[] toa = {_defToa, _defToa};
+        boolean[] process = {true, false};
+        float invalid = -1.f;
+
+        // the geometry and atmosphere terms are computed once and used for all coefficient sets
+        SmacAlgorithm.Workspace workspace = new SmacAlgorithm.Workspace(4);
+        SmacAlgorithm.prepare(sza, saa, vza, vaa, taup550, uh2o, uo3, pressure, process, 2, workspace);
+
+        SmacAlgorithm smac = new SmacAlgorithm();
+        float[] t_surf = new float[2];
+        for (int n = 0; n < _referenceCoeffs.length; n++) {
+            URL resource = SmacAlgorithmTest.class.getResource("/auxdata/" + _referenceCoeffs[n]);
+            assertNotNull(_referenceCoeffs[n], resource);
+            SensorCoefficientFile file = new SensorCoefficientFile();
+            file.readFile(new File(resource.toURI()).getPath());
+
+            smac.setSensorCoefficients(file);
+            smac.run(workspace, invalid, toa, t_surf);
+
+            assertEquals(_referenceCoeffs[n], _reference[n], t_surf[0], 1e-6);
+            assertEquals(invalid, t_surf[1], 0.0f);
+        }
+    }
+}
@@ -29,10 +29,13 @@ import org.esa.beam.framework.datamodel.ProductNodeEvent;
 import org.esa.beam.framework.datamodel.ProductNodeListener;
 import org.esa.beam.framework.datamodel.VirtualBand;
 import org.esa.beam.jai.ImageHeader;
+import org.esa.beam.jai.TileContainerFile;
+import org.esa.beam.jai.TileContainerWriter;
 import org.esa.beam.jai.TiledFileOpImage;
 import org.esa.beam.util.io.FileUtils;
 
 import javax.imageio.stream.FileImageOutputStream;
+import javax.media.jai.JAI;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.File;
@@ -40,17 +43,44 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class RawTiledPyramidsProductWriter extends AbstractProductWriter {
 
+    /**
+     * The system property used to select the tile format, either {@code "raw"} (the default) for one file per tile
+     * or {@code "raw.rtc"} for a single tile container file per band and level. Note that readers older than
+     * BEAM 5.0.6 cannot open products written with tile containers.
+     */
+    public static final String SYSPROP_TILE_FORMAT = "beam.rtp.tileFormat";
+    /**
+     * The system property used to select the compression of tile container files,
+     * either {@code "deflate"} (the default) or {@code "none"}.
+     */
+    public static final String SYSPROP_TILE_COMPRESSION = "beam.rtp.tileCompression";
+
     private File headerFile;
     private HashSet<Band> writtenBands;
     private final ProductNodeHandler productNodeHandler;
+    private final String tileFormat;
+    private final int tileCompression;
 
     public RawTiledPyramidsProductWriter(RawTiledPyramidsProductCodecSpi spi) {
         super(spi);
         productNodeHandler = new ProductNodeHandler();
+        tileFormat = System.getProperty(SYSPROP_TILE_FORMAT, "raw");
+        if ("none".equalsIgnoreCase(System.getProperty(SYSPROP_TILE_COMPRESSION))) {
+            tileCompression = TileContainerFile.COMPRESSION_NONE;
+        } else {
+            tileCompression = TileContainerFile.COMPRESSION_DEFLATE;
+        }
     }
 
     protected void writeProductNodesImpl() throws IOException {
@@ -159,19 +189,84 @@ public class RawTiledPyramidsProductWriter extends AbstractProductWriter {
         }
         try {
             pm.beginTask("Writing image", levelImage.getNumXTiles() * levelImage.getNumYTiles());
-            final ImageHeader imageHeader = new ImageHeader(levelImage, "raw");
-            imageHeader.store(new FileWriter(new File(levelDir, "image.properties")), null);
+            final boolean useTileContainer = TileContainerFile.TILE_FORMAT.equalsIgnoreCase(tileFormat);
+            final ImageHeader imageHeader = new ImageHeader(levelImage, useTileContainer ? TileContainerFile.TILE_FORMAT : "raw");
+            final FileWriter headerWriter = new FileWriter(new File(levelDir, "image.properties"));
+            try {
+                imageHeader.store(headerWriter, null);
+            } finally {
+                headerWriter.close();
+            }
+            if (useTileContainer) {
+                writeTileContainer(levelImage, levelDir, pm);
+            } else {
+                for (int y = 0; y < levelImage.getNumYTiles(); y++) {
+                    for (int x = 0; x < levelImage.getNumXTiles(); x++) {
+                        writeTile(levelImage, x, y, levelDir);
+                        pm.worked(1);
+                    }
+                }
+            }
+        } finally {
+            pm.done();
+        }
+    }
+
+    private void writeTileContainer(final RenderedImage levelImage, File levelDir, ProgressMonitor pm) throws IOException {
+        final File containerFile = new File(levelDir, TileContainerFile.FILE_NAME);
+        final TileContainerWriter containerWriter = new TileContainerWriter(containerFile,
+                                                                            levelImage.getNumXTiles(),
+                                                                            levelImage.getNumYTiles(),
+                                                                            tileCompression);
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        final ExecutorService executor = createExecutorService();
+        boolean completed = false;
+        try {
+            // tiles are computed and compressed concurrently, the container writer is thread safe
             for (int y = 0; y < levelImage.getNumYTiles(); y++) {
                 for (int x = 0; x < levelImage.getNumXTiles(); x++) {
-                    writeTile(levelImage, x, y, levelDir);
-                    pm.worked(1);
+                    final int tileX = x;
+                    final int tileY = y;
+                    futures.add(executor.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            containerWriter.writeTile(tileX, tileY, levelImage.getTile(tileX, tileY));
+                            return null;
+                        }
+                    }));
                 }
             }
+            for (Future<?> future : futures) {
+                future.get();
+                pm.worked(1);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while writing tiles to " + containerFile, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write tile to " + containerFile, e.getCause());
         } finally {
-            pm.done();
+            executor.shutdownNow();
+            if (completed) {
+                containerWriter.close();
+            } else {
+                containerWriter.abort();
+            }
         }
     }
 
+    private static ExecutorService createExecutorService() {
+        final int parallelism = JAI.getDefaultInstance().getTileScheduler().getParallelism();
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "rtp-tile-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     private synchronized void writeTile(RenderedImage levelImage, int tileX, int tileY, File levelDir) throws IOException {
         final Raster raster = levelImage.getTile(tileX, tileY);
 
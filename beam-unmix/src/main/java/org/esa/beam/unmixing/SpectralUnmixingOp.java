@@ -28,9 +28,9 @@ import org.esa.beam.framework.gpf.annotations.SourceProduct;
 import org.esa.beam.framework.gpf.annotations.TargetProduct;
 import org.esa.beam.util.ProductUtils;
 import org.esa.beam.util.io.CsvReader;
+import org.esa.beam.util.math.BatchSpectralUnmixing;
 import org.esa.beam.util.math.ConstrainedLSU;
 import org.esa.beam.util.math.FullyConstrainedLSU;
-import org.esa.beam.util.math.SpectralUnmixing;
 import org.esa.beam.util.math.UnconstrainedLSU;
 
 import java.awt.*;
@@ -57,6 +57,9 @@ public class SpectralUnmixingOp extends Operator {
     private final String C_LSU = "Constrained LSU";
     private final String FC_LSU = "Fully Constrained LSU";
 
+    // the maximum number of spectra unmixed at once, limits the size of the buffers kept per thread
+    private static final int MAX_BATCH_SIZE = 4096;
+
     @SourceProduct(alias="source", description = "The source product.")
     Product sourceProduct;
 
@@ -91,7 +94,8 @@ public class SpectralUnmixingOp extends Operator {
     private Band[] abundanceBands;
     private Band[] errorBands;
     private Band summaryErrorBand;
-    private SpectralUnmixing spectralUnmixing;
+    private BatchSpectralUnmixing spectralUnmixing;
+    private ThreadLocal<UnmixingBuffers> unmixingBuffers;
 
     public SpectralUnmixingOp() {
     }
@@ -232,6 +236,8 @@ public class SpectralUnmixingOp extends Operator {
             spectralUnmixing = new UnconstrainedLSU(lsuMatrixElements);
         }
 
+        unmixingBuffers = new ThreadLocal<>();
+
         int width = sourceProduct.getSceneRasterWidth();
         int height = sourceProduct.getSceneRasterHeight();
 
@@ -261,70 +267,89 @@ public class SpectralUnmixingOp extends Operator {
 
     @Override
     public void computeTile(Band band, Tile targetTile, ProgressMonitor pm) throws OperatorException {
-        Rectangle rectangle = targetTile.getRectangle();
         int i = getTargetBandIndex(targetTile);
         if (i == -1) {
             return;
         }
-        Tile[] sourceRaster = getSourceTiles(rectangle);
-        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
-            double[][] ia = getLineSpectra(sourceRaster, rectangle, y);
-            double[][] oa = unmix(ia);
-            setAbundances(rectangle, targetTile, y, oa[i]);
-            checkForCancellation();
-        }
+        Tile[] abundanceTiles = new Tile[abundanceBands.length];
+        abundanceTiles[i] = targetTile;
+        computeTiles(targetTile.getRectangle(), abundanceTiles, null, null);
     }
 
     @Override
     public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetTileRectangle, ProgressMonitor pm) throws OperatorException {
         Tile[] abundanceTiles = new Tile[abundanceBands.length];
-        Tile[] intensityTiles = getSourceTiles(targetTileRectangle);
         for (int i = 0; i < abundanceBands.length; i++) {
             abundanceTiles[i] = targetTiles.get(abundanceBands[i]);
         }
         Tile[] errorTiles = null;
         Tile summaryErrorTile = null;
         if (computeErrorBands) {
-            errorTiles = new Tile[intensityTiles.length];
+            errorTiles = new Tile[sourceBands.length];
             for (int i = 0; i < errorTiles.length; i++) {
                 errorTiles[i] = targetTiles.get(errorBands[i]);
             }
             summaryErrorTile = targetTiles.get(summaryErrorBand);
         }
-        for (int y = targetTileRectangle.y; y < targetTileRectangle.y + targetTileRectangle.height; y++) {
-            double[][] ia = getLineSpectra(intensityTiles, targetTileRectangle, y);
-            double[][] oa = unmix(ia);
-            for (int i = 0; i < abundanceBands.length; i++) {
-                setAbundances(targetTileRectangle, abundanceTiles[i], y, oa[i]);
-                checkForCancellation();
-            }
-            if (computeErrorBands) {
-                final double[][] ia2 = mix(oa);
-                computeErrorTiles(targetTileRectangle, errorTiles, summaryErrorTile, y, ia, ia2);
+        computeTiles(targetTileRectangle, abundanceTiles, errorTiles, summaryErrorTile);
+    }
+
+    /**
+     * Unmixes the spectra of a tile in batches of rows. The spectra and abundances of a batch are
+     * kept in flat arrays which are reused by the calling thread.
+     */
+    private void computeTiles(Rectangle rectangle, Tile[] abundanceTiles, Tile[] errorTiles, Tile summaryErrorTile) throws OperatorException {
+        Tile[] sourceTiles = getSourceTiles(rectangle);
+        int batchHeight = Math.max(1, Math.min(rectangle.height, MAX_BATCH_SIZE / rectangle.width));
+        UnmixingBuffers buffers = getUnmixingBuffers(rectangle.width * batchHeight);
+        for (int y = rectangle.y; y < rectangle.y + rectangle.height; y += batchHeight) {
+            Rectangle batch = new Rectangle(rectangle.x, y, rectangle.width,
+                                            Math.min(batchHeight, rectangle.y + rectangle.height - y));
+            int numSpectra = batch.width * batch.height;
+            getSamples(sourceTiles, batch, buffers.spectra);
+            spectralUnmixing.unmix(buffers.spectra, buffers.abundances, numSpectra, buffers.workspace);
+            setSamples(abundanceTiles, batch, buffers.abundances);
+            if (errorTiles != null) {
+                spectralUnmixing.mix(buffers.abundances, buffers.mixedSpectra, numSpectra);
+                computeErrorTiles(batch, errorTiles, summaryErrorTile, buffers.spectra, buffers.mixedSpectra);
             }
+            checkForCancellation();
         }
     }
 
-    private static void computeErrorTiles(Rectangle rectangle, Tile[] errorTilesc, Tile summaryErrorTile, int y, double[][] ia, double[][] ia2) {
-        final double[] errSqrSumRow = new double[rectangle.width];
-        for (int i = 0; i < errorTilesc.length; i++) {
-            final Tile errorTile = errorTilesc[i];
-            final double[] iaRow = ia[i];
-            final double[] ia2Row = ia2[i];
-            double err;
-            int j = 0;
-            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                err = iaRow[j] - ia2Row[j];
-                errorTile.setSample(x, y, err);
-                errSqrSumRow[j] += err * err;
-                j++;
+    private UnmixingBuffers getUnmixingBuffers(int numSpectra) {
+        UnmixingBuffers buffers = unmixingBuffers.get();
+        if (buffers == null || buffers.workspace.getMaxNumSpectra() < numSpectra) {
+            buffers = new UnmixingBuffers(spectralUnmixing, numSpectra, computeErrorBands);
+            unmixingBuffers.set(buffers);
+        }
+        return buffers;
+    }
+
+    private static void computeErrorTiles(Rectangle rectangle, Tile[] errorTiles, Tile summaryErrorTile, double[] spectra, double[] mixedSpectra) {
+        final int numSpectra = rectangle.width * rectangle.height;
+        for (int i = 0; i < errorTiles.length; i++) {
+            final Tile errorTile = errorTiles[i];
+            int k = i * numSpectra;
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    errorTile.setSample(x, y, spectra[k] - mixedSpectra[k]);
+                    k++;
+                }
             }
         }
         if (summaryErrorTile != null) {
-            int j = 0;
-            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                summaryErrorTile.setSample(x, y, Math.sqrt(errSqrSumRow[j] / errorTilesc.length));
-                j++;
+            int k = 0;
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    double errSqrSum = 0.0;
+                    for (int i = 0; i < errorTiles.length; i++) {
+                        final double err = spectra[i * numSpectra + k] - mixedSpectra[i * numSpectra + k];
+                        errSqrSum += err * err;
+                    }
+                    summaryErrorTile.setSample(x, y, Math.sqrt(errSqrSum / errorTiles.length));
+                    k++;
+                }
             }
         }
     }
@@ -337,23 +362,31 @@ public class SpectralUnmixingOp extends Operator {
         return sourceRaster;
     }
 
-    private static void setAbundances(Rectangle rectangle, Tile targetTile, int y, double[] oaRow) {
-        int i = 0;
-        for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-            targetTile.setSample(x, y, oaRow[i]);
-            i++;
+    private static void getSamples(Tile[] tiles, Rectangle rectangle, double[] samples) {
+        int k = 0;
+        for (Tile tile : tiles) {
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    samples[k++] = tile.getSampleDouble(x, y);
+                }
+            }
         }
     }
 
-
-    private double[][] getLineSpectra(Tile[] sourceRasters, Rectangle rectangle, int y) throws OperatorException {
-        double[][] ia = new double[sourceBands.length][rectangle.width];
-        for (int i = 0; i < sourceBands.length; i++) {
-            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
-                ia[i][x - rectangle.x] = sourceRasters[i].getSampleDouble(x, y);
+    private static void setSamples(Tile[] tiles, Rectangle rectangle, double[] samples) {
+        final int numSpectra = rectangle.width * rectangle.height;
+        for (int i = 0; i < tiles.length; i++) {
+            final Tile tile = tiles[i];
+            if (tile == null) {
+                continue;
+            }
+            int k = i * numSpectra;
+            for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++) {
+                    tile.setSample(x, y, samples[k++]);
+                }
             }
         }
-        return ia;
     }
 
     private int getTargetBandIndex(Tile targetTile) {
@@ -368,14 +401,6 @@ public class SpectralUnmixingOp extends Operator {
         return index;
     }
 
-    private double[][] unmix(double[][] ia) {
-        return spectralUnmixing.unmix(ia);
-    }
-
-    private double[][] mix(double[][] ia) {
-        return spectralUnmixing.mix(ia);
-    }
-
     public static int findEndmemberSpectralIndex(double[] endmemberWavelengths, double sourceBandWavelength, double maxBandwidth) {
         double minDelta = Double.MAX_VALUE;
         int bestIndex = -1;
@@ -476,6 +501,21 @@ public class SpectralUnmixingOp extends Operator {
         }
     }
 
+    private static class UnmixingBuffers {
+
+        private final double[] spectra;
+        private final double[] abundances;
+        private final double[] mixedSpectra;
+        private final BatchSpectralUnmixing.Workspace workspace;
+
+        private UnmixingBuffers(BatchSpectralUnmixing spectralUnmixing, int numSpectra, boolean mix) {
+            spectra = new double[spectralUnmixing.getNumChannels() * numSpectra];
+            abundances = new double[spectralUnmixing.getNumEndmembers() * numSpectra];
+            mixedSpectra = mix ? new double[spectralUnmixing.getNumChannels() * numSpectra] : null;
+            workspace = spectralUnmixing.createWorkspace(numSpectra);
+        }
+    }
+
     /**
      * The Service Provider Interface (SPI) for the operator.
      * It provides operator meta-data and is a factory for new operator instances.